@@ -0,0 +1,60 @@
+package com.example.library.audit;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * 一条流通事件，对应日志文件中的一条定长记录。
+ * @param timestamp 事件发生 (事务提交) 的时间，毫秒
+ * @param recordId 借阅/预约记录 id
+ * @param detail 与类型相关的附加值，见 {@link Type}
+ */
+public record CirculationEvent(Type type, long timestamp, long recordId, long userId, long bookId, long detail) {
+
+    /**
+     * 事件类型，code 写入日志文件，已使用的值不能修改 (0 表示段中尚未写入的位置)。
+     */
+    public enum Type {
+        BORROW(1),  // detail: 应还日期 (epoch day)
+        RETURN(2),  // detail: 逾期天数
+        RENEW(3),   // detail: 新的应还日期 (epoch day)
+        RESERVE(4), // detail: 1 表示预约时直接保留了一本，0 表示进入队列
+        CANCEL(5),  // detail: 未使用
+        EXPIRE(6);  // detail: 未使用
+
+        private static final Type[] BY_CODE = new Type[7];
+
+        static {
+            for (Type type : values()) {
+                BY_CODE[type.code] = type;
+            }
+        }
+
+        private final int code;
+
+        Type(int code) {
+            this.code = code;
+        }
+
+        public int code() {
+            return code;
+        }
+
+        /**
+         * @return 对应的类型，未知的 code 返回 null
+         */
+        public static Type fromCode(int code) {
+            return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+        }
+    }
+
+    public LocalDate dueDate() {
+        return type == Type.BORROW || type == Type.RENEW ? LocalDate.ofEpochDay(detail) : null;
+    }
+
+    @Override
+    public String toString() {
+        return type + " record=" + recordId + " user=" + userId + " book=" + bookId + " detail=" + detail
+                + " at " + Instant.ofEpochMilli(timestamp);
+    }
+}
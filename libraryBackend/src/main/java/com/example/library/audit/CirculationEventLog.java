@@ -0,0 +1,235 @@
+package com.example.library.audit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+/**
+ * 借阅、归还、续借、预约、取消预约和预约过期事件的只追加日志。
+ * <p>
+ * 请求线程只调用 {@link #publish}：把事件字段写进无锁环形缓冲区后立即返回，不格式化字符串、不分配对象、不做任何 I/O；
+ * 缓冲区满 (写入线程跟不上或磁盘故障) 时丢弃事件并计数，请求延迟与日志 I/O 无关。
+ * 后台写入线程批量取出事件，写入内存映射的定长段文件，按 force-interval-ms 周期刷盘，段写满后切换到新文件。
+ * <p>
+ * 段文件格式 (大端)：16 字节文件头 (magic、版本、创建时间)，之后是 48 字节的定长记录
+ * (时间戳、记录 id、用户 id、图书 id、附加值、类型、CRC32)，类型为 0 的位置表示尚未写入。
+ * 进程崩溃时未刷盘的尾部可能丢失或残缺，{@link CirculationLogReplay} 用 CRC 识别并跳过。
+ */
+@Component
+public class CirculationEventLog implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(CirculationEventLog.class);
+
+    static final int MAGIC = 0x43495243; // "CIRC"
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 48;
+    static final int CHECKSUMMED_SIZE = RECORD_SIZE - Integer.BYTES;
+    static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final int DRAIN_BATCH = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long OPEN_RETRY_MILLIS = 5000;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentSize;
+    private final long forceIntervalMillis;
+    private final CirculationEventRing ring;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long written;
+    private volatile long segments;
+    private volatile Path currentPath;
+    private volatile boolean running;
+    private Thread writer;
+
+    // 以下字段只由写入线程访问
+    private final String segmentPrefix = String.format("circulation-%013d-", System.currentTimeMillis());
+    private final ByteBuffer scratch = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private final CirculationEventRing.Sink sink = this::write;
+    private MappedByteBuffer segment;
+    private int position;
+    private boolean dirty;
+    private long lastForce;
+    private long openRetryAt;
+
+    public CirculationEventLog(
+            @Value("${library.circulation-log.enabled:true}") boolean enabled, // 关闭后 publish 直接返回
+            @Value("${library.circulation-log.dir:logs/circulation}") String directory, // 段文件目录
+            @Value("${library.circulation-log.ring-size:65536}") int ringSize, // 环形缓冲区容量，必须是 2 的幂
+            @Value("${library.circulation-log.segment-size-mb:16}") int segmentSizeMb, // 单个段文件大小
+            @Value("${library.circulation-log.force-interval-ms:1000}") long forceIntervalMillis) { // 刷盘间隔，即崩溃时最多丢失的时间窗口
+        if (segmentSizeMb <= 0) {
+            throw new IllegalArgumentException("segment size must be positive: " + segmentSizeMb);
+        }
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.segmentSize = (long) segmentSizeMb << 20;
+        this.forceIntervalMillis = forceIntervalMillis;
+        this.ring = new CirculationEventRing(ringSize);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            log.info("Circulation event log disabled");
+            return;
+        }
+        running = true;
+        writer = new Thread(this::runWriter, "circulation-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Circulation event log writing to {}", directory.toAbsolutePath());
+    }
+
+    /**
+     * 发布一个事件，不阻塞、不分配对象。应在事务提交后调用，回滚的操作不应出现在日志中。
+     * @param detail 与类型相关的附加值，见 {@link CirculationEvent.Type}
+     */
+    public void publish(CirculationEvent.Type type, long recordId, long userId, long bookId, long detail) {
+        if (!enabled) {
+            return;
+        }
+        if (ring.offer(type, System.currentTimeMillis(), recordId, userId, bookId, detail)) {
+            published.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("directory", directory.toAbsolutePath().toString());
+        stats.put("currentSegment", currentPath == null ? null : currentPath.getFileName().toString());
+        stats.put("ringSize", ring.capacity());
+        stats.put("published", published.get());
+        stats.put("dropped", dropped.get());
+        stats.put("written", written);
+        stats.put("backlog", ring.backlog());
+        stats.put("segments", segments);
+        return stats;
+    }
+
+    /**
+     * 停止写入线程：先写完缓冲区中剩余的事件并刷盘。
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        writer = null;
+    }
+
+    private void runWriter() {
+        lastForce = System.currentTimeMillis();
+        while (true) {
+            boolean stopping = !running;
+            int drained = ring.drain(sink, DRAIN_BATCH);
+            long now = System.currentTimeMillis();
+            if (dirty && (stopping || now - lastForce >= forceIntervalMillis)) {
+                force();
+                lastForce = now;
+            }
+            if (drained == 0) {
+                if (stopping) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        force();
+    }
+
+    private void write(int type, long timestamp, long recordId, long userId, long bookId, long detail) {
+        if ((segment == null || position + RECORD_SIZE > segment.capacity()) && !roll()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        scratch.clear();
+        scratch.putLong(timestamp).putLong(recordId).putLong(userId).putLong(bookId).putLong(detail).putInt(type);
+        crc.reset();
+        crc.update(scratch.array(), 0, CHECKSUMMED_SIZE);
+        scratch.putInt((int) crc.getValue());
+        segment.put(position, scratch.array());
+        position += RECORD_SIZE;
+        dirty = true;
+        written++;
+    }
+
+    /**
+     * 刷盘并切换到新的段文件。打开失败时暂停一段时间再重试，期间的事件被丢弃。
+     */
+    private boolean roll() {
+        force();
+        segment = null;
+        long now = System.currentTimeMillis();
+        if (now < openRetryAt) {
+            return false;
+        }
+        try {
+            Files.createDirectories(directory);
+            while (true) {
+                Path path = directory.resolve(segmentPrefix + String.format("%05d", segments) + SEGMENT_SUFFIX);
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize); // 映射在通道关闭后仍然有效
+                } catch (FileAlreadyExistsException e) {
+                    segments++;
+                    continue;
+                }
+                segment.putInt(0, MAGIC).putInt(4, FORMAT_VERSION).putLong(8, now);
+                position = HEADER_SIZE;
+                currentPath = path;
+                segments++;
+                return true;
+            }
+        } catch (IOException | RuntimeException e) {
+            openRetryAt = now + OPEN_RETRY_MILLIS;
+            log.error("Failed to open circulation log segment in {}, dropping events for {} ms",
+                    directory.toAbsolutePath(), OPEN_RETRY_MILLIS, e);
+            return false;
+        }
+    }
+
+    private void force() {
+        if (segment != null && dirty) {
+            try {
+                segment.force();
+            } catch (RuntimeException e) {
+                log.error("Failed to flush circulation log segment {}", currentPath, e);
+            }
+        }
+        dirty = false;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.library.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 多生产者、单消费者的无锁环形缓冲区，事件字段保存在预分配的数组中，发布时不分配对象。
+ * <p>
+ * 生产者用 CAS 领取一个序号，写入该槽位的字段后把序号写入 published (volatile 写，之前的字段写入对消费者可见)；
+ * 消费者按序号顺序读取 published 等于期望序号的槽位，读完后推进 consumed，生产者据此判断缓冲区是否已满。
+ * 缓冲区满时 {@link #offer} 立即返回 false 而不是等待，请求线程永远不会因为写日志而阻塞。
+ */
+final class CirculationEventRing {
+
+    private final int capacity;
+    private final int mask;
+    private final int[] types;
+    private final long[] timestamps;
+    private final long[] recordIds;
+    private final long[] userIds;
+    private final long[] bookIds;
+    private final long[] details;
+    private final AtomicLongArray published; // 槽位中已写完的事件序号
+    private final AtomicLong claimed = new AtomicLong(); // 下一个可领取的序号
+    private volatile long consumed; // 下一个待读取的序号，只由消费者线程写入
+
+    CirculationEventRing(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("ring size must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.types = new int[capacity];
+        this.timestamps = new long[capacity];
+        this.recordIds = new long[capacity];
+        this.userIds = new long[capacity];
+        this.bookIds = new long[capacity];
+        this.details = new long[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * 发布一个事件。
+     * @return 缓冲区已满时返回 false (事件被丢弃)
+     */
+    boolean offer(CirculationEvent.Type type, long timestamp, long recordId, long userId, long bookId, long detail) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= capacity) {
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        int slot = (int) (sequence & mask);
+        types[slot] = type.code();
+        timestamps[slot] = timestamp;
+        recordIds[slot] = recordId;
+        userIds[slot] = userId;
+        bookIds[slot] = bookId;
+        details[slot] = detail;
+        published.set(slot, sequence);
+        return true;
+    }
+
+    /**
+     * 按发布顺序取出最多 max 个事件 (只能由一个消费者线程调用)。
+     * 序号已被领取但尚未写完的槽位会挡住后面的事件，直到下一次调用。
+     * @return 取出的事件数
+     */
+    int drain(Sink sink, int max) {
+        long next = consumed;
+        int count = 0;
+        while (count < max) {
+            int slot = (int) (next & mask);
+            if (published.get(slot) != next) {
+                break;
+            }
+            sink.accept(types[slot], timestamps[slot], recordIds[slot], userIds[slot], bookIds[slot], details[slot]);
+            next++;
+            count++;
+        }
+        if (count > 0) {
+            consumed = next;
+        }
+        return count;
+    }
+
+    /**
+     * 已发布但尚未被消费者取出的事件数 (近似值)。
+     */
+    long backlog() {
+        return Math.max(0, claimed.get() - consumed);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 接收取出的事件字段，避免为每个事件创建对象。
+     */
+    @FunctionalInterface
+    interface Sink {
+        void accept(int type, long timestamp, long recordId, long userId, long bookId, long detail);
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.library.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 离线读取流通事件日志并重建统计，不依赖 Spring 和数据库。
+ * 用法：java -cp library.jar -Dloader.main=com.example.library.audit.CirculationLogReplay
+ * org.springframework.boot.loader.launch.PropertiesLauncher [日志目录] [排行数量]
+ */
+public final class CirculationLogReplay {
+
+    /**
+     * 借阅次数排行中的一项。
+     */
+    public record BookBorrows(long bookId, long borrows) {
+    }
+
+    /**
+     * 重建的统计结果。
+     * @param activeLoans 日志中借出但尚未归还的借阅记录数 (日志开始之前借出的不计入)
+     * @param corruptRecords 校验失败的记录数，通常是崩溃前未完整刷盘的尾部
+     */
+    public record Summary(int segments, long events, Map<CirculationEvent.Type, Long> counts, long distinctUsers,
+                          long activeLoans, List<BookBorrows> topBooks, Instant firstEvent, Instant lastEvent,
+                          long corruptRecords) {
+    }
+
+    private CirculationLogReplay() {
+    }
+
+    public static Summary replay(Path directory, int topBooks) throws IOException {
+        Map<CirculationEvent.Type, Long> counts = new EnumMap<>(CirculationEvent.Type.class);
+        Map<Long, Long> borrowsByBook = new HashMap<>();
+        Set<Long> users = new HashSet<>();
+        Set<Long> openLoans = new HashSet<>();
+        long[] range = {Long.MAX_VALUE, Long.MIN_VALUE};
+        long[] events = {0};
+        List<Path> files = segments(directory);
+        long corrupt = 0;
+        for (Path file : files) {
+            corrupt += read(file, event -> {
+                events[0]++;
+                counts.merge(event.type(), 1L, Long::sum);
+                users.add(event.userId());
+                range[0] = Math.min(range[0], event.timestamp());
+                range[1] = Math.max(range[1], event.timestamp());
+                if (event.type() == CirculationEvent.Type.BORROW) {
+                    borrowsByBook.merge(event.bookId(), 1L, Long::sum);
+                    openLoans.add(event.recordId());
+                } else if (event.type() == CirculationEvent.Type.RETURN) {
+                    openLoans.remove(event.recordId());
+                }
+            });
+        }
+        List<BookBorrows> top = borrowsByBook.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(topBooks)
+                .map(e -> new BookBorrows(e.getKey(), e.getValue()))
+                .toList();
+        return new Summary(files.size(), events[0], counts, users.size(), openLoans.size(), top,
+                events[0] == 0 ? null : Instant.ofEpochMilli(range[0]),
+                events[0] == 0 ? null : Instant.ofEpochMilli(range[1]),
+                corrupt);
+    }
+
+    /**
+     * 按写入顺序遍历目录中所有段文件的事件。
+     * @return 校验失败的记录数
+     */
+    public static long forEach(Path directory, Consumer<CirculationEvent> consumer) throws IOException {
+        long corrupt = 0;
+        for (Path file : segments(directory)) {
+            corrupt += read(file, consumer);
+        }
+        return corrupt;
+    }
+
+    // 文件名以实例启动时间和序号开头，按名称排序即按写入顺序
+    private static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().endsWith(CirculationEventLog.SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparing(f -> f.getFileName().toString()))
+                    .toList();
+        }
+    }
+
+    private static long read(Path file, Consumer<CirculationEvent> consumer) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < CirculationEventLog.HEADER_SIZE
+                || buffer.getInt(0) != CirculationEventLog.MAGIC
+                || buffer.getInt(4) != CirculationEventLog.FORMAT_VERSION) {
+            throw new IOException("Not a circulation log segment: " + file);
+        }
+        CRC32 crc = new CRC32();
+        byte[] record = new byte[CirculationEventLog.RECORD_SIZE];
+        long corrupt = 0;
+        for (int position = CirculationEventLog.HEADER_SIZE;
+             position + CirculationEventLog.RECORD_SIZE <= buffer.capacity();
+             position += CirculationEventLog.RECORD_SIZE) {
+            buffer.get(position, record);
+            ByteBuffer fields = ByteBuffer.wrap(record);
+            long timestamp = fields.getLong();
+            long recordId = fields.getLong();
+            long userId = fields.getLong();
+            long bookId = fields.getLong();
+            long detail = fields.getLong();
+            int code = fields.getInt();
+            int checksum = fields.getInt();
+            if (code == 0 && checksum == 0 && timestamp == 0) {
+                break; // 段中尚未写入的部分
+            }
+            crc.reset();
+            crc.update(record, 0, CirculationEventLog.CHECKSUMMED_SIZE);
+            CirculationEvent.Type type = CirculationEvent.Type.fromCode(code);
+            if ((int) crc.getValue() != checksum || type == null) {
+                corrupt++;
+                continue;
+            }
+            consumer.accept(new CirculationEvent(type, timestamp, recordId, userId, bookId, detail));
+        }
+        return corrupt;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "logs/circulation");
+        int top = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Summary summary = replay(directory, top);
+        System.out.printf("%d segments, %d events (%d corrupt records skipped) from %s to %s%n",
+                summary.segments(), summary.events(), summary.corruptRecords(), summary.firstEvent(), summary.lastEvent());
+        summary.counts().forEach((type, count) -> System.out.printf("  %-8s %d%n", type, count));
+        System.out.printf("%d distinct users, %d loans still open%n", summary.distinctUsers(), summary.activeLoans());
+        List<BookBorrows> topBooks = summary.topBooks();
+        for (int i = 0; i < topBooks.size(); i++) {
+            System.out.printf("  #%d book %d: %d borrows%n", i + 1, topBooks.get(i).bookId(), topBooks.get(i).borrows());
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.library.cache;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 缓存失效消息的广播通道：某个节点修改数据后发布一条消息，所有节点 (包括发布者本身) 的订阅者清除对应的缓存条目。
+ * 默认实现 {@link LocalCacheInvalidationBus} 只在进程内分发；多实例部署时提供一个基于消息中间件
+ * (例如 Redis pub/sub) 的 @Primary 实现即可，缓存本身不需要改动。
+ */
+public interface CacheInvalidationBus {
+
+    /**
+     * 广播一条失效消息。
+     * @param region 缓存区域，例如 "books"
+     * @param key 失效的键，为 null 表示整个区域
+     */
+    void publish(String region, Object key);
+
+    /**
+     * 订阅某个区域的失效消息，listener 收到的参数为失效的键 (null 表示整个区域)。
+     */
+    void subscribe(String region, Consumer<Object> listener);
+
+    Map<String, Object> stats();
+}
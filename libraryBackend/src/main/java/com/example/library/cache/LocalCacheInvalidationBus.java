@@ -0,0 +1,43 @@
+package com.example.library.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 进程内的缓存失效广播：在发布者线程上同步通知本进程的所有订阅者。适用于单实例部署和测试。
+ */
+@Component
+public class LocalCacheInvalidationBus implements CacheInvalidationBus {
+
+    private final Map<String, List<Consumer<Object>>> listeners = new ConcurrentHashMap<>();
+    private final LongAdder published = new LongAdder();
+
+    @Override
+    public void publish(String region, Object key) {
+        published.increment();
+        for (Consumer<Object> listener : listeners.getOrDefault(region, List.of())) {
+            listener.accept(key);
+        }
+    }
+
+    @Override
+    public void subscribe(String region, Consumer<Object> listener) {
+        listeners.computeIfAbsent(region, r -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("type", "local");
+        result.put("published", published.sum());
+        result.put("regions", listeners.keySet());
+        return result;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.library.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 有界、按条目过期的并发缓存，附带命中率统计。
+ * 读操作无锁；容量满时先清理过期条目，仍然超限再淘汰任意条目直到剩余 90%，
+ * 清理代价由多次写入分摊，不需要后台线程。
+ */
+public class TtlCache<K, V> {
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TtlCache(int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+    }
+
+    /**
+     * 返回未过期的缓存值，不存在或已过期时返回 null。
+     */
+    public V getIfPresent(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.expiresAt() <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value();
+    }
+
+    /**
+     * 放入缓存。
+     * @param expiresAt 过期时间点 (epoch 毫秒)
+     */
+    public void put(K key, V value, long expiresAt) {
+        if (entries.size() >= maxSize && !entries.containsKey(key)) {
+            evict();
+        }
+        entries.put(key, new Entry<>(value, expiresAt));
+    }
+
+    /**
+     * 键不存在 (或已过期) 时放入 value 并返回它，否则返回已缓存的值。
+     * @param expiresAt 过期时间点 (epoch 毫秒)
+     */
+    public V putIfAbsent(K key, V value, long expiresAt) {
+        if (entries.size() >= maxSize && !entries.containsKey(key)) {
+            evict();
+        }
+        long now = System.currentTimeMillis();
+        Entry<V> entry = entries.compute(key, (k, current) ->
+                current != null && current.expiresAt() > now ? current : new Entry<>(value, expiresAt));
+        return entry.value();
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void evict() {
+        long now = System.currentTimeMillis();
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.expiresAt() <= now);
+        int target = (int) (maxSize * 0.9);
+        Iterator<K> iterator = entries.keySet().iterator();
+        while (entries.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        evictions.add(Math.max(0, before - entries.size()));
+    }
+
+    public Map<String, Object> stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", entries.size());
+        result.put("maxSize", maxSize);
+        result.put("hits", hitCount);
+        result.put("misses", missCount);
+        result.put("evictions", evictions.sum());
+        result.put("hitRatio", hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount));
+        return result;
+    }
+}
@@ -1,10 +1,15 @@
 package com.example.library.config;
 
+import com.example.library.monitor.ConnectionPoolMetrics;
+import com.example.library.monitor.SqlProfiler;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 
 import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
 
 public class JdbcConfig {
 
@@ -20,14 +25,95 @@ public class JdbcConfig {
     @Value("${spring.datasource.password}")
     private String password;
 
+    // 连接池配置 (HikariCP)
+    @Value("${spring.datasource.hikari.pool-name:library-pool}")
+    private String poolName;
+
+    @Value("${spring.datasource.hikari.minimum-idle:5}") // 最小空闲连接数
+    private int minimumIdle;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:20}") // 最大连接数
+    private int maximumPoolSize;
+
+    @Value("${spring.datasource.hikari.connection-timeout:3000}") // 获取连接的最长等待时间 (毫秒)
+    private long connectionTimeout;
+
+    @Value("${spring.datasource.hikari.idle-timeout:600000}") // 空闲连接回收时间 (毫秒)
+    private long idleTimeout;
+
+    @Value("${spring.datasource.hikari.max-lifetime:1800000}") // 连接最长存活时间 (毫秒)，应小于 MySQL wait_timeout
+    private long maxLifetime;
+
+    @Value("${spring.datasource.hikari.leak-detection-threshold:30000}") // 连接借出超过该时间未归还则记录泄漏告警 (毫秒)，0 表示关闭
+    private long leakDetectionThreshold;
+
+    @Value("${library.datasource.prep-stmt-cache-size:250}") // MySQL 驱动端每个连接缓存的预编译语句数量
+    private int prepStmtCacheSize;
+
+    @Value("${library.datasource.prep-stmt-cache-sql-limit:2048}") // 可缓存的 SQL 最大长度
+    private int prepStmtCacheSqlLimit;
+
+    // SQL 剖析 (代替 spring.jpa.show-sql)
+    @Value("${library.sql-profiler.enabled:true}") // 关闭后借出的连接不再包装，没有任何额外开销
+    private boolean sqlProfilerEnabled;
+
+    @Value("${library.sql-profiler.slow-threshold-ms:200}") // 执行耗时达到该值的语句记录为慢查询 (毫秒)
+    private long slowThresholdMs;
+
+    @Value("${library.sql-profiler.n-plus-one-threshold:10}") // 同一请求内同一条 SELECT 执行达到该次数时报告疑似 N+1
+    private int nPlusOneThreshold;
+
+    @Value("${library.sql-profiler.max-statements-per-endpoint:100}") // 每个端点单独统计的语句形态数，超出的归入 OTHER
+    private int maxStatementsPerEndpoint;
+
     @Bean
-    public DataSource dataSource() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setDriverClassName(driver);
-        dataSource.setUrl(url);
-        dataSource.setUsername(username);
-        dataSource.setPassword(password);
-        return dataSource;
+    public ConnectionPoolMetrics connectionPoolMetrics() {
+        return new ConnectionPoolMetrics();
+    }
+
+    @Bean
+    public SqlProfiler sqlProfiler() {
+        return new SqlProfiler(slowThresholdMs, nPlusOneThreshold, maxStatementsPerEndpoint);
+    }
+
+    @Bean(destroyMethod = "close")
+    public DataSource dataSource(ConnectionPoolMetrics connectionPoolMetrics, SqlProfiler sqlProfiler) {
+        HikariConfig config = new HikariConfig();
+        config.setDriverClassName(driver);
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setPoolName(poolName);
+        config.setMinimumIdle(minimumIdle);
+        config.setMaximumPoolSize(maximumPoolSize);
+        config.setConnectionTimeout(connectionTimeout);
+        config.setIdleTimeout(idleTimeout);
+        config.setMaxLifetime(maxLifetime);
+        config.setLeakDetectionThreshold(leakDetectionThreshold);
+        config.setMetricsTrackerFactory(connectionPoolMetrics);
+
+        // 预编译语句缓存仅对 MySQL 驱动生效，其他驱动 (例如测试用的 H2) 会拒绝未知的连接属性
+        if (url.startsWith("jdbc:mysql:")) {
+            config.addDataSourceProperty("cachePrepStmts", "true");
+            config.addDataSourceProperty("useServerPrepStmts", "true");
+            config.addDataSourceProperty("prepStmtCacheSize", String.valueOf(prepStmtCacheSize));
+            config.addDataSourceProperty("prepStmtCacheSqlLimit", String.valueOf(prepStmtCacheSqlLimit));
+            config.addDataSourceProperty("rewriteBatchedStatements", "true");
+            // 设置了 fetch size 的查询 (例如图书目录流式导出) 使用服务端游标分批读取，而不是一次性加载整个结果集
+            config.addDataSourceProperty("useCursorFetch", "true");
+            config.addDataSourceProperty("cacheServerConfiguration", "true");
+            config.addDataSourceProperty("elideSetAutoCommits", "true");
+        }
+        if (!sqlProfilerEnabled) {
+            return new HikariDataSource(config);
+        }
+        // 仍然是 HikariDataSource，连接池指标与管理接口照常可用，只是借出的连接经过剖析器包装
+        return new HikariDataSource(config) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return sqlProfiler.wrap(super.getConnection());
+            }
+        };
     }
 
 }
@@ -0,0 +1,162 @@
+package com.example.library.config;
+
+import com.example.library.monitor.HttpMetricsFilter;
+import com.example.library.monitor.LatencyHistogram;
+import com.example.library.monitor.MetricsRegistry;
+import com.example.library.monitor.SqlProfiler;
+import com.example.library.monitor.SqlProfilingFilter;
+import com.example.library.service.BookService;
+import com.example.library.service.impl.BookServiceImpl;
+import com.example.library.service.impl.EntityCache;
+import com.example.library.service.impl.FineBalanceCache;
+import com.example.library.service.impl.UserHistoryReadModel;
+import com.example.library.service.impl.UserLoanStateCache;
+import com.example.library.seurity.JwtUtil;
+import com.example.library.seurity.UserPrincipalCache;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 指标采集：HTTP 请求耗时与每个请求的 SQL 语句数、服务方法耗时、缓存命中情况，
+ * 统一登记在 {@link MetricsRegistry} 中，由 AdminController 以 Prometheus 文本格式导出。
+ * 借阅拒绝原因和 JWT 校验耗时分别由 BorrowingServiceImpl 和 JwtRequestFilter 直接记录。
+ * <p>
+ * 服务方法通过一个基础设施级别的 Advisor 织入 (与 @Transactional 共用同一个自动代理)，
+ * 只拦截 service.impl 包中 @Service 类实现的服务接口方法，标签为类名、方法名和异常类名，取值都是有限的。
+ */
+public class MetricsConfig {
+
+    private static final String SERVICE_PACKAGE = BookService.class.getPackageName();
+    private static final String SERVICE_IMPL_PACKAGE = BookServiceImpl.class.getPackageName();
+
+    // Advisor 在创建其他 Bean 的代理时就会被取用，因此它和它依赖的注册表都用静态方法声明，不提前实例化本配置类
+    @Bean
+    public static MetricsRegistry metricsRegistry(
+            @Value("${library.metrics.max-series-per-metric:500}") int maxSeriesPerMetric) { // 每个指标名最多的标签组合数
+        return new MetricsRegistry(maxSeriesPerMetric);
+    }
+
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    public static Advisor serviceMetricsAdvisor(MetricsRegistry metricsRegistry,
+                                                @Value("${library.metrics.enabled:true}") boolean enabled) { // 关闭后不再记录请求与服务方法指标
+        Map<Method, LatencyHistogram> successTimers = new ConcurrentHashMap<>();
+        MethodInterceptor interceptor = invocation -> {
+            long start = System.nanoTime();
+            try {
+                Object result = invocation.proceed();
+                successTimers.computeIfAbsent(invocation.getMethod(), method -> serviceTimer(metricsRegistry,
+                                invocation.getThis(), method, "none"))
+                        .record(System.nanoTime() - start);
+                return result;
+            } catch (Throwable e) {
+                serviceTimer(metricsRegistry, invocation.getThis(), invocation.getMethod(), e.getClass().getSimpleName())
+                        .record(System.nanoTime() - start);
+                throw e;
+            }
+        };
+        StaticMethodMatcherPointcut pointcut = new StaticMethodMatcherPointcut() {
+            @Override
+            public boolean matches(Method method, Class<?> targetClass) {
+                return enabled && isServiceMethod(method, ClassUtils.getUserClass(targetClass));
+            }
+        };
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(pointcut, interceptor);
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE); // 在事务之外计时，提交耗时也计算在内
+        return advisor;
+    }
+
+    private static LatencyHistogram serviceTimer(MetricsRegistry registry, Object target, Method method, String exception) {
+        return registry.timer("library_service_method_seconds", "Service method latency",
+                "service", ClassUtils.getUserClass(target).getSimpleName(), "method", method.getName(), "exception", exception);
+    }
+
+    private static boolean isServiceMethod(Method method, Class<?> targetClass) {
+        if (!SERVICE_IMPL_PACKAGE.equals(targetClass.getPackageName()) || !targetClass.isAnnotationPresent(Service.class)) {
+            return false;
+        }
+        for (Class<?> serviceInterface : targetClass.getInterfaces()) {
+            if (SERVICE_PACKAGE.equals(serviceInterface.getPackageName())) {
+                try {
+                    serviceInterface.getMethod(method.getName(), method.getParameterTypes());
+                    return true;
+                } catch (NoSuchMethodException ignored) {
+                    // 不是服务接口中声明的方法
+                }
+            }
+        }
+        return false;
+    }
+
+    @Bean
+    public FilterRegistrationBean<HttpMetricsFilter> httpMetricsFilterRegistration(
+            MetricsRegistry metricsRegistry, @Value("${library.metrics.enabled:true}") boolean enabled) {
+        FilterRegistrationBean<HttpMetricsFilter> registration = new FilterRegistrationBean<>(new HttpMetricsFilter(metricsRegistry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1); // 紧跟在虚拟线程模式的并发限制之后，认证之前
+        registration.setEnabled(enabled);
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean<SqlProfilingFilter> sqlProfilingFilterRegistration(
+            SqlProfiler sqlProfiler, @Value("${library.sql-profiler.enabled:true}") boolean enabled) {
+        FilterRegistrationBean<SqlProfilingFilter> registration = new FilterRegistrationBean<>(new SqlProfilingFilter(sqlProfiler));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2); // 同样在认证之前，加载用户主体的查询也记在请求名下
+        registration.setEnabled(enabled);
+        return registration;
+    }
+
+    @Bean
+    public SmartInitializingSingleton cacheMetricsBinder(MetricsRegistry metricsRegistry, UserPrincipalCache userPrincipalCache,
+                                                         JwtUtil jwtUtil, UserLoanStateCache userLoanStateCache,
+                                                         EntityCache entityCache, FineBalanceCache fineBalanceCache,
+                                                         UserHistoryReadModel userHistoryReadModel) {
+        return () -> {
+            bindCache(metricsRegistry, "userPrincipals", userPrincipalCache::stats);
+            bindCache(metricsRegistry, "verifiedTokens", jwtUtil::tokenCacheStats);
+            bindCache(metricsRegistry, "userLoans", userLoanStateCache::stats);
+            bindCache(metricsRegistry, "books", () -> nested(entityCache.stats(), "books"));
+            bindCache(metricsRegistry, "users", () -> nested(entityCache.stats(), "users"));
+            bindCache(metricsRegistry, "fineBalances", fineBalanceCache::stats);
+            bindCache(metricsRegistry, "userHistory", userHistoryReadModel::stats);
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> nested(Map<String, Object> stats, String key) {
+        return (Map<String, Object>) stats.get(key);
+    }
+
+    /**
+     * 把 TtlCache.stats() 形式的统计登记为指标，导出时读取。
+     */
+    private static void bindCache(MetricsRegistry registry, String cache, Supplier<Map<String, Object>> stats) {
+        registry.gauge("library_cache_size", "Entries currently cached", () -> value(stats, "size"), "cache", cache);
+        registry.functionCounter("library_cache_hits_total", "Cache hits", () -> value(stats, "hits"), "cache", cache);
+        registry.functionCounter("library_cache_misses_total", "Cache misses", () -> value(stats, "misses"), "cache", cache);
+        registry.functionCounter("library_cache_evictions_total", "Entries evicted to stay within the size limit",
+                () -> value(stats, "evictions"), "cache", cache);
+        registry.gauge("library_cache_hit_ratio", "Hits divided by lookups since startup", () -> value(stats, "hitRatio"), "cache", cache);
+    }
+
+    private static Number value(Supplier<Map<String, Object>> stats, String key) {
+        Object value = stats.get().get(key);
+        return value instanceof Number number ? number : Double.NaN;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.library.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 限制同时处理的请求数：超出的请求按到达顺序排队，排队超过 queue-timeout-ms 返回 503。
+ * 在虚拟线程模式下代替 Tomcat 工作线程池原本提供的并发上限 (见 {@link VirtualThreadConfig})。
+ * 排队用 Semaphore 实现，等待中的虚拟线程只是挂起，不占用载体线程。
+ */
+public class RequestConcurrencyLimiter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final int maxConcurrentRequests;
+    private final long queueTimeoutMillis;
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public RequestConcurrencyLimiter(int maxConcurrentRequests, long queueTimeoutMillis) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("max-concurrent-requests must be at least 1");
+        }
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!permits.tryAcquire()) {
+            queued.increment();
+            try {
+                if (!permits.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    rejected.increment();
+                    response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                    response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Server is busy, please retry");
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+                return;
+            }
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("maxConcurrentRequests", maxConcurrentRequests);
+        result.put("inFlight", maxConcurrentRequests - permits.availablePermits());
+        result.put("waiting", permits.getQueueLength());
+        result.put("queued", queued.sum());
+        result.put("rejected", rejected.sum());
+        return result;
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.library.config;
+
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 开启定时任务 (例如逾期检测)。
+ */
+@EnableScheduling
+public class SchedulingConfig {
+}
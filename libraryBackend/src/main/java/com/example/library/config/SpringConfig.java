@@ -11,6 +11,9 @@ import org.springframework.context.annotation.Import;
         BookRelatedConfig.class,
         PasswordEncoderConfig.class,
         SecurityConfig.class,
+        SchedulingConfig.class,
+        VirtualThreadConfig.class,
+        MetricsConfig.class,
 })
 public class SpringConfig {
 }
@@ -0,0 +1,48 @@
+package com.example.library.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+
+/**
+ * 虚拟线程执行模式：spring.threads.virtual.enabled=true 且运行在 Java 21 及以上时生效，否则仍使用平台线程池。
+ * 开启后 Spring Boot 让 Tomcat 为每个请求创建一个虚拟线程 (@Scheduled 任务同样使用虚拟线程)，
+ * 阻塞在 JDBC 调用上的请求只挂起虚拟线程，不再占满固定大小的工作线程池，命中缓存的读请求也不必排在它们后面。
+ * <p>
+ * 连接池：平台线程模式下工作线程数 (默认 200) 顺带限制了同时等待连接的请求数；虚拟线程模式下数据库并发只由连接池大小决定，
+ * 等待连接的请求在 HikariCP 中挂起，connection-timeout 就是它们排队的时间预算。连接池大小应按 MySQL 的承受能力设置，
+ * 不应因为线程变得廉价而调大。另外用 {@link RequestConcurrencyLimiter} 保留一个较高的总并发上限，
+ * 防止流量突增时无限创建请求 (以及它们占用的内存)，超出的请求排队，排队超时返回 503。
+ * <p>
+ * 钉住 (pinning)：Java 21 中虚拟线程在 synchronized 块内阻塞时会占住载体线程。
+ * 本项目中的 synchronized 块只保护内存结构，不包含 JDBC 调用 (需要在锁内访问数据库的地方使用 ReentrantLock，
+ * 例如 UserLoanStateCache、SchemaMigrator)；MySQL Connector/J 9.x 与 HikariCP 5.1 内部同样已改用 ReentrantLock。
+ * 排查时可加 -Djdk.tracePinnedThreads=short 输出钉住时的调用栈。
+ */
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean
+    public RequestConcurrencyLimiter requestConcurrencyLimiter(
+            @Value("${library.threads.virtual.max-concurrent-requests:2000}") int maxConcurrentRequests, // 同时处理的请求数上限
+            @Value("${library.threads.virtual.queue-timeout-ms:3000}") long queueTimeoutMillis, // 超出上限的请求排队等待的最长时间 (毫秒)
+            @Value("${spring.datasource.hikari.maximum-pool-size:20}") int maximumPoolSize) {
+        log.info("Serving requests on virtual threads: at most {} concurrent requests, {} pooled database connections",
+                maxConcurrentRequests, maximumPoolSize);
+        return new RequestConcurrencyLimiter(maxConcurrentRequests, queueTimeoutMillis);
+    }
+
+    @Bean
+    public FilterRegistrationBean<RequestConcurrencyLimiter> requestConcurrencyLimiterRegistration(RequestConcurrencyLimiter limiter) {
+        FilterRegistrationBean<RequestConcurrencyLimiter> registration = new FilterRegistrationBean<>(limiter);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE); // 在认证之前排队，等待中的请求不做任何工作
+        return registration;
+    }
+}
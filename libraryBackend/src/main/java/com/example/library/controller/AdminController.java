@@ -0,0 +1,201 @@
+package com.example.library.controller;
+
+import com.example.library.audit.CirculationEventLog;
+import com.example.library.config.RequestConcurrencyLimiter;
+import com.example.library.migration.SchemaMigrator;
+import com.example.library.monitor.ConnectionPoolMetrics;
+import com.example.library.monitor.MetricsRegistry;
+import com.example.library.monitor.SqlProfiler;
+import com.example.library.seurity.JwtUtil;
+import com.example.library.service.impl.CatalogVersions;
+import com.example.library.service.impl.EntityCache;
+import com.example.library.service.impl.FineAccrualJob;
+import com.example.library.service.impl.FineBalanceCache;
+import com.example.library.service.impl.OverdueScheduler;
+import com.example.library.service.impl.PopularityLeaderboard;
+import com.example.library.service.impl.ReservationQueue;
+import com.example.library.service.impl.UserHistoryReadModel;
+import com.example.library.service.impl.UserLoanStateCache;
+import com.example.library.seurity.UserPrincipalCache;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/admin")
+@PreAuthorize("hasRole('ADMIN')")
+@Tag(name = "Administration", description = "运行状态与性能指标 (仅管理员)")
+public class AdminController {
+
+    private final ConnectionPoolMetrics connectionPoolMetrics;
+    private final UserPrincipalCache userPrincipalCache;
+    private final JwtUtil jwtUtil;
+    private final OverdueScheduler overdueScheduler;
+    private final ReservationQueue reservationQueue;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final UserLoanStateCache userLoanStateCache;
+    private final EntityCache entityCache;
+    private final CatalogVersions catalogVersions;
+    private final SchemaMigrator schemaMigrator;
+    private final CirculationEventLog circulationEventLog;
+    private final FineAccrualJob fineAccrualJob;
+    private final FineBalanceCache fineBalanceCache;
+    private final UserHistoryReadModel userHistoryReadModel;
+    private final MetricsRegistry metricsRegistry;
+    private final SqlProfiler sqlProfiler;
+    private final ObjectProvider<RequestConcurrencyLimiter> requestConcurrencyLimiter; // 仅虚拟线程模式下存在
+
+    @Autowired
+    public AdminController(ConnectionPoolMetrics connectionPoolMetrics, UserPrincipalCache userPrincipalCache, JwtUtil jwtUtil,
+                           OverdueScheduler overdueScheduler, ReservationQueue reservationQueue,
+                           PopularityLeaderboard popularityLeaderboard, UserLoanStateCache userLoanStateCache,
+                           EntityCache entityCache, CatalogVersions catalogVersions, SchemaMigrator schemaMigrator,
+                           CirculationEventLog circulationEventLog, FineAccrualJob fineAccrualJob, FineBalanceCache fineBalanceCache,
+                           UserHistoryReadModel userHistoryReadModel, MetricsRegistry metricsRegistry, SqlProfiler sqlProfiler, ObjectProvider<RequestConcurrencyLimiter> requestConcurrencyLimiter) {
+        this.connectionPoolMetrics = connectionPoolMetrics;
+        this.userPrincipalCache = userPrincipalCache;
+        this.jwtUtil = jwtUtil;
+        this.overdueScheduler = overdueScheduler;
+        this.reservationQueue = reservationQueue;
+        this.popularityLeaderboard = popularityLeaderboard;
+        this.userLoanStateCache = userLoanStateCache;
+        this.entityCache = entityCache;
+        this.catalogVersions = catalogVersions;
+        this.schemaMigrator = schemaMigrator;
+        this.circulationEventLog = circulationEventLog;
+        this.fineAccrualJob = fineAccrualJob;
+        this.fineBalanceCache = fineBalanceCache;
+        this.userHistoryReadModel = userHistoryReadModel;
+        this.metricsRegistry = metricsRegistry;
+        this.sqlProfiler = sqlProfiler;
+        this.requestConcurrencyLimiter = requestConcurrencyLimiter;
+    }
+
+    @GetMapping("/datasource")
+    @Operation(summary = "数据库连接池指标", description = "返回活跃/空闲连接数、等待线程数以及连接获取耗时分布。")
+    public ResponseEntity<Map<String, Object>> getDataSourceMetrics() {
+        return ResponseEntity.ok(connectionPoolMetrics.snapshot());
+    }
+
+    @GetMapping("/threads")
+    @Operation(summary = "请求执行模式", description = "返回请求运行在虚拟线程还是平台线程上；虚拟线程模式下附带并发上限、排队与拒绝 (503) 的请求数。")
+    public ResponseEntity<Map<String, Object>> getThreadingStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        RequestConcurrencyLimiter limiter = requestConcurrencyLimiter.getIfAvailable();
+        result.put("mode", limiter != null ? "virtual" : "platform");
+        result.put("handlerThread", Thread.currentThread().toString()); // 虚拟线程显示为 VirtualThread[...]
+        if (limiter != null) {
+            result.put("requests", limiter.stats());
+        }
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping("/schema")
+    @Operation(summary = "数据库迁移记录", description = "返回已执行的结构迁移版本、描述、校验和与执行耗时。")
+    public ResponseEntity<Map<String, Object>> getSchemaMigrations() {
+        return ResponseEntity.ok(schemaMigrator.stats());
+    }
+
+    @GetMapping("/circulation-log")
+    @Operation(summary = "流通事件日志状态", description = "返回事件日志目录、当前段文件、已发布/已写入/因缓冲区满丢弃的事件数以及待写入的积压量。")
+    public ResponseEntity<Map<String, Object>> getCirculationLogStats() {
+        return ResponseEntity.ok(circulationEventLog.stats());
+    }
+
+    @GetMapping(value = "/metrics", produces = "text/plain; version=0.0.4; charset=utf-8")
+    @Operation(summary = "Prometheus 指标", description = "以 Prometheus 文本格式返回各接口与服务方法的耗时直方图、每个请求的 SQL 语句数、"
+            + "借阅拒绝原因计数、JWT 校验耗时和缓存命中情况，可直接配置为 Prometheus 的抓取目标 (携带管理员 Token)。")
+    public ResponseEntity<String> getPrometheusMetrics() {
+        return ResponseEntity.ok(metricsRegistry.scrape());
+    }
+
+    @GetMapping("/sql")
+    @Operation(summary = "SQL 剖析统计", description = "按端点汇总 SQL 语句数、耗时与行数，列出每个端点耗时最多的语句、疑似 N+1 的请求数，"
+            + "以及最近的慢查询 (附带发出它的请求)。")
+    public ResponseEntity<Map<String, Object>> getSqlProfile() {
+        return ResponseEntity.ok(sqlProfiler.stats());
+    }
+
+    @PostMapping("/sql/reset")
+    @Operation(summary = "清空 SQL 剖析统计", description = "清空各端点的汇总与最近的慢查询，例如在压测开始前调用。")
+    public ResponseEntity<Map<String, Object>> resetSqlProfile() {
+        sqlProfiler.reset();
+        return ResponseEntity.ok(sqlProfiler.stats());
+    }
+
+    @GetMapping("/caches")
+    @Operation(summary = "缓存命中率", description = "返回各内存缓存的大小、命中/未命中次数与命中率。")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("userPrincipals", userPrincipalCache.stats());
+        result.put("verifiedTokens", jwtUtil.tokenCacheStats());
+        result.put("userLoans", userLoanStateCache.stats());
+        result.put("entities", entityCache.stats());
+        result.put("catalogVersions", catalogVersions.stats());
+        result.put("fineBalances", fineBalanceCache.stats());
+        result.put("userHistory", userHistoryReadModel.stats());
+        return ResponseEntity.ok(result);
+    }
+
+    @GetMapping("/jobs/overdue")
+    @Operation(summary = "逾期检测任务状态", description = "返回逾期检测任务的运行次数、最近一次运行耗时、标记的记录数以及索引中跟踪的借阅数。")
+    public ResponseEntity<Map<String, Object>> getOverdueJobStats() {
+        return ResponseEntity.ok(overdueScheduler.stats());
+    }
+
+    @PostMapping("/jobs/overdue/run")
+    @Operation(summary = "立即执行逾期检测", description = "同步执行一次逾期检测并返回任务状态；已有检测在运行时不会重复执行。")
+    public ResponseEntity<Map<String, Object>> runOverdueJob() {
+        overdueScheduler.runOnce();
+        return ResponseEntity.ok(overdueScheduler.stats());
+    }
+
+    @GetMapping("/jobs/reservations")
+    @Operation(summary = "预约队列状态", description = "返回排队中的预约数、当前保留的图书数、累计提升与过期的保留数量。")
+    public ResponseEntity<Map<String, Object>> getReservationQueueStats() {
+        return ResponseEntity.ok(reservationQueue.stats());
+    }
+
+    @PostMapping("/jobs/reservations/sweep")
+    @Operation(summary = "立即清理过期保留", description = "把保留已过期的预约标记为过期，并把图书交给下一个预约。")
+    public ResponseEntity<Map<String, Object>> sweepReservations() {
+        reservationQueue.sweepExpiredHolds();
+        return ResponseEntity.ok(reservationQueue.stats());
+    }
+
+    @GetMapping("/jobs/fines")
+    @Operation(summary = "罚款计提任务状态", description = "返回罚款计提任务的运行次数、最近一次运行耗时、新建立与计提的罚款数。")
+    public ResponseEntity<Map<String, Object>> getFineAccrualStats() {
+        return ResponseEntity.ok(fineAccrualJob.stats());
+    }
+
+    @PostMapping("/jobs/fines/run")
+    @Operation(summary = "立即执行罚款计提", description = "同步把计提中的罚款计提到今天并返回任务状态；同一天重复执行不会重复计提。")
+    public ResponseEntity<Map<String, Object>> runFineAccrual() {
+        fineAccrualJob.runOnce();
+        return ResponseEntity.ok(fineAccrualJob.stats());
+    }
+
+    @GetMapping("/jobs/popularity")
+    @Operation(summary = "热门排行榜状态", description = "返回排行榜跟踪的图书数、累计计入的借出次数以及最近一次重建的时间与耗时。")
+    public ResponseEntity<Map<String, Object>> getPopularityStats() {
+        return ResponseEntity.ok(popularityLeaderboard.stats());
+    }
+
+    @PostMapping("/jobs/popularity/rebuild")
+    @Operation(summary = "立即重建热门排行榜", description = "从借阅记录重新统计排行榜 (与每晚的对账任务相同)；已有重建在进行时不会重复执行。")
+    public ResponseEntity<Map<String, Object>> rebuildPopularity() {
+        popularityLeaderboard.rebuild();
+        return ResponseEntity.ok(popularityLeaderboard.stats());
+    }
+}
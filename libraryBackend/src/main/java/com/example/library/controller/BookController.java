@@ -1,6 +1,9 @@
 package com.example.library.controller;
 
 import com.example.library.dto.BookDto;
+import com.example.library.dto.BookImportResultDto;
+import com.example.library.dto.CursorPageDto;
+import com.example.library.dto.PopularBookDto;
 import com.example.library.service.BookService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -9,13 +12,24 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 import jakarta.validation.Valid; // javax.validation for Spring Boot 2.x
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
@@ -23,36 +37,136 @@ import java.util.List;
 @Tag(name = "Book Management", description = "APIs for managing books")
 public class BookController {
 
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_POPULAR_LIMIT = 100; // library.popularity.top-k
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String CSV = "text/csv";
+
     private final BookService bookService;
+    private final ObjectWriter bookWriter;
 
     @Autowired
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, ObjectMapper objectMapper) {
         this.bookService = bookService;
+        this.bookWriter = objectMapper.writerFor(BookDto.class);
     }
 
-    @Operation(summary = "Get all books", description = "Retrieve a list of all books, or search by title or author.")
+    @Operation(summary = "Get all books", description = "Retrieve a list of all books, search by title and/or author, or run a ranked full-text query over title, author, publisher and ISBN. "
+            + "Supports conditional GET with the catalog ETag (If-None-Match) or Last-Modified (If-Modified-Since).")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved list",
-                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookDto.class)))
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookDto.class))),
+            @ApiResponse(responseCode = "304", description = "Catalog not modified since the given ETag / date")
     })
     @GetMapping
     public ResponseEntity<List<BookDto>> getAllBooks(
             @Parameter(description = "Search by book title (case-insensitive, partial match)") @RequestParam(required = false) String title,
-            @Parameter(description = "Search by book author (case-insensitive, partial match)") @RequestParam(required = false) String author) {
+            @Parameter(description = "Search by book author (case-insensitive, partial match)") @RequestParam(required = false) String author,
+            @Parameter(description = "Full-text query over title, author, publisher and ISBN (ranked, prefix matching)") @RequestParam(required = false) String q,
+            WebRequest request) {
+        if (notModified(request, bookService.getCatalogVersion())) {
+            return null;
+        }
+        if (q != null && !q.isBlank()) {
+            return ResponseEntity.ok(bookService.fullTextSearch(q));
+        }
         if ((title != null && !title.isEmpty()) || (author != null && !author.isEmpty())) {
             return ResponseEntity.ok(bookService.searchBooks(title, author));
         }
         return ResponseEntity.ok(bookService.getAllBooks());
     }
 
-    @Operation(summary = "Get a book by ID", description = "Retrieve a specific book by its ID.")
+    @Operation(summary = "Get a page of books", description = "Keyset pagination ordered by id. Pass the returned nextCursor as 'after' to fetch the next page. "
+            + "Supports conditional GET with the catalog ETag.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved page"),
+            @ApiResponse(responseCode = "304", description = "Catalog not modified since the given ETag / date"),
+            @ApiResponse(responseCode = "400", description = "Invalid page size")
+    })
+    @GetMapping("/page")
+    public ResponseEntity<CursorPageDto<BookDto>> getBooksPage(
+            @Parameter(description = "Cursor: id of the last book on the previous page") @RequestParam(required = false) Long after,
+            @Parameter(description = "Page size (1-" + MAX_PAGE_SIZE + ")") @RequestParam(defaultValue = "50") int size,
+            WebRequest request) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (notModified(request, bookService.getCatalogVersion())) {
+            return null;
+        }
+        return ResponseEntity.ok(bookService.getBooksPage(after, size));
+    }
+
+    @Operation(summary = "Stream all books", description = "Stream the whole catalog as newline-delimited JSON (one book per line) with constant server memory.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Catalog streamed", content = @Content(mediaType = NDJSON))
+    })
+    @GetMapping(value = "/stream", produces = NDJSON)
+    public void streamAllBooks(HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+        OutputStream out = new BufferedOutputStream(response.getOutputStream());
+        bookService.streamAllBooks(book -> {
+            try {
+                out.write(bookWriter.writeValueAsBytes(book));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        out.flush();
+    }
+
+    @Operation(summary = "Bulk import books", description = "Stream a CSV file (with a header row: title, author, isbn, publisher, price, quantity) "
+            + "or JSON Lines (one book per line). Rows whose ISBN already exists are skipped, invalid rows are reported.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import finished",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookImportResultDto.class))),
+            @ApiResponse(responseCode = "400", description = "Malformed CSV header"),
+            @ApiResponse(responseCode = "415", description = "Unsupported content type")
+    })
+    @PostMapping(value = "/import", consumes = {CSV, NDJSON})
+    @PreAuthorize("hasAnyRole('LIBRARIAN', 'ADMIN')")
+    public ResponseEntity<BookImportResultDto> importBooks(HttpServletRequest request) throws IOException {
+        BookService.ImportFormat format = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.parseMediaType(CSV))
+                ? BookService.ImportFormat.CSV
+                : BookService.ImportFormat.JSONL;
+        try {
+            return ResponseEntity.ok(bookService.importBooks(request.getInputStream(), format));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Get popular books", description = "Most borrowed books, served from an in-memory leaderboard. "
+            + "window: ALL_TIME, LAST_7_DAYS, LAST_30_DAYS, or TRENDING (time-decayed; score is roughly the number of recent borrows).")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved ranking"),
+            @ApiResponse(responseCode = "400", description = "Invalid limit")
+    })
+    @GetMapping("/popular")
+    public ResponseEntity<List<PopularBookDto>> getPopularBooks(
+            @Parameter(description = "Ranking window") @RequestParam(defaultValue = "TRENDING") BookService.PopularityWindow window,
+            @Parameter(description = "Number of books (1-" + MAX_POPULAR_LIMIT + ")") @RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1 || limit > MAX_POPULAR_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_POPULAR_LIMIT);
+        }
+        return ResponseEntity.ok(bookService.getPopularBooks(window, limit));
+    }
+
+    @Operation(summary = "Get a book by ID", description = "Retrieve a specific book by its ID. Supports conditional GET with the book's ETag.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved book",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = BookDto.class))),
+            @ApiResponse(responseCode = "304", description = "Book not modified since the given ETag / date"),
             @ApiResponse(responseCode = "404", description = "Book not found")
     })
     @GetMapping("/{id}")
-    public ResponseEntity<BookDto> getBookById(@Parameter(description = "ID of the book to be retrieved") @PathVariable Long id) {
+    public ResponseEntity<BookDto> getBookById(@Parameter(description = "ID of the book to be retrieved") @PathVariable Long id,
+                                               WebRequest request) {
+        if (notModified(request, bookService.getBookVersion(id))) {
+            return null;
+        }
         return bookService.getBookById(id)
                 .map(ResponseEntity::ok)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Book not found with id: " + id));
@@ -119,4 +233,11 @@ public class BookController {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Book not found with id: " + id);
         }
     }
-}
\ No newline at end of file
+
+    // Conditional GET decided from the in-memory version alone; on a match the 304 (with ETag and Last-Modified)
+    // is already written and the handler returns null. The version is read before loading, so an ETag is never
+    // newer than the body it is sent with
+    private static boolean notModified(WebRequest request, BookService.Version version) {
+        return request.checkNotModified(version.etag(), version.lastModified());
+    }
+}
@@ -1,12 +1,19 @@
 package com.example.library.controller;
 
+import com.example.library.dto.BatchBorrowRequestDto;
+import com.example.library.dto.BatchReturnRequestDto;
 import com.example.library.dto.BorrowRequestDto;
+import com.example.library.dto.BorrowingHistoryPageDto;
 import com.example.library.dto.BorrowingRecordDto;
+import com.example.library.dto.CirculationBatchResultDto;
+import com.example.library.dto.CursorPageDto;
 import com.example.library.dto.ReservationRequestDto;
+import com.example.library.entity.impl.BorrowStatus;
 import com.example.library.entity.impl.User; // 假设 User 实体类路径
 import com.example.library.entity.impl.BorrowingRecord; // 你的 BorrowingRecord 实体
-import com.example.library.repository.UserRepository; // 用于从 Principal 获取 User 对象
+import com.example.library.mapper.BorrowingRecordMapper;
 import com.example.library.service.BorrowingService;
+import com.example.library.service.impl.EntityCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -26,51 +33,25 @@ import org.springframework.web.server.ResponseStatusException;
 
 import jakarta.validation.Valid;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/v1/borrowings") // 借阅相关操作的基础路径
 @Tag(name = "Borrowing Management", description = "用于图书借阅、归还、续借和预约的API")
 public class BorrowingController {
 
+    private static final int MAX_PAGE_SIZE = 200; // 分页接口单页最大记录数
+
     private final BorrowingService borrowingService;
-    private final UserRepository userRepository; // 用于从认证信息中获取用户对象
+    private final EntityCache entityCache; // 用于从认证信息中获取用户对象 (带缓存，不必每个请求都查询 users 表)
 
     @Autowired
-    public BorrowingController(BorrowingService borrowingService, UserRepository userRepository) {
+    public BorrowingController(BorrowingService borrowingService, EntityCache entityCache) {
         this.borrowingService = borrowingService;
-        this.userRepository = userRepository;
+        this.entityCache = entityCache;
     }
 
     // --- 辅助方法 ---
 
-    /**
-     * 将 BorrowingRecord 实体转换为 BorrowingRecordDto。
-     * @param record 借阅记录实体
-     * @return 借阅记录DTO
-     */
-    private BorrowingRecordDto convertToDto(BorrowingRecord record) {
-        if (record == null) {
-            return null;
-        }
-        return new BorrowingRecordDto(
-                record.getId(),
-                record.getUser().getId(),
-                record.getUser().getUsername(),
-                record.getBook().getId(),
-                record.getBook().getTitle(),
-                record.getBorrowDate(),
-                record.getDueDate(),
-                record.getReturnDate(),
-                record.getStatus() != null ? record.getStatus().name() : null, // 或者使用 getDisplayName()
-                record.getReservationDate(),
-                record.getReservationExpiryDate()
-                // 如果 BorrowingRecordDto 中添加了罚款信息，在这里映射
-                // record.getFineAmount(),
-                // record.isFinePaid()
-        );
-    }
-
     /**
      * 获取当前认证用户的ID。
      * @return 当前用户ID
@@ -82,7 +63,7 @@ public class BorrowingController {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "用户未认证");
         }
         String username = authentication.getName();
-        User currentUser = userRepository.findByUsername(username)
+        User currentUser = entityCache.findUserByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("认证用户 '" + username + "' 在数据库中未找到"));
         return currentUser.getId();
     }
@@ -108,7 +89,7 @@ public class BorrowingController {
 
         try {
             BorrowingRecord record = borrowingService.borrowBook(currentUserId, borrowRequest.getBookId());
-            return ResponseEntity.status(HttpStatus.CREATED).body(convertToDto(record));
+            return ResponseEntity.status(HttpStatus.CREATED).body(BorrowingRecordMapper.toDto(record));
         } catch (IllegalArgumentException | IllegalStateException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
@@ -128,7 +109,7 @@ public class BorrowingController {
         // 可以在 Service 层或此处添加逻辑，确保只有借阅者本人或图书管理员/管理员才能归还
         try {
             BorrowingRecord record = borrowingService.returnBook(recordId);
-            return ResponseEntity.ok(convertToDto(record));
+            return ResponseEntity.ok(BorrowingRecordMapper.toDto(record));
         } catch (IllegalArgumentException | IllegalStateException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         } catch (SecurityException e) {
@@ -136,6 +117,36 @@ public class BorrowingController {
         }
     }
 
+    @PostMapping("/batch")
+    @PreAuthorize("hasAnyRole('LIBRARIAN', 'ADMIN')")
+    @Operation(summary = "批量借阅图书 (流通台)", description = "为一位读者一次借出多本图书，所有借阅在同一个事务中完成，按请求顺序返回每本图书的结果。")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "已处理，每项结果见 items", content = @Content(schema = @Schema(implementation = CirculationBatchResultDto.class))),
+            @ApiResponse(responseCode = "400", description = "无效请求（例如，用户不存在、有未缴的大额罚款或图书ID列表为空/过长）"),
+            @ApiResponse(responseCode = "401", description = "用户未认证"),
+            @ApiResponse(responseCode = "403", description = "无权限")
+    })
+    public ResponseEntity<CirculationBatchResultDto> borrowBooks(@Valid @RequestBody BatchBorrowRequestDto request) {
+        try {
+            return ResponseEntity.ok(borrowingService.borrowBooks(request.getUserId(), request.getBookIds()));
+        } catch (IllegalArgumentException | IllegalStateException e) { // 用户不存在或有未缴的大额罚款
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @PostMapping("/batch/return")
+    @PreAuthorize("hasAnyRole('LIBRARIAN', 'ADMIN')")
+    @Operation(summary = "批量归还图书 (流通台)", description = "一次归还多条借阅记录，所有归还在同一个事务中完成，按请求顺序返回每条记录的结果。")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "已处理，每项结果见 items", content = @Content(schema = @Schema(implementation = CirculationBatchResultDto.class))),
+            @ApiResponse(responseCode = "400", description = "无效请求（例如，借阅记录ID列表为空/过长）"),
+            @ApiResponse(responseCode = "401", description = "用户未认证"),
+            @ApiResponse(responseCode = "403", description = "无权限")
+    })
+    public ResponseEntity<CirculationBatchResultDto> returnBooks(@Valid @RequestBody BatchReturnRequestDto request) {
+        return ResponseEntity.ok(borrowingService.returnBooks(request.getRecordIds()));
+    }
+
     @PutMapping("/{recordId}/renew")
     @PreAuthorize("hasAnyRole('USER', 'LIBRARIAN', 'ADMIN')")
     @Operation(summary = "续借一本已借阅的图书", description = "如果符合条件，延长图书的应还日期。")
@@ -150,7 +161,7 @@ public class BorrowingController {
         // 类似的权限检查逻辑
         try {
             BorrowingRecord record = borrowingService.renewBook(recordId);
-            return ResponseEntity.ok(convertToDto(record));
+            return ResponseEntity.ok(BorrowingRecordMapper.toDto(record));
         } catch (IllegalArgumentException | IllegalStateException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         } catch (SecurityException e) {
@@ -162,10 +173,13 @@ public class BorrowingController {
     @PreAuthorize("isAuthenticated()") // 任何已认证用户都可以查看自己的历史
     @Operation(summary = "获取当前用户的借阅历史", description = "检索当前认证用户的所有借阅记录。")
     public ResponseEntity<List<BorrowingRecordDto>> getCurrentUserBorrowingHistory() {
-        Long userId = getCurrentUserId();
-        List<BorrowingRecord> records = borrowingService.getUserBorrowingHistory(userId);
-        List<BorrowingRecordDto> dtos = records.stream().map(this::convertToDto).collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+        // 直接按认证用户名查询，无需先查出用户ID
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        try {
+            return ResponseEntity.ok(borrowingService.getUserBorrowingHistory(username));
+        } catch (IllegalArgumentException e) {
+            throw new UsernameNotFoundException("认证用户 '" + username + "' 在数据库中未找到");
+        }
     }
 
     @GetMapping("/history/user/{userId}")
@@ -173,18 +187,82 @@ public class BorrowingController {
     @Operation(summary = "获取指定用户的借阅历史 (图书管理员/管理员)", description = "检索指定用户的所有借阅记录。")
     public ResponseEntity<List<BorrowingRecordDto>> getUserBorrowingHistoryForAdmin(
             @Parameter(description = "用户ID") @PathVariable Long userId) {
-        List<BorrowingRecord> records = borrowingService.getUserBorrowingHistory(userId);
-        List<BorrowingRecordDto> dtos = records.stream().map(this::convertToDto).collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+        try {
+            return ResponseEntity.ok(borrowingService.getUserBorrowingHistory(userId));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    @GetMapping("/history/me/page")
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "分页获取当前用户的借阅历史",
+            description = "第一页的 active 为当前借阅中、逾期与预约中的记录；已结束的记录按借阅日期降序键集分页，把返回的 nextCursor 作为 cursor 参数即可获取下一页。")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "获取成功"),
+            @ApiResponse(responseCode = "400", description = "分页大小或游标无效")
+    })
+    public ResponseEntity<BorrowingHistoryPageDto> getCurrentUserBorrowingHistoryPage(
+            @Parameter(description = "游标：上一页返回的 nextCursor") @RequestParam(required = false) String cursor,
+            @Parameter(description = "只返回该状态的记录") @RequestParam(required = false) BorrowStatus status,
+            @Parameter(description = "每页记录数 (1-" + MAX_PAGE_SIZE + ")") @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(historyPage(getCurrentUserId(), status, cursor, size));
+    }
+
+    @GetMapping("/history/user/{userId}/page")
+    @PreAuthorize("hasAnyRole('LIBRARIAN', 'ADMIN')")
+    @Operation(summary = "分页获取指定用户的借阅历史 (图书管理员/管理员)", description = "与 /history/me/page 相同，查询指定用户。")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "获取成功"),
+            @ApiResponse(responseCode = "400", description = "分页大小或游标无效"),
+            @ApiResponse(responseCode = "404", description = "用户不存在")
+    })
+    public ResponseEntity<BorrowingHistoryPageDto> getUserBorrowingHistoryPageForAdmin(
+            @Parameter(description = "用户ID") @PathVariable Long userId,
+            @Parameter(description = "游标：上一页返回的 nextCursor") @RequestParam(required = false) String cursor,
+            @Parameter(description = "只返回该状态的记录") @RequestParam(required = false) BorrowStatus status,
+            @Parameter(description = "每页记录数 (1-" + MAX_PAGE_SIZE + ")") @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(historyPage(userId, status, cursor, size));
+    }
+
+    private BorrowingHistoryPageDto historyPage(Long userId, BorrowStatus status, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "分页大小必须在 1 到 " + MAX_PAGE_SIZE + " 之间");
+        }
+        try {
+            return borrowingService.getUserBorrowingHistoryPage(userId, status, cursor, size);
+        } catch (IllegalArgumentException e) {
+            // 只有第一页会检查用户是否存在，带游标时的异常来自无效的游标
+            throw new ResponseStatusException(cursor != null ? HttpStatus.BAD_REQUEST : HttpStatus.NOT_FOUND, e.getMessage());
+        }
     }
 
     @GetMapping("/overdue")
     @PreAuthorize("hasAnyRole('LIBRARIAN', 'ADMIN')")
     @Operation(summary = "获取所有逾期图书 (图书管理员/管理员)", description = "检索所有当前状态为逾期的借阅记录。")
     public ResponseEntity<List<BorrowingRecordDto>> getOverdueBooks() {
-        List<BorrowingRecord> records = borrowingService.findOverdueBooks();
-        List<BorrowingRecordDto> dtos = records.stream().map(this::convertToDto).collect(Collectors.toList());
-        return ResponseEntity.ok(dtos);
+        return ResponseEntity.ok(borrowingService.findOverdueBooks());
+    }
+
+    @GetMapping("/overdue/page")
+    @PreAuthorize("hasAnyRole('LIBRARIAN', 'ADMIN')")
+    @Operation(summary = "分页获取逾期图书 (图书管理员/管理员)", description = "按记录ID键集分页，把返回的 nextCursor 作为 after 参数即可获取下一页。")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "获取成功"),
+            @ApiResponse(responseCode = "400", description = "分页大小无效")
+    })
+    public ResponseEntity<CursorPageDto<BorrowingRecordDto>> getOverdueBooksPage(
+            @Parameter(description = "游标：上一页最后一条记录的ID") @RequestParam(required = false) Long after,
+            @Parameter(description = "每页记录数 (1-" + MAX_PAGE_SIZE + ")") @RequestParam(defaultValue = "50") int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "分页大小必须在 1 到 " + MAX_PAGE_SIZE + " 之间");
+        }
+        // 多取一条用于判断是否还有下一页，无需额外的 COUNT 查询
+        List<BorrowingRecordDto> records = borrowingService.findOverdueBooksPage(after, size + 1);
+        boolean hasMore = records.size() > size;
+        List<BorrowingRecordDto> dtos = hasMore ? records.subList(0, size) : records;
+        Long nextCursor = hasMore ? dtos.get(dtos.size() - 1).getId() : null;
+        return ResponseEntity.ok(new CursorPageDto<>(dtos, nextCursor, hasMore));
     }
 
     // --- 预约相关端点 ---
@@ -206,7 +284,7 @@ public class BorrowingController {
         try {
             BorrowingRecord record = borrowingService.reserveBook(currentUserId, reservationRequest.getBookId());
             // 注意：这里返回的是 BorrowingRecordDto，它包含了预约信息，status 应该是 RESERVED
-            return ResponseEntity.status(HttpStatus.CREATED).body(convertToDto(record));
+            return ResponseEntity.status(HttpStatus.CREATED).body(BorrowingRecordMapper.toDto(record));
         } catch (IllegalArgumentException | IllegalStateException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
@@ -0,0 +1,85 @@
+package com.example.library.controller;
+
+import com.example.library.dto.FineDto;
+import com.example.library.service.FineService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/v1/fines")
+@Tag(name = "Fine Management", description = "逾期罚款的查询与缴纳")
+public class FineController {
+
+    private final FineService fineService;
+
+    @Autowired
+    public FineController(FineService fineService) {
+        this.fineService = fineService;
+    }
+
+    @GetMapping("/me")
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "获取当前用户的罚款", description = "返回当前认证用户的全部罚款，计提中的罚款金额每天更新。")
+    public ResponseEntity<List<FineDto>> getCurrentUserFines() {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        try {
+            return ResponseEntity.ok(fineService.getUserFines(username));
+        } catch (IllegalArgumentException e) {
+            throw new UsernameNotFoundException("认证用户 '" + username + "' 在数据库中未找到");
+        }
+    }
+
+    @GetMapping("/user/{userId}")
+    @PreAuthorize("hasAnyRole('LIBRARIAN', 'ADMIN')")
+    @Operation(summary = "获取指定用户的罚款 (图书管理员/管理员)", description = "返回指定用户的全部罚款。")
+    public ResponseEntity<List<FineDto>> getUserFines(@Parameter(description = "用户ID") @PathVariable Long userId) {
+        try {
+            return ResponseEntity.ok(fineService.getUserFines(userId));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    @GetMapping("/user/{userId}/balance")
+    @PreAuthorize("hasAnyRole('LIBRARIAN', 'ADMIN')")
+    @Operation(summary = "获取指定用户的未缴罚款余额 (图书管理员/管理员)", description = "返回计提中与未缴纳罚款的总额，借阅时据此判断是否超过罚款上限。")
+    public ResponseEntity<Map<String, Object>> getOutstandingBalance(@Parameter(description = "用户ID") @PathVariable Long userId) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("userId", userId);
+        result.put("outstanding", fineService.getOutstandingBalance(userId));
+        return ResponseEntity.ok(result);
+    }
+
+    @PutMapping("/{fineId}/pay")
+    @PreAuthorize("hasAnyRole('LIBRARIAN', 'ADMIN')")
+    @Operation(summary = "登记缴纳罚款 (图书管理员/管理员)", description = "把一笔已确定金额 (图书已归还) 的罚款标记为已缴纳。")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "缴纳成功"),
+            @ApiResponse(responseCode = "400", description = "罚款仍在计提中或已缴纳"),
+            @ApiResponse(responseCode = "404", description = "罚款不存在")
+    })
+    public ResponseEntity<FineDto> payFine(@Parameter(description = "罚款ID") @PathVariable Long fineId) {
+        try {
+            return ResponseEntity.ok(fineService.payFine(fineId));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
@@ -12,6 +12,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import jakarta.validation.Valid; // javax.validation for Spring Boot 2.x
@@ -86,9 +87,11 @@ public class UserController {
             @ApiResponse(responseCode = "200", description = "User updated successfully",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = UserDto.class))),
             @ApiResponse(responseCode = "404", description = "User not found"),
-            @ApiResponse(responseCode = "400", description = "Invalid input or username conflict")
+            @ApiResponse(responseCode = "400", description = "Invalid input or username conflict"),
+            @ApiResponse(responseCode = "403", description = "Only administrators can update users")
     })
     @PutMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN')") // 可修改角色和停用账户，只允许管理员
     public ResponseEntity<UserDto> updateUser(@Parameter(description = "ID of the user to update") @PathVariable Long id,
                                               @Valid @RequestBody UserDto userDto) {
         try {
@@ -103,9 +106,11 @@ public class UserController {
     @Operation(summary = "Delete a user")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "204", description = "User deleted successfully"),
-            @ApiResponse(responseCode = "404", description = "User not found")
+            @ApiResponse(responseCode = "404", description = "User not found"),
+            @ApiResponse(responseCode = "403", description = "Only administrators can delete users")
     })
     @DeleteMapping("/{id}")
+    @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Void> deleteUser(@Parameter(description = "ID of the user to delete") @PathVariable Long id) {
         if (userService.deleteUser(id)) {
             return ResponseEntity.noContent().build();
@@ -0,0 +1,32 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * 流通台批量借阅请求：为一位读者一次借出多本图书。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchBorrowRequestDto {
+
+    /**
+     * 借书的读者ID (由馆员在流通台指定)。
+     */
+    @NotNull(message = "用户ID不能为空")
+    private Long userId;
+
+    /**
+     * 扫描的图书ID，按扫描顺序处理。
+     */
+    @NotEmpty(message = "图书ID列表不能为空")
+    @Size(max = 50, message = "单次最多处理50本图书")
+    private List<@NotNull Long> bookIds;
+}
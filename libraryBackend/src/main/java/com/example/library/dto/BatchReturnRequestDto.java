@@ -0,0 +1,26 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * 流通台批量归还请求。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchReturnRequestDto {
+
+    /**
+     * 要归还的借阅记录ID。
+     */
+    @NotEmpty(message = "借阅记录ID列表不能为空")
+    @Size(max = 50, message = "单次最多处理50条借阅记录")
+    private List<@NotNull Long> recordIds;
+}
@@ -0,0 +1,33 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 图书批量导入的结果报告。
+ * rejections 只列出前若干条被拒绝的行 (上限由 library.import.max-reported-rejections 配置)，rejected 为完整计数。
+ */
+@Data
+@NoArgsConstructor
+public class BookImportResultDto {
+    private long totalRows;     // 读取到的数据行数 (不含表头)
+    private long imported;      // 成功写入的行数
+    private long duplicates;    // 因 ISBN 已存在或在文件中重复而跳过的行数
+    private long rejected;      // 因格式或校验错误被拒绝的行数
+    private long elapsedMs;
+    private double rowsPerSecond;
+    private List<RejectedRow> rejections = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RejectedRow {
+        private long line;      // 行号 (从 1 开始，CSV 表头为第 1 行)
+        private String isbn;
+        private String reason;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 用户借阅历史的一页。
+ * 第一页的 active 是当前借阅中、逾期与预约中的记录 (数量受借阅上限约束，直接来自内存)，之后的页为空；
+ * items 是已结束的历史记录，按借阅日期、记录ID降序 (从未借出的预约排在最后)，
+ * 客户端把 nextCursor 原样作为下一次请求的 cursor 参数即可取得下一页，hasMore 为 false 时表示已到末尾。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BorrowingHistoryPageDto {
+    private List<BorrowingRecordDto> active;
+    private List<BorrowingRecordDto> items;
+    private String nextCursor; // 下一页游标 (本页最后一条记录的借阅日期和ID)，没有下一页时为 null
+    private boolean hasMore;
+}
@@ -3,6 +3,7 @@ package com.example.library.dto;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import com.example.library.entity.impl.BorrowStatus;
 import java.math.BigDecimal; // 如果需要包含罚款金额
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -33,6 +34,16 @@ public class BorrowingRecordDto {
     private LocalDateTime reservationDate; // 预约日期 (如果这是一条预约记录)
     private LocalDate reservationExpiryDate; // 预约有效截止日期
 
+    /**
+     * 供 JPQL 构造表达式 (SELECT new ...) 使用，查询结果直接投影为 DTO，不加载实体及其关联。
+     */
+    public BorrowingRecordDto(Long id, Long userId, String username, Long bookId, String bookTitle,
+                              LocalDateTime borrowDate, LocalDate dueDate, LocalDateTime returnDate,
+                              BorrowStatus status, LocalDateTime reservationDate, LocalDate reservationExpiryDate) {
+        this(id, userId, username, bookId, bookTitle, borrowDate, dueDate, returnDate,
+                status != null ? status.name() : null, reservationDate, reservationExpiryDate);
+    }
+
     // 可选：根据需要添加罚款相关信息
     // private BigDecimal fineAmount; // 罚款金额
     // private boolean finePaid;      // 罚款是否已支付
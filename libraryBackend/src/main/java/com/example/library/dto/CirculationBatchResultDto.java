@@ -0,0 +1,43 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量借阅/归还的结果：按请求顺序给出每一项的结果。
+ */
+@Data
+@NoArgsConstructor
+public class CirculationBatchResultDto {
+
+    private int succeeded;
+    private int failed;
+    private List<Item> items = new ArrayList<>();
+
+    public void addSuccess(Long id, BorrowingRecordDto record) {
+        items.add(new Item(id, true, record, null));
+        succeeded++;
+    }
+
+    public void addFailure(Long id, String error) {
+        items.add(new Item(id, false, null, error));
+        failed++;
+    }
+
+    /**
+     * 单项结果。
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        private Long id; // 批量借阅时为图书ID，批量归还时为借阅记录ID
+        private boolean success;
+        private BorrowingRecordDto record; // 成功时为新的借阅记录状态
+        private String error; // 失败原因
+    }
+}
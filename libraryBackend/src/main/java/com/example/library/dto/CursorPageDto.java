@@ -0,0 +1,21 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 键集 (游标) 分页结果。
+ * 客户端把 nextCursor 原样作为下一次请求的游标参数即可取得下一页，hasMore 为 false 时表示已到末尾。
+ * 与 offset 分页不同，翻到多深的位置查询代价都相同。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDto<T> {
+    private List<T> items;
+    private Long nextCursor; // 下一页游标 (本页最后一条记录的排序键)，没有下一页时为 null
+    private boolean hasMore;
+}
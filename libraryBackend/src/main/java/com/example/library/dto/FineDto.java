@@ -0,0 +1,45 @@
+package com.example.library.dto;
+
+import com.example.library.entity.impl.FineStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 罚款的数据传输对象 (DTO)。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FineDto {
+
+    private Long id;
+
+    private Long borrowingRecordId; // 产生罚款的借阅记录
+    private Long userId;
+    private Long bookId;
+    private String bookTitle;
+
+    private BigDecimal amount;       // 已计提的金额 (计提中的罚款每天增加)
+    private int overdueDays;         // 已计提的逾期天数
+    private LocalDate accruedThrough; // 金额计提到的日期
+
+    private String status; // 罚款状态 ("ACCRUING", "UNPAID", "PAID")
+
+    private LocalDateTime createdAt;
+    private LocalDateTime paidAt;
+
+    /**
+     * 供 JPQL 构造表达式 (SELECT new ...) 使用。
+     */
+    public FineDto(Long id, Long borrowingRecordId, Long userId, Long bookId, String bookTitle,
+                   BigDecimal amount, int overdueDays, LocalDate accruedThrough,
+                   FineStatus status, LocalDateTime createdAt, LocalDateTime paidAt) {
+        this(id, borrowingRecordId, userId, bookId, bookTitle, amount, overdueDays, accruedThrough,
+                status != null ? status.name() : null, createdAt, paidAt);
+    }
+}
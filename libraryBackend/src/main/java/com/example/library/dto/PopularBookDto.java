@@ -0,0 +1,18 @@
+package com.example.library.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 热门图书排行中的一项。
+ * score 的含义取决于排名方式：借出次数，或按时间衰减后的热度 (约等于"近期有效借出次数")。
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PopularBookDto {
+    private int rank;
+    private double score;
+    private BookDto book;
+}
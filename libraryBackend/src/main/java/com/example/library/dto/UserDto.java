@@ -17,4 +17,6 @@ public class UserDto {
     private String password; // For request. Response DTO should not include password.
 
     private String role;
+
+    private Boolean enabled; // Whether the account is enabled. Null in an update request leaves it unchanged.
 }
\ No newline at end of file
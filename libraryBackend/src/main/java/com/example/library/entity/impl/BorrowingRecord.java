@@ -7,7 +7,7 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "borrow_records") // 注意，之前日志中提到过这个表的外键约束
+@Table(name = "borrow_records") // 注意，之前日志中提到过这个表的外键约束；查询用的复合索引见 db/migration/V1__borrow_records_indexes.sql
 public class BorrowingRecord {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -21,11 +21,9 @@ public class BorrowingRecord {
     @JoinColumn(name = "book_id", nullable = false)
     private Book book;
 
-    @Column(nullable = false)
-    private LocalDateTime borrowDate; // 借阅日期
+    private LocalDateTime borrowDate; // 借阅日期 (预约记录在借出前为空)
 
-    @Column(nullable = false)
-    private LocalDate dueDate;      // 应还日期
+    private LocalDate dueDate;      // 应还日期 (预约记录在借出前为空)
 
     private LocalDateTime returnDate;   // 实际归还日期 (归还后填写)
 
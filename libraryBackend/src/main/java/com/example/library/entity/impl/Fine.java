@@ -0,0 +1,40 @@
+package com.example.library.entity.impl;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "fines") // 罚款台账，查询用的复合索引见 db/migration/V3__fines_indexes.sql
+public class Fine {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY) // 产生罚款的借阅记录 (续借后再次逾期时同一记录会有多条罚款)
+    @JoinColumn(name = "borrow_record_id", nullable = false)
+    private BorrowingRecord borrowingRecord;
+
+    @ManyToOne(fetch = FetchType.LAZY) // 冗余保存用户，按用户汇总余额时不必关联借阅记录
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(nullable = false, precision = 10, scale = 2)
+    private BigDecimal amount; // 已计提的金额
+
+    @Column(nullable = false)
+    private int overdueDays; // 已计提的逾期天数
+
+    @Column(nullable = false)
+    private LocalDate accruedThrough; // 金额已计提到的日期 (从应还日期开始)
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private FineStatus status;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime paidAt;
+}
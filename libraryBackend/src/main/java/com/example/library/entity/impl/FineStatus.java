@@ -0,0 +1,26 @@
+package com.example.library.entity.impl;
+
+import lombok.Getter;
+
+/**
+ * 罚款状态
+ */
+@Getter
+public enum FineStatus {
+    // 图书仍逾期未还，金额由每日计提任务累加
+    ACCRUING("Accruing", "计提中"),
+
+    // 图书已归还 (或逾期后续借)，金额已确定，等待缴纳
+    UNPAID("Unpaid", "未缴纳"),
+
+    // 已缴纳
+    PAID("Paid", "已缴纳");
+
+    private final String code;
+    private final String displayName;
+
+    FineStatus(String code, String displayName) {
+        this.code = code;
+        this.displayName = displayName;
+    }
+}
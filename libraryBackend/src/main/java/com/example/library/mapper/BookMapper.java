@@ -0,0 +1,52 @@
+package com.example.library.mapper;
+
+import com.example.library.dto.BookDto;
+import com.example.library.entity.impl.Book;
+
+/**
+ * Book 与 BookDto 之间的映射。
+ * 逐字段显式复制 (由编译器检查)，不使用反射或运行时属性内省；实体或 DTO 增加字段时需要同步修改这里，
+ * MapperParityTest 会检查映射结果与所有属性一致。
+ */
+public final class BookMapper {
+
+    private BookMapper() {
+    }
+
+    public static BookDto toDto(Book book) {
+        if (book == null) {
+            return null;
+        }
+        BookDto dto = new BookDto();
+        dto.setId(book.getId());
+        dto.setTitle(book.getTitle());
+        dto.setAuthor(book.getAuthor());
+        dto.setIsbn(book.getIsbn());
+        dto.setPublisher(book.getPublisher());
+        dto.setPrice(book.getPrice());
+        dto.setQuantity(book.getQuantity());
+        return dto;
+    }
+
+    public static Book toEntity(BookDto dto) {
+        if (dto == null) {
+            return null;
+        }
+        Book book = new Book();
+        book.setId(dto.getId());
+        updateEntity(dto, book);
+        return book;
+    }
+
+    /**
+     * 用 DTO 的值覆盖实体除 id 以外的全部字段 (包括 null 值)。
+     */
+    public static void updateEntity(BookDto dto, Book book) {
+        book.setTitle(dto.getTitle());
+        book.setAuthor(dto.getAuthor());
+        book.setIsbn(dto.getIsbn());
+        book.setPublisher(dto.getPublisher());
+        book.setPrice(dto.getPrice());
+        book.setQuantity(dto.getQuantity());
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.library.mapper;
+
+import com.example.library.dto.BorrowingRecordDto;
+import com.example.library.entity.impl.BorrowingRecord;
+
+/**
+ * BorrowingRecord 到 BorrowingRecordDto 的映射，逐字段显式复制。
+ * 会读取记录关联的用户 id/用户名和图书 id/书名，调用方需保证关联已加载 (或仍在持久化上下文中)。
+ */
+public final class BorrowingRecordMapper {
+
+    private BorrowingRecordMapper() {
+    }
+
+    public static BorrowingRecordDto toDto(BorrowingRecord record) {
+        if (record == null) {
+            return null;
+        }
+        return new BorrowingRecordDto(
+                record.getId(),
+                record.getUser().getId(),
+                record.getUser().getUsername(),
+                record.getBook().getId(),
+                record.getBook().getTitle(),
+                record.getBorrowDate(),
+                record.getDueDate(),
+                record.getReturnDate(),
+                record.getStatus(),
+                record.getReservationDate(),
+                record.getReservationExpiryDate());
+    }
+}
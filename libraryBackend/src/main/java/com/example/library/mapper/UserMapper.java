@@ -0,0 +1,38 @@
+package com.example.library.mapper;
+
+import com.example.library.dto.UserDto;
+import com.example.library.entity.impl.User;
+
+/**
+ * User 与 UserDto 之间的映射，逐字段显式复制。
+ * 返回给客户端的 DTO 永远不包含密码 (哈希)；DTO 转实体时复制请求中的明文密码，由 UserServiceImpl 加密后再保存。
+ */
+public final class UserMapper {
+
+    private UserMapper() {
+    }
+
+    public static UserDto toDto(User user) {
+        if (user == null) {
+            return null;
+        }
+        UserDto dto = new UserDto();
+        dto.setId(user.getId());
+        dto.setUsername(user.getUsername());
+        dto.setRole(user.getRole());
+        dto.setEnabled(user.isEnabled());
+        return dto;
+    }
+
+    public static User toEntity(UserDto dto) {
+        if (dto == null) {
+            return null;
+        }
+        User user = new User();
+        user.setId(dto.getId());
+        user.setUsername(dto.getUsername());
+        user.setPassword(dto.getPassword());
+        user.setRole(dto.getRole());
+        return user;
+    }
+}
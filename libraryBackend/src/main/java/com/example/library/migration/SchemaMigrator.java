@@ -0,0 +1,239 @@
+package com.example.library.migration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * 版本化的数据库结构迁移。
+ * 启动时按版本号顺序执行 classpath:db/migration 下尚未执行过的脚本 (文件名 V{版本}__{描述}.sql)，
+ * 以及当前数据库专用子目录 (例如 db/migration/mysql、db/migration/h2) 中的脚本，执行记录保存在 schema_migrations 表中。
+ * <p>
+ * 表本身仍由 Hibernate (ddl-auto) 创建，迁移负责索引以及 Hibernate 不会修改的列定义，因此在 EntityManagerFactory 之后运行。
+ * ddl-auto 为 create/create-drop 时表在每次启动时重建，之前的迁移记录随之失效，会先清空再全部重新执行。
+ * 已执行过的脚本被修改 (校验和不一致) 时启动失败，避免各环境的数据库结构悄悄分叉。
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class SchemaMigrator implements InitializingBean {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrator.class);
+
+    private static final Pattern FILE_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+    private static final String HISTORY_TABLE = "schema_migrations";
+
+    /**
+     * 一个迁移脚本。
+     */
+    public record Migration(int version, String description, String script, long checksum) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ResourcePatternResolver resourceResolver = new PathMatchingResourcePatternResolver();
+    private final ReentrantLock migrationLock = new ReentrantLock(); // 锁内执行 SQL，不用 synchronized 以免钉住虚拟线程
+
+    @Value("${library.migration.enabled:true}") // 关闭后启动时不执行迁移
+    private boolean enabled;
+
+    @Value("${library.migration.location:db/migration}") // 迁移脚本所在的 classpath 目录
+    private String location;
+
+    @Value("${spring.jpa.hibernate.ddl-auto:none}")
+    private String ddlAuto;
+
+    public SchemaMigrator(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+        createHistoryTable();
+        if ("create".equals(ddlAuto) || "create-drop".equals(ddlAuto)) {
+            jdbcTemplate.update("DELETE FROM " + HISTORY_TABLE); // 表刚由 Hibernate 重建，索引已不存在
+        }
+        migrate();
+    }
+
+    /**
+     * 执行所有尚未执行的迁移。
+     * @return 本次执行的迁移数量
+     * @throws IllegalStateException 如果已执行的脚本被修改、版本号重复或脚本执行失败
+     */
+    public int migrate() {
+        migrationLock.lock();
+        try {
+            return applyPending();
+        } finally {
+            migrationLock.unlock();
+        }
+    }
+
+    private int applyPending() {
+        String vendor = databaseVendor();
+        List<Migration> migrations = findMigrations(vendor);
+        createHistoryTable();
+        Map<Integer, Long> appliedChecksums = new TreeMap<>();
+        jdbcTemplate.query("SELECT version, checksum FROM " + HISTORY_TABLE,
+                rs -> {
+                    appliedChecksums.put(rs.getInt(1), rs.getLong(2));
+                });
+
+        int executed = 0;
+        for (Migration migration : migrations) {
+            Long appliedChecksum = appliedChecksums.get(migration.version());
+            if (appliedChecksum != null) {
+                if (appliedChecksum != migration.checksum()) {
+                    throw new IllegalStateException("迁移 V" + migration.version() + " (" + migration.description()
+                            + ") 在执行后被修改，校验和不一致；请新增一个版本而不是修改已执行的脚本。");
+                }
+                continue;
+            }
+            long start = System.nanoTime();
+            for (String statement : statements(migration.script())) {
+                try {
+                    jdbcTemplate.execute(statement);
+                } catch (RuntimeException e) {
+                    throw new IllegalStateException("迁移 V" + migration.version() + " 执行失败: " + statement, e);
+                }
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            jdbcTemplate.update("INSERT INTO " + HISTORY_TABLE
+                            + " (version, description, checksum, installed_on, execution_ms) VALUES (?, ?, ?, ?, ?)",
+                    migration.version(), migration.description(), migration.checksum(),
+                    Timestamp.valueOf(LocalDateTime.now()), elapsedMs);
+            log.info("Applied schema migration V{} ({}) in {} ms", migration.version(), migration.description(), elapsedMs);
+            executed++;
+        }
+        log.info("Schema is up to date: {} migrations available for {}, {} applied now", migrations.size(), vendor, executed);
+        return executed;
+    }
+
+    private void createHistoryTable() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + HISTORY_TABLE + " ("
+                + "version INT NOT NULL PRIMARY KEY, "
+                + "description VARCHAR(200) NOT NULL, "
+                + "checksum BIGINT NOT NULL, "
+                + "installed_on TIMESTAMP NOT NULL, "
+                + "execution_ms BIGINT NOT NULL)");
+    }
+
+    /**
+     * 已执行的迁移记录，按版本号排序。
+     */
+    public List<Map<String, Object>> history() {
+        return jdbcTemplate.queryForList("SELECT version, description, checksum, installed_on, execution_ms FROM "
+                + HISTORY_TABLE + " ORDER BY version");
+    }
+
+    /**
+     * 通用脚本与当前数据库专用脚本，按版本号排序。
+     */
+    List<Migration> findMigrations(String vendor) {
+        Map<Integer, Migration> byVersion = new TreeMap<>();
+        for (String pattern : List.of(location + "/*.sql", location + "/" + vendor + "/*.sql")) {
+            for (Resource resource : resources("classpath*:" + pattern)) {
+                Matcher matcher = FILE_NAME.matcher(resource.getFilename() == null ? "" : resource.getFilename());
+                if (!matcher.matches()) {
+                    throw new IllegalStateException("迁移脚本命名不符合 V{版本}__{描述}.sql: " + resource.getFilename());
+                }
+                String script = read(resource);
+                Migration migration = new Migration(Integer.parseInt(matcher.group(1)),
+                        matcher.group(2).replace('_', ' '), script, checksum(script));
+                Migration duplicate = byVersion.put(migration.version(), migration);
+                if (duplicate != null) {
+                    throw new IllegalStateException("迁移版本号重复: V" + migration.version());
+                }
+            }
+        }
+        return new ArrayList<>(byVersion.values());
+    }
+
+    /**
+     * 把脚本拆成单条语句：去掉整行的 "--" 注释，按行尾的分号分隔。
+     */
+    static List<String> statements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String line : script.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                continue;
+            }
+            current.append(trimmed);
+            if (trimmed.endsWith(";")) {
+                current.setLength(current.length() - 1);
+                statements.add(current.toString().trim());
+                current.setLength(0);
+            } else {
+                current.append(' ');
+            }
+        }
+        if (!current.toString().isBlank()) {
+            statements.add(current.toString().trim());
+        }
+        return statements;
+    }
+
+    private String databaseVendor() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return product == null ? "unknown" : product.toLowerCase(Locale.ROOT);
+    }
+
+    private Resource[] resources(String pattern) {
+        try {
+            return resourceResolver.getResources(pattern);
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法读取迁移脚本: " + pattern, e);
+        }
+    }
+
+    private static String read(Resource resource) {
+        try {
+            return new String(resource.getInputStream().readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException("无法读取迁移脚本: " + resource.getFilename(), e);
+        }
+    }
+
+    private static long checksum(String script) {
+        CRC32 crc = new CRC32();
+        crc.update(script.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("location", location);
+        result.put("applied", enabled ? history() : List.of());
+        return result;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.library.monitor;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HikariCP 连接池指标收集器。
+ * 作为 MetricsTrackerFactory 注册到连接池上，记录连接获取等待时间的直方图、
+ * 连接占用时长和获取超时次数，并结合 PoolStats 给出活跃/空闲/等待线程数。
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+
+    private final LatencyHistogram acquisition = new LatencyHistogram();
+    private final LatencyHistogram usage = new LatencyHistogram();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private volatile String poolName;
+    private volatile PoolStats poolStats;
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolName = poolName;
+        this.poolStats = poolStats;
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                created.increment();
+            }
+
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquisition.record(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usage.record(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    public LatencyHistogram getAcquisition() {
+        return acquisition;
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        PoolStats stats = poolStats;
+        result.put("pool", poolName);
+        if (stats != null) {
+            result.put("active", stats.getActiveConnections());
+            result.put("idle", stats.getIdleConnections());
+            result.put("total", stats.getTotalConnections());
+            result.put("pending", stats.getPendingThreads());
+            result.put("min", stats.getMinConnections());
+            result.put("max", stats.getMaxConnections());
+        }
+        result.put("connectionsCreated", created.sum());
+        result.put("acquisitionTimeouts", timeouts.sum());
+        result.put("acquisition", acquisition.snapshot());
+        result.put("usage", usage.snapshot());
+        return result;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.library.monitor;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * 记录每个 HTTP 请求的耗时 (library_http_server_requests_seconds) 和发出的 SQL 语句数 (library_http_server_queries)。
+ * 标签只取有限的值：请求方法、处理器映射的 URI 模板 (例如 /api/v1/books/{id}，而不是实际路径) 和状态码；
+ * 没有匹配到处理器的请求 (认证失败、404 等) 统一记为 UNKNOWN / NOT_FOUND，不会因为任意路径产生新的序列。
+ * 注册在认证过滤器之前，JWT 校验和加载用户主体的耗时与查询都计算在内。
+ * 语句数取自内层 {@link SqlProfilingFilter} 的统计 ({@link SqlProfiler#STATEMENTS_ATTRIBUTE})，关闭 SQL 剖析时不记录。
+ */
+public class HttpMetricsFilter extends OncePerRequestFilter {
+
+    private static final Set<String> METHODS = Set.of("GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS");
+
+    private final MetricsRegistry registry;
+
+    public HttpMetricsFilter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            int status = failed ? 500 : response.getStatus(); // 异常穿透到这里时容器会返回 500
+            String method = method(request);
+            String uri = uri(request, status);
+            registry.timer("library_http_server_requests_seconds", "HTTP request latency by endpoint",
+                    "method", method, "uri", uri, "status", String.valueOf(status)).record(elapsed);
+            if (request.getAttribute(SqlProfiler.STATEMENTS_ATTRIBUTE) instanceof Integer statements) {
+                registry.distribution("library_http_server_queries", "SQL statements executed per HTTP request",
+                        "method", method, "uri", uri).record(statements);
+            }
+        }
+    }
+
+    static String method(HttpServletRequest request) {
+        return METHODS.contains(request.getMethod()) ? request.getMethod() : "OTHER";
+    }
+
+    /**
+     * 请求对应的 URI 模板；{@link SqlProfilingFilter} 也用它给 SQL 统计分组。
+     */
+    static String uri(HttpServletRequest request, int status) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern != null) {
+            return pattern.toString();
+        }
+        if (status == 404) {
+            return "NOT_FOUND";
+        }
+        if (status >= 300 && status < 400) {
+            return "REDIRECTION";
+        }
+        return "UNKNOWN";
+    }
+}
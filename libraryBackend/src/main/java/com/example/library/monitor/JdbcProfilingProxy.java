@@ -0,0 +1,222 @@
+package com.example.library.monitor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * 为 {@link SqlProfiler} 包装 JDBC 对象的动态代理。
+ * <p>
+ * 更新与批量语句在 execute 返回后立即记录 (行数为影响的行数)；查询的耗时同样只计 execute 调用本身，
+ * 行数则随 ResultSet.next() 累加，在结果集或语句关闭 (或同一语句再次执行) 时连同耗时一起记录。
+ * 代理按引用比较相等，Hibernate 以 Statement 为键登记资源时不受影响；getConnection / getStatement 返回的也是代理。
+ */
+final class JdbcProfilingProxy {
+
+    private JdbcProfilingProxy() {
+    }
+
+    static Connection connection(Connection target, SqlProfiler profiler) {
+        return proxy(Connection.class, new ConnectionHandler(target, profiler));
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        T proxy = type.cast(Proxy.newProxyInstance(JdbcProfilingProxy.class.getClassLoader(), new Class<?>[]{type}, handler));
+        handler.proxy = proxy;
+        return proxy;
+    }
+
+    private abstract static class Handler implements InvocationHandler {
+        final Object target;
+        Object proxy;
+
+        Handler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Profiled " + target;
+                default:
+                    return handle(method, args);
+            }
+        }
+
+        abstract Object handle(Method method, Object[] args) throws Throwable;
+
+        final Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static final class ConnectionHandler extends Handler {
+        final SqlProfiler profiler;
+
+        ConnectionHandler(Connection target, SqlProfiler profiler) {
+            super(target);
+            this.profiler = profiler;
+        }
+
+        @Override
+        Object handle(Method method, Object[] args) throws Throwable {
+            Object result = call(method, args);
+            return switch (method.getName()) {
+                case "createStatement" -> proxy(Statement.class, new StatementHandler((Statement) result, this, null));
+                case "prepareStatement" ->
+                        proxy(PreparedStatement.class, new StatementHandler((Statement) result, this, (String) args[0]));
+                case "prepareCall" ->
+                        proxy(CallableStatement.class, new StatementHandler((Statement) result, this, (String) args[0]));
+                default -> result;
+            };
+        }
+    }
+
+    private static final class StatementHandler extends Handler {
+        final ConnectionHandler connection;
+        final String preparedSql;
+        String batchSql; // 普通 Statement 的批量语句以第一条为代表
+
+        // 尚未记录的查询：等结果集读完再连同行数一起记录
+        String pendingSql;
+        long pendingNanos;
+        long pendingRows;
+
+        StatementHandler(Statement target, ConnectionHandler connection, String preparedSql) {
+            super(target);
+            this.connection = connection;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        Object handle(Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (!name.startsWith("execute")) {
+                return switch (name) {
+                    case "getResultSet" -> resultSet((ResultSet) call(method, args));
+                    case "getConnection" -> connection.proxy;
+                    case "addBatch" -> {
+                        if (batchSql == null && args != null && args.length == 1) {
+                            batchSql = (String) args[0];
+                        }
+                        yield call(method, args);
+                    }
+                    case "clearBatch" -> {
+                        batchSql = null;
+                        yield call(method, args);
+                    }
+                    case "close" -> {
+                        flush();
+                        yield call(method, args);
+                    }
+                    default -> call(method, args);
+                };
+            }
+            flush();
+            String sql = args != null && args.length > 0 && args[0] instanceof String s ? s
+                    : preparedSql != null ? preparedSql : batchSql;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = call(method, args);
+            } catch (Throwable e) {
+                connection.profiler.record(sql, System.nanoTime() - start, 0);
+                throw e;
+            }
+            long elapsed = System.nanoTime() - start;
+            switch (name) {
+                case "executeQuery" -> {
+                    pending(sql, elapsed);
+                    return resultSet((ResultSet) result);
+                }
+                case "execute" -> {
+                    if ((Boolean) result) {
+                        pending(sql, elapsed); // 结果集由随后的 getResultSet 取得
+                    } else {
+                        connection.profiler.record(sql, elapsed, Math.max(0, ((Statement) target).getUpdateCount()));
+                    }
+                }
+                case "executeBatch", "executeLargeBatch" -> {
+                    batchSql = null;
+                    connection.profiler.record(sql, elapsed, batchRows(result));
+                }
+                default -> connection.profiler.record(sql, elapsed, ((Number) result).longValue()); // executeUpdate / executeLargeUpdate
+            }
+            return result;
+        }
+
+        private void pending(String sql, long elapsed) {
+            pendingSql = sql;
+            pendingNanos = elapsed;
+            pendingRows = 0;
+        }
+
+        void flush() {
+            if (pendingSql != null) {
+                connection.profiler.record(pendingSql, pendingNanos, pendingRows);
+                pendingSql = null;
+            }
+        }
+
+        private Object resultSet(ResultSet resultSet) {
+            return resultSet == null ? null : proxy(ResultSet.class, new ResultSetHandler(resultSet, this));
+        }
+
+        private static long batchRows(Object result) {
+            long rows = 0;
+            if (result instanceof int[] counts) {
+                for (int count : counts) {
+                    rows += Math.max(0, count); // SUCCESS_NO_INFO (-2) 不计
+                }
+            } else if (result instanceof long[] counts) {
+                for (long count : counts) {
+                    rows += Math.max(0, count);
+                }
+            }
+            return rows;
+        }
+    }
+
+    private static final class ResultSetHandler extends Handler {
+        final StatementHandler statement;
+
+        ResultSetHandler(ResultSet target, StatementHandler statement) {
+            super(target);
+            this.statement = statement;
+        }
+
+        @Override
+        Object handle(Method method, Object[] args) throws Throwable {
+            return switch (method.getName()) {
+                case "next" -> {
+                    Object hasRow = call(method, args);
+                    if ((Boolean) hasRow) {
+                        statement.pendingRows++;
+                    }
+                    yield hasRow;
+                }
+                case "getStatement" -> statement.proxy;
+                case "close" -> {
+                    statement.flush();
+                    yield call(method, args);
+                }
+                default -> call(method, args);
+            };
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.library.monitor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定桶的无锁延迟直方图，用于统计耗时分布并估算百分位。
+ * 记录操作只涉及 LongAdder 自增，可以放在请求热路径上。
+ * 百分位按桶上界估算，精度取决于桶的划分。
+ */
+public class LatencyHistogram {
+
+    // 桶上界 (微秒)，最后一个桶收集所有更大的值
+    private static final long[] BUCKET_BOUNDS_MICROS = {
+            50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 25_000,
+            50_000, 100_000, 250_000, 500_000, 1_000_000, 2_500_000, 5_000_000, Long.MAX_VALUE
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MICROS.length];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int i = 0;
+        while (micros > BUCKET_BOUNDS_MICROS[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * 各桶的上界 (秒)，最后一个桶为 +Inf (Double.POSITIVE_INFINITY)，用于导出 Prometheus 直方图。
+     */
+    public static double[] bucketBoundsSeconds() {
+        double[] bounds = new double[BUCKET_BOUNDS_MICROS.length];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = BUCKET_BOUNDS_MICROS[i] == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : BUCKET_BOUNDS_MICROS[i] / 1e6;
+        }
+        return bounds;
+    }
+
+    /**
+     * 各桶 (非累计) 的计数，与 {@link #bucketBoundsSeconds()} 一一对应。
+     */
+    public long[] bucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    public double getTotalSeconds() {
+        return totalNanos.sum() / 1e9;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / (double) n / 1_000_000;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * 估算百分位延迟 (毫秒)，返回该百分位所在桶的上界；落在最后一个桶时返回最大值。
+     * @param quantile 0 到 1 之间，例如 0.99
+     */
+    public double percentileMillis(double quantile) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * n);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank) {
+                return BUCKET_BOUNDS_MICROS[i] == Long.MAX_VALUE
+                        ? getMaxMillis()
+                        : Math.min(BUCKET_BOUNDS_MICROS[i] / 1000.0, getMaxMillis());
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * 返回便于序列化为 JSON 的统计快照。
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", getCount());
+        result.put("meanMs", getMeanMillis());
+        result.put("p50Ms", percentileMillis(0.50));
+        result.put("p95Ms", percentileMillis(0.95));
+        result.put("p99Ms", percentileMillis(0.99));
+        result.put("maxMs", getMaxMillis());
+        return result;
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.library.monitor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 进程内的指标注册表，以 Prometheus 文本格式 (0.0.4) 导出。
+ * 支持计数器、仪表 (读取时求值) 和直方图三类指标：耗时直方图复用 {@link LatencyHistogram} 的固定桶，
+ * 数值分布 (例如每个请求的 SQL 语句数) 使用 {@link Distribution}。
+ * <p>
+ * 标签基数有上限：每个指标名最多 {@code maxSeriesPerMetric} 个标签组合，超出后的记录全部归入标签值为
+ * {@value #OVERFLOW} 的同一个序列，并计入 library_metrics_dropped_series_total。
+ * 调用方仍应只使用取值有限的标签 (URI 模板而不是实际路径、异常类名而不是异常消息等)，上限只是最后一道保护。
+ * <p>
+ * 记录操作只涉及一次 ConcurrentHashMap 查找和 LongAdder 自增，可以放在请求热路径上；
+ * 固定标签的调用方可以在初始化时取得指标对象并保存，省去查找。
+ */
+public class MetricsRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    static final String OVERFLOW = "OTHER";
+
+    private enum Type {
+        COUNTER("counter"), GAUGE("gauge"), TIMER("histogram"), DISTRIBUTION("histogram");
+
+        final String prometheusType;
+
+        Type(String prometheusType) {
+            this.prometheusType = prometheusType;
+        }
+    }
+
+    /**
+     * 同名指标的全部序列。
+     */
+    private static final class Family {
+        final String name;
+        final String help;
+        final Type type;
+        final String[] tagKeys;
+        final Map<List<String>, Object> series = new ConcurrentHashMap<>();
+
+        Family(String name, String help, Type type, String[] tagKeys) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.tagKeys = tagKeys;
+        }
+    }
+
+    /**
+     * 非负整数值的分布 (例如每个请求的 SQL 语句数)，桶上界固定，记录操作无锁。
+     */
+    public static final class Distribution {
+
+        private static final long[] BOUNDS = {0, 1, 2, 3, 5, 8, 13, 21, 34, 55, 89, Long.MAX_VALUE};
+
+        private final LongAdder[] buckets = new LongAdder[BOUNDS.length];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        Distribution() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void record(long value) {
+            int i = 0;
+            while (value > BOUNDS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getSum() {
+            return sum.sum();
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>(); // 按名称排序导出
+    private final int maxSeriesPerMetric;
+    private final LongAdder droppedSeries = new LongAdder();
+
+    public MetricsRegistry(int maxSeriesPerMetric) {
+        this.maxSeriesPerMetric = maxSeriesPerMetric;
+        functionCounter("library_metrics_dropped_series_total", "Recordings folded into the OTHER series after a metric hit its series limit",
+                droppedSeries::sum);
+    }
+
+    /**
+     * 获取或创建计数器。
+     * @param tags 交替给出的标签名和标签值
+     */
+    public LongAdder counter(String name, String help, String... tags) {
+        return (LongAdder) series(name, help, Type.COUNTER, tags, LongAdder::new);
+    }
+
+    /**
+     * 获取或创建耗时直方图，单位为秒。
+     */
+    public LatencyHistogram timer(String name, String help, String... tags) {
+        return (LatencyHistogram) series(name, help, Type.TIMER, tags, LatencyHistogram::new);
+    }
+
+    /**
+     * 获取或创建数值分布。
+     */
+    public Distribution distribution(String name, String help, String... tags) {
+        return (Distribution) series(name, help, Type.DISTRIBUTION, tags, Distribution::new);
+    }
+
+    /**
+     * 注册一个在导出时求值的仪表，同一标签组合重复注册时保留第一个。
+     */
+    public void gauge(String name, String help, Supplier<? extends Number> value, String... tags) {
+        series(name, help, Type.GAUGE, tags, () -> value);
+    }
+
+    /**
+     * 注册一个在导出时求值的计数器 (值由别处维护，只增不减，例如缓存的命中次数)。
+     */
+    public void functionCounter(String name, String help, Supplier<? extends Number> value, String... tags) {
+        series(name, help, Type.COUNTER, tags, () -> value);
+    }
+
+    private Object series(String name, String help, Type type, String[] tags, Supplier<Object> factory) {
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("Tags must be given as key/value pairs: " + Arrays.toString(tags));
+        }
+        Family family = families.get(name);
+        if (family == null) {
+            String[] keys = new String[tags.length / 2];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = tags[2 * i];
+            }
+            family = families.computeIfAbsent(name, n -> new Family(n, help, type, keys));
+        }
+        if (family.type != type || family.tagKeys.length * 2 != tags.length) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered with different type or tags");
+        }
+        String[] values = new String[family.tagKeys.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = tags[2 * i + 1] == null ? "" : tags[2 * i + 1];
+        }
+        List<String> key = Arrays.asList(values);
+        Object existing = family.series.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        if (family.series.size() >= maxSeriesPerMetric) {
+            droppedSeries.increment();
+            if (type == Type.GAUGE) {
+                log.warn("Metric {} reached its limit of {} series, gauge {} not registered", name, maxSeriesPerMetric, key);
+            }
+            String[] overflow = new String[values.length];
+            Arrays.fill(overflow, OVERFLOW);
+            return family.series.computeIfAbsent(Arrays.asList(overflow), k -> factory.get());
+        }
+        return family.series.computeIfAbsent(key, k -> factory.get());
+    }
+
+    /**
+     * 以 Prometheus 文本格式导出全部指标。
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type.prometheusType).append('\n');
+            List<Map.Entry<List<String>, Object>> entries = new ArrayList<>(family.series.entrySet());
+            entries.sort(Map.Entry.comparingByKey(MetricsRegistry::compareTags));
+            for (Map.Entry<List<String>, Object> entry : entries) {
+                String labels = labels(family.tagKeys, entry.getKey());
+                Object meter = entry.getValue();
+                switch (family.type) {
+                    case COUNTER, GAUGE -> {
+                        Object value = meter instanceof LongAdder adder ? adder.sum() : ((Supplier<?>) meter).get();
+                        sample(out, family.name, labels, null, value instanceof Number n ? n.doubleValue() : Double.NaN);
+                    }
+                    case TIMER -> writeTimer(out, family.name, labels, (LatencyHistogram) meter);
+                    case DISTRIBUTION -> writeDistribution(out, family.name, labels, (Distribution) meter);
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void writeTimer(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        double[] bounds = LatencyHistogram.bucketBoundsSeconds();
+        long[] counts = histogram.bucketCounts();
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += counts[i];
+            sample(out, name + "_bucket", labels, bounds[i], cumulative);
+        }
+        sample(out, name + "_sum", labels, null, histogram.getTotalSeconds());
+        sample(out, name + "_count", labels, null, cumulative); // 与桶的计数一致，而不是另读一次可能已变化的总数
+    }
+
+    private static void writeDistribution(StringBuilder out, String name, String labels, Distribution distribution) {
+        long cumulative = 0;
+        for (int i = 0; i < Distribution.BOUNDS.length; i++) {
+            cumulative += distribution.buckets[i].sum();
+            long bound = Distribution.BOUNDS[i];
+            sample(out, name + "_bucket", labels, bound == Long.MAX_VALUE ? Double.POSITIVE_INFINITY : bound, cumulative);
+        }
+        sample(out, name + "_sum", labels, null, distribution.sum.sum());
+        sample(out, name + "_count", labels, null, cumulative);
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, Double le, double value) {
+        out.append(name);
+        if (!labels.isEmpty() || le != null) {
+            out.append('{').append(labels);
+            if (le != null) {
+                if (!labels.isEmpty()) {
+                    out.append(',');
+                }
+                out.append("le=\"").append(le.isInfinite() ? "+Inf" : format(le)).append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    private static String labels(String[] keys, List<String> values) {
+        StringBuilder labels = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                labels.append(',');
+            }
+            labels.append(keys[i]).append("=\"");
+            String value = values.get(i);
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+                switch (ch) {
+                    case '\\' -> labels.append("\\\\");
+                    case '"' -> labels.append("\\\"");
+                    case '\n' -> labels.append("\\n");
+                    default -> labels.append(ch);
+                }
+            }
+            labels.append('"');
+        }
+        return labels.toString();
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static int compareTags(List<String> a, List<String> b) {
+        for (int i = 0; i < a.size(); i++) {
+            int c = a.get(i).compareTo(b.get(i));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+}
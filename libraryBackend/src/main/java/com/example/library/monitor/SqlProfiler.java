@@ -0,0 +1,347 @@
+package com.example.library.monitor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * JDBC 层的 SQL 剖析器，代替 spring.jpa.show-sql：连接池借出的连接经 {@link #wrap(Connection)} 包装后，
+ * 每条语句的执行耗时与行数 (查询为读取的行数，更新为影响的行数) 都记在发出它的请求名下。
+ * <ul>
+ *     <li>超过 slowThresholdMs 的语句以 WARN 级别记录，附带请求序号、方法与路径，最近的若干条保留在 {@link #stats()} 中；</li>
+ *     <li>同一请求内同一形态的 SELECT (空白折叠、字面量替换为 ?) 执行次数达到 nPlusOneThreshold 时判定为疑似 N+1，
+ *     每个请求每种语句只报告一次；</li>
+ *     <li>请求结束时按端点 (方法 + URI 模板，由 {@link SqlProfilingFilter} 给出) 汇总语句数、耗时、行数和各语句形态的统计。</li>
+ * </ul>
+ * 不在 HTTP 请求中执行的语句 (定时任务、启动迁移等) 汇总在 {@value #BACKGROUND} 名下，不做 N+1 判定。
+ */
+public class SqlProfiler {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlProfiler.class);
+
+    static final String BACKGROUND = "BACKGROUND";
+    /**
+     * {@link SqlProfilingFilter} 把请求内执行的语句数放在该请求属性中，{@link HttpMetricsFilter} 据此记录 library_http_server_queries。
+     */
+    public static final String STATEMENTS_ATTRIBUTE = SqlProfiler.class.getName() + ".statements";
+    private static final String OTHER_STATEMENTS = "OTHER";
+    private static final int RECENT_SLOW_STATEMENTS = 50;
+    private static final int TOP_STATEMENTS = 10;
+    private static final int MAX_SQL_LENGTH = 500;
+
+    /**
+     * 一个请求内的语句记录，只由处理该请求的线程访问。
+     */
+    private static final class RequestProfile {
+        final long id;
+        final String method;
+        final String path;
+        final Map<String, StatementStats> statements = new HashMap<>();
+        int executions;
+        int slowStatements;
+
+        RequestProfile(long id, String method, String path) {
+            this.id = id;
+            this.method = method;
+            this.path = path;
+        }
+    }
+
+    /**
+     * 一种语句形态的累计统计。
+     */
+    private static final class StatementStats {
+        final LongAdder executions = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final LongAdder nPlusOneRequests = new LongAdder();
+
+        void add(long count, long elapsedNanos, long rowCount, long max) {
+            executions.add(count);
+            nanos.add(elapsedNanos);
+            rows.add(rowCount);
+            maxNanos.accumulateAndGet(max, Math::max);
+        }
+    }
+
+    private static final class EndpointStats {
+        final LongAdder requests = new LongAdder();
+        final LongAdder statements = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder slowStatements = new LongAdder();
+        final LongAdder nPlusOneRequests = new LongAdder();
+        final AtomicLong maxStatementsPerRequest = new AtomicLong();
+        final Map<String, StatementStats> shapes = new ConcurrentHashMap<>(); // 语句形态 -> 统计
+    }
+
+    private final ThreadLocal<RequestProfile> currentRequest = new ThreadLocal<>();
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private final Deque<Map<String, Object>> recentSlowStatements = new ArrayDeque<>(RECENT_SLOW_STATEMENTS);
+    private final AtomicLong requestSequence = new AtomicLong();
+    private final LongAdder nPlusOneDetections = new LongAdder();
+    private final long slowThresholdNanos;
+    private final int nPlusOneThreshold;
+    private final int maxStatementsPerEndpoint;
+
+    public SqlProfiler(long slowThresholdMs, int nPlusOneThreshold, int maxStatementsPerEndpoint) {
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMs);
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        this.maxStatementsPerEndpoint = maxStatementsPerEndpoint;
+    }
+
+    /**
+     * 包装连接池借出的连接，由它创建的 Statement / PreparedStatement / CallableStatement 及其结果集都被计时和计数。
+     */
+    public Connection wrap(Connection connection) {
+        return JdbcProfilingProxy.connection(connection, this);
+    }
+
+    /**
+     * 请求开始：此后当前线程执行的语句都记在该请求名下。
+     */
+    public void beginRequest(String method, String path) {
+        currentRequest.set(new RequestProfile(requestSequence.incrementAndGet(), method, path));
+    }
+
+    /**
+     * 请求结束：把请求内的语句统计并入端点汇总。
+     * @param endpoint 方法与 URI 模板，例如 "GET /api/v1/books/{id}"
+     * @return 请求内执行的语句数，当前线程没有开始请求时为 -1
+     */
+    public int endRequest(String endpoint) {
+        RequestProfile request = currentRequest.get();
+        if (request == null) {
+            return -1;
+        }
+        currentRequest.remove();
+        EndpointStats stats = endpoints.computeIfAbsent(endpoint, e -> new EndpointStats());
+        stats.requests.increment();
+        stats.slowStatements.add(request.slowStatements);
+        stats.maxStatementsPerRequest.accumulateAndGet(request.executions, Math::max);
+        boolean nPlusOne = false;
+        for (Map.Entry<String, StatementStats> entry : request.statements.entrySet()) {
+            StatementStats statement = entry.getValue();
+            long executions = statement.executions.sum();
+            StatementStats total = statementStats(stats, entry.getKey());
+            total.add(executions, statement.nanos.sum(), statement.rows.sum(), statement.maxNanos.get());
+            stats.statements.add(executions);
+            stats.nanos.add(statement.nanos.sum());
+            stats.rows.add(statement.rows.sum());
+            if (isNPlusOneCandidate(entry.getKey()) && executions >= nPlusOneThreshold) {
+                total.nPlusOneRequests.increment();
+                nPlusOne = true;
+            }
+        }
+        if (nPlusOne) {
+            stats.nPlusOneRequests.increment();
+        }
+        return request.executions;
+    }
+
+    /**
+     * 记录一条已执行完的语句，由 JDBC 代理调用。
+     * @param rows 查询读取的行数或更新影响的行数
+     */
+    void record(String sql, long elapsedNanos, long rows) {
+        String shape = normalize(sql);
+        RequestProfile request = currentRequest.get();
+        if (elapsedNanos >= slowThresholdNanos) {
+            slowStatement(request, shape, elapsedNanos, rows);
+        }
+        if (request == null) {
+            EndpointStats background = endpoints.computeIfAbsent(BACKGROUND, e -> new EndpointStats());
+            statementStats(background, shape).add(1, elapsedNanos, rows, elapsedNanos);
+            background.statements.increment();
+            background.nanos.add(elapsedNanos);
+            background.rows.add(rows);
+            return;
+        }
+        StatementStats statement = request.statements.computeIfAbsent(shape, s -> new StatementStats());
+        statement.add(1, elapsedNanos, rows, elapsedNanos);
+        request.executions++;
+        if (statement.executions.sum() == nPlusOneThreshold && isNPlusOneCandidate(shape)) {
+            nPlusOneDetections.increment();
+            log.warn("Possible N+1 query: executed {} times in request #{} {} {}: {}",
+                    nPlusOneThreshold, request.id, request.method, request.path, abbreviate(shape));
+        }
+    }
+
+    private void slowStatement(RequestProfile request, String shape, long elapsedNanos, long rows) {
+        double millis = elapsedNanos / 1e6;
+        String source = request != null ? "#" + request.id + " " + request.method + " " + request.path : BACKGROUND;
+        log.warn("Slow SQL ({} ms, {} rows) in {}: {}", String.format("%.1f", millis), rows, source, abbreviate(shape));
+        if (request != null) {
+            request.slowStatements++; // 请求结束时才知道端点，先记在请求上
+        } else {
+            endpoints.computeIfAbsent(BACKGROUND, e -> new EndpointStats()).slowStatements.increment();
+        }
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("at", LocalDateTime.now().toString());
+        entry.put("millis", Math.round(millis * 10) / 10.0);
+        entry.put("rows", rows);
+        entry.put("request", source);
+        entry.put("sql", abbreviate(shape));
+        synchronized (recentSlowStatements) {
+            if (recentSlowStatements.size() == RECENT_SLOW_STATEMENTS) {
+                recentSlowStatements.removeFirst();
+            }
+            recentSlowStatements.addLast(entry);
+        }
+    }
+
+    private StatementStats statementStats(EndpointStats stats, String shape) {
+        StatementStats existing = stats.shapes.get(shape);
+        if (existing != null) {
+            return existing;
+        }
+        if (stats.shapes.size() >= maxStatementsPerEndpoint) {
+            return stats.shapes.computeIfAbsent(OTHER_STATEMENTS, s -> new StatementStats());
+        }
+        return stats.shapes.computeIfAbsent(shape, s -> new StatementStats());
+    }
+
+    private static boolean isNPlusOneCandidate(String shape) {
+        return shape.regionMatches(true, 0, "select", 0, 6);
+    }
+
+    /**
+     * 语句形态：折叠空白，把字符串与数字字面量替换为 ?，使拼接了不同参数的同一条语句归为一类。
+     * Hibernate 和 MyBatis 生成的语句本来就使用占位符，这里只是兜底。
+     */
+    static String normalize(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        boolean space = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = out.length() > 0;
+                continue;
+            }
+            if (space) {
+                out.append(' ');
+                space = false;
+            }
+            if (c == '\'') {
+                int end = i + 1;
+                while (end < sql.length() && (sql.charAt(end) != '\'' || end + 1 < sql.length() && sql.charAt(end + 1) == '\'')) {
+                    end += sql.charAt(end) == '\'' ? 2 : 1;
+                }
+                out.append('?');
+                i = end;
+            } else if (Character.isDigit(c) && (out.length() == 0 || !isIdentifierPart(out.charAt(out.length() - 1)))) {
+                while (i + 1 < sql.length() && (Character.isDigit(sql.charAt(i + 1)) || sql.charAt(i + 1) == '.')) {
+                    i++;
+                }
+                out.append('?');
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '.';
+    }
+
+    private static String abbreviate(String sql) {
+        return sql.length() <= MAX_SQL_LENGTH ? sql : sql.substring(0, MAX_SQL_LENGTH) + "...";
+    }
+
+    /**
+     * 按 SQL 总耗时降序列出各端点的统计，附带每个端点耗时最多的语句和最近的慢语句。
+     */
+    public Map<String, Object> stats() {
+        List<Map.Entry<String, EndpointStats>> entries = new ArrayList<>(endpoints.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, EndpointStats> e) -> e.getValue().nanos.sum()).reversed());
+        List<Map<String, Object>> endpointList = new ArrayList<>(entries.size());
+        long statements = 0;
+        long nanos = 0;
+        for (Map.Entry<String, EndpointStats> entry : entries) {
+            EndpointStats stats = entry.getValue();
+            statements += stats.statements.sum();
+            nanos += stats.nanos.sum();
+            endpointList.add(endpointStats(entry.getKey(), stats));
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("slowThresholdMs", TimeUnit.NANOSECONDS.toMillis(slowThresholdNanos));
+        result.put("nPlusOneThreshold", nPlusOneThreshold);
+        result.put("requests", requestSequence.get());
+        result.put("statements", statements);
+        result.put("totalMillis", nanos / 1_000_000);
+        result.put("nPlusOneDetections", nPlusOneDetections.sum());
+        result.put("endpoints", endpointList);
+        synchronized (recentSlowStatements) {
+            List<Map<String, Object>> slow = new ArrayList<>(recentSlowStatements);
+            Collections.reverse(slow); // 最近的在前
+            result.put("recentSlowStatements", slow);
+        }
+        return result;
+    }
+
+    private static Map<String, Object> endpointStats(String endpoint, EndpointStats stats) {
+        long requests = stats.requests.sum();
+        long statements = stats.statements.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("endpoint", endpoint);
+        result.put("requests", requests);
+        result.put("statements", statements);
+        result.put("avgStatementsPerRequest", requests == 0 ? 0 : Math.round(statements * 100.0 / requests) / 100.0);
+        result.put("maxStatementsPerRequest", stats.maxStatementsPerRequest.get());
+        result.put("rows", stats.rows.sum());
+        result.put("totalMillis", millis(stats.nanos.sum()));
+        result.put("avgMillisPerRequest", requests == 0 ? 0 : millis(stats.nanos.sum() / requests));
+        result.put("slowStatements", stats.slowStatements.sum());
+        result.put("nPlusOneRequests", stats.nPlusOneRequests.sum());
+        List<Map.Entry<String, StatementStats>> top = new ArrayList<>(stats.shapes.entrySet());
+        top.sort(Comparator.comparingLong((Map.Entry<String, StatementStats> e) -> e.getValue().nanos.sum()).reversed());
+        List<Map<String, Object>> topStatements = new ArrayList<>();
+        for (Map.Entry<String, StatementStats> entry : top.subList(0, Math.min(TOP_STATEMENTS, top.size()))) {
+            StatementStats statement = entry.getValue();
+            long executions = statement.executions.sum();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("sql", abbreviate(entry.getKey()));
+            item.put("executions", executions);
+            item.put("totalMillis", millis(statement.nanos.sum()));
+            item.put("avgMillis", executions == 0 ? 0 : millis(statement.nanos.sum() / executions));
+            item.put("maxMillis", millis(statement.maxNanos.get()));
+            item.put("rows", statement.rows.sum());
+            item.put("nPlusOneRequests", statement.nPlusOneRequests.sum());
+            topStatements.add(item);
+        }
+        result.put("topStatements", topStatements);
+        return result;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1e4) / 100.0;
+    }
+
+    /**
+     * 清空端点统计与最近的慢语句 (例如压测前)。
+     */
+    public void reset() {
+        endpoints.clear();
+        nPlusOneDetections.reset();
+        synchronized (recentSlowStatements) {
+            recentSlowStatements.clear();
+        }
+    }
+}
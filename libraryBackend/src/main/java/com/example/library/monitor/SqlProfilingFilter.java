@@ -0,0 +1,40 @@
+package com.example.library.monitor;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * 为 {@link SqlProfiler} 标出请求边界：请求期间当前线程执行的 SQL 记在该请求名下，
+ * 结束后按 "方法 URI模板" (例如 GET /api/v1/borrowings/user/{userId}) 汇总，
+ * 请求内的语句数放在 {@link SqlProfiler#STATEMENTS_ATTRIBUTE} 中交给外层的 {@link HttpMetricsFilter}。
+ */
+public class SqlProfilingFilter extends OncePerRequestFilter {
+
+    private final SqlProfiler profiler;
+
+    public SqlProfilingFilter(SqlProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        profiler.beginRequest(request.getMethod(), request.getRequestURI());
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            int status = failed ? 500 : response.getStatus();
+            int statements = profiler.endRequest(HttpMetricsFilter.method(request) + " " + HttpMetricsFilter.uri(request, status));
+            if (statements >= 0) {
+                request.setAttribute(SqlProfiler.STATEMENTS_ATTRIBUTE, statements);
+            }
+        }
+    }
+}
@@ -1,15 +1,52 @@
 package com.example.library.repository;
 
 import com.example.library.entity.impl.Book;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
     Optional<Book> findByIsbn(String isbn);
     List<Book> findByTitleContainingIgnoreCase(String title);
     List<Book> findByAuthorContainingIgnoreCase(String author);
-}
\ No newline at end of file
+
+    List<Book> findByIsbnIn(Collection<String> isbns);
+
+    // 只读取全部 ISBN，用于批量导入前的查重
+    @Query("SELECT b.isbn FROM Book b")
+    List<String> findAllIsbns();
+
+    // 键集分页：按 id 升序取游标之后的一页，走主键索引，深翻页不会退化为 OFFSET 扫描
+    List<Book> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    // 以固定批次从数据库游标中逐行读取全部图书，必须在事务中使用并在用完后关闭 Stream
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT b FROM Book b ORDER BY b.id")
+    Stream<Book> streamAllOrderById();
+
+    // 条件更新：只有库存大于 0 时才扣减，返回受影响行数 (0 表示已无库存)
+    // 由数据库保证原子性，避免 "读-判断-写" 在并发下超卖
+    @Modifying
+    @Query("UPDATE Book b SET b.quantity = b.quantity - 1 WHERE b.id = :id AND b.quantity > 0")
+    int decrementStock(@Param("id") Long id);
+
+    // 归还时原子地增加库存
+    @Modifying
+    @Query("UPDATE Book b SET b.quantity = b.quantity + 1 WHERE b.id = :id")
+    int incrementStock(@Param("id") Long id);
+}
@@ -1,15 +1,22 @@
 package com.example.library.repository; // 确保包名与你的项目结构一致
 
+import com.example.library.dto.BorrowingRecordDto;
 import com.example.library.entity.impl.Book; // 你的 Book 实体
 import com.example.library.entity.impl.BorrowStatus;
 import com.example.library.entity.impl.BorrowingRecord; // 你的 BorrowingRecord 实体
 import com.example.library.entity.impl.User;     // 你的 User 实体
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,6 +25,12 @@ public interface BorrowingRecordRepository extends JpaRepository<BorrowingRecord
 
     // Spring Data JPA 会根据方法名自动生成查询实现
 
+    // 列表查询共用的 DTO 投影：借阅记录与用户、图书内连接后直接构造 BorrowingRecordDto
+    String RECORD_DTO_SELECT = "SELECT new com.example.library.dto.BorrowingRecordDto(" +
+            "br.id, u.id, u.username, b.id, b.title, br.borrowDate, br.dueDate, br.returnDate, " +
+            "br.status, br.reservationDate, br.reservationExpiryDate) " +
+            "FROM BorrowingRecord br JOIN br.user u JOIN br.book b ";
+
     // 1. 根据用户和状态查询借阅记录 (例如：查询某用户所有已借阅的书)
     List<BorrowingRecord> findByUserAndStatus(User user, BorrowStatus status);
 
@@ -52,6 +65,125 @@ public interface BorrowingRecordRepository extends JpaRepository<BorrowingRecord
     List<BorrowingRecord> findByBookAndStatusOrderByReservationDateAsc(Book book, BorrowStatus status);
 
 
+    // 12. 查询所有逾期未还的记录 (已标记为 OVERDUE，或仍为 BORROWED 但应还日期已过、等待定时任务标记)，
+    //     直接投影为 DTO，一条 SQL 同时取出用户名和书名，避免逐行懒加载。
+    //     先用 status IN 限定范围，使 (status, due_date) 索引可用，否则 OR 条件会退化为全表扫描
+    @Query(RECORD_DTO_SELECT +
+            "WHERE br.status IN (:overdue, :borrowed) AND (br.status = :overdue OR br.dueDate < :today) " +
+            "ORDER BY br.id")
+    List<BorrowingRecordDto> findAllOverdue(@Param("today") LocalDate today,
+                                            @Param("borrowed") BorrowStatus borrowed,
+                                            @Param("overdue") BorrowStatus overdue);
+
+    // 13. 同上，按 id 键集分页
+    @Query(RECORD_DTO_SELECT +
+            "WHERE br.id > :afterId AND br.status IN (:overdue, :borrowed) " +
+            "AND (br.status = :overdue OR br.dueDate < :today) " +
+            "ORDER BY br.id")
+    List<BorrowingRecordDto> findOverduePage(@Param("afterId") Long afterId,
+                                             @Param("today") LocalDate today,
+                                             @Param("borrowed") BorrowStatus borrowed,
+                                             @Param("overdue") BorrowStatus overdue,
+                                             Pageable pageable);
+
+    // 16. 用户的借阅历史 (按借阅日期降序)，直接投影为 DTO
+    @Query(RECORD_DTO_SELECT + "WHERE u.id = :userId ORDER BY br.borrowDate DESC")
+    List<BorrowingRecordDto> findHistoryByUserId(@Param("userId") Long userId);
+
+    // 17. 同上，按用户名查询 (当前登录用户无需先查出用户 id)
+    @Query(RECORD_DTO_SELECT + "WHERE u.username = :username ORDER BY br.borrowDate DESC")
+    List<BorrowingRecordDto> findHistoryByUsername(@Param("username") String username);
+
+    // 23. 用户处于某些状态的记录 (历史读模型的热分区：借阅中、逾期与预约中)，直接投影为 DTO
+    @Query(RECORD_DTO_SELECT + "WHERE u.id = :userId AND br.status IN :statuses")
+    List<BorrowingRecordDto> findHistoryByUserIdAndStatusIn(@Param("userId") Long userId,
+                                                            @Param("statuses") Collection<BorrowStatus> statuses);
+
+    // 24. 借阅历史按 (借阅日期, id) 降序键集分页：只取借出过的记录中位于游标之后的一页
+    @Query(RECORD_DTO_SELECT +
+            "WHERE u.id = :userId AND br.status IN :statuses AND br.borrowDate IS NOT NULL " +
+            "AND (br.borrowDate < :beforeDate OR (br.borrowDate = :beforeDate AND br.id < :beforeId)) " +
+            "ORDER BY br.borrowDate DESC, br.id DESC")
+    List<BorrowingRecordDto> findHistoryPage(@Param("userId") Long userId,
+                                             @Param("statuses") Collection<BorrowStatus> statuses,
+                                             @Param("beforeDate") LocalDateTime beforeDate,
+                                             @Param("beforeId") Long beforeId,
+                                             Pageable pageable);
+
+    // 25. 同上，从未借出的记录 (已取消或过期的预约，没有借阅日期) 排在最后，按 id 降序键集分页
+    @Query(RECORD_DTO_SELECT +
+            "WHERE u.id = :userId AND br.status IN :statuses AND br.borrowDate IS NULL AND br.id < :beforeId " +
+            "ORDER BY br.id DESC")
+    List<BorrowingRecordDto> findUnborrowedHistoryPage(@Param("userId") Long userId,
+                                                       @Param("statuses") Collection<BorrowStatus> statuses,
+                                                       @Param("beforeId") Long beforeId,
+                                                       Pageable pageable);
+
+    // 14. 只读取某状态下记录的 id 和应还日期 (第一个元素为 id，第二个为 dueDate)，用于构建到期索引
+    @Query("SELECT br.id, br.dueDate FROM BorrowingRecord br WHERE br.status = :status")
+    List<Object[]> findIdAndDueDateByStatus(@Param("status") BorrowStatus status);
+
+    // 15. 批量把已过应还日期的借阅记录标记为逾期。
+    //     条件中再次校验状态和应还日期，已归还或刚续借的记录不会被误标
+    @Modifying
+    @Query("UPDATE BorrowingRecord br SET br.status = :overdue " +
+            "WHERE br.id IN :ids AND br.status = :borrowed AND br.dueDate < :today")
+    int markOverdue(@Param("ids") List<Long> ids,
+                    @Param("today") LocalDate today,
+                    @Param("borrowed") BorrowStatus borrowed,
+                    @Param("overdue") BorrowStatus overdue);
+
+    // 18. 加行锁读取借阅记录 (SELECT ... FOR UPDATE)，用于预约的借出、取消与队列提升互斥
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT br FROM BorrowingRecord br WHERE br.id = :id")
+    Optional<BorrowingRecord> findByIdForUpdate(@Param("id") Long id);
+
+    // 19. 读取全部预约 (按预约时间先后排序)，用于启动时重建预约队列。
+    //     每行依次为: 记录 id、图书 id、用户 id、保留截止日期 (为 null 表示仍在排队)
+    @Query("SELECT br.id, br.book.id, br.user.id, br.reservationExpiryDate FROM BorrowingRecord br " +
+            "WHERE br.status = :reserved ORDER BY br.reservationDate, br.id")
+    List<Object[]> findReservationQueueEntries(@Param("reserved") BorrowStatus reserved);
+
+    // 20. 把一本归还的图书保留给排队中的预约：设置保留截止日期。
+    //     只对仍在排队 (未被取消、未被提升) 的预约生效，返回 0 表示该预约已失效
+    @Modifying
+    @Query("UPDATE BorrowingRecord br SET br.reservationExpiryDate = :expiryDate " +
+            "WHERE br.id = :id AND br.status = :reserved AND br.reservationExpiryDate IS NULL")
+    int assignHold(@Param("id") Long id,
+                   @Param("expiryDate") LocalDate expiryDate,
+                   @Param("reserved") BorrowStatus reserved);
+
+    // 21. 查询保留已过期的预约 (每行为记录 id、图书 id、用户 id)
+    @Query("SELECT br.id, br.book.id, br.user.id FROM BorrowingRecord br " +
+            "WHERE br.status = :reserved AND br.reservationExpiryDate < :today")
+    List<Object[]> findExpiredHolds(@Param("today") LocalDate today,
+                                    @Param("reserved") BorrowStatus reserved);
+
+    // 22. 把保留已过期的预约标记为 RESERVATION_EXPIRED，返回 0 表示已被借出或取消
+    @Modifying
+    @Query("UPDATE BorrowingRecord br SET br.status = :expired " +
+            "WHERE br.id = :id AND br.status = :reserved AND br.reservationExpiryDate < :today")
+    int expireHold(@Param("id") Long id,
+                   @Param("today") LocalDate today,
+                   @Param("reserved") BorrowStatus reserved,
+                   @Param("expired") BorrowStatus expired);
+
+    // 用户借阅状态缓存：用户当前处于某些状态 (借阅中、逾期、预约) 的记录 (记录 id, 图书 id, 状态)
+    @Query("SELECT br.id, br.book.id, br.status FROM BorrowingRecord br WHERE br.user.id = :userId AND br.status IN :statuses")
+    List<Object[]> findIdBookIdAndStatusByUserId(@Param("userId") Long userId,
+                                                 @Param("statuses") List<BorrowStatus> statuses);
+
+    // 批量借阅：用户对给定图书的某状态记录 (例如预约)
+    @Query("SELECT br FROM BorrowingRecord br JOIN FETCH br.book " +
+            "WHERE br.user = :user AND br.status = :status AND br.book.id IN :bookIds")
+    List<BorrowingRecord> findByUserAndStatusAndBookIdIn(@Param("user") User user,
+                                                         @Param("status") BorrowStatus status,
+                                                         @Param("bookIds") Collection<Long> bookIds);
+
+    // 批量归还：一次取出所有借阅记录及其用户和图书
+    @Query("SELECT br FROM BorrowingRecord br JOIN FETCH br.user JOIN FETCH br.book WHERE br.id IN :ids")
+    List<BorrowingRecord> findAllWithUserAndBookByIdIn(@Param("ids") Collection<Long> ids);
+
     // 如果你需要更复杂的查询，可以使用 @Query 注解配合 JPQL 或 Native SQL
 
     // 示例：使用 JPQL 查询热门图书 (按借阅次数排序)
@@ -68,6 +200,15 @@ public interface BorrowingRecordRepository extends JpaRepository<BorrowingRecord
             // 可以添加 Pageable pageable 来限制返回数量
     );
 
+    // 热门榜重建：每本书的累计借出次数 (borrowDate 不为空即表示借出过，未借出的预约不计)
+    @Query("SELECT br.book.id, COUNT(br.id) FROM BorrowingRecord br " +
+            "WHERE br.borrowDate IS NOT NULL GROUP BY br.book.id")
+    List<Object[]> countBorrowsByBook();
+
+    // 热门榜重建：某时间之后的每一次借出 (记录 id, 图书 id, 借出时间)，用于按天窗口和时间衰减排名
+    @Query("SELECT br.id, br.book.id, br.borrowDate FROM BorrowingRecord br WHERE br.borrowDate >= :since")
+    List<Object[]> findBorrowEventsSince(@Param("since") LocalDateTime since);
+
     // 示例：查询用户是否有未支付的罚款 (假设 BorrowingRecord 中有 fineAmount 和 finePaid 字段)
     // @Query("SELECT CASE WHEN COUNT(br) > 0 THEN TRUE ELSE FALSE END " +
     //        "FROM BorrowingRecord br " +
@@ -0,0 +1,79 @@
+package com.example.library.repository;
+
+import com.example.library.dto.FineDto;
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.entity.impl.Fine;
+import com.example.library.entity.impl.FineStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface FineRepository extends JpaRepository<Fine, Long> {
+
+    // 列表查询共用的 DTO 投影：罚款与借阅记录、图书内连接后直接构造 FineDto
+    String FINE_DTO_SELECT = "SELECT new com.example.library.dto.FineDto(" +
+            "f.id, br.id, f.user.id, b.id, b.title, f.amount, f.overdueDays, f.accruedThrough, " +
+            "f.status, f.createdAt, f.paidAt) " +
+            "FROM Fine f JOIN f.borrowingRecord br JOIN br.book b ";
+
+    // 1. 借阅记录当前计提中的罚款 (归还、续借时结清)
+    Optional<Fine> findByBorrowingRecordIdAndStatus(Long borrowingRecordId, FineStatus status);
+
+    // 2. 为已过应还日期、尚无计提中罚款的借阅一次性建立罚款 (从应还日期开始计提，金额为 0)
+    //    BORROWED 且已过期的记录也包括在内，不必等逾期检测任务先把它们标记为 OVERDUE
+    @Modifying
+    @Query("INSERT INTO Fine (borrowingRecord, user, amount, overdueDays, accruedThrough, status, createdAt) " +
+            "SELECT br, br.user, :zero, 0, br.dueDate, :accruing, :now FROM BorrowingRecord br " +
+            "WHERE br.status IN (:borrowed, :overdue) AND br.dueDate < :today " +
+            "AND NOT EXISTS (SELECT 1 FROM Fine f WHERE f.borrowingRecord = br AND f.status = :accruing)")
+    int openAccruingFines(@Param("today") LocalDate today,
+                          @Param("now") LocalDateTime now,
+                          @Param("zero") BigDecimal zero,
+                          @Param("borrowed") BorrowStatus borrowed,
+                          @Param("overdue") BorrowStatus overdue,
+                          @Param("accruing") FineStatus accruing);
+
+    // 3. 计提中的罚款目前计提到的各个日期 (正常每天运行时只有一个：昨天)
+    @Query("SELECT DISTINCT f.accruedThrough FROM Fine f WHERE f.status = :status AND f.accruedThrough < :today")
+    List<LocalDate> findAccrualDates(@Param("status") FineStatus status, @Param("today") LocalDate today);
+
+    // 4. 把计提到同一日期的罚款一起向前计提：一条条件更新处理任意数量的罚款，
+    //    where 中的日期条件使重复执行或与归还结清并发时不会重复计提
+    @Modifying
+    @Query("UPDATE Fine f SET f.amount = f.amount + :increment, f.overdueDays = f.overdueDays + :days, " +
+            "f.accruedThrough = :through WHERE f.status = :status AND f.accruedThrough = :from")
+    int accrue(@Param("from") LocalDate from,
+               @Param("through") LocalDate through,
+               @Param("days") int days,
+               @Param("increment") BigDecimal increment,
+               @Param("status") FineStatus status);
+
+    // 5. 用户未缴罚款总额
+    @Query("SELECT COALESCE(SUM(f.amount), 0) FROM Fine f WHERE f.user.id = :userId AND f.status IN :statuses")
+    BigDecimal sumBalanceByUserId(@Param("userId") Long userId, @Param("statuses") Collection<FineStatus> statuses);
+
+    // 6. 用户的罚款列表 (最新的在前)
+    @Query(FINE_DTO_SELECT + "WHERE f.user.id = :userId ORDER BY f.id DESC")
+    List<FineDto> findByUserId(@Param("userId") Long userId);
+
+    // 7. 按用户名查询，用于当前登录用户
+    @Query(FINE_DTO_SELECT + "WHERE f.user.username = :username ORDER BY f.id DESC")
+    List<FineDto> findByUsername(@Param("username") String username);
+
+    // 8. 加行锁读取罚款，缴纳时与归还结清、计提互斥
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT f FROM Fine f WHERE f.id = :id")
+    Optional<Fine> findByIdForUpdate(@Param("id") Long id);
+}
@@ -0,0 +1,335 @@
+package com.example.library.search;
+
+import com.example.library.entity.impl.Book;
+import com.example.library.repository.BookRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * 图书目录的内存倒排索引，覆盖书名、作者、出版社和 ISBN 四个字段。
+ * 每个词项记录包含它的图书 id 以及出现的字段 (位掩码)，查询时按字段权重和词项稀有度 (IDF) 打分排序。
+ * 索引在应用启动后于后台线程中从数据库构建，构建完成前 {@link #isReady()} 返回 false，
+ * 调用方应回退到数据库查询；之后由 BookService 的增删改在事务提交后增量维护。
+ */
+@Component
+public class BookSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(BookSearchIndex.class);
+
+    public static final int FIELD_TITLE = 1;
+    public static final int FIELD_AUTHOR = 1 << 1;
+    public static final int FIELD_PUBLISHER = 1 << 2;
+    public static final int FIELD_ISBN = 1 << 3;
+    public static final int ALL_FIELDS = FIELD_TITLE | FIELD_AUTHOR | FIELD_PUBLISHER | FIELD_ISBN;
+
+    private static final int MIN_PREFIX_LENGTH = 2;   // 过短的前缀会展开成大量词项，只做精确匹配
+    private static final int MAX_PREFIX_EXPANSION = 64; // 单个前缀单独保留倒排表的词项数量，其余词项合并为一个倒排表
+    private static final double PREFIX_PENALTY = 0.7;  // 前缀命中的得分低于完整单词命中
+
+    /**
+     * 查询子句：在指定字段中匹配一段文本，多个子句之间为 AND 关系。
+     */
+    public record Clause(String text, int fields) {
+    }
+
+    // 词项 -> (图书 id -> 出现字段位掩码)，有序以支持前缀查找
+    private final ConcurrentSkipListMap<String, Map<Long, Integer>> postings = new ConcurrentSkipListMap<>();
+    // 图书 id -> 该书的全部词项，用于更新或删除时撤销旧的倒排项
+    private final Map<Long, Set<String>> documentTerms = new ConcurrentHashMap<>();
+    // 全量构建期间被增量修改过的图书，构建线程跳过它们以免写回旧数据
+    private final Set<Long> touchedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+    private final BookRepository bookRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private volatile boolean ready;
+    private volatile boolean rebuilding;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${library.search.index.enabled:true}") // 关闭后检索回退为数据库 LIKE 查询
+    private boolean enabled;
+
+    public BookSearchIndex(BookRepository bookRepository, PlatformTransactionManager transactionManager) {
+        this.bookRepository = bookRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    public int size() {
+        return documentTerms.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildInBackground() {
+        if (!enabled) {
+            log.info("Book search index disabled, searches use database LIKE queries");
+            return;
+        }
+        Thread loader = new Thread(this::rebuild, "book-search-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * 从数据库全量重建索引。
+     */
+    public void rebuild() {
+        long start = System.nanoTime();
+        rebuilding = true;
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<Book> books = bookRepository.streamAllOrderById()) {
+                    books.forEach(book -> {
+                        indexFromRebuild(book);
+                        entityManager.detach(book);
+                    });
+                }
+            });
+            ready = true;
+            log.info("Book search index built: {} books, {} terms in {} ms",
+                    documentTerms.size(), postings.size(), (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.error("Failed to build book search index, searches keep using database queries", e);
+        } finally {
+            rebuilding = false;
+            touchedDuringRebuild.clear();
+        }
+    }
+
+    /**
+     * 新增或更新一本图书的索引。
+     */
+    public synchronized void index(Book book) {
+        if (rebuilding) {
+            touchedDuringRebuild.add(book.getId());
+        }
+        doIndex(book);
+    }
+
+    private synchronized void indexFromRebuild(Book book) {
+        if (!touchedDuringRebuild.contains(book.getId())) {
+            doIndex(book);
+        }
+    }
+
+    /**
+     * 从索引中删除一本图书。
+     */
+    public synchronized void remove(Long bookId) {
+        if (rebuilding) {
+            touchedDuringRebuild.add(bookId);
+        }
+        doRemove(bookId);
+    }
+
+    private void doRemove(Long bookId) {
+        Set<String> terms = documentTerms.remove(bookId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Long, Integer> docs = postings.get(term);
+            if (docs != null) {
+                docs.remove(bookId);
+                if (docs.isEmpty()) {
+                    postings.remove(term, docs);
+                }
+            }
+        }
+    }
+
+    private void doIndex(Book book) {
+        doRemove(book.getId());
+        Map<String, Integer> fieldsByTerm = new HashMap<>();
+        addField(fieldsByTerm, SearchTokenizer.tokenizeForIndex(book.getTitle()), FIELD_TITLE);
+        addField(fieldsByTerm, SearchTokenizer.tokenizeForIndex(book.getAuthor()), FIELD_AUTHOR);
+        addField(fieldsByTerm, SearchTokenizer.tokenizeForIndex(book.getPublisher()), FIELD_PUBLISHER);
+        String isbn = SearchTokenizer.normalizeIsbn(book.getIsbn());
+        if (isbn != null) {
+            fieldsByTerm.merge(isbn, FIELD_ISBN, (a, b) -> a | b);
+        }
+        for (Map.Entry<String, Integer> entry : fieldsByTerm.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), k -> new ConcurrentHashMap<>())
+                    .put(book.getId(), entry.getValue());
+        }
+        documentTerms.put(book.getId(), Set.copyOf(fieldsByTerm.keySet()));
+    }
+
+    private static void addField(Map<String, Integer> fieldsByTerm, Set<String> tokens, int field) {
+        for (String token : tokens) {
+            fieldsByTerm.merge(token, field, (a, b) -> a | b);
+        }
+    }
+
+    /**
+     * 执行检索，返回按相关度降序排列的图书 id。
+     * 所有子句中的所有查询词都必须命中 (AND)；拉丁单词支持前缀匹配。
+     * @param clauses 查询子句
+     * @param limit 最多返回的结果数
+     */
+    public List<Long> search(List<Clause> clauses, int limit) {
+        List<TermMatcher> matchers = new ArrayList<>();
+        for (Clause clause : clauses) {
+            List<SearchTokenizer.QueryTerm> terms = (clause.fields() & FIELD_ISBN) != 0 && looksLikeIsbn(clause.text())
+                    // ISBN (可带连字符) 作为一个整体按前缀匹配，而不是拆成几段数字
+                    ? List.of(new SearchTokenizer.QueryTerm(SearchTokenizer.normalizeIsbn(clause.text()), true))
+                    : SearchTokenizer.tokenizeForQuery(clause.text());
+            for (SearchTokenizer.QueryTerm term : terms) {
+                TermMatcher matcher = matcherFor(term, clause.fields());
+                if (matcher.postings.isEmpty()) {
+                    return Collections.emptyList(); // 有查询词完全不命中，AND 结果必为空
+                }
+                matchers.add(matcher);
+            }
+        }
+        if (matchers.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // 从最稀有的查询词开始，其余词只对已有候选做探测，避免展开高频词的整个倒排表
+        matchers.sort(Comparator.comparingInt(TermMatcher::documentFrequency));
+        int totalDocs = Math.max(1, documentTerms.size());
+        Map<Long, Double> scores = new HashMap<>();
+        TermMatcher first = matchers.get(0);
+        double firstIdf = idf(first.documentFrequency(), totalDocs);
+        for (Posting posting : first.postings) {
+            for (Map.Entry<Long, Integer> doc : posting.docs.entrySet()) {
+                double score = posting.score(doc.getValue(), first.fields) * firstIdf;
+                if (score > 0) {
+                    scores.merge(doc.getKey(), score, Math::max);
+                }
+            }
+        }
+        for (int i = 1; i < matchers.size() && !scores.isEmpty(); i++) {
+            TermMatcher matcher = matchers.get(i);
+            double idf = idf(matcher.documentFrequency(), totalDocs);
+            scores.entrySet().removeIf(entry -> {
+                double score = matcher.score(entry.getKey()) * idf;
+                if (score <= 0) {
+                    return true;
+                }
+                entry.setValue(entry.getValue() + score);
+                return false;
+            });
+        }
+
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private TermMatcher matcherFor(SearchTokenizer.QueryTerm term, int fields) {
+        List<Posting> matches = new ArrayList<>();
+        Map<Long, Integer> exact = postings.get(term.text());
+        if (exact != null) {
+            matches.add(new Posting(exact, 1.0));
+        }
+        if (term.prefix() && term.text().length() >= MIN_PREFIX_LENGTH) {
+            NavigableMap<String, Map<Long, Integer>> range =
+                    postings.subMap(term.text(), false, term.text() + Character.MAX_VALUE, false);
+            // 前缀下的词项全部参与匹配，否则排在后面的词项命中的图书会被 AND 漏掉；
+            // 超出 MAX_PREFIX_EXPANSION 的词项合并成一个倒排表，使候选打分时的探测次数保持有界
+            Map<Long, Integer> overflow = null;
+            int expanded = 0;
+            for (Map<Long, Integer> docs : range.values()) {
+                if (++expanded <= MAX_PREFIX_EXPANSION) {
+                    matches.add(new Posting(docs, PREFIX_PENALTY));
+                    continue;
+                }
+                if (overflow == null) {
+                    overflow = new HashMap<>();
+                }
+                for (Map.Entry<Long, Integer> doc : docs.entrySet()) {
+                    // 与分开保存时取最高分一致：同一本书保留在允许字段中权重最高的字段组合
+                    overflow.merge(doc.getKey(), doc.getValue(),
+                            (a, b) -> fieldWeight(a & fields) >= fieldWeight(b & fields) ? a : b);
+                }
+            }
+            if (overflow != null) {
+                matches.add(new Posting(overflow, PREFIX_PENALTY));
+            }
+        }
+        return new TermMatcher(matches, fields);
+    }
+
+    private static boolean looksLikeIsbn(String text) {
+        if (text == null) {
+            return false;
+        }
+        int digits = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isDigit(c)) {
+                digits++;
+            } else if (c != '-' && c != ' ' && c != 'x' && c != 'X') {
+                return false;
+            }
+        }
+        return digits >= 4;
+    }
+
+    private static double idf(int documentFrequency, int totalDocs) {
+        return Math.log(1 + (double) totalDocs / Math.max(1, documentFrequency));
+    }
+
+    private static double fieldWeight(int fieldMask) {
+        double weight = 0;
+        if ((fieldMask & FIELD_ISBN) != 0) weight += 4;
+        if ((fieldMask & FIELD_TITLE) != 0) weight += 3;
+        if ((fieldMask & FIELD_AUTHOR) != 0) weight += 2;
+        if ((fieldMask & FIELD_PUBLISHER) != 0) weight += 1;
+        return weight;
+    }
+
+    private record Posting(Map<Long, Integer> docs, double boost) {
+        double score(Integer fieldMask, int allowedFields) {
+            return fieldMask == null ? 0 : fieldWeight(fieldMask & allowedFields) * boost;
+        }
+    }
+
+    private record TermMatcher(List<Posting> postings, int fields) {
+        int documentFrequency() {
+            int df = 0;
+            for (Posting posting : postings) {
+                df += posting.docs.size();
+            }
+            return df;
+        }
+
+        double score(Long bookId) {
+            double best = 0;
+            for (Posting posting : postings) {
+                best = Math.max(best, posting.score(posting.docs.get(bookId), fields));
+            }
+            return best;
+        }
+    }
+}
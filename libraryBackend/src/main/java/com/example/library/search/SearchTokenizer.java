@@ -0,0 +1,131 @@
+package com.example.library.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 图书全文检索的分词器，同时支持中文 (CJK) 与拉丁文本。
+ * - 拉丁字母/数字：按非字母数字字符切分为单词并转为小写；
+ * - CJK 字符：没有空格分词，索引时同时生成单字 (unigram) 和相邻双字 (bigram)，
+ *   查询时用双字匹配，单个汉字的查询退化为单字匹配，从而获得接近子串匹配的效果。
+ */
+final class SearchTokenizer {
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * 查询词。prefix 为 true 时按前缀匹配索引中的词项。
+     */
+    record QueryTerm(String text, boolean prefix) {
+    }
+
+    /**
+     * 索引时使用的分词。
+     */
+    static Set<String> tokenizeForIndex(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        forEachRun(text, (run, cjk) -> {
+            if (cjk) {
+                for (int i = 0; i < run.length(); i++) {
+                    tokens.add(run.substring(i, i + 1));
+                    if (i + 1 < run.length()) {
+                        tokens.add(run.substring(i, i + 2));
+                    }
+                }
+            } else {
+                tokens.add(run);
+            }
+        });
+        return tokens;
+    }
+
+    /**
+     * 查询时使用的分词：拉丁单词按前缀匹配 (支持输入一半的单词)，CJK 按双字精确匹配。
+     */
+    static List<QueryTerm> tokenizeForQuery(String text) {
+        List<QueryTerm> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        Set<String> seen = new LinkedHashSet<>();
+        forEachRun(text, (run, cjk) -> {
+            if (cjk) {
+                if (run.length() == 1) {
+                    if (seen.add(run)) {
+                        terms.add(new QueryTerm(run, false));
+                    }
+                }
+                for (int i = 0; i + 1 < run.length(); i++) {
+                    String bigram = run.substring(i, i + 2);
+                    if (seen.add(bigram)) {
+                        terms.add(new QueryTerm(bigram, false));
+                    }
+                }
+            } else if (seen.add(run)) {
+                terms.add(new QueryTerm(run, true));
+            }
+        });
+        return terms;
+    }
+
+    /**
+     * ISBN 统一去掉连字符和空格后作为单个词项索引，方便按带或不带连字符的 ISBN 查找。
+     */
+    static String normalizeIsbn(String isbn) {
+        if (isbn == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(isbn.length());
+        for (int i = 0; i < isbn.length(); i++) {
+            char c = isbn.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    private interface RunConsumer {
+        void accept(String run, boolean cjk);
+    }
+
+    // 将文本切分为连续的 CJK 片段和拉丁单词片段
+    private static void forEachRun(String text, RunConsumer consumer) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        boolean startCjk = false;
+        int i = 0;
+        while (i < lower.length()) {
+            int cp = lower.codePointAt(i);
+            boolean cjk = isCjk(cp);
+            boolean word = cjk || Character.isLetterOrDigit(cp);
+            if (start >= 0 && (!word || cjk != startCjk)) {
+                consumer.accept(lower.substring(start, i), startCjk);
+                start = -1;
+            }
+            if (word && start < 0) {
+                start = i;
+                startCjk = cjk;
+            }
+            i += Character.charCount(cp);
+        }
+        if (start >= 0) {
+            consumer.accept(lower.substring(start), startCjk);
+        }
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -1,15 +1,85 @@
 package com.example.library.service;
 
 import com.example.library.dto.BookDto;
+import com.example.library.dto.BookImportResultDto;
+import com.example.library.dto.CursorPageDto;
+import com.example.library.dto.PopularBookDto;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface BookService {
+
+    /**
+     * 批量导入的输入格式。
+     */
+    enum ImportFormat { CSV, JSONL }
+
+    /**
+     * 热门图书排名方式：累计借出次数、最近 7/30 天借出次数，或按时间衰减的热度。
+     */
+    enum PopularityWindow { ALL_TIME, LAST_7_DAYS, LAST_30_DAYS, TRENDING }
+
+    /**
+     * 目录或单本图书的当前版本，用于 HTTP 条件请求。
+     * @param etag 强 ETag (含引号)
+     * @param lastModified 最后修改时间 (毫秒)
+     */
+    record Version(String etag, long lastModified) {
+    }
+
     BookDto createBook(BookDto bookDto);
     Optional<BookDto> getBookById(Long id);
     Optional<BookDto> getBookByIsbn(String isbn);
     List<BookDto> getAllBooks();
+
+    /**
+     * 整个图书目录 (列表、分页、检索结果) 的当前版本，不访问数据库。
+     * 任意图书新增、修改、删除或库存变化后版本都会改变。
+     */
+    Version getCatalogVersion();
+
+    /**
+     * 单本图书的当前版本，不访问数据库；图书不存在时同样返回一个版本。
+     */
+    Version getBookVersion(Long id);
+
+    /**
+     * 按 id 键集分页获取图书。
+     * @param afterId 上一页最后一本书的 id，为 null 时从头开始
+     * @param size 每页数量
+     */
+    CursorPageDto<BookDto> getBooksPage(Long afterId, int size);
+
+    /**
+     * 以流的方式逐本遍历整个图书目录，内存占用与目录规模无关。
+     * @param consumer 每本图书的处理回调 (在只读事务内被调用)
+     */
+    void streamAllBooks(Consumer<BookDto> consumer);
     Optional<BookDto> updateBook(Long id, BookDto bookDto);
     boolean deleteBook(Long id);
     List<BookDto> searchBooks(String title, String author);
-}
\ No newline at end of file
+
+    /**
+     * 在书名、作者、出版社和 ISBN 中做全文检索，结果按相关度排序。
+     * @param query 查询文本 (中文或拉丁文本，拉丁单词支持前缀匹配)
+     */
+    List<BookDto> fullTextSearch(String query);
+
+    /**
+     * 流式批量导入图书，ISBN 已存在或在输入中重复的行被跳过，校验失败的行被拒绝并记入报告。
+     * 数据按批提交，中途失败时已提交的批次会保留。
+     * @param input CSV (带表头) 或 JSON Lines 数据，UTF-8 编码
+     * @param format 输入格式
+     * @throws IllegalArgumentException 如果 CSV 表头缺少必需的列
+     */
+    BookImportResultDto importBooks(InputStream input, ImportFormat format);
+
+    /**
+     * 热门图书排行，数据来自内存中增量维护的排行榜，不做聚合查询。
+     * @param window 排名方式
+     * @param limit 返回数量
+     */
+    List<PopularBookDto> getPopularBooks(PopularityWindow window, int limit);
+}
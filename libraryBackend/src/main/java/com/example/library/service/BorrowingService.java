@@ -1,5 +1,9 @@
 package com.example.library.service; // 确保包名正确
 
+import com.example.library.dto.BorrowingHistoryPageDto;
+import com.example.library.dto.BorrowingRecordDto;
+import com.example.library.dto.CirculationBatchResultDto;
+import com.example.library.entity.impl.BorrowStatus;
 import com.example.library.entity.impl.BorrowingRecord; // 你的 BorrowingRecord 实体
 import java.util.List;
 
@@ -11,7 +15,7 @@ public interface BorrowingService {
      * @param bookId 图书ID
      * @return 创建的借阅记录
      * @throws IllegalArgumentException 如果用户或图书不存在
-     * @throws IllegalStateException 如果图书无库存、用户达到借阅上限、或已借阅此书未还等
+     * @throws IllegalStateException 如果图书无库存、用户达到借阅上限、已借阅此书未还、或未缴罚款达到借阅限制等
      */
     BorrowingRecord borrowBook(Long userId, Long bookId);
 
@@ -24,6 +28,25 @@ public interface BorrowingService {
      */
     BorrowingRecord returnBook(Long borrowingRecordId);
 
+    /**
+     * 批量借阅 (流通台一次扫描多本书)：用户、图书、借阅数量和已借情况整批只查询一次，
+     * 借阅上限和库存检查覆盖整个批次，所有写入在同一个事务中完成。
+     * 单本图书不满足条件时只记录该项失败，不影响其他图书。
+     * @param userId 用户ID
+     * @param bookIds 图书ID列表 (按扫描顺序处理)
+     * @return 每本图书的处理结果
+     * @throws IllegalArgumentException 如果用户不存在
+     * @throws IllegalStateException 如果用户未缴罚款达到借阅限制
+     */
+    CirculationBatchResultDto borrowBooks(Long userId, List<Long> bookIds);
+
+    /**
+     * 批量归还：借阅记录一次加载，所有归还在同一个事务中完成，每条记录单独给出结果。
+     * @param borrowingRecordIds 借阅记录ID列表
+     * @return 每条借阅记录的处理结果
+     */
+    CirculationBatchResultDto returnBooks(List<Long> borrowingRecordIds);
+
     /**
      * 用户续借图书
      * @param borrowingRecordId 借阅记录ID
@@ -58,19 +81,45 @@ public interface BorrowingService {
      * @return 该用户的借阅记录列表
      * @throws IllegalArgumentException 如果用户不存在
      */
-    List<BorrowingRecord> getUserBorrowingHistory(Long userId);
+    List<BorrowingRecordDto> getUserBorrowingHistory(Long userId);
+
+    /**
+     * 按用户名获取用户的借阅历史 (用于当前登录用户)
+     * @param username 用户名
+     * @return 该用户的借阅记录列表
+     * @throws IllegalArgumentException 如果用户不存在
+     */
+    List<BorrowingRecordDto> getUserBorrowingHistory(String username);
+
+    /**
+     * 分页获取用户的借阅历史：第一页附带当前借阅中、逾期与预约中的记录 (从内存读取)，
+     * 已结束的记录按借阅日期降序键集分页 (同一日期按 ID 降序)
+     * @param userId 用户ID
+     * @param status 只返回该状态的记录，为 null 时返回全部
+     * @param cursor 上一页返回的 nextCursor，为 null 时获取第一页
+     * @param size 每页的历史记录数
+     * @return 一页借阅历史
+     * @throws IllegalArgumentException 如果用户不存在或游标无效
+     */
+    BorrowingHistoryPageDto getUserBorrowingHistoryPage(Long userId, BorrowStatus status, String cursor, int size);
 
     /**
      * 查找所有已逾期且未归还的图书记录
      * @return 逾期借阅记录列表
      */
-    List<BorrowingRecord> findOverdueBooks();
+    List<BorrowingRecordDto> findOverdueBooks();
+
+    /**
+     * 按记录 ID 键集分页查找逾期未还的记录 (用户和图书已一并加载)
+     * @param afterId 上一页最后一条记录的ID，为 null 时从头开始
+     * @param limit 最多返回的记录数
+     * @return 按ID升序排列的逾期借阅记录
+     */
+    List<BorrowingRecordDto> findOverdueBooksPage(Long afterId, int limit);
 
     // --- 你可以根据需要添加更多方法 ---
     // 例如:
     // List<BorrowingRecord> getCurrentUserBorrowings(Long userId);
     // BorrowingRecord getBorrowingRecordById(Long recordId);
     // void processBookReturnAndNotifyNextReservation(Long borrowingRecordId);
-    // List<Fine> getUserUnpaidFines(Long userId);
-    // void payFine(Long fineId);
 }
\ No newline at end of file
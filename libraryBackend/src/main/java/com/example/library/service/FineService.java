@@ -0,0 +1,41 @@
+package com.example.library.service;
+
+import com.example.library.dto.FineDto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface FineService {
+
+    /**
+     * 获取用户的全部罚款 (最新的在前)
+     * @param userId 用户ID
+     * @return 罚款列表
+     * @throws IllegalArgumentException 如果用户不存在
+     */
+    List<FineDto> getUserFines(Long userId);
+
+    /**
+     * 按用户名获取用户的全部罚款 (用于当前登录用户)
+     * @param username 用户名
+     * @return 罚款列表
+     * @throws IllegalArgumentException 如果用户不存在
+     */
+    List<FineDto> getUserFines(String username);
+
+    /**
+     * 用户未缴罚款余额 (计提中 + 未缴纳)
+     * @param userId 用户ID
+     * @return 余额，没有罚款时为 0
+     */
+    BigDecimal getOutstandingBalance(Long userId);
+
+    /**
+     * 登记缴纳一笔罚款
+     * @param fineId 罚款ID
+     * @return 更新后的罚款
+     * @throws IllegalArgumentException 如果罚款不存在
+     * @throws IllegalStateException 如果图书尚未归还 (罚款仍在计提) 或罚款已缴纳
+     */
+    FineDto payFine(Long fineId);
+}
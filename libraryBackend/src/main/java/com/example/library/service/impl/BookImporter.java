@@ -0,0 +1,358 @@
+package com.example.library.service.impl;
+
+import com.example.library.dto.BookDto;
+import com.example.library.dto.BookImportResultDto;
+import com.example.library.entity.impl.Book;
+import com.example.library.repository.BookRepository;
+import com.example.library.search.BookSearchIndex;
+import com.example.library.service.BookService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 图书目录批量导入 (CSV 或 JSON Lines)。
+ * 输入按行流式解析，内存占用与文件大小无关 (已有 ISBN 集合除外)；
+ * 每行按 BookDto 的校验规则检查，ISBN 与预先加载的已有 ISBN 及文件中之前的行查重；
+ * 合格的行按 library.import.batch-size 分批用 JDBC 批量插入，每批一个事务。
+ * 图书主键为 IDENTITY，Hibernate 无法批量插入，因此这里绕过 JPA 直接写表；
+ * MySQL 驱动开启了 rewriteBatchedStatements (见 JdbcConfig)，每批会被改写为一条多行 INSERT。
+ */
+@Component
+public class BookImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(BookImporter.class);
+
+    private static final String INSERT_SQL =
+            "INSERT INTO books (title, author, isbn, publisher, price, quantity) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final int PROGRESS_LOG_INTERVAL = 50_000; // 每导入这么多行输出一次进度日志
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BookRepository bookRepository;
+    private final BookSearchIndex bookSearchIndex;
+    private final Validator validator;
+    private final ObjectReader bookReader;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${library.import.batch-size:1000}") // 每批插入的行数
+    private int batchSize;
+
+    @Value("${library.import.max-reported-rejections:1000}") // 结果报告中最多列出的被拒绝行
+    private int maxReportedRejections;
+
+    public BookImporter(JdbcTemplate jdbcTemplate, BookRepository bookRepository, BookSearchIndex bookSearchIndex,
+                        Validator validator, ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bookRepository = bookRepository;
+        this.bookSearchIndex = bookSearchIndex;
+        this.validator = validator;
+        this.bookReader = objectMapper.readerFor(BookDto.class);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 解析后的一行输入：book 与 error 二者之一为空。
+     */
+    private record Row(long line, BookDto book, String error) {
+    }
+
+    private interface RowReader {
+        /**
+         * @return 下一行，输入结束时返回 null
+         */
+        Row next() throws IOException;
+    }
+
+    public BookImportResultDto importBooks(InputStream input, BookService.ImportFormat format) {
+        long start = System.nanoTime();
+        BookImportResultDto result = new BookImportResultDto();
+        Set<String> knownIsbns = new HashSet<>(bookRepository.findAllIsbns());
+        List<Row> batch = new ArrayList<>(batchSize);
+        try (Reader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 1 << 16)) {
+            RowReader rows = format == BookService.ImportFormat.CSV ? new CsvRowReader(reader) : new JsonLinesRowReader(reader);
+            Row row;
+            while ((row = rows.next()) != null) {
+                result.setTotalRows(result.getTotalRows() + 1);
+                String error = row.error() != null ? row.error() : validate(row.book());
+                if (error != null) {
+                    reject(result, row, error);
+                    continue;
+                }
+                String isbn = row.book().getIsbn().trim();
+                row.book().setIsbn(isbn);
+                if (!knownIsbns.add(isbn)) {
+                    result.setDuplicates(result.getDuplicates() + 1);
+                    continue;
+                }
+                batch.add(row);
+                if (batch.size() >= batchSize) {
+                    flush(batch, result);
+                }
+            }
+            flush(batch, result);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read import data", e);
+        } finally {
+            long elapsedNanos = System.nanoTime() - start;
+            result.setElapsedMs(elapsedNanos / 1_000_000);
+            result.setRowsPerSecond(elapsedNanos == 0 ? 0 : result.getTotalRows() * 1e9 / elapsedNanos);
+        }
+        log.info("Book import finished: {} rows read, {} imported, {} duplicates, {} rejected in {} ms ({} rows/s)",
+                result.getTotalRows(), result.getImported(), result.getDuplicates(), result.getRejected(),
+                result.getElapsedMs(), Math.round(result.getRowsPerSecond()));
+        return result;
+    }
+
+    private void flush(List<Row> batch, BookImportResultDto result) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+            result.setImported(result.getImported() + batch.size());
+        } catch (DataIntegrityViolationException e) {
+            // 整批被数据库拒绝 (例如导入期间有其他请求新增了相同 ISBN 的图书，或字段超长)：逐行重试以找出出错的行
+            for (Row row : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insert(List.of(row)));
+                    result.setImported(result.getImported() + 1);
+                } catch (DataIntegrityViolationException rowError) {
+                    if (bookRepository.findByIsbn(row.book().getIsbn()).isPresent()) {
+                        result.setDuplicates(result.getDuplicates() + 1);
+                    } else {
+                        reject(result, row, "Rejected by database: " + rowError.getMostSpecificCause().getMessage());
+                    }
+                }
+            }
+        }
+        long imported = result.getImported();
+        if (imported / PROGRESS_LOG_INTERVAL != (imported - batch.size()) / PROGRESS_LOG_INTERVAL) {
+            log.info("Book import progress: {} rows read, {} imported", result.getTotalRows(), imported);
+        }
+        batch.clear();
+    }
+
+    private void insert(List<Row> rows) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, row) -> {
+            BookDto book = row.book();
+            ps.setString(1, book.getTitle());
+            ps.setString(2, book.getAuthor());
+            ps.setString(3, book.getIsbn());
+            ps.setString(4, book.getPublisher());
+            ps.setBigDecimal(5, book.getPrice());
+            ps.setInt(6, book.getQuantity());
+        });
+        // 读回生成的 id，提交后加入检索索引
+        List<Book> inserted = bookRepository.findByIsbnIn(rows.stream().map(row -> row.book().getIsbn()).toList());
+        TransactionHooks.afterCommit(() -> inserted.forEach(bookSearchIndex::index));
+    }
+
+    private String validate(BookDto book) {
+        Set<ConstraintViolation<BookDto>> violations = validator.validate(book);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream().map(ConstraintViolation::getMessage).sorted().collect(Collectors.joining("; "));
+    }
+
+    private void reject(BookImportResultDto result, Row row, String reason) {
+        result.setRejected(result.getRejected() + 1);
+        if (result.getRejections().size() < maxReportedRejections) {
+            String isbn = row.book() != null ? row.book().getIsbn() : null;
+            result.getRejections().add(new BookImportResultDto.RejectedRow(row.line(), isbn, reason));
+        }
+    }
+
+    /**
+     * JSON Lines：每行一个 BookDto 对象，空行被忽略。
+     */
+    private final class JsonLinesRowReader implements RowReader {
+        private final BufferedReader reader;
+        private long line;
+
+        JsonLinesRowReader(Reader reader) {
+            this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                try {
+                    BookDto book = bookReader.readValue(text);
+                    book.setId(null);
+                    return new Row(line, book, null);
+                } catch (JsonProcessingException e) {
+                    return new Row(line, null, "Malformed JSON: " + e.getOriginalMessage());
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * CSV (RFC 4180)：第一行为表头，列名不区分大小写，顺序任意；
+     * 必须包含 title、author、isbn、price、quantity 列，publisher 可选。
+     * 字段可用双引号包裹，引号内可包含逗号、换行和转义的双引号 ("")。
+     */
+    private static final class CsvRowReader implements RowReader {
+        private static final List<String> REQUIRED_COLUMNS = List.of("title", "author", "isbn", "price", "quantity");
+
+        private final Reader reader;
+        private final Map<String, Integer> columns = new HashMap<>();
+        private long line = 1;   // 当前读到的物理行号
+        private int pending = -2; // 预读的一个字符，-2 表示没有
+
+        CsvRowReader(Reader reader) throws IOException {
+            this.reader = reader;
+            List<String> header = readRecord();
+            if (header == null) {
+                throw new IllegalArgumentException("CSV input is empty");
+            }
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+            }
+            List<String> missing = REQUIRED_COLUMNS.stream().filter(c -> !columns.containsKey(c)).toList();
+            if (!missing.isEmpty()) {
+                throw new IllegalArgumentException("CSV header is missing columns: " + String.join(", ", missing));
+            }
+        }
+
+        @Override
+        public Row next() throws IOException {
+            List<String> fields;
+            long recordLine;
+            do {
+                recordLine = line;
+                fields = readRecord();
+                if (fields == null) {
+                    return null;
+                }
+            } while (fields.size() == 1 && fields.get(0).isBlank()); // 跳过空行
+
+            BookDto book = new BookDto();
+            book.setTitle(field(fields, "title"));
+            book.setAuthor(field(fields, "author"));
+            book.setIsbn(field(fields, "isbn"));
+            book.setPublisher(field(fields, "publisher"));
+            try {
+                String price = field(fields, "price");
+                book.setPrice(price == null ? null : new BigDecimal(price));
+            } catch (NumberFormatException e) {
+                return new Row(recordLine, book, "Invalid price: " + field(fields, "price"));
+            }
+            try {
+                String quantity = field(fields, "quantity");
+                book.setQuantity(quantity == null ? null : Integer.valueOf(quantity));
+            } catch (NumberFormatException e) {
+                return new Row(recordLine, book, "Invalid quantity: " + field(fields, "quantity"));
+            }
+            return new Row(recordLine, book, null);
+        }
+
+        private String field(List<String> fields, String column) {
+            Integer index = columns.get(column);
+            if (index == null || index >= fields.size()) {
+                return null;
+            }
+            String value = fields.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        /**
+         * 读取一条记录 (可能跨多行)，输入结束时返回 null。
+         */
+        private List<String> readRecord() throws IOException {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        break; // 未闭合的引号，按已读内容结束
+                    }
+                    if (c == '"') {
+                        int next = read();
+                        if (next == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            c = next;
+                            continue;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.isEmpty()) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == '\r' || c == -1) {
+                    if (c == '\r') {
+                        int next = read();
+                        if (next != '\n') {
+                            pending = next;
+                        }
+                    }
+                    if (c != -1) {
+                        line++;
+                    }
+                    break;
+                } else {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+
+        private int read() throws IOException {
+            if (pending != -2) {
+                int c = pending;
+                pending = -2;
+                return c;
+            }
+            return reader.read();
+        }
+    }
+}
@@ -1,41 +1,63 @@
 package com.example.library.service.impl;
 
 import com.example.library.dto.BookDto;
+import com.example.library.dto.BookImportResultDto;
+import com.example.library.dto.CursorPageDto;
+import com.example.library.dto.PopularBookDto;
 import com.example.library.entity.impl.Book;
+import com.example.library.mapper.BookMapper;
 import com.example.library.repository.BookRepository;
+import com.example.library.search.BookSearchIndex;
 import com.example.library.service.BookService;
-import org.springframework.beans.BeanUtils; // Simple property copying
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Transactional // Ensures all methods run within a transaction
 public class BookServiceImpl implements BookService {
 
     private final BookRepository bookRepository;
+    private final BookStockCache bookStockCache;
+    private final BookSearchIndex bookSearchIndex;
+    private final BookImporter bookImporter;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final EntityCache entityCache;
+    private final CatalogVersions catalogVersions;
 
-    @Autowired
-    public BookServiceImpl(BookRepository bookRepository) {
-        this.bookRepository = bookRepository;
-    }
+    @Value("${library.search.max-results:200}") // Upper bound on search results returned by the index
+    private int maxSearchResults;
 
-    // Basic DTO to Entity and Entity to DTO mappers
-    // In a larger app, consider using a mapping library like MapStruct
-    private BookDto convertToDto(Book book) {
-        BookDto bookDto = new BookDto();
-        BeanUtils.copyProperties(book, bookDto);
-        return bookDto;
-    }
+    @PersistenceContext
+    private EntityManager entityManager;
 
-    private Book convertToEntity(BookDto bookDto) {
-        Book book = new Book();
-        BeanUtils.copyProperties(bookDto, book);
-        return book;
+    @Autowired
+    public BookServiceImpl(BookRepository bookRepository, BookStockCache bookStockCache, BookSearchIndex bookSearchIndex,
+                           BookImporter bookImporter, PopularityLeaderboard popularityLeaderboard, EntityCache entityCache,
+                           CatalogVersions catalogVersions) {
+        this.bookRepository = bookRepository;
+        this.bookStockCache = bookStockCache;
+        this.bookSearchIndex = bookSearchIndex;
+        this.bookImporter = bookImporter;
+        this.popularityLeaderboard = popularityLeaderboard;
+        this.entityCache = entityCache;
+        this.catalogVersions = catalogVersions;
     }
 
     @Override
@@ -43,31 +65,73 @@ public class BookServiceImpl implements BookService {
         if (bookRepository.findByIsbn(bookDto.getIsbn()).isPresent()) {
             throw new IllegalArgumentException("Book with ISBN " + bookDto.getIsbn() + " already exists.");
         }
-        Book book = convertToEntity(bookDto);
+        Book book = BookMapper.toEntity(bookDto);
         book.setId(null); // Ensure it's a new entity
-        return convertToDto(bookRepository.save(book));
+        Book savedBook = bookRepository.save(book);
+        TransactionHooks.afterCommit(() -> bookSearchIndex.index(savedBook));
+        entityCache.bookChanged(savedBook.getId()); // Nothing cached yet, but bumps the catalog and book versions
+        return BookMapper.toDto(savedBook);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Optional<BookDto> getBookById(Long id) {
-        return bookRepository.findById(id).map(this::convertToDto);
+        return entityCache.findBook(id).map(BookMapper::toDto);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Optional<BookDto> getBookByIsbn(String isbn) {
-        return bookRepository.findByIsbn(isbn).map(this::convertToDto);
+        return entityCache.findBookByIsbn(isbn).map(BookMapper::toDto);
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<BookDto> getAllBooks() {
         return bookRepository.findAll().stream()
-                .map(this::convertToDto)
+                .map(BookMapper::toDto)
                 .collect(Collectors.toList());
     }
 
+    // Versions live in memory: no transaction, so a 304 never borrows a connection
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Version getCatalogVersion() {
+        return catalogVersions.catalog();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Version getBookVersion(Long id) {
+        return catalogVersions.book(id);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageDto<BookDto> getBooksPage(Long afterId, int size) {
+        // Fetch one extra row to know whether another page exists without a COUNT query
+        List<Book> books = bookRepository.findByIdGreaterThanOrderByIdAsc(
+                afterId == null ? 0L : afterId, PageRequest.of(0, size + 1));
+        boolean hasMore = books.size() > size;
+        List<BookDto> items = books.stream()
+                .limit(size)
+                .map(BookMapper::toDto)
+                .collect(Collectors.toList());
+        Long nextCursor = hasMore ? items.get(items.size() - 1).getId() : null;
+        return new CursorPageDto<>(items, nextCursor, hasMore);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllBooks(Consumer<BookDto> consumer) {
+        try (Stream<Book> books = bookRepository.streamAllOrderById()) {
+            books.forEach(book -> {
+                consumer.accept(BookMapper.toDto(book));
+                entityManager.detach(book); // Keep the persistence context from growing with the catalog
+            });
+        }
+    }
+
     @Override
     public Optional<BookDto> updateBook(Long id, BookDto bookDto) {
         return bookRepository.findById(id)
@@ -78,8 +142,12 @@ public class BookServiceImpl implements BookService {
                             throw new IllegalArgumentException("Another book with ISBN " + bookDto.getIsbn() + " already exists.");
                         }
                     }
-                    BeanUtils.copyProperties(bookDto, existingBook, "id"); // Don't copy id
-                    return convertToDto(bookRepository.save(existingBook));
+                    BookMapper.updateEntity(bookDto, existingBook); // Everything except the id
+                    bookStockCache.evict(id); // Quantity may have been restocked
+                    entityCache.bookChanged(id);
+                    Book savedBook = bookRepository.save(existingBook);
+                    TransactionHooks.afterCommit(() -> bookSearchIndex.index(savedBook));
+                    return BookMapper.toDto(savedBook);
                 });
     }
 
@@ -87,6 +155,9 @@ public class BookServiceImpl implements BookService {
     public boolean deleteBook(Long id) {
         if (bookRepository.existsById(id)) {
             bookRepository.deleteById(id);
+            bookStockCache.evict(id);
+            entityCache.bookChanged(id);
+            TransactionHooks.afterCommit(() -> bookSearchIndex.remove(id));
             return true;
         }
         return false;
@@ -95,16 +166,88 @@ public class BookServiceImpl implements BookService {
     @Override
     @Transactional(readOnly = true)
     public List<BookDto> searchBooks(String title, String author) {
+        if (bookSearchIndex.isReady()) {
+            List<BookSearchIndex.Clause> clauses = new ArrayList<>();
+            if (title != null && !title.isEmpty()) {
+                clauses.add(new BookSearchIndex.Clause(title, BookSearchIndex.FIELD_TITLE));
+            }
+            if (author != null && !author.isEmpty()) {
+                clauses.add(new BookSearchIndex.Clause(author, BookSearchIndex.FIELD_AUTHOR));
+            }
+            if (!clauses.isEmpty()) {
+                return findAllInOrder(bookSearchIndex.search(clauses, maxSearchResults));
+            }
+            return getAllBooks();
+        }
+        // Index not built (yet) or disabled: fall back to LIKE queries
         if (title != null && !title.isEmpty()) {
             return bookRepository.findByTitleContainingIgnoreCase(title).stream()
-                    .map(this::convertToDto)
+                    .map(BookMapper::toDto)
                     .collect(Collectors.toList());
         }
         if (author != null && !author.isEmpty()) {
             return bookRepository.findByAuthorContainingIgnoreCase(author).stream()
-                    .map(this::convertToDto)
+                    .map(BookMapper::toDto)
                     .collect(Collectors.toList());
         }
         return getAllBooks(); // Or return empty list if no criteria provided
     }
-}
\ No newline at end of file
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BookDto> fullTextSearch(String query) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        if (bookSearchIndex.isReady()) {
+            return findAllInOrder(bookSearchIndex.search(
+                    List.of(new BookSearchIndex.Clause(query, BookSearchIndex.ALL_FIELDS)), maxSearchResults));
+        }
+        Map<Long, BookDto> results = new LinkedHashMap<>();
+        bookRepository.findByTitleContainingIgnoreCase(query).forEach(b -> results.put(b.getId(), BookMapper.toDto(b)));
+        bookRepository.findByAuthorContainingIgnoreCase(query).forEach(b -> results.putIfAbsent(b.getId(), BookMapper.toDto(b)));
+        bookRepository.findByIsbn(query).ifPresent(b -> results.putIfAbsent(b.getId(), BookMapper.toDto(b)));
+        return new ArrayList<>(results.values());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PopularBookDto> getPopularBooks(PopularityWindow window, int limit) {
+        List<PopularityLeaderboard.Ranked> ranked = popularityLeaderboard.top(window, limit);
+        Map<Long, BookDto> books = findAllInOrder(ranked.stream().map(PopularityLeaderboard.Ranked::bookId).toList())
+                .stream().collect(Collectors.toMap(BookDto::getId, b -> b));
+        List<PopularBookDto> result = new ArrayList<>();
+        for (PopularityLeaderboard.Ranked entry : ranked) {
+            BookDto book = books.get(entry.bookId());
+            if (book != null) { // deleted since it was ranked
+                result.add(new PopularBookDto(result.size() + 1, entry.score(), book));
+            }
+        }
+        return result;
+    }
+
+    // Load the ranked ids in one IN query and keep the index's ranking order;
+    // stock and other columns always come from the database, never from the index
+    private List<BookDto> findAllInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Book> byId = new LinkedHashMap<>();
+        bookRepository.findAllById(ids).forEach(b -> byId.put(b.getId(), b));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .map(BookMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // Each batch commits in its own transaction
+    public BookImportResultDto importBooks(InputStream input, ImportFormat format) {
+        try {
+            return bookImporter.importBooks(input, format);
+        } finally {
+            catalogVersions.catalogChanged(); // Once for the whole import, even if it stopped part way
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.library.service.impl;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 图书库存的内存快速拒绝缓存。
+ * 数据库中的条件更新才是库存的唯一权威来源；这里只记录 "最近一次确认已无库存" 的图书，
+ * 让热门图书售罄后的借阅请求无需访问数据库即可被拒绝。
+ * 标记带有有效期，过期后重新以数据库为准，避免多实例部署时其他节点的归还无法及时生效。
+ */
+@Component
+public class BookStockCache {
+
+    private final ConcurrentMap<Long, Long> soldOutUntil = new ConcurrentHashMap<>();
+
+    @Value("${library.stock.sold-out-ttl-ms:5000}") // 售罄标记的有效期 (毫秒)
+    private long soldOutTtlMs;
+
+    /**
+     * 判断图书是否在近期被确认售罄。
+     * @param bookId 图书ID
+     * @return true 表示可以直接拒绝借阅
+     */
+    public boolean isKnownSoldOut(Long bookId) {
+        Long until = soldOutUntil.get(bookId);
+        if (until == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() >= until) {
+            soldOutUntil.remove(bookId, until);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 数据库条件扣减失败后调用，标记图书已售罄。
+     */
+    public void markSoldOut(Long bookId) {
+        soldOutUntil.put(bookId, System.currentTimeMillis() + soldOutTtlMs);
+    }
+
+    /**
+     * 库存增加 (归还、管理员修改库存) 或图书被删除后调用，清除售罄标记。
+     */
+    public void evict(Long bookId) {
+        soldOutUntil.remove(bookId);
+    }
+}
@@ -1,28 +1,51 @@
 package com.example.library.service.impl;
 
+import com.example.library.audit.CirculationEvent;
+import com.example.library.audit.CirculationEventLog;
+import com.example.library.dto.BorrowingHistoryPageDto;
+import com.example.library.dto.BorrowingRecordDto;
+import com.example.library.dto.CirculationBatchResultDto;
 import com.example.library.entity.impl.Book; // 你的 Book 实体
 import com.example.library.entity.impl.User; // 你的 User 实体
 import com.example.library.entity.impl.BorrowingRecord; // 你的 BorrowingRecord 实体
 import com.example.library.entity.impl.BorrowStatus;   // 你的 BorrowStatus 枚举
+import com.example.library.entity.impl.Fine;
+import com.example.library.entity.impl.FineStatus;
+import com.example.library.mapper.BorrowingRecordMapper;
+import com.example.library.monitor.MetricsRegistry;
 import com.example.library.repository.BookRepository;
 import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.FineRepository;
 import com.example.library.repository.UserRepository;
 import com.example.library.service.BorrowingService;
-// import com.example.library.service.FineService; // 如果你创建了单独的罚款服务
 // import com.example.library.service.NotificationService; // 如果你创建了通知服务 (例如邮件)
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value; // 用于从配置文件读取参数
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 @Service
 @Transactional // 默认情况下，所有公共方法都将在事务中运行
@@ -30,10 +53,39 @@ public class BorrowingServiceImpl implements BorrowingService {
 
     private static final Logger log = LoggerFactory.getLogger(BorrowingServiceImpl.class);
 
+    /**
+     * 借阅被拒绝的原因，作为 library_borrow_rejections_total 的 reason 标签。
+     */
+    private enum BorrowRejection {
+        NO_STOCK("no_stock"),
+        LIMIT_REACHED("limit_reached"),
+        ALREADY_BORROWED("already_borrowed"),
+        UNPAID_FINES("unpaid_fines");
+
+        final String tag;
+
+        BorrowRejection(String tag) {
+            this.tag = tag;
+        }
+    }
+
     private final BorrowingRecordRepository borrowingRecordRepository;
     private final UserRepository userRepository;
     private final BookRepository bookRepository;
-    // private final FineService fineService; // 可选注入
+    private final BookStockCache bookStockCache;
+    private final OverdueScheduler overdueScheduler;
+    private final ReservationQueue reservationQueue;
+    private final PopularityLeaderboard popularityLeaderboard;
+    private final UserLoanStateCache userLoanStateCache;
+    private final EntityCache entityCache;
+    private final CirculationEventLog circulationEventLog;
+    private final FineRepository fineRepository;
+    private final FineBalanceCache fineBalanceCache;
+    private final UserHistoryReadModel userHistoryReadModel;
+    private final TransactionTemplate transactionTemplate; // 借阅、预约在取得用户锁之后开启的事务
+    private final Map<BorrowRejection, LongAdder> rejections = new EnumMap<>(BorrowRejection.class);
+    @PersistenceContext
+    private EntityManager entityManager;
     // private final NotificationService notificationService; // 可选注入
 
     // 从 application.properties 读取配置值
@@ -46,6 +98,9 @@ public class BorrowingServiceImpl implements BorrowingService {
     @Value("${library.fine.daily-rate:0.50}") // 每日罚款费率，可配置，默认为0.50
     private BigDecimal dailyFineRate;
 
+    @Value("${library.fine.borrow-block-threshold:10.00}") // 未缴罚款达到该金额时不能借阅，0 表示不限制
+    private BigDecimal fineBlockThreshold;
+
     @Value("${library.renew.max-count:1}") // 最大续借次数
     private int maxRenewals;
 
@@ -59,80 +114,149 @@ public class BorrowingServiceImpl implements BorrowingService {
     @Autowired
     public BorrowingServiceImpl(BorrowingRecordRepository borrowingRecordRepository,
                                 UserRepository userRepository,
-                                BookRepository bookRepository
-            /*,FineService fineService, NotificationService notificationService (可选注入) */) {
+                                BookRepository bookRepository,
+                                BookStockCache bookStockCache,
+                                OverdueScheduler overdueScheduler,
+                                ReservationQueue reservationQueue,
+                                PopularityLeaderboard popularityLeaderboard,
+                                UserLoanStateCache userLoanStateCache,
+                                EntityCache entityCache,
+                                CirculationEventLog circulationEventLog,
+                                FineRepository fineRepository,
+                                FineBalanceCache fineBalanceCache,
+                                UserHistoryReadModel userHistoryReadModel,
+                                MetricsRegistry metricsRegistry,
+                                PlatformTransactionManager transactionManager
+            /*, NotificationService notificationService (可选注入) */) {
         this.borrowingRecordRepository = borrowingRecordRepository;
         this.userRepository = userRepository;
         this.bookRepository = bookRepository;
-        // this.fineService = fineService;
+        this.bookStockCache = bookStockCache;
+        this.overdueScheduler = overdueScheduler;
+        this.reservationQueue = reservationQueue;
+        this.popularityLeaderboard = popularityLeaderboard;
+        this.userLoanStateCache = userLoanStateCache;
+        this.entityCache = entityCache;
+        this.circulationEventLog = circulationEventLog;
+        this.fineRepository = fineRepository;
+        this.fineBalanceCache = fineBalanceCache;
+        this.userHistoryReadModel = userHistoryReadModel;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (BorrowRejection reason : BorrowRejection.values()) {
+            rejections.put(reason, metricsRegistry.counter("library_borrow_rejections_total",
+                    "Borrow requests rejected by a circulation rule", "reason", reason.tag));
+        }
         // this.notificationService = notificationService;
     }
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // 事务在取得用户锁之后才开启，见 inUserLock
     public BorrowingRecord borrowBook(Long userId, Long bookId) {
-        log.info("Attempting to borrow book ID: {} for user ID: {}", bookId, userId);
+        return inUserLock(userId, () -> doBorrowBook(userId, bookId));
+    }
 
-        User user = userRepository.findById(userId)
+    private BorrowingRecord doBorrowBook(Long userId, Long bookId) {
+        log.debug("Attempting to borrow book ID: {} for user ID: {}", bookId, userId);
+        long loanTicket = userLoanStateCache.ticket(userId);
+        long fineTicket = fineBalanceCache.ticket(userId);
+
+        // 0. 近期已确认售罄的图书直接拒绝，不访问数据库 (为该用户保留了图书的情况除外)
+        boolean holding = reservationQueue.isHolding(bookId, userId);
+        if (!holding && bookStockCache.isKnownSoldOut(bookId)) {
+            log.warn("Borrow attempt rejected for book ID {}: No stock available (cached)", bookId);
+            reject(BorrowRejection.NO_STOCK);
+            throw new IllegalStateException("图书已无库存，无法借阅 (ID: " + bookId + ")。");
+        }
+
+        // 用户和图书来自实体缓存；缓存中的库存可能已过时，因此不在这里判断库存，由 takeStock 的条件扣减决定
+        User user = entityCache.findUser(userId)
                 .orElseThrow(() -> {
                     log.warn("Borrow attempt failed: User not found with ID {}", userId);
                     return new IllegalArgumentException("用户不存在 (ID: " + userId + ")");
                 });
-        Book book = bookRepository.findById(bookId)
+        Book book = entityCache.findBook(bookId)
                 .orElseThrow(() -> {
                     log.warn("Borrow attempt failed: Book not found with ID {}", bookId);
                     return new IllegalArgumentException("图书不存在 (ID: " + bookId + ")");
                 });
 
-        // 1. 检查图书库存
-        if (book.getQuantity() <= 0) {
-            log.warn("Borrow attempt failed for book '{}' (ID: {}): No stock available", book.getTitle(), bookId);
-            throw new IllegalStateException("《" + book.getTitle() + "》已无库存，无法借阅。");
-        }
+        // 1. 检查图书库存：由第 0 步的售罄标记和 takeStock 中的条件扣减判断
 
-        // 2. 检查用户借阅限制
-        long currentBorrows = borrowingRecordRepository.countByUserAndStatusIn(user,
-                List.of(BorrowStatus.BORROWED, BorrowStatus.OVERDUE));
-        if (currentBorrows >= maxBorrowCountPerUser) {
+        // 2. 检查用户借阅限制 (与第 4 步一起由用户借阅状态缓存判断，通过时占用一个借阅名额直到事务结束)
+        UserLoanStateCache.LoanState loans = userLoanStateCache.get(userId, loanTicket);
+        UserLoanStateCache.Claim claim = userLoanStateCache.claimLoan(loans, bookId, maxBorrowCountPerUser);
+        if (claim == UserLoanStateCache.Claim.LIMIT_REACHED) {
             log.warn("Borrow attempt failed for user '{}' (ID: {}): Max borrow count ({}) reached", user.getUsername(), userId, maxBorrowCountPerUser);
+            reject(BorrowRejection.LIMIT_REACHED);
             throw new IllegalStateException("用户已达到最大借阅数量 (" + maxBorrowCountPerUser + "本)。");
         }
 
-        // 3. (可选) 检查用户是否有未处理的严重罚款
-        // if (fineService != null && fineService.hasUnpaidSignificantFines(userId)) {
-        //     log.warn("Borrow attempt failed for user '{}' (ID: {}): Has unpaid significant fines", user.getUsername(), userId);
-        //     throw new IllegalStateException("用户有未处理的严重罚款，请先处理。");
-        // }
+        // 3. 检查用户是否有未处理的严重罚款 (余额来自罚款余额缓存)
+        if (hasUnpaidSignificantFines(userId, fineTicket)) {
+            log.warn("Borrow attempt failed for user '{}' (ID: {}): Has unpaid significant fines", user.getUsername(), userId);
+            reject(BorrowRejection.UNPAID_FINES);
+            throw new IllegalStateException("用户有未处理的严重罚款，请先处理。");
+        }
 
         // 4. 检查用户是否已借阅此书且未归还
-        if (borrowingRecordRepository.existsByUserAndBookAndStatusIn(user, book, List.of(BorrowStatus.BORROWED, BorrowStatus.OVERDUE))) {
+        if (claim == UserLoanStateCache.Claim.ALREADY_BORROWED) {
             log.warn("Borrow attempt failed for user '{}' (ID: {}): Book '{}' (ID: {}) already borrowed and not returned", user.getUsername(), userId, book.getTitle(), bookId);
+            reject(BorrowRejection.ALREADY_BORROWED);
             throw new IllegalStateException("用户已借阅《" + book.getTitle() + "》且尚未归还。");
         }
 
-        // (可选) 检查这本书是否被当前用户预约，并且预约有效
-        Optional<BorrowingRecord> existingReservation = borrowingRecordRepository.findByUserAndBookAndStatus(user, book, BorrowStatus.RESERVED);
-        if (existingReservation.isPresent()) {
-            // 如果是被当前用户预约的，可以处理为借阅，并更新预约状态或删除预约记录
-            BorrowingRecord reservationRecord = existingReservation.get();
-            // 检查预约是否仍然有效 (例如，未过期)
-            if (reservationRecord.getReservationExpiryDate() != null && LocalDate.now().isAfter(reservationRecord.getReservationExpiryDate())) {
+        // 5. 检查这本书是否被当前用户预约 (只有缓存显示有预约时才查询预约记录)
+        BorrowingRecord reservationRecord = loans.hasReserved(bookId)
+                ? borrowingRecordRepository.findByUserAndBookAndStatus(user, book, BorrowStatus.RESERVED).orElse(null)
+                : null;
+        return checkout(user, book, reservationRecord);
+    }
+
+    /**
+     * 借阅数量、重复借阅等检查通过后借出一本书：用户有该书的预约时转换预约，否则扣减库存并创建借阅记录。
+     * 抛出 IllegalStateException 时不会留下库存或记录的写入，批量借阅据此逐项失败而不必回滚整个批次。
+     * @param reservationRecord 用户对这本书的 RESERVED 记录，没有时为 null
+     */
+    private BorrowingRecord checkout(User user, Book book, BorrowingRecord reservationRecord) {
+        Long userId = user.getId();
+        Long bookId = book.getId();
+        if (reservationRecord != null) {
+            if (reservationRecord.getReservationExpiryDate() == null) {
+                // 仍在排队：与普通借阅一样扣减库存 (先锁图书行再锁预约行，与队列提升的加锁顺序一致)
+                takeStock(book);
+                entityManager.refresh(reservationRecord, LockModeType.PESSIMISTIC_WRITE);
+                if (reservationRecord.getStatus() != BorrowStatus.RESERVED) {
+                    reservationQueue.releaseCopy(bookId); // 交还刚扣减的库存
+                    throw new IllegalStateException("预约状态已变化，请重试。");
+                }
+                if (reservationRecord.getReservationExpiryDate() != null) {
+                    // 刚刚被队列提升并保留了一本，多扣的库存交还给队列
+                    reservationQueue.releaseCopy(bookId);
+                    reservationQueue.holdEndedAfterCommit(bookId, userId);
+                } else {
+                    reservationQueue.removeAfterCommit(bookId, reservationRecord.getId());
+                }
+                log.debug("User '{}' is borrowing a reserved book '{}'", user.getUsername(), book.getTitle());
+                return convertReservationToBorrowing(reservationRecord);
+            }
+
+            // 已为该用户保留了一本：锁定预约记录后再确认状态，避免与过期清理、取消并发
+            entityManager.refresh(reservationRecord, LockModeType.PESSIMISTIC_WRITE);
+            if (reservationRecord.getStatus() != BorrowStatus.RESERVED) {
+                throw new IllegalStateException("预约状态已变化，请重试。");
+            }
+            reservationQueue.holdEndedAfterCommit(bookId, userId);
+            if (LocalDate.now().isAfter(reservationRecord.getReservationExpiryDate())) {
                 log.warn("Reservation for book '{}' by user '{}' has expired.", book.getTitle(), user.getUsername());
                 reservationRecord.setStatus(BorrowStatus.RESERVATION_EXPIRED);
                 borrowingRecordRepository.save(reservationRecord);
-                // 这里可以选择继续允许借阅（如果还有库存），或者提示预约已过期
-                // throw new IllegalStateException("您的预约已过期，请重新预约或借阅。");
+                userLoanStateCache.reservationEndedAfterCommit(userId, reservationRecord.getId());
+                publishAfterCommit(CirculationEvent.Type.EXPIRE, reservationRecord, 0);
+                reservationQueue.releaseCopy(bookId); // 保留的图书交给下一个预约，然后按普通借阅继续
             } else {
-                // 有效预约，更新为已借阅
-                log.info("User '{}' is borrowing a reserved book '{}'", user.getUsername(), book.getTitle());
-                reservationRecord.setStatus(BorrowStatus.BORROWED); // 或者删除预约记录，新建借阅记录
-                reservationRecord.setBorrowDate(LocalDateTime.now());
-                reservationRecord.setDueDate(LocalDate.now().plusDays(defaultBorrowDays));
-                reservationRecord.setReservationDate(null); // 清除预约相关日期
-                reservationRecord.setReservationExpiryDate(null);
-
-                book.setQuantity(book.getQuantity() - 1);
-                bookRepository.save(book);
-                return borrowingRecordRepository.save(reservationRecord);
+                // 有效保留，图书已在预约时从库存中扣除，直接借出
+                log.debug("User '{}' is borrowing a held book '{}'", user.getUsername(), book.getTitle());
+                return convertReservationToBorrowing(reservationRecord);
             }
         }
         // (可选) 检查这本书是否被其他用户预约 (如果设置了严格的预约优先规则)
@@ -150,18 +274,17 @@ public class BorrowingServiceImpl implements BorrowingService {
         newRecord.setDueDate(LocalDate.now().plusDays(defaultBorrowDays));
         newRecord.setStatus(BorrowStatus.BORROWED);
 
-        book.setQuantity(book.getQuantity() - 1);
-        bookRepository.save(book);
+        takeStock(book);
 
         BorrowingRecord savedRecord = borrowingRecordRepository.save(newRecord);
-        log.info("Book '{}' (ID: {}) successfully borrowed by user '{}' (ID: {}). Record ID: {}",
-                book.getTitle(), bookId, user.getUsername(), userId, savedRecord.getId());
+        trackDueDate(savedRecord);
+        recordBorrow(savedRecord);
         return savedRecord;
     }
 
     @Override
     public BorrowingRecord returnBook(Long borrowingRecordId) {
-        log.info("Attempting to return book for borrowing record ID: {}", borrowingRecordId);
+        log.debug("Attempting to return book for borrowing record ID: {}", borrowingRecordId);
         BorrowingRecord record = borrowingRecordRepository.findById(borrowingRecordId)
                 .orElseThrow(() -> {
                     log.warn("Return attempt failed: Borrowing record not found with ID {}", borrowingRecordId);
@@ -172,45 +295,244 @@ public class BorrowingServiceImpl implements BorrowingService {
             log.warn("Return attempt failed for record ID {}: Book already returned", borrowingRecordId);
             throw new IllegalStateException("该书已归还。");
         }
+        if (record.getStatus() != BorrowStatus.BORROWED && record.getStatus() != BorrowStatus.OVERDUE) {
+            // 预约记录没有借阅日期和应还日期，也不占用库存
+            log.warn("Return attempt failed for record ID {}: status is {}", borrowingRecordId, record.getStatus());
+            throw new IllegalStateException("该记录不是借阅记录，无法归还。");
+        }
+        return checkIn(record);
+    }
 
+    /**
+     * 归还一条借阅中或逾期的借阅记录 (调用方已校验状态)。
+     */
+    private BorrowingRecord checkIn(BorrowingRecord record) {
         record.setReturnDate(LocalDateTime.now());
         record.setStatus(BorrowStatus.RETURNED);
 
         Book book = record.getBook();
-        book.setQuantity(book.getQuantity() + 1); // 归还后库存增加
-        bookRepository.save(book);
+        reservationQueue.releaseCopy(book.getId()); // 归还的图书优先保留给排队中的预约，否则放回库存
+        Long recordId = record.getId();
+        TransactionHooks.afterCommit(() -> overdueScheduler.untrack(recordId));
+        userLoanStateCache.loanEndedAfterCommit(record.getUser().getId(), recordId);
 
-        // 计算并应用罚款
-        calculateAndApplyFine(record);
+        // 罚款计提到归还当天并转为待缴纳
+        calculateAndApplyFine(record, record.getReturnDate().toLocalDate());
 
         BorrowingRecord savedRecord = borrowingRecordRepository.save(record);
-        log.info("Book '{}' (ID: {}) successfully returned by user '{}' (ID: {}). Record ID: {}",
-                book.getTitle(), book.getId(), record.getUser().getUsername(), record.getUser().getId(), savedRecord.getId());
+        long overdueDays = Math.max(0, ChronoUnit.DAYS.between(record.getDueDate(), record.getReturnDate().toLocalDate()));
+        publishAfterCommit(CirculationEvent.Type.RETURN, savedRecord, overdueDays);
 
-        // (可选) 检查是否有用户预约了此书，并发送通知
+        // (可选) 通知被保留图书的预约用户 (保留本身已由 ReservationQueue 完成)
         // if (notificationService != null) {
-        //     checkAndNotifyNextReservation(book);
+        //     notificationService.sendReservationAvailableNotification(...);
         // }
         return savedRecord;
     }
 
-    private void calculateAndApplyFine(BorrowingRecord record) {
-        if (record.getReturnDate() != null && record.getReturnDate().toLocalDate().isAfter(record.getDueDate())) {
-            long overdueDays = ChronoUnit.DAYS.between(record.getDueDate(), record.getReturnDate().toLocalDate());
-            if (overdueDays > 0) {
-                BigDecimal fineAmount = dailyFineRate.multiply(new BigDecimal(overdueDays));
-                log.info("Book '{}' (Record ID: {}) is overdue by {} days. Fine calculated: {}",
-                        record.getBook().getTitle(), record.getId(), overdueDays, fineAmount);
-                // 实际项目中，这里会将 fineAmount 保存到 BorrowingRecord 或专门的 Fine 表
-                // 并标记为未支付，然后通过其他接口处理支付。
-                // 例如: record.setFineAmount(fineAmount); record.setFinePaid(false);
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public CirculationBatchResultDto borrowBooks(Long userId, List<Long> bookIds) {
+        return inUserLock(userId, () -> doBorrowBooks(userId, bookIds));
+    }
+
+    private CirculationBatchResultDto doBorrowBooks(Long userId, List<Long> bookIds) {
+        log.debug("Attempting to borrow {} books for user ID: {}", bookIds.size(), userId);
+        long loanTicket = userLoanStateCache.ticket(userId);
+        long fineTicket = fineBalanceCache.ticket(userId);
+        User user = entityCache.findUser(userId)
+                .orElseThrow(() -> new IllegalArgumentException("用户不存在 (ID: " + userId + ")"));
+        if (hasUnpaidSignificantFines(userId, fineTicket)) {
+            reject(BorrowRejection.UNPAID_FINES);
+            throw new IllegalStateException("用户有未处理的严重罚款，请先处理。");
+        }
+
+        // 整批只查询一次图书；借阅上限和已借情况来自用户借阅状态缓存，只有批次中有预约过的图书时才查询预约记录
+        Set<Long> distinctIds = new LinkedHashSet<>(bookIds);
+        Map<Long, Book> books = new HashMap<>();
+        bookRepository.findAllById(distinctIds).forEach(b -> books.put(b.getId(), b));
+        UserLoanStateCache.LoanState loans = userLoanStateCache.get(userId, loanTicket);
+        Set<Long> reservedIds = loans.reservedBookIds();
+        reservedIds.retainAll(distinctIds);
+        Map<Long, BorrowingRecord> reservations = new HashMap<>();
+        if (!reservedIds.isEmpty()) {
+            borrowingRecordRepository.findByUserAndStatusAndBookIdIn(user, BorrowStatus.RESERVED, reservedIds)
+                    .forEach(r -> reservations.put(r.getBook().getId(), r));
+        }
+
+        CirculationBatchResultDto result = new CirculationBatchResultDto();
+        Set<Long> seen = new HashSet<>();
+        for (Long bookId : bookIds) {
+            Book book = books.get(bookId);
+            if (!seen.add(bookId)) {
+                result.addFailure(bookId, "同一本书在本批次中重复出现。");
+                continue;
+            }
+            if (book == null) {
+                result.addFailure(bookId, "图书不存在 (ID: " + bookId + ")");
+                continue;
+            }
+            if (!reservationQueue.isHolding(bookId, userId)
+                    && (bookStockCache.isKnownSoldOut(bookId) || book.getQuantity() <= 0)) {
+                reject(BorrowRejection.NO_STOCK);
+                result.addFailure(bookId, "《" + book.getTitle() + "》已无库存，无法借阅。");
+                continue;
+            }
+            // 每借出一本占用一个名额，借阅上限因此覆盖整个批次
+            UserLoanStateCache.Claim claim = userLoanStateCache.claimLoan(loans, bookId, maxBorrowCountPerUser);
+            if (claim != UserLoanStateCache.Claim.OK) {
+                reject(claim == UserLoanStateCache.Claim.LIMIT_REACHED ? BorrowRejection.LIMIT_REACHED : BorrowRejection.ALREADY_BORROWED);
+                result.addFailure(bookId, claim == UserLoanStateCache.Claim.LIMIT_REACHED
+                        ? "用户已达到最大借阅数量 (" + maxBorrowCountPerUser + "本)。"
+                        : "用户已借阅《" + book.getTitle() + "》且尚未归还。");
+                continue;
+            }
+            try {
+                result.addSuccess(bookId, BorrowingRecordMapper.toDto(checkout(user, book, reservations.get(bookId))));
+            } catch (IllegalStateException e) {
+                loans.release(bookId); // 这一本没有借出，名额立即交还给批次中的后续图书
+                result.addFailure(bookId, e.getMessage());
             }
         }
+        log.info("Batch borrow for user '{}' (ID: {}): {} borrowed, {} failed",
+                user.getUsername(), userId, result.getSucceeded(), result.getFailed());
+        return result;
+    }
+
+    @Override
+    public CirculationBatchResultDto returnBooks(List<Long> borrowingRecordIds) {
+        log.debug("Attempting to return {} borrowing records", borrowingRecordIds.size());
+        Map<Long, BorrowingRecord> records = new HashMap<>();
+        borrowingRecordRepository.findAllWithUserAndBookByIdIn(new LinkedHashSet<>(borrowingRecordIds))
+                .forEach(r -> records.put(r.getId(), r));
+
+        CirculationBatchResultDto result = new CirculationBatchResultDto();
+        for (Long recordId : borrowingRecordIds) {
+            BorrowingRecord record = records.get(recordId);
+            if (record == null) {
+                result.addFailure(recordId, "借阅记录不存在 (ID: " + recordId + ")");
+            } else if (record.getStatus() != BorrowStatus.BORROWED && record.getStatus() != BorrowStatus.OVERDUE) {
+                // 已归还 (包括本批次中重复出现的记录) 或者是预约记录
+                result.addFailure(recordId, record.getStatus() == BorrowStatus.RETURNED ? "该书已归还。" : "该记录不是借阅记录，无法归还。");
+            } else {
+                result.addSuccess(recordId, BorrowingRecordMapper.toDto(checkIn(record)));
+            }
+        }
+        log.info("Batch return: {} returned, {} failed", result.getSucceeded(), result.getFailed());
+        return result;
+    }
+
+    /**
+     * 原子地扣减一本库存。
+     * 使用条件更新代替 "读取 quantity - 1 再 save"，并发借阅同一本书时不会超卖，也不会丢失更新。
+     * 注意：不修改已加载的 Book 实体的 quantity，否则脏检查会把旧值写回数据库。
+     * @throws IllegalStateException 如果库存已被其他请求借完
+     */
+    private void takeStock(Book book) {
+        if (bookRepository.decrementStock(book.getId()) == 0) {
+            bookStockCache.markSoldOut(book.getId());
+            log.warn("Borrow attempt failed for book '{}' (ID: {}): No stock available", book.getTitle(), book.getId());
+            reject(BorrowRejection.NO_STOCK);
+            throw new IllegalStateException("《" + book.getTitle() + "》已无库存，无法借阅。");
+        }
+        entityCache.bookChanged(book.getId());
+    }
+
+    private void reject(BorrowRejection reason) {
+        rejections.get(reason).increment();
+    }
+
+    private BorrowingRecord convertReservationToBorrowing(BorrowingRecord reservationRecord) {
+        reservationRecord.setStatus(BorrowStatus.BORROWED);
+        reservationRecord.setBorrowDate(LocalDateTime.now());
+        reservationRecord.setDueDate(LocalDate.now().plusDays(defaultBorrowDays));
+        reservationRecord.setReservationDate(null); // 清除预约相关日期
+        reservationRecord.setReservationExpiryDate(null);
+        BorrowingRecord borrowedRecord = borrowingRecordRepository.save(reservationRecord);
+        trackDueDate(borrowedRecord);
+        recordBorrow(borrowedRecord);
+        return borrowedRecord;
+    }
+
+    /**
+     * 事务提交后把借阅记录的应还日期登记到逾期检测索引中。
+     */
+    private void trackDueDate(BorrowingRecord record) {
+        Long recordId = record.getId();
+        LocalDate dueDate = record.getDueDate();
+        TransactionHooks.afterCommit(() -> overdueScheduler.track(recordId, dueDate));
+    }
+
+    /**
+     * 持有用户锁执行一个新事务。锁在事务开始之前取得 (排队等待同一用户的请求不占用数据库连接)，
+     * 在事务提交及提交后的缓存更新完成之后才释放，因此后一个请求一定能看到前一个请求提交的借阅。
+     * 用户借阅状态和罚款余额的 ticket 在事务的第一条查询之前取得。
+     */
+    private <T> T inUserLock(Long userId, Supplier<T> action) {
+        return userLoanStateCache.callWithUserLock(userId, () -> transactionTemplate.execute(status -> action.get()));
+    }
+
+    /**
+     * 事务提交后把一次借出计入用户借阅状态缓存、热门图书排行榜和流通事件日志。
+     */
+    private void recordBorrow(BorrowingRecord record) {
+        userLoanStateCache.loanStartedAfterCommit(record.getUser().getId(), record.getId(), record.getBook().getId());
+        popularityLeaderboard.recordBorrowAfterCommit(record.getId(), record.getBook().getId(), record.getBorrowDate());
+        publishAfterCommit(CirculationEvent.Type.BORROW, record, record.getDueDate().toEpochDay());
+    }
+
+    /**
+     * 事务提交后发布一条流通事件 (回滚的操作不记录)，并使该用户借阅历史的热分区失效。
+     */
+    private void publishAfterCommit(CirculationEvent.Type type, BorrowingRecord record, long detail) {
+        long recordId = record.getId();
+        long userId = record.getUser().getId();
+        long bookId = record.getBook().getId();
+        userHistoryReadModel.changedAfterCommit(userId);
+        TransactionHooks.afterCommit(() -> circulationEventLog.publish(type, recordId, userId, bookId, detail));
+    }
+
+    /**
+     * 未缴罚款余额是否达到借阅限制 (计提中的罚款只计提到最近一次计提任务运行的日期)。
+     */
+    private boolean hasUnpaidSignificantFines(Long userId, long fineTicket) {
+        return fineBlockThreshold.signum() > 0
+                && fineBalanceCache.get(userId, fineTicket).compareTo(fineBlockThreshold) >= 0;
+    }
+
+    /**
+     * 把逾期借阅的罚款计提到指定日期并转为 UNPAID (归还或逾期续借时调用)。
+     * 计提任务已为该借阅建立罚款时在其基础上补齐剩余天数，否则 (逾期后任务尚未运行) 新建一条。
+     */
+    private void calculateAndApplyFine(BorrowingRecord record, LocalDate through) {
+        if (!through.isAfter(record.getDueDate())) {
+            return;
+        }
+        Fine fine = fineRepository.findByBorrowingRecordIdAndStatus(record.getId(), FineStatus.ACCRUING)
+                .orElseGet(() -> {
+                    Fine opened = new Fine();
+                    opened.setBorrowingRecord(record);
+                    opened.setUser(record.getUser());
+                    opened.setAmount(BigDecimal.ZERO);
+                    opened.setAccruedThrough(record.getDueDate());
+                    opened.setCreatedAt(LocalDateTime.now());
+                    return opened;
+                });
+        long days = ChronoUnit.DAYS.between(fine.getAccruedThrough(), through);
+        if (days > 0) {
+            fine.setAmount(fine.getAmount().add(dailyFineRate.multiply(BigDecimal.valueOf(days))));
+            fine.setOverdueDays(fine.getOverdueDays() + (int) days);
+            fine.setAccruedThrough(through);
+        }
+        fine.setStatus(FineStatus.UNPAID);
+        fineRepository.save(fine);
+        fineBalanceCache.changedAfterCommit(record.getUser().getId());
+        log.debug("Fine for record ID {} settled: {} over {} days", record.getId(), fine.getAmount(), fine.getOverdueDays());
     }
 
     @Override
     public BorrowingRecord renewBook(Long borrowingRecordId) {
-        log.info("Attempting to renew book for borrowing record ID: {}", borrowingRecordId);
+        log.debug("Attempting to renew book for borrowing record ID: {}", borrowingRecordId);
         BorrowingRecord record = borrowingRecordRepository.findById(borrowingRecordId)
                 .filter(r -> r.getStatus() == BorrowStatus.BORROWED || r.getStatus() == BorrowStatus.OVERDUE)
                 .orElseThrow(() -> {
@@ -238,25 +560,32 @@ public class BorrowingServiceImpl implements BorrowingService {
             throw new IllegalStateException("图书逾期过久，无法续借。");
         }
 
+        calculateAndApplyFine(record, today); // 逾期后续借：已产生的罚款结清为待缴纳，新的应还日期重新开始计算
         record.setDueDate(record.getDueDate().plusDays(renewalDays));
         // record.setRenewalCount(currentRenewals + 1);
         record.setStatus(BorrowStatus.BORROWED); // 如果之前是 OVERDUE，续借成功后状态更新为 BORROWED
 
         BorrowingRecord savedRecord = borrowingRecordRepository.save(record);
-        log.info("Book '{}' (Record ID: {}) successfully renewed by user '{}'. New due date: {}",
-                record.getBook().getTitle(), record.getId(), record.getUser().getUsername(), savedRecord.getDueDate());
+        trackDueDate(savedRecord);
+        publishAfterCommit(CirculationEvent.Type.RENEW, savedRecord, savedRecord.getDueDate().toEpochDay());
         return savedRecord;
     }
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public BorrowingRecord reserveBook(Long userId, Long bookId) {
-        log.info("Attempting to reserve book ID: {} for user ID: {}", bookId, userId);
-        User user = userRepository.findById(userId)
+        return inUserLock(userId, () -> doReserveBook(userId, bookId));
+    }
+
+    private BorrowingRecord doReserveBook(Long userId, Long bookId) {
+        log.debug("Attempting to reserve book ID: {} for user ID: {}", bookId, userId);
+        long loanTicket = userLoanStateCache.ticket(userId);
+        User user = entityCache.findUser(userId)
                 .orElseThrow(() -> {
                     log.warn("Reservation attempt failed: User not found with ID {}", userId);
                     return new IllegalArgumentException("用户不存在 (ID: " + userId + ")");
                 });
-        Book book = bookRepository.findById(bookId)
+        Book book = entityCache.findBook(bookId)
                 .orElseThrow(() -> {
                     log.warn("Reservation attempt failed: Book not found with ID {}", bookId);
                     return new IllegalArgumentException("图书不存在 (ID: " + bookId + ")");
@@ -269,8 +598,8 @@ public class BorrowingServiceImpl implements BorrowingService {
         // }
 
         // 2. 检查用户是否已预约或已借阅此书
-        if (borrowingRecordRepository.existsByUserAndBookAndStatusIn(user, book,
-                List.of(BorrowStatus.RESERVED, BorrowStatus.BORROWED, BorrowStatus.OVERDUE))) {
+        UserLoanStateCache.LoanState loans = userLoanStateCache.get(userId, loanTicket);
+        if (loans.hasReserved(bookId) || loans.hasBorrowed(bookId)) {
             log.warn("Reservation attempt failed for user '{}': Book '{}' already reserved or borrowed.", user.getUsername(), book.getTitle());
             throw new IllegalStateException("用户已预约或已借阅此书。");
         }
@@ -279,22 +608,32 @@ public class BorrowingServiceImpl implements BorrowingService {
         reservation.setUser(user);
         reservation.setBook(book);
         reservation.setReservationDate(LocalDateTime.now());
-        reservation.setReservationExpiryDate(LocalDate.now().plusDays(reservationValidDays));
         reservation.setStatus(BorrowStatus.RESERVED);
+        // 没有人排队且仍有库存时直接为用户保留一本，否则进入队列等待归还
+        boolean held = !reservationQueue.hasWaiting(bookId) && bookRepository.decrementStock(bookId) == 1;
+        if (held) {
+            entityCache.bookChanged(bookId);
+            reservation.setReservationExpiryDate(LocalDate.now().plusDays(reservationValidDays));
+        }
 
         BorrowingRecord savedReservation = borrowingRecordRepository.save(reservation);
-        log.info("Book '{}' (ID: {}) successfully reserved by user '{}' (ID: {}). Reservation ID: {}",
-                book.getTitle(), bookId, user.getUsername(), userId, savedReservation.getId());
+        userLoanStateCache.reservationAddedAfterCommit(userId, savedReservation.getId(), bookId);
+        if (held) {
+            reservationQueue.holdStartedAfterCommit(bookId, userId);
+        } else {
+            reservationQueue.enqueueAfterCommit(bookId, savedReservation.getId(), userId);
+        }
+        publishAfterCommit(CirculationEvent.Type.RESERVE, savedReservation, held ? 1 : 0);
         return savedReservation;
     }
 
     @Override
     public void cancelReservation(Long userId, Long reservationId) { // 添加 userId 参数以验证操作权限
-        log.info("Attempting to cancel reservation ID: {} by user ID: {}", reservationId, userId);
+        log.debug("Attempting to cancel reservation ID: {} by user ID: {}", reservationId, userId);
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("用户不存在 (ID: " + userId + ")"));
 
-        BorrowingRecord reservation = borrowingRecordRepository.findById(reservationId)
+        BorrowingRecord reservation = borrowingRecordRepository.findByIdForUpdate(reservationId)
                 .filter(r -> r.getStatus() == BorrowStatus.RESERVED)
                 .orElseThrow(() -> {
                     log.warn("Cancel reservation attempt failed: Invalid or non-reserved record with ID {}", reservationId);
@@ -311,22 +650,64 @@ public class BorrowingServiceImpl implements BorrowingService {
         // 或者标记为已取消
         reservation.setStatus(BorrowStatus.RESERVATION_CANCELED);
         borrowingRecordRepository.save(reservation);
-        log.info("Reservation ID: {} for book '{}' successfully canceled by user '{}'.",
-                reservationId, reservation.getBook().getTitle(), user.getUsername());
+        userLoanStateCache.reservationEndedAfterCommit(userId, reservationId);
+        Long bookId = reservation.getBook().getId();
+        if (reservation.getReservationExpiryDate() != null) {
+            // 取消已保留的预约：保留的图书交给下一个预约
+            reservationQueue.holdEndedAfterCommit(bookId, userId);
+            reservationQueue.releaseCopy(bookId);
+        } else {
+            reservationQueue.removeAfterCommit(bookId, reservationId);
+        }
+        publishAfterCommit(CirculationEvent.Type.CANCEL, reservation, 0);
     }
 
 
     @Override
-    public List<BorrowingRecord> getUserBorrowingHistory(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("用户不存在 (ID: " + userId + ")"));
-        return borrowingRecordRepository.findByUserOrderByBorrowDateDesc(user);
+    @Transactional(readOnly = true)
+    public List<BorrowingRecordDto> getUserBorrowingHistory(Long userId) {
+        List<BorrowingRecordDto> history = borrowingRecordRepository.findHistoryByUserId(userId);
+        // 只有查询结果为空时才需要区分 "没有借阅记录" 和 "用户不存在"
+        if (history.isEmpty() && !userRepository.existsById(userId)) {
+            throw new IllegalArgumentException("用户不存在 (ID: " + userId + ")");
+        }
+        return history;
     }
 
     @Override
-    public List<BorrowingRecord> findOverdueBooks() {
-        // 实际应用中可能需要分页
-        return borrowingRecordRepository.findByStatusAndDueDateBefore(BorrowStatus.BORROWED, LocalDate.now());
+    @Transactional(readOnly = true)
+    public List<BorrowingRecordDto> getUserBorrowingHistory(String username) {
+        List<BorrowingRecordDto> history = borrowingRecordRepository.findHistoryByUsername(username);
+        if (history.isEmpty() && !userRepository.existsByUsername(username)) {
+            throw new IllegalArgumentException("用户不存在 (用户名: " + username + ")");
+        }
+        return history;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BorrowingHistoryPageDto getUserBorrowingHistoryPage(Long userId, BorrowStatus status, String cursor, int size) {
+        long ticket = userHistoryReadModel.ticket(userId);
+        BorrowingHistoryPageDto page = userHistoryReadModel.page(userId, ticket, status, cursor, size);
+        if (cursor == null && page.getActive().isEmpty() && page.getItems().isEmpty()
+                && !userRepository.existsById(userId)) {
+            throw new IllegalArgumentException("用户不存在 (ID: " + userId + ")");
+        }
+        return page;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BorrowingRecordDto> findOverdueBooks() {
+        // 包含已被定时任务标记为 OVERDUE 的记录，以及刚过期、尚未被标记的 BORROWED 记录
+        return borrowingRecordRepository.findAllOverdue(LocalDate.now(), BorrowStatus.BORROWED, BorrowStatus.OVERDUE);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<BorrowingRecordDto> findOverdueBooksPage(Long afterId, int limit) {
+        return borrowingRecordRepository.findOverduePage(afterId == null ? 0L : afterId, LocalDate.now(),
+                BorrowStatus.BORROWED, BorrowStatus.OVERDUE, PageRequest.of(0, limit));
     }
 
     // --- 辅助方法或未来扩展 ---
@@ -334,21 +715,4 @@ public class BorrowingServiceImpl implements BorrowingService {
     // private boolean isBookReservedByOthers(Book book, User currentUser) {
     //     return borrowingRecordRepository.existsByBookAndStatusAndUserNot(book, BorrowStatus.RESERVED, currentUser);
     // }
-
-    // private void checkAndNotifyNextReservation(Book returnedBook) {
-    //     Optional<BorrowingRecord> nextReservation = borrowingRecordRepository
-    //         .findByBookAndStatusOrderByReservationDateAsc(returnedBook, BorrowStatus.RESERVED)
-    //         .stream().findFirst(); // 获取最早的预约
-    //
-    //     if (nextReservation.isPresent()) {
-    //         BorrowingRecord reservation = nextReservation.get();
-    //         // 更新预约的有效截止日期
-    //         reservation.setReservationExpiryDate(LocalDate.now().plusDays(RESERVATION_VALID_DAYS));
-    //         borrowingRecordRepository.save(reservation);
-    //         // 发送通知给预约用户
-    //         // notificationService.sendReservationAvailableNotification(reservation.getUser(), returnedBook);
-    //         log.info("Notified user '{}' about reservation for book '{}' being available.",
-    //                  reservation.getUser().getUsername(), returnedBook.getTitle());
-    //     }
-    // }
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package com.example.library.service.impl;
+
+import com.example.library.cache.CacheInvalidationBus;
+import com.example.library.service.BookService;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 图书目录以及每本图书的版本号，供图书读接口的条件请求 (ETag / If-None-Match、Last-Modified / If-Modified-Since) 使用，
+ * 判断 304 时不需要加载或序列化任何图书。
+ * <p>
+ * 版本只由已结束的事务递增：图书的新增、修改、删除和库存变化沿用 {@link EntityCache#bookChanged} 在事务结束后发布的
+ * books 失效消息 (递增该书和目录的版本)；批量导入不逐本发布，由 BookServiceImpl 在导入结束后调用 {@link #catalogChanged()}，
+ * 递增目录以及所有未单独变化过的图书的版本 (其中包括导入新增的图书，它们此前可能以 404 响应带出过 ETag)。
+ * 因为都经过 {@link CacheInvalidationBus}，其他节点的写入同样会使本节点的版本变化。
+ * 读接口必须先取版本再加载数据：这样返回的 ETag 最多比数据旧，不会出现旧数据配新 ETag 而被之后的请求一直判为未修改。
+ * <p>
+ * ETag 带有本实例的启动标识，重启后计数器从头开始也不会与重启前发出的 ETag 相同；
+ * 代价是多实例部署时同一内容在不同节点上的 ETag 不同，客户端换节点后会得到一次 200。
+ */
+@Component
+public class CatalogVersions {
+
+    static final String CATALOG = "catalog";
+
+    private final CacheInvalidationBus invalidationBus;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<Long, Stamp> books = new ConcurrentHashMap<>(); // 启动后变化过的图书
+    private volatile Stamp catalog;
+    private volatile Stamp untouchedBooks; // 启动后 (或整体失效后) 没有单独变化过的图书
+
+    /**
+     * @param entityCache 只用于保证实体缓存先订阅 books 消息：收到失效消息时先清除缓存的图书，再递增版本，
+     *                    否则请求可能取到新版本却从缓存读到旧数据
+     */
+    public CatalogVersions(CacheInvalidationBus invalidationBus, EntityCache entityCache) {
+        this.invalidationBus = invalidationBus;
+        this.catalog = new Stamp(0, System.currentTimeMillis());
+        this.untouchedBooks = catalog;
+        invalidationBus.subscribe(EntityCache.BOOKS, key -> bookChanged((Long) key));
+        invalidationBus.subscribe(CATALOG, key -> bookChanged(null));
+    }
+
+    /**
+     * 批量导入图书后调用 (在当前事务中调用时，事务结束后生效)。
+     */
+    void catalogChanged() {
+        TransactionHooks.afterCompletion(() -> invalidationBus.publish(CATALOG, null));
+    }
+
+    public BookService.Version catalog() {
+        return catalog.toVersion(epoch + "-c");
+    }
+
+    public BookService.Version book(Long bookId) {
+        return books.getOrDefault(bookId, untouchedBooks).toVersion(epoch + "-b" + bookId + "-");
+    }
+
+    private synchronized void bookChanged(Long bookId) {
+        Stamp stamp = new Stamp(catalog.version() + 1, System.currentTimeMillis());
+        catalog = stamp;
+        if (bookId == null) { // 整体失效或批量导入
+            untouchedBooks = stamp;
+            books.clear();
+        } else {
+            books.put(bookId, stamp);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("epoch", epoch);
+        result.put("catalogVersion", catalog.version());
+        result.put("changedBooks", books.size());
+        return result;
+    }
+
+    private record Stamp(long version, long lastModified) {
+
+        BookService.Version toVersion(String prefix) {
+            return new BookService.Version("\"" + prefix + version + "\"", lastModified);
+        }
+    }
+}
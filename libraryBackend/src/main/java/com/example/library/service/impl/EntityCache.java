@@ -0,0 +1,174 @@
+package com.example.library.service.impl;
+
+import com.example.library.cache.CacheInvalidationBus;
+import com.example.library.cache.TtlCache;
+import com.example.library.entity.impl.Book;
+import com.example.library.entity.impl.User;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * 图书与用户实体的二级缓存，按主键以及 ISBN / 用户名 (自然键) 查找，读路径命中时不访问数据库。
+ * <p>
+ * 缓存保存实体的快照，命中时返回一份新的副本 (脱离持久化上下文，调用方修改它不会影响缓存，也不会写回数据库)；
+ * 未命中时返回仓库加载的受管实体。需要修改实体的写路径仍直接使用仓库。
+ * 每次写入 (包括库存变化) 都调用 {@code xxxChanged}：立即清除本节点的条目，事务结束后再通过
+ * {@link CacheInvalidationBus} 广播给所有节点，与 UserPrincipalCache 一样用失效代数防止加载与提交交错时缓存旧数据。
+ * <p>
+ * 缓存中的库存 (quantity) 仅用于展示：借阅、预约是否成功始终由数据库的条件扣减决定，不依据缓存的库存做判断。
+ */
+@Component
+public class EntityCache {
+
+    static final String BOOKS = "books";
+    static final String USERS = "users";
+
+    private final BookRepository bookRepository;
+    private final UserRepository userRepository;
+    private final CacheInvalidationBus invalidationBus;
+    private final Region<Book> books;
+    private final Region<User> users;
+    private final boolean enabled;
+
+    public EntityCache(BookRepository bookRepository, UserRepository userRepository, CacheInvalidationBus invalidationBus,
+                       @Value("${library.entity-cache.enabled:true}") boolean enabled,
+                       @Value("${library.entity-cache.books.max-size:10000}") int maxBooks, // 最多缓存的图书数
+                       @Value("${library.entity-cache.users.max-size:10000}") int maxUsers, // 最多缓存的用户数
+                       @Value("${library.entity-cache.ttl-seconds:600}") long ttlSeconds) { // 缓存有效期 (秒)，兜底其他节点丢失的失效消息
+        this.bookRepository = bookRepository;
+        this.userRepository = userRepository;
+        this.invalidationBus = invalidationBus;
+        this.enabled = enabled;
+        this.books = new Region<>(maxBooks, ttlSeconds * 1000, Book::getId, Book::getIsbn,
+                b -> new Book(b.getId(), b.getTitle(), b.getAuthor(), b.getIsbn(), b.getPublisher(), b.getPrice(), b.getQuantity()));
+        this.users = new Region<>(maxUsers, ttlSeconds * 1000, User::getId, User::getUsername,
+                u -> new User(u.getId(), u.getUsername(), u.getPassword(), u.getRole(), u.isEnabled()));
+        invalidationBus.subscribe(BOOKS, key -> books.invalidate((Long) key));
+        invalidationBus.subscribe(USERS, key -> users.invalidate((Long) key));
+    }
+
+    public Optional<Book> findBook(Long id) {
+        return enabled ? books.get(id, bookRepository::findById) : bookRepository.findById(id);
+    }
+
+    public Optional<Book> findBookByIsbn(String isbn) {
+        return enabled ? books.getByNaturalId(isbn, bookRepository::findByIsbn) : bookRepository.findByIsbn(isbn);
+    }
+
+    public Optional<User> findUser(Long id) {
+        return enabled ? users.get(id, userRepository::findById) : userRepository.findById(id);
+    }
+
+    public Optional<User> findUserByUsername(String username) {
+        return enabled ? users.getByNaturalId(username, userRepository::findByUsername) : userRepository.findByUsername(username);
+    }
+
+    /**
+     * 图书被新增、修改、删除或库存变化时调用 (在写入所在的事务中)。
+     */
+    public void bookChanged(Long bookId) {
+        changed(BOOKS, books, bookId);
+    }
+
+    /**
+     * 用户被修改或删除时调用 (在写入所在的事务中)。
+     */
+    public void userChanged(Long userId) {
+        changed(USERS, users, userId);
+    }
+
+    // 立即失效一次，事务结束后再广播一次：防止提交前有请求把旧数据重新加载进缓存，
+    // 回滚时也广播，清除同一事务在写入之后加载进缓存的未提交数据
+    private void changed(String region, Region<?> cache, Long id) {
+        cache.invalidate(id);
+        TransactionHooks.afterCompletion(() -> invalidationBus.publish(region, id));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put(BOOKS, books.byId.stats());
+        result.put(USERS, users.byId.stats());
+        result.put("invalidationBus", invalidationBus.stats());
+        return result;
+    }
+
+    /**
+     * 一类实体的缓存：主键 -> 快照，自然键 -> 主键。
+     */
+    private static final class Region<V> {
+
+        private final TtlCache<Long, V> byId;
+        private final TtlCache<String, Long> idByNaturalId;
+        // 每次失效都会递增；加载期间若发生过失效，则不把可能已过时的结果放入缓存
+        private final AtomicLong invalidationGeneration = new AtomicLong();
+        private final long ttlMillis;
+        private final Function<V, Long> idOf;
+        private final Function<V, String> naturalId;
+        private final UnaryOperator<V> copier;
+
+        Region(int maxSize, long ttlMillis, Function<V, Long> idOf, Function<V, String> naturalId, UnaryOperator<V> copier) {
+            this.byId = new TtlCache<>(maxSize);
+            this.idByNaturalId = new TtlCache<>(maxSize);
+            this.ttlMillis = ttlMillis;
+            this.idOf = idOf;
+            this.naturalId = naturalId;
+            this.copier = copier;
+        }
+
+        Optional<V> get(Long id, Function<Long, Optional<V>> loader) {
+            V cached = byId.getIfPresent(id);
+            if (cached != null) {
+                return Optional.of(copier.apply(cached));
+            }
+            long generation = invalidationGeneration.get();
+            Optional<V> loaded = loader.apply(id);
+            loaded.ifPresent(entity -> put(id, entity, generation));
+            return loaded;
+        }
+
+        Optional<V> getByNaturalId(String key, Function<String, Optional<V>> loader) {
+            Long id = idByNaturalId.getIfPresent(key);
+            if (id != null) {
+                V cached = byId.getIfPresent(id);
+                // 自然键被修改后旧映射可能仍在，以快照中的当前值为准
+                if (cached != null && Objects.equals(naturalId.apply(cached), key)) {
+                    return Optional.of(copier.apply(cached));
+                }
+            }
+            long generation = invalidationGeneration.get();
+            Optional<V> loaded = loader.apply(key);
+            loaded.ifPresent(entity -> put(idOf.apply(entity), entity, generation));
+            return loaded;
+        }
+
+        private void put(Long id, V entity, long generation) {
+            if (invalidationGeneration.get() != generation) {
+                return;
+            }
+            V snapshot = copier.apply(entity);
+            long expiresAt = System.currentTimeMillis() + ttlMillis;
+            byId.put(id, snapshot, expiresAt);
+            idByNaturalId.put(naturalId.apply(snapshot), id, expiresAt);
+        }
+
+        void invalidate(Long id) {
+            invalidationGeneration.incrementAndGet();
+            if (id == null) {
+                byId.invalidateAll();
+                idByNaturalId.invalidateAll();
+            } else {
+                byId.invalidate(id);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.library.service.impl;
+
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.entity.impl.FineStatus;
+import com.example.library.monitor.LatencyHistogram;
+import com.example.library.repository.FineRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 每日罚款计提任务：为新逾期的借阅建立罚款，并把所有计提中的罚款增量计提到今天。
+ * 计提中的罚款按"已计提到的日期"分组，每组一条条件批量更新 (金额加上 日费率 × 天数)，
+ * 正常每天运行时只有一组，漏跑几天后下一次运行会一并补齐；不逐条读取借阅记录，也不重新计算历史金额。
+ * 归还或续借时 BorrowingServiceImpl 把罚款计提到当天并转为 UNPAID，之后不再由本任务修改。
+ */
+@Component
+public class FineAccrualJob {
+
+    private static final Logger log = LoggerFactory.getLogger(FineAccrualJob.class);
+
+    private final FineRepository fineRepository;
+    private final FineBalanceCache fineBalanceCache;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final LatencyHistogram runDurations = new LatencyHistogram();
+    private final LongAdder runs = new LongAdder();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMillis;
+    private volatile int lastOpened;
+    private volatile int lastAccrued;
+
+    @Value("${library.fine.accrual.enabled:true}") // 关闭后不再自动计提
+    private boolean enabled;
+
+    @Value("${library.fine.daily-rate:0.50}") // 每日罚款费率，与 BorrowingServiceImpl 一致
+    private BigDecimal dailyFineRate;
+
+    public FineAccrualJob(FineRepository fineRepository, FineBalanceCache fineBalanceCache,
+                          PlatformTransactionManager transactionManager) {
+        this.fineRepository = fineRepository;
+        this.fineBalanceCache = fineBalanceCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${library.fine.accrual.cron:0 10 0 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            runOnce();
+        }
+    }
+
+    /**
+     * 执行一次计提 (单个事务)。若已有一次计提正在运行则直接返回 -1。
+     * @return 本次计提的罚款数 (含新建立的)
+     */
+    public int runOnce() {
+        if (!running.compareAndSet(false, true)) {
+            return -1;
+        }
+        long start = System.nanoTime();
+        try {
+            LocalDate today = LocalDate.now();
+            int[] counts = transactionTemplate.execute(status -> {
+                int opened = fineRepository.openAccruingFines(today, LocalDateTime.now(), BigDecimal.ZERO,
+                        BorrowStatus.BORROWED, BorrowStatus.OVERDUE, FineStatus.ACCRUING);
+                int accrued = 0;
+                List<LocalDate> dates = fineRepository.findAccrualDates(FineStatus.ACCRUING, today);
+                for (LocalDate from : dates) {
+                    int days = (int) ChronoUnit.DAYS.between(from, today);
+                    accrued += fineRepository.accrue(from, today, days,
+                            dailyFineRate.multiply(BigDecimal.valueOf(days)), FineStatus.ACCRUING);
+                }
+                if (accrued > 0) {
+                    fineBalanceCache.allChangedAfterCommit();
+                }
+                return new int[]{opened, accrued};
+            });
+            lastOpened = counts[0];
+            lastAccrued = counts[1];
+            if (counts[1] > 0) {
+                log.info("Fine accrual: {} new fines opened, {} fines accrued through {}", counts[0], counts[1], today);
+            }
+            return counts[1];
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            runDurations.record(elapsed);
+            runs.increment();
+            lastRunAt = LocalDateTime.now();
+            lastRunMillis = elapsed / 1_000_000;
+            running.set(false);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("running", running.get());
+        result.put("runs", runs.sum());
+        result.put("lastRunAt", lastRunAt);
+        result.put("lastRunMillis", lastRunMillis);
+        result.put("lastOpened", lastOpened);
+        result.put("lastAccrued", lastAccrued);
+        result.put("runDuration", runDurations.snapshot());
+        return result;
+    }
+}
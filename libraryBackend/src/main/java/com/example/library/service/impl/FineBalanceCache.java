@@ -0,0 +1,100 @@
+package com.example.library.service.impl;
+
+import com.example.library.cache.TtlCache;
+import com.example.library.entity.impl.FineStatus;
+import com.example.library.repository.FineRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 每个用户的未缴罚款余额 (计提中 + 未缴纳) 缓存，借阅时据此判断是否超过罚款上限，常见情况下不查询 fines 表。
+ * <p>
+ * 余额只在事务提交后失效：归还或续借结清罚款、缴纳罚款时失效单个用户，每日计提后整体失效。
+ * 与 {@link UserLoanStateCache} 相同，调用方在事务执行第一条查询之前取得 {@link #ticket(Long)}，
+ * 加载期间若有失效发生，结果只用于本次请求而不放入缓存。
+ * 计提中的罚款只计提到上一次计提任务运行的日期，因此余额最多比实际少一天的罚款。
+ */
+@Component
+public class FineBalanceCache {
+
+    private static final int VERSION_STRIPES = 1024;
+    private static final List<FineStatus> OUTSTANDING = List.of(FineStatus.ACCRUING, FineStatus.UNPAID);
+
+    private final FineRepository fineRepository;
+    private final TtlCache<Long, BigDecimal> cache;
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private final AtomicLong generation = new AtomicLong(); // 整体失效的次数
+    private final boolean enabled;
+    private final long ttlMillis;
+
+    public FineBalanceCache(FineRepository fineRepository,
+                            @Value("${library.fine.balance-cache.enabled:true}") boolean enabled,
+                            @Value("${library.fine.balance-cache.max-size:10000}") int maxSize, // 最多缓存的用户数
+                            @Value("${library.fine.balance-cache.ttl-seconds:3600}") long ttlSeconds) { // 缓存有效期 (秒)
+        this.fineRepository = fineRepository;
+        this.enabled = enabled;
+        this.cache = new TtlCache<>(maxSize);
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * 取得用户余额当前的版本，必须在事务执行第一条查询之前调用。
+     */
+    public long ticket(Long userId) {
+        return generation.get() + versions.get(stripe(userId)); // 两个计数器都只增不减，任一变化都会改变和
+    }
+
+    /**
+     * 获取用户的未缴罚款余额，缓存未命中时用一条聚合查询加载 (在调用方的事务中执行)。
+     * @param ticket 事务开始时取得的 {@link #ticket(Long)}
+     */
+    public BigDecimal get(Long userId, long ticket) {
+        if (enabled) {
+            BigDecimal cached = cache.getIfPresent(userId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        BigDecimal loaded = fineRepository.sumBalanceByUserId(userId, OUTSTANDING);
+        if (enabled && ticket(userId) == ticket) {
+            return cache.putIfAbsent(userId, loaded, System.currentTimeMillis() + ttlMillis);
+        }
+        return loaded;
+    }
+
+    /**
+     * 当前事务提交后使用户的余额失效。
+     */
+    public void changedAfterCommit(Long userId) {
+        TransactionHooks.afterCommit(() -> invalidate(userId));
+    }
+
+    /**
+     * 当前事务提交后使所有用户的余额失效 (每日计提)。
+     */
+    public void allChangedAfterCommit() {
+        TransactionHooks.afterCommit(() -> {
+            generation.incrementAndGet();
+            cache.invalidateAll();
+        });
+    }
+
+    public void invalidate(Long userId) {
+        versions.incrementAndGet(stripe(userId));
+        cache.invalidate(userId);
+    }
+
+    private static int stripe(Long userId) {
+        return (int) Math.floorMod(userId, (long) VERSION_STRIPES);
+    }
+
+    public Map<String, Object> stats() {
+        return cache.stats();
+    }
+}
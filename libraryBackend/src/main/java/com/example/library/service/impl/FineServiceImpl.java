@@ -0,0 +1,82 @@
+package com.example.library.service.impl;
+
+import com.example.library.dto.FineDto;
+import com.example.library.entity.impl.Fine;
+import com.example.library.entity.impl.FineStatus;
+import com.example.library.repository.FineRepository;
+import com.example.library.repository.UserRepository;
+import com.example.library.service.FineService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+@Transactional
+public class FineServiceImpl implements FineService {
+
+    private static final Logger log = LoggerFactory.getLogger(FineServiceImpl.class);
+
+    private final FineRepository fineRepository;
+    private final UserRepository userRepository;
+    private final FineBalanceCache fineBalanceCache;
+
+    public FineServiceImpl(FineRepository fineRepository, UserRepository userRepository, FineBalanceCache fineBalanceCache) {
+        this.fineRepository = fineRepository;
+        this.userRepository = userRepository;
+        this.fineBalanceCache = fineBalanceCache;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<FineDto> getUserFines(Long userId) {
+        List<FineDto> fines = fineRepository.findByUserId(userId);
+        // 只有查询结果为空时才需要区分 "没有罚款" 和 "用户不存在"
+        if (fines.isEmpty() && !userRepository.existsById(userId)) {
+            throw new IllegalArgumentException("用户不存在 (ID: " + userId + ")");
+        }
+        return fines;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<FineDto> getUserFines(String username) {
+        List<FineDto> fines = fineRepository.findByUsername(username);
+        if (fines.isEmpty() && !userRepository.existsByUsername(username)) {
+            throw new IllegalArgumentException("用户不存在 (用户名: " + username + ")");
+        }
+        return fines;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public BigDecimal getOutstandingBalance(Long userId) {
+        return fineBalanceCache.get(userId, fineBalanceCache.ticket(userId));
+    }
+
+    @Override
+    public FineDto payFine(Long fineId) {
+        Fine fine = fineRepository.findByIdForUpdate(fineId)
+                .orElseThrow(() -> new IllegalArgumentException("罚款不存在 (ID: " + fineId + ")"));
+        if (fine.getStatus() == FineStatus.ACCRUING) {
+            throw new IllegalStateException("图书尚未归还，罚款仍在计提中。");
+        }
+        if (fine.getStatus() == FineStatus.PAID) {
+            throw new IllegalStateException("该罚款已缴纳。");
+        }
+        fine.setStatus(FineStatus.PAID);
+        fine.setPaidAt(LocalDateTime.now());
+        Fine saved = fineRepository.save(fine);
+        Long userId = saved.getUser().getId();
+        fineBalanceCache.changedAfterCommit(userId);
+        log.debug("Fine ID {} of {} paid by user ID {}", fineId, saved.getAmount(), userId);
+        return new FineDto(saved.getId(), saved.getBorrowingRecord().getId(), userId,
+                saved.getBorrowingRecord().getBook().getId(), saved.getBorrowingRecord().getBook().getTitle(),
+                saved.getAmount(), saved.getOverdueDays(), saved.getAccruedThrough(),
+                saved.getStatus(), saved.getCreatedAt(), saved.getPaidAt());
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.library.service.impl;
+
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.monitor.LatencyHistogram;
+import com.example.library.repository.BorrowingRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 逾期检测定时任务：把应还日期已过的 BORROWED 记录批量标记为 OVERDUE。
+ * 内存中维护一个按应还日期排序的索引 (只包含 BORROWED 记录)，每次运行只取出应还日期早于今天的那一段，
+ * 按块执行条件批量更新，不必每次都扫描整张借阅表。
+ * 索引在第一次运行时从数据库加载，之后由 BorrowingServiceImpl 在借阅、续借、归还的事务提交后增量维护，
+ * 并按 library.overdue.resync-interval-ms 定期与数据库重新对齐，以收录其他实例产生的借阅。
+ * 索引中残留的过期条目 (例如已归还的记录) 是无害的：更新语句会再次校验状态和应还日期。
+ */
+@Component
+public class OverdueScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(OverdueScheduler.class);
+
+    // 应还日期 -> 该日到期的借阅记录 id
+    private final TreeMap<LocalDate, Set<Long>> byDueDate = new TreeMap<>();
+    // 借阅记录 id -> 应还日期，用于续借和归还时定位旧条目
+    private final Map<Long, LocalDate> dueDateById = new HashMap<>();
+
+    private final BorrowingRecordRepository borrowingRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final LatencyHistogram runDurations = new LatencyHistogram();
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder totalTransitioned = new LongAdder();
+    private volatile long lastResyncMillis;
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMillis;
+    private volatile int lastCandidates;
+    private volatile int lastTransitioned;
+
+    @Value("${library.overdue.enabled:true}") // 关闭后不再自动标记逾期
+    private boolean enabled;
+
+    @Value("${library.overdue.chunk-size:500}") // 每条批量 UPDATE 语句包含的记录数
+    private int chunkSize;
+
+    @Value("${library.overdue.resync-interval-ms:86400000}") // 与数据库重新对齐索引的间隔 (毫秒)，默认一天
+    private long resyncIntervalMs;
+
+    public OverdueScheduler(BorrowingRecordRepository borrowingRecordRepository,
+                            PlatformTransactionManager transactionManager) {
+        this.borrowingRecordRepository = borrowingRecordRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 登记 (或更新) 一条 BORROWED 记录的应还日期，借阅或续借提交后调用。
+     */
+    public synchronized void track(Long recordId, LocalDate dueDate) {
+        untrack(recordId);
+        byDueDate.computeIfAbsent(dueDate, d -> new HashSet<>()).add(recordId);
+        dueDateById.put(recordId, dueDate);
+    }
+
+    /**
+     * 移除一条记录，归还提交后调用。
+     */
+    public synchronized void untrack(Long recordId) {
+        LocalDate dueDate = dueDateById.remove(recordId);
+        if (dueDate != null) {
+            Set<Long> ids = byDueDate.get(dueDate);
+            ids.remove(recordId);
+            if (ids.isEmpty()) {
+                byDueDate.remove(dueDate);
+            }
+        }
+    }
+
+    public synchronized int trackedCount() {
+        return dueDateById.size();
+    }
+
+    @Scheduled(initialDelayString = "${library.overdue.initial-delay-ms:30000}",
+               fixedDelayString = "${library.overdue.interval-ms:300000}")
+    public void scheduledRun() {
+        if (enabled) {
+            runOnce();
+        }
+    }
+
+    /**
+     * 执行一次逾期检测。若已有一次检测正在运行则直接返回 -1。
+     * @return 本次被标记为 OVERDUE 的记录数
+     */
+    public int runOnce() {
+        if (!running.compareAndSet(false, true)) {
+            return -1;
+        }
+        long start = System.nanoTime();
+        try {
+            if (System.currentTimeMillis() - lastResyncMillis >= resyncIntervalMs) {
+                resync();
+            }
+            LocalDate today = LocalDate.now();
+            Map<Long, LocalDate> due = drainDueBefore(today);
+            int transitioned = 0;
+            List<Long> ids = new ArrayList<>(due.keySet());
+            for (int from = 0; from < ids.size(); from += chunkSize) {
+                List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+                try {
+                    Integer updated = transactionTemplate.execute(status -> borrowingRecordRepository.markOverdue(
+                            chunk, today, BorrowStatus.BORROWED, BorrowStatus.OVERDUE));
+                    transitioned += updated == null ? 0 : updated;
+                } catch (RuntimeException e) {
+                    // 未处理的记录放回索引，下次运行重试
+                    log.error("Overdue check failed, {} records left for the next run", ids.size() - from, e);
+                    for (Long id : ids.subList(from, ids.size())) {
+                        track(id, due.get(id));
+                    }
+                    break;
+                }
+            }
+            lastCandidates = ids.size();
+            lastTransitioned = transitioned;
+            totalTransitioned.add(transitioned);
+            if (transitioned > 0) {
+                log.info("Overdue check marked {} of {} candidate records as OVERDUE", transitioned, ids.size());
+            }
+            return transitioned;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            runDurations.record(elapsed);
+            runs.increment();
+            lastRunAt = LocalDateTime.now();
+            lastRunMillis = elapsed / 1_000_000;
+            running.set(false);
+        }
+    }
+
+    /**
+     * 从数据库重新读取全部 BORROWED 记录的应还日期并合并进索引。
+     * 合并而不是替换，避免丢掉读取期间刚提交的借阅。
+     */
+    private void resync() {
+        List<Object[]> rows = readOnlyTransaction.execute(status ->
+                borrowingRecordRepository.findIdAndDueDateByStatus(BorrowStatus.BORROWED));
+        if (rows != null) {
+            for (Object[] row : rows) {
+                track((Long) row[0], (LocalDate) row[1]);
+            }
+        }
+        lastResyncMillis = System.currentTimeMillis();
+        log.info("Overdue index synchronized with database: {} borrowed records tracked", trackedCount());
+    }
+
+    private synchronized Map<Long, LocalDate> drainDueBefore(LocalDate today) {
+        Map<Long, LocalDate> due = new LinkedHashMap<>();
+        Iterator<Map.Entry<LocalDate, Set<Long>>> it = byDueDate.headMap(today, false).entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<LocalDate, Set<Long>> entry = it.next();
+            for (Long id : entry.getValue()) {
+                due.put(id, entry.getKey());
+                dueDateById.remove(id);
+            }
+            it.remove();
+        }
+        return due;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        result.put("running", running.get());
+        result.put("trackedBorrowings", trackedCount());
+        result.put("runs", runs.sum());
+        result.put("lastRunAt", lastRunAt);
+        result.put("lastRunMillis", lastRunMillis);
+        result.put("lastCandidates", lastCandidates);
+        result.put("lastTransitioned", lastTransitioned);
+        result.put("totalTransitioned", totalTransitioned.sum());
+        result.put("runDuration", runDurations.snapshot());
+        return result;
+    }
+}
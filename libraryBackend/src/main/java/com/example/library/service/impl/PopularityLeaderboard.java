@@ -0,0 +1,369 @@
+package com.example.library.service.impl;
+
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.service.BookService.PopularityWindow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 热门图书排行榜：在内存中为每本书维护借出计数，每次借出提交后增量更新，
+ * 并为每种排名方式保留一个容量为 top-k 的有序集合，读取排行只需取前 N 项，不再对借阅表做 GROUP BY。
+ * <p>
+ * 每本书的计数包括：累计借出次数、最近 30 天按天分桶的借出次数 (环形数组)，以及前向衰减 (forward decay) 的热度：
+ * 每次借出按 2^((借出时间 - 基准时间) / 半衰期) 计入，分值只增不减，且任意时刻按它排序都等价于按衰减后的热度排序。
+ * 因此累计与热度排名可以只靠"分值上升时重新插入"来维护；按天窗口的计数会随日期滑动而下降，只在日期变化时整体重建。
+ * <p>
+ * 排行榜在启动时和每晚的对账任务中从 borrow_records 重建。重建期间发生的借出会被暂存，
+ * 重建完成后补上快照中没有的部分，不会丢失也不会重复计数。
+ * 借出从预约转换而来时同样计入；归还不改变热度 (一次借阅在借出时计入一次)。
+ */
+@Component
+public class PopularityLeaderboard implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(PopularityLeaderboard.class);
+
+    private static final int WINDOW_DAYS = 30;
+    private static final double SECONDS_PER_DAY = 86_400d;
+    // 衰减权重的指数超过此值时整体缩放，避免 double 溢出 (只在长时间未重建时发生)
+    private static final double MAX_EXPONENT = 512;
+
+    /**
+     * 排行中的一项。
+     */
+    public record Ranked(Long bookId, double score) {
+    }
+
+    private record BorrowEvent(Long bookId, LocalDateTime borrowedAt) {
+    }
+
+    private record Snapshot(List<Object[]> totals, List<Object[]> recentBorrows) {
+    }
+
+    private final BorrowingRecordRepository borrowingRecordRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private final LongAdder recordedBorrows = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private volatile LocalDateTime lastRebuildAt;
+    private volatile long lastRebuildMillis;
+
+    @Value("${library.popularity.top-k:100}") // 每种排名方式在内存中保留的条目数，也是接口可返回的最大数量
+    private int topK;
+
+    @Value("${library.popularity.half-life-days:7}") // 热度 (TRENDING) 的半衰期 (天)
+    private double halfLifeDays;
+
+    @Value("${library.popularity.reconcile.enabled:true}") // 关闭后不再每晚从数据库重建排行榜
+    private boolean reconcileEnabled;
+
+    // 以下状态均由 this 加锁保护
+    private Map<Long, Counter> counters = new HashMap<>();
+    private final Map<PopularityWindow, TopK> rankings = new EnumMap<>(PopularityWindow.class);
+    private double landmarkDay; // 衰减基准时间 (以天为单位的 epoch 时间)
+    private long currentDay;    // 按天窗口排名对应的日期 (epoch day)
+    // 重建期间提交的借出：借阅记录 id -> 事件，为 null 表示当前没有在重建
+    private Map<Long, BorrowEvent> pendingDuringRebuild;
+
+    public PopularityLeaderboard(BorrowingRecordRepository borrowingRecordRepository,
+                                 PlatformTransactionManager transactionManager) {
+        this.borrowingRecordRepository = borrowingRecordRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 在接收请求之前从数据库构建排行榜。
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        synchronized (this) {
+            for (PopularityWindow window : PopularityWindow.values()) {
+                rankings.put(window, new TopK(topK));
+            }
+            landmarkDay = toDays(LocalDateTime.now());
+            currentDay = LocalDate.now().toEpochDay();
+        }
+        rebuild();
+    }
+
+    /**
+     * 借出 (包括由预约转换的借出) 在事务提交后计入排行榜。
+     */
+    public void recordBorrowAfterCommit(Long recordId, Long bookId, LocalDateTime borrowedAt) {
+        TransactionHooks.afterCommit(() -> recordBorrow(recordId, bookId, borrowedAt));
+    }
+
+    public synchronized void recordBorrow(Long recordId, Long bookId, LocalDateTime borrowedAt) {
+        BorrowEvent event = new BorrowEvent(bookId, borrowedAt);
+        if (pendingDuringRebuild != null) {
+            pendingDuringRebuild.put(recordId, event);
+        }
+        rollOverIfNeeded();
+        apply(event, true);
+        recordedBorrows.increment();
+    }
+
+    /**
+     * 返回某种排名方式的前 limit 项 (limit 最多为 top-k)。
+     */
+    public synchronized List<Ranked> top(PopularityWindow window, int limit) {
+        rollOverIfNeeded();
+        double scale = window == PopularityWindow.TRENDING ? decayScale() : 1;
+        List<Ranked> result = new ArrayList<>();
+        for (TopK.Entry entry : rankings.get(window).ranked) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(new Ranked(entry.bookId(), entry.score() * scale));
+        }
+        return result;
+    }
+
+    public int capacity() {
+        return topK;
+    }
+
+    @Scheduled(cron = "${library.popularity.reconcile.cron:0 30 3 * * *}")
+    public void scheduledReconcile() {
+        if (reconcileEnabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 从 borrow_records 重建排行榜：累计次数用一条分组统计，按天窗口和热度只读取衰减可忽略之前的借出记录。
+     * 若已有一次重建正在进行则直接返回 false。
+     */
+    public boolean rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        synchronized (this) {
+            pendingDuringRebuild = new HashMap<>();
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            // 早于 10 个半衰期的借出权重已不足千分之一
+            long horizonDays = Math.max(WINDOW_DAYS, (long) Math.ceil(halfLifeDays * 10));
+            LocalDateTime since = now.minusDays(horizonDays);
+            Snapshot snapshot = readOnlyTransaction.execute(status -> new Snapshot(
+                    borrowingRecordRepository.countBorrowsByBook(),
+                    borrowingRecordRepository.findBorrowEventsSince(since)));
+            synchronized (this) {
+                landmarkDay = toDays(now);
+                currentDay = now.toLocalDate().toEpochDay();
+                counters = new HashMap<>();
+                for (Object[] row : snapshot.totals()) {
+                    counterOf((Long) row[0]).total = (Long) row[1];
+                }
+                Set<Long> loadedRecords = new HashSet<>();
+                for (Object[] row : snapshot.recentBorrows()) {
+                    loadedRecords.add((Long) row[0]);
+                    apply(new BorrowEvent((Long) row[1], (LocalDateTime) row[2]), false);
+                }
+                // 快照之后才提交的借出
+                pendingDuringRebuild.forEach((recordId, event) -> {
+                    if (!loadedRecords.contains(recordId)) {
+                        apply(event, true);
+                    }
+                });
+                for (PopularityWindow window : PopularityWindow.values()) {
+                    rebuildRanking(window);
+                }
+                log.info("Popularity leaderboard rebuilt from {} books and {} recent borrows ({} committed during rebuild)",
+                        counters.size(), snapshot.recentBorrows().size(), pendingDuringRebuild.size());
+            }
+            rebuilds.increment();
+            lastRebuildAt = LocalDateTime.now();
+            return true;
+        } finally {
+            synchronized (this) {
+                pendingDuringRebuild = null;
+            }
+            lastRebuildMillis = (System.nanoTime() - start) / 1_000_000;
+            rebuilding.set(false);
+        }
+    }
+
+    // 把一次借出计入计数；updateRankings 为 false 时只更新计数 (重建时最后统一排序)
+    private void apply(BorrowEvent event, boolean updateRankings) {
+        Counter counter = counterOf(event.bookId());
+        long day = event.borrowedAt().toLocalDate().toEpochDay();
+        if (updateRankings) {
+            counter.total++;
+        }
+        if (day > currentDay - WINDOW_DAYS && day <= currentDay) {
+            counter.addDaily(day);
+        }
+        double exponent = (toDays(event.borrowedAt()) - landmarkDay) / halfLifeDays;
+        if (exponent > MAX_EXPONENT) {
+            renormalize(exponent);
+            exponent = (toDays(event.borrowedAt()) - landmarkDay) / halfLifeDays;
+        }
+        counter.decayed += Math.pow(2, exponent);
+        if (updateRankings) {
+            rankings.get(PopularityWindow.ALL_TIME).offer(event.bookId(), counter.total);
+            rankings.get(PopularityWindow.LAST_7_DAYS).offer(event.bookId(), counter.windowCount(currentDay, 7));
+            rankings.get(PopularityWindow.LAST_30_DAYS).offer(event.bookId(), counter.windowCount(currentDay, WINDOW_DAYS));
+            rankings.get(PopularityWindow.TRENDING).offer(event.bookId(), counter.decayed);
+        }
+    }
+
+    // 日期变化后最早一天移出窗口，窗口计数下降，需要重新排序
+    private void rollOverIfNeeded() {
+        long today = LocalDate.now().toEpochDay();
+        if (today != currentDay) {
+            currentDay = today;
+            rebuildRanking(PopularityWindow.LAST_7_DAYS);
+            rebuildRanking(PopularityWindow.LAST_30_DAYS);
+        }
+    }
+
+    // 把基准时间前移，所有衰减分值同比例缩小，相对顺序不变
+    private void renormalize(double exponent) {
+        double shiftDays = Math.floor(exponent) * halfLifeDays;
+        double factor = Math.pow(2, -Math.floor(exponent));
+        counters.values().forEach(counter -> counter.decayed *= factor);
+        landmarkDay += shiftDays;
+        rebuildRanking(PopularityWindow.TRENDING);
+    }
+
+    private void rebuildRanking(PopularityWindow window) {
+        TopK ranking = rankings.get(window);
+        ranking.clear();
+        counters.forEach((bookId, counter) -> {
+            double score = switch (window) {
+                case ALL_TIME -> counter.total;
+                case LAST_7_DAYS -> counter.windowCount(currentDay, 7);
+                case LAST_30_DAYS -> counter.windowCount(currentDay, WINDOW_DAYS);
+                case TRENDING -> counter.decayed;
+            };
+            if (score > 0) {
+                ranking.offer(bookId, score);
+            }
+        });
+    }
+
+    // 前向衰减分值换算为当前时刻的热度
+    private double decayScale() {
+        return Math.pow(2, -(toDays(LocalDateTime.now()) - landmarkDay) / halfLifeDays);
+    }
+
+    private Counter counterOf(Long bookId) {
+        return counters.computeIfAbsent(bookId, id -> new Counter());
+    }
+
+    private static double toDays(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toEpochSecond() / SECONDS_PER_DAY;
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("trackedBooks", counters.size());
+        result.put("topK", topK);
+        result.put("halfLifeDays", halfLifeDays);
+        result.put("recordedBorrows", recordedBorrows.sum());
+        result.put("rebuilding", rebuilding.get());
+        result.put("rebuilds", rebuilds.sum());
+        result.put("lastRebuildAt", lastRebuildAt);
+        result.put("lastRebuildMillis", lastRebuildMillis);
+        return result;
+    }
+
+    /**
+     * 单本图书的借出计数。
+     */
+    private static final class Counter {
+        long total;
+        double decayed;
+        // 最近 WINDOW_DAYS 天的环形分桶：下标为 epochDay % WINDOW_DAYS，bucketDay 记录桶当前对应的日期
+        final int[] daily = new int[WINDOW_DAYS];
+        final long[] bucketDay = new long[WINDOW_DAYS];
+
+        void addDaily(long day) {
+            int slot = (int) (day % WINDOW_DAYS);
+            if (bucketDay[slot] != day) {
+                bucketDay[slot] = day;
+                daily[slot] = 0;
+            }
+            daily[slot]++;
+        }
+
+        int windowCount(long today, int days) {
+            int count = 0;
+            for (int i = 0; i < WINDOW_DAYS; i++) {
+                if (daily[i] > 0 && bucketDay[i] > today - days && bucketDay[i] <= today) {
+                    count += daily[i];
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * 容量固定的排行：按分值降序 (分值相同按图书 id 升序) 保存前 capacity 项。
+     * 只适用于分值单调上升的更新：某本书的分值上升后重新插入，若已满且不超过末位则忽略。
+     */
+    private static final class TopK {
+
+        record Entry(Long bookId, double score) {
+        }
+
+        private static final Comparator<Entry> ORDER = Comparator.comparingDouble(Entry::score).reversed()
+                .thenComparing(Entry::bookId);
+
+        private final int capacity;
+        final TreeSet<Entry> ranked = new TreeSet<>(ORDER);
+        private final Map<Long, Entry> members = new HashMap<>();
+
+        TopK(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void offer(Long bookId, double score) {
+            Entry candidate = new Entry(bookId, score);
+            Entry current = members.get(bookId);
+            if (current != null) {
+                ranked.remove(current);
+            } else if (ranked.size() >= capacity) {
+                Entry weakest = ranked.last();
+                if (ORDER.compare(candidate, weakest) >= 0) {
+                    return;
+                }
+                ranked.pollLast();
+                members.remove(weakest.bookId());
+            }
+            ranked.add(candidate);
+            members.put(bookId, candidate);
+        }
+
+        void clear() {
+            ranked.clear();
+            members.clear();
+        }
+    }
+}
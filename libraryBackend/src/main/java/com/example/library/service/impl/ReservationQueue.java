@@ -0,0 +1,334 @@
+package com.example.library.service.impl;
+
+import com.example.library.audit.CirculationEvent;
+import com.example.library.audit.CirculationEventLog;
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowingRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 每本图书的预约队列 (先到先得)。
+ * 预约记录 (status = RESERVED) 有两种状态：reservationExpiryDate 为空表示仍在排队；
+ * 不为空表示已有一本图书为该用户保留 (已从库存中扣除)，需在截止日期前借出。
+ * 图书归还、保留过期或被取消时，{@link #releaseCopy(Long)} 把这本书交给队首的预约并设置保留截止日期，
+ * 队列为空时才放回库存。队列在启动时从 borrow_records 重建，之后只在事务提交后修改，
+ * 数据库中的条件更新 (只提升仍在排队的预约) 保证并发下同一预约不会被重复提升、同一本书不会被重复分配。
+ */
+@Component
+public class ReservationQueue implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ReservationQueue.class);
+
+    private record Waiting(Long reservationId, Long userId) {
+    }
+
+    private record Hold(Long bookId, Long userId) {
+    }
+
+    // 图书 id -> 排队中的预约 (按预约先后)，访问时以队列对象本身加锁
+    private final ConcurrentMap<Long, Deque<Waiting>> queues = new ConcurrentHashMap<>();
+    // 当前持有保留图书的 (图书, 用户)，供借阅时在库存为 0 的情况下放行保留者
+    private final Set<Hold> holds = ConcurrentHashMap.newKeySet();
+
+    private final BorrowingRecordRepository borrowingRecordRepository;
+    private final BookRepository bookRepository;
+    private final BookStockCache bookStockCache;
+    private final UserLoanStateCache userLoanStateCache;
+    private final UserHistoryReadModel userHistoryReadModel;
+    private final EntityCache entityCache;
+    private final CirculationEventLog circulationEventLog;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final LongAdder promotions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    @Value("${library.reservation.valid-days:3}") // 图书被保留后的有效天数
+    private int reservationValidDays;
+
+    @Value("${library.reservation.sweeper.enabled:true}") // 关闭后不再自动处理过期的保留
+    private boolean sweeperEnabled;
+
+    public ReservationQueue(BorrowingRecordRepository borrowingRecordRepository,
+                            BookRepository bookRepository,
+                            BookStockCache bookStockCache,
+                            UserLoanStateCache userLoanStateCache,
+                            UserHistoryReadModel userHistoryReadModel,
+                            EntityCache entityCache,
+                            CirculationEventLog circulationEventLog,
+                            PlatformTransactionManager transactionManager) {
+        this.borrowingRecordRepository = borrowingRecordRepository;
+        this.bookRepository = bookRepository;
+        this.bookStockCache = bookStockCache;
+        this.userLoanStateCache = userLoanStateCache;
+        this.userHistoryReadModel = userHistoryReadModel;
+        this.entityCache = entityCache;
+        this.circulationEventLog = circulationEventLog;
+        // 队列操作可能在其他事务提交后的回调中执行，因此总是开启新事务
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 在接收请求之前从数据库重建队列。
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    public void rebuild() {
+        List<Object[]> rows = readOnlyTransaction.execute(status ->
+                borrowingRecordRepository.findReservationQueueEntries(BorrowStatus.RESERVED));
+        queues.clear();
+        holds.clear();
+        if (rows != null) {
+            for (Object[] row : rows) {
+                Long reservationId = (Long) row[0];
+                Long bookId = (Long) row[1];
+                Long userId = (Long) row[2];
+                if (row[3] == null) {
+                    queueOf(bookId).addLast(new Waiting(reservationId, userId));
+                } else {
+                    holds.add(new Hold(bookId, userId));
+                }
+            }
+        }
+        log.info("Reservation queues rebuilt: {} waiting reservations, {} active holds", waitingCount(), holds.size());
+    }
+
+    /**
+     * 用户是否持有这本书的保留 (以内存状态为准，最终由借阅时锁定的预约记录确认)。
+     */
+    public boolean isHolding(Long bookId, Long userId) {
+        return holds.contains(new Hold(bookId, userId));
+    }
+
+    public boolean hasWaiting(Long bookId) {
+        Deque<Waiting> queue = queues.get(bookId);
+        if (queue == null) {
+            return false;
+        }
+        synchronized (queue) {
+            return !queue.isEmpty();
+        }
+    }
+
+    /**
+     * 返回某本书排队中的预约 id (按先后顺序)。
+     */
+    public List<Long> waitingReservations(Long bookId) {
+        Deque<Waiting> queue = queues.get(bookId);
+        List<Long> ids = new ArrayList<>();
+        if (queue != null) {
+            synchronized (queue) {
+                queue.forEach(waiting -> ids.add(waiting.reservationId()));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 新预约在事务提交后进入队尾，随后立即尝试用现有库存为队列分配图书
+     * (覆盖预约与归还同时发生、归还时队列还是空的情况)。
+     */
+    public void enqueueAfterCommit(Long bookId, Long reservationId, Long userId) {
+        TransactionHooks.afterCommit(() -> {
+            Deque<Waiting> queue = queueOf(bookId);
+            synchronized (queue) {
+                queue.addLast(new Waiting(reservationId, userId));
+            }
+            transactionTemplate.executeWithoutResult(status -> assignAvailableStock(bookId));
+        });
+    }
+
+    /**
+     * 排队中的预约被取消或直接借出后，在事务提交后把它移出队列。
+     */
+    public void removeAfterCommit(Long bookId, Long reservationId) {
+        TransactionHooks.afterCommit(() -> {
+            Deque<Waiting> queue = queues.get(bookId);
+            if (queue != null) {
+                synchronized (queue) {
+                    queue.removeIf(waiting -> waiting.reservationId().equals(reservationId));
+                }
+            }
+        });
+    }
+
+    public void holdStartedAfterCommit(Long bookId, Long userId) {
+        TransactionHooks.afterCommit(() -> holds.add(new Hold(bookId, userId)));
+    }
+
+    /**
+     * 保留被借出、取消或过期后调用，在事务提交后生效。
+     */
+    public void holdEndedAfterCommit(Long bookId, Long userId) {
+        TransactionHooks.afterCommit(() -> holds.remove(new Hold(bookId, userId)));
+    }
+
+    /**
+     * 一本图书重新变为可用 (归还、保留被取消或过期)：优先交给队首的预约，队列为空时放回库存。
+     * 必须在事务内调用。
+     */
+    public void releaseCopy(Long bookId) {
+        bookRepository.incrementStock(bookId);
+        bookStockCache.evict(bookId);
+        entityCache.bookChanged(bookId);
+        assignAvailableStock(bookId);
+    }
+
+    /**
+     * 只要队列不为空且还有库存，就从库存中取出一本保留给队首的预约。
+     * 扣减库存和提升预约都是数据库条件更新，与同一本书的其他并发操作互斥；
+     * 失效的队列条目 (已取消的预约) 被跳过，取出的库存留给下一个预约或最终放回。
+     */
+    private void assignAvailableStock(Long bookId) {
+        Deque<Waiting> queue = queues.get(bookId);
+        if (queue == null) {
+            return;
+        }
+        LocalDate expiryDate = LocalDate.now().plusDays(reservationValidDays);
+        List<Waiting> promoted = new ArrayList<>();
+        boolean haveCopy = false;
+        while (true) {
+            if (!haveCopy) {
+                if (!hasWaiting(bookId) || bookRepository.decrementStock(bookId) == 0) {
+                    break;
+                }
+                entityCache.bookChanged(bookId);
+                haveCopy = true;
+            }
+            Waiting head;
+            synchronized (queue) {
+                head = queue.pollFirst();
+            }
+            if (head == null) {
+                bookRepository.incrementStock(bookId); // 队列已被其他线程取空，放回库存
+                break;
+            }
+            if (borrowingRecordRepository.assignHold(head.reservationId(), expiryDate, BorrowStatus.RESERVED) == 1) {
+                promoted.add(head);
+                haveCopy = false;
+                log.debug("Book ID {} held for reservation ID {} until {}", bookId, head.reservationId(), expiryDate);
+            }
+        }
+        if (promoted.isEmpty()) {
+            return;
+        }
+        TransactionHooks.afterCommit(() -> {
+            promotions.add(promoted.size());
+            promoted.forEach(waiting -> {
+                holds.add(new Hold(bookId, waiting.userId()));
+                userHistoryReadModel.invalidate(waiting.userId()); // 预约有了保留截止日期
+            });
+        });
+        TransactionHooks.afterRollback(() -> {
+            // 数据库中的提升已回滚，按原顺序放回队首
+            synchronized (queue) {
+                for (int i = promoted.size() - 1; i >= 0; i--) {
+                    queue.addFirst(promoted.get(i));
+                }
+            }
+        });
+    }
+
+    @Scheduled(initialDelayString = "${library.reservation.sweeper.initial-delay-ms:60000}",
+               fixedDelayString = "${library.reservation.sweeper.interval-ms:600000}")
+    public void scheduledSweep() {
+        if (sweeperEnabled) {
+            sweepExpiredHolds();
+        }
+    }
+
+    /**
+     * 把保留已过期的预约标记为 RESERVATION_EXPIRED，并把对应的图书交给下一个预约。
+     * 随后为所有仍有排队的图书检查一次库存 (例如管理员增加了库存)。
+     * @return 本次过期的保留数量
+     */
+    public int sweepExpiredHolds() {
+        LocalDate today = LocalDate.now();
+        List<Object[]> expired = readOnlyTransaction.execute(status ->
+                borrowingRecordRepository.findExpiredHolds(today, BorrowStatus.RESERVED));
+        int count = 0;
+        if (expired != null) {
+            for (Object[] row : expired) {
+                Long reservationId = (Long) row[0];
+                Long bookId = (Long) row[1];
+                Long userId = (Long) row[2];
+                Boolean done = transactionTemplate.execute(status -> {
+                    if (borrowingRecordRepository.expireHold(reservationId, today,
+                            BorrowStatus.RESERVED, BorrowStatus.RESERVATION_EXPIRED) == 0) {
+                        return false; // 已被借出或取消
+                    }
+                    holdEndedAfterCommit(bookId, userId);
+                    userLoanStateCache.reservationEndedAfterCommit(userId, reservationId);
+                    userHistoryReadModel.changedAfterCommit(userId);
+                    TransactionHooks.afterCommit(() -> circulationEventLog.publish(
+                            CirculationEvent.Type.EXPIRE, reservationId, userId, bookId, 0));
+                    releaseCopy(bookId);
+                    return true;
+                });
+                if (Boolean.TRUE.equals(done)) {
+                    count++;
+                }
+            }
+        }
+        for (Long bookId : queues.keySet()) {
+            if (hasWaiting(bookId)) {
+                transactionTemplate.executeWithoutResult(status -> assignAvailableStock(bookId));
+            }
+        }
+        expirations.add(count);
+        if (count > 0) {
+            log.info("Expired {} reservation holds", count);
+        }
+        return count;
+    }
+
+    private Deque<Waiting> queueOf(Long bookId) {
+        return queues.computeIfAbsent(bookId, id -> new ArrayDeque<>());
+    }
+
+    private int waitingCount() {
+        int count = 0;
+        for (Deque<Waiting> queue : queues.values()) {
+            synchronized (queue) {
+                count += queue.size();
+            }
+        }
+        return count;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("waitingReservations", waitingCount());
+        result.put("activeHolds", holds.size());
+        result.put("promotions", promotions.sum());
+        result.put("expiredHolds", expirations.sum());
+        return result;
+    }
+}
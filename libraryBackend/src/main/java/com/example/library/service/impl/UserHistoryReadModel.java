@@ -0,0 +1,200 @@
+package com.example.library.service.impl;
+
+import com.example.library.cache.TtlCache;
+import com.example.library.dto.BorrowingHistoryPageDto;
+import com.example.library.dto.BorrowingRecordDto;
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.repository.BorrowingRecordRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按用户组织的借阅历史读模型，分为两部分：
+ * <ul>
+ *     <li>热分区：当前借阅中、逾期与预约中的记录，数量受借阅上限约束，每个用户一条查询加载后缓存在内存中；</li>
+ *     <li>冷历史：已结束的记录 (已归还、预约取消或过期等) 留在数据库中，按 (借阅日期, id) 降序键集分页，
+ *     由 (user_id, borrow_date, id) 索引直接定位到游标位置。从未借出的预约没有借阅日期，排在所有借出记录之后按 id 分页。</li>
+ * </ul>
+ * 热分区在事务提交后整体失效 (借阅、归还、续借、预约、取消、保留分配与过期)，与 {@link FineBalanceCache} 相同，
+ * 调用方在事务执行第一条查询之前取得 {@link #ticket(Long)}，加载期间若有失效发生，结果只用于本次请求而不放入缓存。
+ * 逾期检测任务批量标记 OVERDUE 时不逐个失效，读取时把应还日期已过的 BORROWED 记录直接显示为 OVERDUE；
+ * 书名、用户名的修改要等缓存过期 (ttl-seconds) 后才可见。
+ */
+@Component
+public class UserHistoryReadModel {
+
+    private static final int VERSION_STRIPES = 1024;
+    private static final Set<BorrowStatus> ACTIVE = EnumSet.of(BorrowStatus.BORROWED, BorrowStatus.OVERDUE, BorrowStatus.RESERVED);
+    private static final Set<BorrowStatus> ENDED = EnumSet.complementOf(EnumSet.copyOf(ACTIVE));
+    // 第一页的游标：比任何借阅日期都晚 (MySQL DATETIME 的上限)
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    private static final char CURSOR_SEPARATOR = '_';
+
+    // 与冷历史相同的顺序：借阅日期降序，没有借阅日期的 (排队或保留中的预约) 在后，同一日期按 id 降序
+    private static final Comparator<BorrowingRecordDto> HISTORY_ORDER =
+            Comparator.comparing(BorrowingRecordDto::getBorrowDate, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+                    .thenComparing(BorrowingRecordDto::getId)
+                    .reversed();
+
+    private final BorrowingRecordRepository borrowingRecordRepository;
+    private final TtlCache<Long, List<BorrowingRecordDto>> activeRecords;
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private final boolean enabled;
+    private final long ttlMillis;
+
+    public UserHistoryReadModel(BorrowingRecordRepository borrowingRecordRepository,
+                                @Value("${library.history.hot-cache.enabled:true}") boolean enabled,
+                                @Value("${library.history.hot-cache.max-size:10000}") int maxSize, // 最多缓存热分区的用户数
+                                @Value("${library.history.hot-cache.ttl-seconds:600}") long ttlSeconds) { // 缓存有效期 (秒)
+        this.borrowingRecordRepository = borrowingRecordRepository;
+        this.enabled = enabled;
+        this.activeRecords = new TtlCache<>(maxSize);
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * 取得用户热分区当前的版本，必须在事务执行第一条查询之前调用。
+     */
+    public long ticket(Long userId) {
+        return versions.get(stripe(userId));
+    }
+
+    /**
+     * 读取一页借阅历史 (在调用方的只读事务中执行)。
+     * 第一页 (cursor 为 null) 附带热分区；status 为借阅中、逾期或预约中时只从热分区中筛选，不访问数据库。
+     * @param ticket 事务开始时取得的 {@link #ticket(Long)}
+     * @param status 只返回该状态的记录，为 null 时不过滤
+     * @param cursor 上一页的 nextCursor，为 null 时读取第一页
+     * @param size 每页最多的历史记录数
+     * @throws IllegalArgumentException 如果游标格式无效
+     */
+    public BorrowingHistoryPageDto page(Long userId, long ticket, BorrowStatus status, String cursor, int size) {
+        Cursor after = cursor != null ? Cursor.parse(cursor) : null;
+        List<BorrowingRecordDto> active = List.of();
+        if (after == null && (status == null || ACTIVE.contains(status))) {
+            active = present(activeRecords(userId, ticket), status);
+        }
+        if (status != null && ACTIVE.contains(status)) {
+            return new BorrowingHistoryPageDto(active, List.of(), null, false);
+        }
+
+        // 多取一条用于判断是否还有下一页，无需额外的 COUNT 查询
+        Set<BorrowStatus> statuses = status != null ? EnumSet.of(status) : ENDED;
+        int limit = size + 1;
+        List<BorrowingRecordDto> items = new ArrayList<>(limit);
+        if (after == null || after.borrowDate() != null) {
+            items.addAll(borrowingRecordRepository.findHistoryPage(userId, statuses,
+                    after != null ? after.borrowDate() : LATEST, after != null ? after.id() : Long.MAX_VALUE,
+                    PageRequest.of(0, limit)));
+        }
+        if (items.size() < limit) {
+            long beforeId = after != null && after.borrowDate() == null ? after.id() : Long.MAX_VALUE;
+            items.addAll(borrowingRecordRepository.findUnborrowedHistoryPage(userId, statuses, beforeId,
+                    PageRequest.of(0, limit - items.size())));
+        }
+        boolean hasMore = items.size() > size;
+        List<BorrowingRecordDto> pageItems = hasMore ? items.subList(0, size) : items;
+        String nextCursor = hasMore ? Cursor.of(pageItems.get(pageItems.size() - 1)).format() : null;
+        return new BorrowingHistoryPageDto(active, pageItems, nextCursor, hasMore);
+    }
+
+    /**
+     * 用户的热分区，缓存未命中时用一条查询加载。
+     */
+    private List<BorrowingRecordDto> activeRecords(Long userId, long ticket) {
+        if (enabled) {
+            List<BorrowingRecordDto> cached = activeRecords.getIfPresent(userId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        List<BorrowingRecordDto> loaded = new ArrayList<>(borrowingRecordRepository.findHistoryByUserIdAndStatusIn(userId, ACTIVE));
+        loaded.sort(HISTORY_ORDER);
+        loaded = List.copyOf(loaded);
+        if (enabled && versions.get(stripe(userId)) == ticket) {
+            return activeRecords.putIfAbsent(userId, loaded, System.currentTimeMillis() + ttlMillis);
+        }
+        return loaded;
+    }
+
+    /**
+     * 按状态筛选热分区；缓存中的记录是共享的，状态需要改写时复制一份。
+     */
+    private static List<BorrowingRecordDto> present(List<BorrowingRecordDto> records, BorrowStatus status) {
+        LocalDate today = LocalDate.now();
+        List<BorrowingRecordDto> result = new ArrayList<>(records.size());
+        for (BorrowingRecordDto record : records) {
+            if (BorrowStatus.BORROWED.name().equals(record.getStatus())
+                    && record.getDueDate() != null && record.getDueDate().isBefore(today)) {
+                // 已过应还日期、等待逾期检测任务标记的借阅
+                record = new BorrowingRecordDto(record.getId(), record.getUserId(), record.getUsername(), record.getBookId(),
+                        record.getBookTitle(), record.getBorrowDate(), record.getDueDate(), record.getReturnDate(),
+                        BorrowStatus.OVERDUE.name(), record.getReservationDate(), record.getReservationExpiryDate());
+            }
+            if (status == null || status.name().equals(record.getStatus())) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 当前事务提交后使用户的热分区失效。
+     */
+    public void changedAfterCommit(Long userId) {
+        TransactionHooks.afterCommit(() -> invalidate(userId));
+    }
+
+    public void invalidate(Long userId) {
+        versions.incrementAndGet(stripe(userId));
+        activeRecords.invalidate(userId);
+    }
+
+    private static int stripe(Long userId) {
+        return (int) Math.floorMod(userId, (long) VERSION_STRIPES);
+    }
+
+    public Map<String, Object> stats() {
+        return activeRecords.stats();
+    }
+
+    /**
+     * 冷历史的分页位置：上一页最后一条记录的借阅日期 (从未借出的记录为 null) 和 id。
+     * 文本形式为 "借阅日期_id"，从未借出的记录为 "_id"。
+     */
+    private record Cursor(LocalDateTime borrowDate, long id) {
+
+        static Cursor of(BorrowingRecordDto record) {
+            return new Cursor(record.getBorrowDate(), record.getId());
+        }
+
+        static Cursor parse(String text) {
+            int separator = text.lastIndexOf(CURSOR_SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException("无效的分页游标: " + text);
+            }
+            try {
+                LocalDateTime borrowDate = separator > 0 ? LocalDateTime.parse(text.substring(0, separator)) : null;
+                return new Cursor(borrowDate, Long.parseLong(text.substring(separator + 1)));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("无效的分页游标: " + text);
+            }
+        }
+
+        String format() {
+            return (borrowDate != null ? borrowDate.toString() : "") + CURSOR_SEPARATOR + id;
+        }
+    }
+}
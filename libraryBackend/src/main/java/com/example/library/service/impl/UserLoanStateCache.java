@@ -0,0 +1,234 @@
+package com.example.library.service.impl;
+
+import com.example.library.cache.TtlCache;
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.repository.BorrowingRecordRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 每个用户的借阅状态缓存：当前借阅中 (含逾期) 的记录和预约中的记录，
+ * 供借阅、预约时判断借阅上限和重复借阅，常见情况下不再查询 borrow_records。
+ * <p>
+ * 缓存只在事务提交后由 BorrowingServiceImpl (以及过期清理保留的 ReservationQueue) 按借阅记录 id 写入，
+ * 更新是幂等的。为避免加载与并发提交交错而缓存过时的结果，每个用户 (按 id 分段) 有一个写入版本号：
+ * 调用方在事务执行第一条查询之前取得 {@link #ticket(Long)}，加载时若版本已变化，结果只用于本次请求而不放入缓存。
+ * <p>
+ * 同一用户的借阅、预约在本实例内串行执行：调用方在开启事务之前通过 {@link #callWithUserLock} 取得锁，
+ * 事务结束后才释放，因此后一个请求一定能看到前一个请求提交的借阅 (即使它读到的是未放入缓存的新加载结果)，
+ * 并发请求不会同时通过上限检查。同一事务中的多次借阅 (批量借阅) 通过"占位"计数：检查通过时占用一个借阅名额，事务结束后释放。
+ * 多实例部署时其他节点的写入要等缓存过期 (ttl-seconds) 后才可见。
+ */
+@Component
+public class UserLoanStateCache {
+
+    private static final int VERSION_STRIPES = 1024;
+    private static final List<BorrowStatus> CACHED_STATUSES =
+            List.of(BorrowStatus.BORROWED, BorrowStatus.OVERDUE, BorrowStatus.RESERVED);
+
+    /**
+     * 借阅资格检查结果。
+     */
+    public enum Claim { OK, LIMIT_REACHED, ALREADY_BORROWED }
+
+    private final BorrowingRecordRepository borrowingRecordRepository;
+    private final TtlCache<Long, LoanState> cache;
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private final ReentrantLock[] userLocks = new ReentrantLock[VERSION_STRIPES];
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final long lockTimeoutMillis;
+
+    public UserLoanStateCache(BorrowingRecordRepository borrowingRecordRepository,
+                              @Value("${library.borrow.loan-cache.enabled:true}") boolean enabled,
+                              @Value("${library.borrow.loan-cache.max-size:10000}") int maxSize, // 最多缓存的用户数
+                              @Value("${library.borrow.loan-cache.ttl-seconds:600}") long ttlSeconds, // 缓存有效期 (秒)
+                              @Value("${library.borrow.loan-cache.lock-timeout-ms:5000}") long lockTimeoutMillis) { // 等待同一用户其他请求的最长时间
+        this.borrowingRecordRepository = borrowingRecordRepository;
+        this.enabled = enabled;
+        this.cache = new TtlCache<>(maxSize);
+        this.ttlMillis = ttlSeconds * 1000;
+        this.lockTimeoutMillis = lockTimeoutMillis;
+        for (int i = 0; i < VERSION_STRIPES; i++) {
+            userLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * 独占该用户 (按 id 分段) 的借阅资格检查执行 action，action 返回后释放。
+     * 必须在事务开始之前调用，由 action 自己开启并提交事务：等待锁期间不占用数据库连接，
+     * 锁在事务提交及提交后的缓存更新完成之后才释放。
+     * @throws IllegalStateException 如果等待超过 lock-timeout-ms
+     */
+    public <T> T callWithUserLock(Long userId, Supplier<T> action) {
+        ReentrantLock lock = userLocks[stripe(userId)];
+        try {
+            if (!lock.tryLock(lockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("该用户的其他借阅请求正在处理，请稍后重试。");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("借阅请求被中断，请稍后重试。", e);
+        }
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 取得用户当前的写入版本，必须在事务执行第一条查询之前调用 (之后的快照才一定包含该版本之前的所有提交)。
+     */
+    public long ticket(Long userId) {
+        return versions.get(stripe(userId));
+    }
+
+    /**
+     * 获取用户的借阅状态，缓存未命中时用一条查询加载 (在调用方的事务中执行)。
+     * @param ticket 事务开始时取得的 {@link #ticket(Long)}
+     */
+    public LoanState get(Long userId, long ticket) {
+        if (enabled) {
+            LoanState cached = cache.getIfPresent(userId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        LoanState loaded = new LoanState();
+        for (Object[] row : borrowingRecordRepository.findIdBookIdAndStatusByUserId(userId, CACHED_STATUSES)) {
+            if (row[2] == BorrowStatus.RESERVED) {
+                loaded.reservationAdded((Long) row[0], (Long) row[1]);
+            } else {
+                loaded.loanStarted((Long) row[0], (Long) row[1]);
+            }
+        }
+        if (enabled && versions.get(stripe(userId)) == ticket) {
+            return cache.putIfAbsent(userId, loaded, System.currentTimeMillis() + ttlMillis);
+        }
+        return loaded;
+    }
+
+    /**
+     * 检查借阅上限和重复借阅，通过时为本次借阅占用一个名额，当前事务结束后自动释放
+     * (提交时借阅已通过 {@link #loanStartedAfterCommit} 计入)。
+     */
+    public Claim claimLoan(LoanState state, Long bookId, int maxLoans) {
+        Claim claim = state.claim(bookId, maxLoans);
+        if (claim == Claim.OK) {
+            TransactionHooks.afterCompletion(() -> state.release(bookId));
+        }
+        return claim;
+    }
+
+    public void loanStartedAfterCommit(Long userId, Long recordId, Long bookId) {
+        update(userId, state -> state.loanStarted(recordId, bookId));
+    }
+
+    public void loanEndedAfterCommit(Long userId, Long recordId) {
+        update(userId, state -> state.loanEnded(recordId));
+    }
+
+    public void reservationAddedAfterCommit(Long userId, Long recordId, Long bookId) {
+        update(userId, state -> state.reservationAdded(recordId, bookId));
+    }
+
+    public void reservationEndedAfterCommit(Long userId, Long recordId) {
+        update(userId, state -> state.reservationEnded(recordId));
+    }
+
+    public void invalidate(Long userId) {
+        versions.incrementAndGet(stripe(userId));
+        cache.invalidate(userId);
+    }
+
+    private void update(Long userId, Consumer<LoanState> change) {
+        TransactionHooks.afterCommit(() -> {
+            versions.incrementAndGet(stripe(userId)); // 先递增版本，让正在进行的加载放弃缓存结果
+            LoanState cached = cache.getIfPresent(userId);
+            if (cached != null) {
+                change.accept(cached);
+            }
+        });
+    }
+
+    private static int stripe(Long userId) {
+        return (int) Math.floorMod(userId, (long) VERSION_STRIPES);
+    }
+
+    public Map<String, Object> stats() {
+        return cache.stats();
+    }
+
+    /**
+     * 单个用户的借阅状态，方法均以对象本身加锁。
+     */
+    public static final class LoanState {
+
+        private final Map<Long, Long> loans = new HashMap<>();        // 借阅中/逾期的记录 id -> 图书 id
+        private final Map<Long, Long> reservations = new HashMap<>(); // 预约中的记录 id -> 图书 id
+        private final Set<Long> claimedBooks = new HashSet<>();       // 正在进行的借阅占用的图书
+
+        public synchronized int activeLoans() {
+            return loans.size();
+        }
+
+        public synchronized boolean hasBorrowed(Long bookId) {
+            return loans.containsValue(bookId);
+        }
+
+        public synchronized boolean hasReserved(Long bookId) {
+            return reservations.containsValue(bookId);
+        }
+
+        public synchronized Set<Long> reservedBookIds() {
+            return new HashSet<>(reservations.values());
+        }
+
+        synchronized Claim claim(Long bookId, int maxLoans) {
+            if (loans.size() + claimedBooks.size() >= maxLoans) {
+                return Claim.LIMIT_REACHED;
+            }
+            if (loans.containsValue(bookId) || claimedBooks.contains(bookId)) {
+                return Claim.ALREADY_BORROWED;
+            }
+            claimedBooks.add(bookId);
+            return Claim.OK;
+        }
+
+        /**
+         * 释放占用的名额 (借阅失败时可提前调用，重复调用无影响)。
+         */
+        public synchronized void release(Long bookId) {
+            claimedBooks.remove(bookId);
+        }
+
+        synchronized void loanStarted(Long recordId, Long bookId) {
+            reservations.remove(recordId); // 由预约转换的借阅沿用预约记录
+            loans.put(recordId, bookId);
+        }
+
+        synchronized void loanEnded(Long recordId) {
+            loans.remove(recordId);
+        }
+
+        synchronized void reservationAdded(Long recordId, Long bookId) {
+            reservations.put(recordId, bookId);
+        }
+
+        synchronized void reservationEnded(Long recordId) {
+            reservations.remove(recordId);
+        }
+    }
+}
@@ -2,9 +2,10 @@ package com.example.library.service.impl;
 
 import com.example.library.dto.UserDto;
 import com.example.library.entity.impl.User; // 假设这是你的 User 实体类
+import com.example.library.mapper.UserMapper;
 import com.example.library.repository.UserRepository;
+import com.example.library.seurity.UserPrincipalCache;
 import com.example.library.service.UserService;
-import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder; // 引入 PasswordEncoder
 import org.springframework.stereotype.Service;
@@ -20,23 +21,16 @@ public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder; // 取消注释
+    private final UserPrincipalCache userPrincipalCache;
+    private final EntityCache entityCache;
 
     @Autowired
-    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder) { // 取消注释并添加 PasswordEncoder 参数
+    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder, // 取消注释并添加 PasswordEncoder 参数
+                           UserPrincipalCache userPrincipalCache, EntityCache entityCache) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder; // 取消注释
-    }
-
-    private UserDto convertToDto(User user) {
-        UserDto userDto = new UserDto();
-        BeanUtils.copyProperties(user, userDto, "password");
-        return userDto;
-    }
-
-    private User convertToEntity(UserDto userDto) {
-        User user = new User();
-        BeanUtils.copyProperties(userDto, user);
-        return user;
+        this.userPrincipalCache = userPrincipalCache;
+        this.entityCache = entityCache;
     }
 
     @Override
@@ -44,7 +38,7 @@ public class UserServiceImpl implements UserService {
         if (userRepository.findByUsername(userDto.getUsername()).isPresent()) {
             throw new IllegalArgumentException("Username " + userDto.getUsername() + " already exists.");
         }
-        User user = convertToEntity(userDto);
+        User user = UserMapper.toEntity(userDto);
         user.setId(null); // 确保是新用户
         user.setPassword(passwordEncoder.encode(userDto.getPassword()));
 
@@ -58,26 +52,26 @@ public class UserServiceImpl implements UserService {
         // user.setEnabled(true); // 示例，如果需要的话
 
         User savedUser = userRepository.save(user);
-        return convertToDto(savedUser);
+        return UserMapper.toDto(savedUser);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Optional<UserDto> getUserById(Long id) {
-        return userRepository.findById(id).map(this::convertToDto);
+        return entityCache.findUser(id).map(UserMapper::toDto);
     }
 
     @Override
     @Transactional(readOnly = true)
     public Optional<UserDto> getUserByUsername(String username) {
-        return userRepository.findByUsername(username).map(this::convertToDto);
+        return entityCache.findUserByUsername(username).map(UserMapper::toDto);
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<UserDto> getAllUsers() {
         return userRepository.findAll().stream()
-                .map(this::convertToDto)
+                .map(UserMapper::toDto)
                 .collect(Collectors.toList());
     }
 
@@ -85,6 +79,8 @@ public class UserServiceImpl implements UserService {
     public Optional<UserDto> updateUser(Long id, UserDto userDto) {
         return userRepository.findById(id)
                 .map(existingUser -> {
+                    evictPrincipal(existingUser.getUsername()); // 旧用户名对应的认证缓存失效
+                    entityCache.userChanged(id);
                     if (userDto.getUsername() != null && !userDto.getUsername().equals(existingUser.getUsername())) {
                         if (userRepository.findByUsername(userDto.getUsername()).filter(u -> !u.getId().equals(id)).isPresent()) {
                             throw new IllegalArgumentException("Another user with username " + userDto.getUsername() + " already exists.");
@@ -98,16 +94,28 @@ public class UserServiceImpl implements UserService {
                     if (userDto.getRole() != null) {
                         existingUser.setRole(userDto.getRole());
                     }
-                    return convertToDto(userRepository.save(existingUser));
+                    if (userDto.getEnabled() != null) {
+                        existingUser.setEnabled(userDto.getEnabled());
+                    }
+                    return UserMapper.toDto(userRepository.save(existingUser));
                 });
     }
 
     @Override
     public boolean deleteUser(Long id) {
-        if (userRepository.existsById(id)) {
-            userRepository.deleteById(id);
+        Optional<User> user = userRepository.findById(id);
+        if (user.isPresent()) {
+            userRepository.delete(user.get());
+            evictPrincipal(user.get().getUsername());
+            entityCache.userChanged(id);
             return true;
         }
         return false;
     }
+
+    // 立即失效一次，事务提交后再失效一次，防止提交前有请求把旧数据重新加载进缓存
+    private void evictPrincipal(String username) {
+        userPrincipalCache.invalidate(username);
+        TransactionHooks.afterCommit(() -> userPrincipalCache.invalidate(username));
+    }
 }
\ No newline at end of file
@@ -1,20 +1,29 @@
 package com.example.library.seurity; // 根据你的包结构
 
+import com.example.library.monitor.LatencyHistogram;
+import com.example.library.monitor.MetricsRegistry;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtRequestFilter extends OncePerRequestFilter {
@@ -22,34 +31,51 @@ public class JwtRequestFilter extends OncePerRequestFilter {
     @Autowired
     private UserDetailsService userDetailsService; // 你的 CustomUserDetailsService
 
+    @Autowired
+    private UserPrincipalCache userPrincipalCache;
+
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    // 为 true 时直接信任 Token 中的角色声明，认证过程完全不访问数据库；
+    // 代价是用户被禁用、删除或改角色后，已签发的 Token 在过期前仍按旧角色生效
+    @Value("${library.security.trust-token-roles:false}")
+    private boolean trustTokenRoles;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
 
         final String authorizationHeader = request.getHeader("Authorization");
 
-        String username = null;
-        String jwt = null;
+        VerifiedToken token = null;
 
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
+            String jwt = authorizationHeader.substring(7);
+            long start = System.nanoTime();
+            String result = "valid";
             try {
-                username = jwtUtil.extractUsername(jwt);
-            } catch (IllegalArgumentException e) {
-                logger.warn("Unable to get JWT Token");
+                // 签名与有效期只校验一次，后续都使用解析出的声明
+                token = jwtUtil.verify(jwt);
             } catch (ExpiredJwtException e) {
+                result = "expired";
                 logger.warn("JWT Token has expired");
+            } catch (IllegalArgumentException | JwtException e) {
+                result = "invalid";
+                logger.warn("Unable to get JWT Token");
             }
+            validationTimer(result).record(System.nanoTime() - start);
         } else {
             // logger.warn("JWT Token does not begin with Bearer String");
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-            if (jwtUtil.validateToken(jwt, userDetails)) {
+        if (token != null && token.username() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            UserDetails userDetails = loadPrincipal(token);
+            // 用户已被删除或禁用时不建立认证，请求按匿名处理
+            if (userDetails != null && userDetails.isEnabled() && jwtUtil.validateToken(token, userDetails)) {
                 UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 usernamePasswordAuthenticationToken
@@ -59,4 +85,28 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         }
         chain.doFilter(request, response);
     }
-}
\ No newline at end of file
+
+    private LatencyHistogram validationTimer(String result) {
+        return metricsRegistry.timer("library_jwt_validation_seconds",
+                "JWT signature and expiry validation (including verified-token cache hits)", "result", result);
+    }
+
+    private UserDetails loadPrincipal(VerifiedToken token) {
+        String username = token.username();
+        if (trustTokenRoles) {
+            List<String> roles = token.roles();
+            if (roles != null) {
+                return new User(username, "", roles.stream()
+                        .map(SimpleGrantedAuthority::new)
+                        .collect(Collectors.toList()));
+            }
+            // 旧 Token 没有角色声明，回退到缓存/数据库
+        }
+        try {
+            return userPrincipalCache.get(username, userDetailsService::loadUserByUsername);
+        } catch (UsernameNotFoundException e) {
+            logger.warn("JWT Token refers to a user that no longer exists");
+            return null;
+        }
+    }
+}
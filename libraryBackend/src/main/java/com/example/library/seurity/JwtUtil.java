@@ -1,43 +1,90 @@
 package com.example.library.seurity;
 
+import com.example.library.cache.TtlCache;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
-import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtUtil {
 
     // 强烈建议从配置文件读取，并且不要硬编码在代码中
-    private final Key jwtSigningKey; // 或者使用更安全的密钥生成/管理方式
+    private final SecretKey jwtSigningKey; // 或者使用更安全的密钥生成/管理方式
     private final long jwtExpirationInMs = 3600000; // 1 hour
+    public static final String ROLES_CLAIM = "roles";
+
+    // 解析器是线程安全且不可变的，只构建一次，避免每次解析都重新创建
+    private final JwtParser jwtParser;
+
+    // 已校验 Token 的缓存，条目在 Token 过期时失效。
+    // 以完整的 Token 字符串为键：命中要求逐字节相同，无法通过构造哈希碰撞绕过签名校验
+    private final TtlCache<String, VerifiedToken> verifiedTokens;
 
     // 使用构造函数注入配置的密钥字符串
-    public JwtUtil(@Value("${jwt.secret}") String secret) {
+    public JwtUtil(@Value("${jwt.secret}") String secret,
+                   @Value("${library.security.token-cache.max-size:10000}") int tokenCacheMaxSize) {
         byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
         // 对于 HS256，密钥长度至少应为 256位 (32字节)。确保你的 secret 足够长。
         // Keys.hmacShaKeyFor(keyBytes) 是更推荐的方式，它会确保生成的密钥符合算法要求。
         this.jwtSigningKey = Keys.hmacShaKeyFor(keyBytes);
-        // 或者，如果你严格控制字节长度并使用旧版API，可能是：
-        // this.jwtSigningKey = new SecretKeySpec(keyBytes, SignatureAlgorithm.HS256.getJcaName());
+        this.jwtParser = Jwts.parser().verifyWith(jwtSigningKey).build();
+        this.verifiedTokens = new TtlCache<>(tokenCacheMaxSize);
+    }
+
+    /**
+     * 校验 Token 的签名和有效期并返回其中的声明，每个 Token 只做一次签名校验，之后直到过期都从缓存返回。
+     * @throws io.jsonwebtoken.ExpiredJwtException 如果 Token 已过期
+     * @throws io.jsonwebtoken.JwtException 如果 Token 格式错误或签名无效
+     * @throws IllegalArgumentException 如果 Token 为空
+     */
+    @SuppressWarnings("unchecked")
+    public VerifiedToken verify(String token) {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("JWT token is empty");
+        }
+        VerifiedToken cached = verifiedTokens.getIfPresent(token);
+        if (cached != null) {
+            return cached;
+        }
+        Claims claims = extractAllClaims(token); // 过期的 Token 会在这里抛出 ExpiredJwtException
+        VerifiedToken verified = new VerifiedToken(
+                claims.getSubject(),
+                claims.get(ROLES_CLAIM, List.class),
+                claims.getIssuedAt(),
+                claims.getExpiration());
+        if (verified.expiration() != null) {
+            verifiedTokens.put(token, verified, verified.expiration().getTime());
+        }
+        return verified;
     }
 
     public String extractUsername(String token) {
-        return extractClaim(token, Claims::getSubject);
+        return verify(token).username();
+    }
+
+    /**
+     * 读取 Token 中签发时写入的角色列表，旧版本签发的 Token 没有该声明时返回 null。
+     */
+    public List<String> extractRoles(String token) {
+        return verify(token).roles();
     }
 
     public Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+        return verify(token).expiration();
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
@@ -46,35 +93,41 @@ public class JwtUtil {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parser().setSigningKey(jwtSigningKey).build().parseClaimsJws(token).getBody();
-    }
-
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        return jwtParser.parseSignedClaims(token).getPayload();
     }
 
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
-        // 你可以添加更多 claims，例如用户的角色
-        // List<String> roles = userDetails.getAuthorities().stream()
-        //                        .map(GrantedAuthority::getAuthority)
-        //                        .collect(Collectors.toList());
-        // claims.put("roles", roles);
+        // 写入用户的角色，开启 library.security.trust-token-roles 后过滤器可直接据此构建认证主体
+        List<String> roles = userDetails.getAuthorities().stream()
+                               .map(GrantedAuthority::getAuthority)
+                               .collect(Collectors.toList());
+        claims.put(ROLES_CLAIM, roles);
         return createToken(claims, userDetails.getUsername());
     }
 
     private String createToken(Map<String, Object> claims, String subject) {
         return Jwts.builder()
-                .setClaims(claims)
-                .setSubject(subject)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationInMs))
-                .signWith(jwtSigningKey, SignatureAlgorithm.HS256)
+                .claims(claims)
+                .subject(subject)
+                .issuedAt(new Date(System.currentTimeMillis()))
+                .expiration(new Date(System.currentTimeMillis() + jwtExpirationInMs))
+                .signWith(jwtSigningKey, Jwts.SIG.HS256)
                 .compact();
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        return validateToken(verify(token), userDetails);
+    }
+
+    /**
+     * 用已经校验过的 Token 声明判断它是否属于给定用户，不再重复解析 Token。
+     */
+    public boolean validateToken(VerifiedToken token, UserDetails userDetails) {
+        return token.username().equals(userDetails.getUsername()) && !token.isExpired();
+    }
+
+    public Map<String, Object> tokenCacheStats() {
+        return verifiedTokens.stats();
     }
-}
\ No newline at end of file
+}
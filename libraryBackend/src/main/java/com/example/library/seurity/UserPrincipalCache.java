@@ -0,0 +1,73 @@
+package com.example.library.seurity;
+
+import com.example.library.cache.TtlCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 已认证用户主体 (UserDetails) 的有界 TTL 缓存，供 JwtRequestFilter 使用，
+ * 避免每个携带 Token 的请求都查询一次 users 表。
+ * 用户的角色、密码或启用状态发生变化时，UserServiceImpl 会调用 {@link #invalidate(String)} 使缓存失效。
+ * 缓存的主体不包含密码哈希。
+ */
+@Component
+public class UserPrincipalCache {
+
+    private final TtlCache<String, UserDetails> cache;
+    // 每次失效都会递增；加载期间若发生过失效，则不把可能已过时的结果放入缓存
+    private final AtomicLong invalidationGeneration = new AtomicLong();
+    private final boolean enabled;
+    private final long ttlMillis;
+
+    public UserPrincipalCache(@Value("${library.security.principal-cache.enabled:true}") boolean enabled,
+                              @Value("${library.security.principal-cache.max-size:10000}") int maxSize, // 最多缓存的用户数
+                              @Value("${library.security.principal-cache.ttl-seconds:300}") long ttlSeconds) { // 缓存有效期 (秒)
+        this.enabled = enabled;
+        this.cache = new TtlCache<>(maxSize);
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * 获取用户主体，缓存未命中或已过期时通过 loader 从数据库加载。
+     */
+    public UserDetails get(String username, Function<String, UserDetails> loader) {
+        if (!enabled) {
+            return loader.apply(username);
+        }
+        UserDetails cached = cache.getIfPresent(username);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = invalidationGeneration.get();
+        UserDetails principal = User.withUserDetails(loader.apply(username)).password("").build();
+        if (invalidationGeneration.get() == generation) {
+            cache.put(username, principal, System.currentTimeMillis() + ttlMillis);
+        }
+        return principal;
+    }
+
+    /**
+     * 使某个用户的缓存失效 (用户被修改或删除时调用)。
+     */
+    public void invalidate(String username) {
+        invalidationGeneration.incrementAndGet();
+        if (username != null) {
+            cache.invalidate(username);
+        }
+    }
+
+    public void invalidateAll() {
+        invalidationGeneration.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public Map<String, Object> stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.library.seurity;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 通过签名校验且未过期的 JWT 中解析出的声明。
+ * @param username 主题 (用户名)
+ * @param roles 签发时写入的角色，旧 Token 没有该声明时为 null
+ * @param issuedAt 签发时间
+ * @param expiration 过期时间
+ */
+public record VerifiedToken(String username, List<String> roles, Date issuedAt, Date expiration) {
+
+    public boolean isExpired() {
+        return expiration != null && expiration.before(new Date());
+    }
+}
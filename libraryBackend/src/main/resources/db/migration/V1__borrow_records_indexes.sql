@@ -0,0 +1,23 @@
+-- borrow_records 热点查询的复合索引 (每个索引服务的 BorrowingRecordRepository 方法见注释)
+-- InnoDB 二级索引隐含主键 id，因此只读取 id 和索引列的查询不需要回表
+
+-- findByUserAndStatus(In), countByUserAndStatusIn, existsByUserAndBookAndStatusIn,
+-- findByUserAndBookAndStatus, findIdBookIdAndStatusByUserId (覆盖), findByUserAndStatusAndBookIdIn,
+-- findByUserOrderByBorrowDateDesc, findHistoryByUserId / findHistoryByUsername
+CREATE INDEX idx_br_user_status_book ON borrow_records (user_id, status, book_id);
+
+-- findByBookAndStatus(In)：某本书的借阅/预约，按预约时间先后
+CREATE INDEX idx_br_book_status_reservation ON borrow_records (book_id, status, reservation_date);
+
+-- findByStatusAndDueDateBefore, findByStatusAndDueDateLessThanEqual, findAllOverdue,
+-- findIdAndDueDateByStatus (覆盖)：逾期检测与逾期列表
+CREATE INDEX idx_br_status_due_date ON borrow_records (status, due_date);
+
+-- findReservationQueueEntries：启动时按预约先后重建预约队列
+CREATE INDEX idx_br_status_reservation ON borrow_records (status, reservation_date);
+
+-- findExpiredHolds：查找保留已过期的预约
+CREATE INDEX idx_br_status_hold_expiry ON borrow_records (status, reservation_expiry_date);
+
+-- findBorrowEventsSince, countBorrowsByBook (覆盖)：热门排行榜重建
+CREATE INDEX idx_br_borrow_date_book ON borrow_records (borrow_date, book_id);
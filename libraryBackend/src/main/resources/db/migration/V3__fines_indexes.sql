@@ -0,0 +1,10 @@
+-- fines 热点查询的复合索引 (每个索引服务的 FineRepository 方法见注释)
+
+-- findAccrualDates, accrue：每日计提按 (状态, 已计提日期) 分组批量更新
+CREATE INDEX idx_fine_status_accrued ON fines (status, accrued_through);
+
+-- sumBalanceByUserId (覆盖金额以外的条件), findByUserId：用户未缴余额与罚款列表
+CREATE INDEX idx_fine_user_status ON fines (user_id, status);
+
+-- findByBorrowingRecordIdAndStatus, openAccruingFines 中的 NOT EXISTS：归还、续借时结清计提中的罚款
+CREATE INDEX idx_fine_record_status ON fines (borrow_record_id, status);
@@ -0,0 +1,5 @@
+-- 借阅历史键集分页 (每个索引服务的 BorrowingRecordRepository 方法见注释)
+
+-- findHistoryPage：按用户定位后沿 (borrow_date, id) 倒序扫描，翻到多深的位置代价都相同；
+-- findUnborrowedHistoryPage：borrow_date IS NULL 同样是该索引的一个前缀，按 id 倒序
+CREATE INDEX idx_br_user_borrow_date ON borrow_records (user_id, borrow_date, id);
@@ -0,0 +1,4 @@
+-- 预约记录在借出之前没有借阅日期和应还日期。
+-- 实体映射已允许为空，但 ddl-auto=update 不会放宽已有列的 NOT NULL 约束
+ALTER TABLE borrow_records MODIFY borrow_date DATETIME(6) NULL;
+ALTER TABLE borrow_records MODIFY due_date DATE NULL;
@@ -0,0 +1,99 @@
+package com.example.library.audit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CirculationEventLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void concurrentPublishersAreWrittenAcrossSegmentsAndReplayed() throws Exception {
+        // 1 MB 段约可容纳 21800 条记录，60000 个事件需要三个段
+        CirculationEventLog eventLog = new CirculationEventLog(true, directory.toString(), 65536, 1, 50);
+        eventLog.afterPropertiesSet();
+        int publishers = 4;
+        int perPublisher = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(publishers);
+        for (int p = 0; p < publishers; p++) {
+            long userId = p + 1;
+            executor.submit(() -> {
+                for (int i = 0; i < perPublisher; i++) {
+                    long recordId = userId * 1_000_000 + i;
+                    long bookId = i % 10;
+                    eventLog.publish(CirculationEvent.Type.BORROW, recordId, userId, bookId, 20_000);
+                    if (i % 2 == 0) {
+                        eventLog.publish(CirculationEvent.Type.RETURN, recordId, userId, bookId, 0);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        eventLog.destroy();
+
+        assertEquals(0L, eventLog.stats().get("dropped"));
+        assertEquals(60_000L, eventLog.stats().get("written"));
+        CirculationLogReplay.Summary summary = CirculationLogReplay.replay(directory, 3);
+        assertEquals(3, summary.segments());
+        assertEquals(60_000, summary.events());
+        assertEquals(40_000L, summary.counts().get(CirculationEvent.Type.BORROW));
+        assertEquals(20_000L, summary.counts().get(CirculationEvent.Type.RETURN));
+        assertEquals(publishers, summary.distinctUsers());
+        assertEquals(20_000, summary.activeLoans());
+        assertEquals(new CirculationLogReplay.BookBorrows(0, 4_000), summary.topBooks().get(0));
+        assertEquals(0, summary.corruptRecords());
+
+        // 同一发布者的事件保持发布顺序：每条记录的 RETURN 都在它的 BORROW 之后
+        List<CirculationEvent> userOne = new ArrayList<>();
+        CirculationLogReplay.forEach(directory, event -> {
+            if (event.userId() == 1) {
+                userOne.add(event);
+            }
+        });
+        assertEquals(15_000, userOne.size());
+        assertEquals(CirculationEvent.Type.BORROW, userOne.get(0).type());
+        assertEquals(CirculationEvent.Type.RETURN, userOne.get(1).type());
+        assertEquals(userOne.get(0).recordId(), userOne.get(1).recordId());
+    }
+
+    @Test
+    void replaySkipsTornRecords() throws Exception {
+        CirculationEventLog eventLog = new CirculationEventLog(true, directory.toString(), 1024, 1, 1000);
+        eventLog.afterPropertiesSet();
+        for (long i = 1; i <= 3; i++) {
+            eventLog.publish(CirculationEvent.Type.RESERVE, i, i, 7, 0);
+        }
+        eventLog.destroy();
+
+        // 模拟崩溃时只写了一半的第二条记录
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[8]), CirculationEventLog.HEADER_SIZE + CirculationEventLog.RECORD_SIZE + 16);
+        }
+
+        CirculationLogReplay.Summary summary = CirculationLogReplay.replay(directory, 10);
+        assertEquals(2, summary.events());
+        assertEquals(1, summary.corruptRecords());
+        assertEquals(2L, summary.counts().get(CirculationEvent.Type.RESERVE));
+    }
+}
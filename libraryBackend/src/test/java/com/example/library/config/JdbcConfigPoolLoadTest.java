@@ -0,0 +1,79 @@
+package com.example.library.config;
+
+import com.example.library.monitor.ConnectionPoolMetrics;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 连接池负载测试：并发线程数远大于连接池大小时，连接获取延迟应保持在可接受范围内且不发生超时。
+ */
+@SpringBootTest
+class JdbcConfigPoolLoadTest {
+
+    private static final int THREADS = 64;
+    private static final int CHECKOUTS_PER_THREAD = 200;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ConnectionPoolMetrics connectionPoolMetrics;
+
+    @Test
+    void pooledAcquisitionLatencyUnderLoad() throws Exception {
+        HikariDataSource pool = assertInstanceOf(HikariDataSource.class, dataSource);
+        long before = connectionPoolMetrics.getAcquisition().getCount();
+
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < CHECKOUTS_PER_THREAD; i++) {
+                        try (Connection connection = dataSource.getConnection();
+                             Statement statement = connection.createStatement();
+                             ResultSet rs = statement.executeQuery("SELECT 1")) {
+                            rs.next();
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES), "load workers did not finish in time");
+
+        assertTrue(failures.isEmpty(), () -> "connection checkout failed: " + failures);
+        assertEquals(0, connectionPoolMetrics.getTimeouts());
+        assertTrue(connectionPoolMetrics.getAcquisition().getCount() - before >= (long) THREADS * CHECKOUTS_PER_THREAD);
+        assertTrue(pool.getHikariPoolMXBean().getTotalConnections() <= pool.getMaximumPoolSize());
+
+        double p99 = connectionPoolMetrics.getAcquisition().percentileMillis(0.99);
+        Map<String, Object> snapshot = connectionPoolMetrics.snapshot();
+        assertTrue(p99 < pool.getConnectionTimeout(), () -> "p99 acquisition latency exceeded the connection timeout: " + snapshot);
+        assertEquals(pool.getPoolName(), snapshot.get("pool"));
+        assertEquals(0L, snapshot.get("acquisitionTimeouts"));
+        assertTrue(((Number) snapshot.get("total")).intValue() <= pool.getMaximumPoolSize(), () -> "pool grew past its maximum: " + snapshot);
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.library.config;
+
+import com.example.library.entity.impl.Book;
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.entity.impl.BorrowingRecord;
+import com.example.library.entity.impl.User;
+import com.example.library.monitor.ConnectionPoolMetrics;
+import com.example.library.monitor.LatencyHistogram;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.UserRepository;
+import com.example.library.service.BookService;
+import com.example.library.service.BorrowingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 借阅接口在平台线程池与虚拟线程下的负载对比：每条 SQL 人为增加延迟 (模拟 MySQL 延迟升高)，
+ * 大量借阅请求占满执行器时，同时测量不访问数据库的请求 (条件 GET 判断 304 用的版本查询) 的延迟。
+ * 平台线程模式下这些请求要排在借阅后面等待空闲的工作线程；虚拟线程模式下借阅只在连接池中排队，其他请求立即执行。
+ * 虚拟线程部分需要 Java 21 运行时，低版本上跳过。
+ */
+@SpringBootTest(properties = // 独立的库：大量借阅不影响其他测试 (例如热门排行榜)
+        "spring.datasource.url=jdbc:h2:mem:virtual_thread_load;MODE=MySQL;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=10000")
+class VirtualThreadBorrowLoadTest {
+
+    // 按比例缩小的场景：MySQL 延迟升高到每条语句 20 ms，借阅请求数是平台线程数的 2.4 倍 (连接池 20 个连接)
+    private static final long STATEMENT_LATENCY_MS = 20;
+    private static final int PLATFORM_THREADS = 50;
+    private static final int BORROWS = 120;
+    private static final int PROBES = 20;
+
+    @TestConfiguration
+    static class SlowDatabaseConfig {
+
+        @Bean
+        static BeanPostProcessor slowDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? withLatency(dataSource, DataSource.class) : bean;
+                }
+            };
+        }
+    }
+
+    @Autowired
+    private BorrowingService borrowingService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BorrowingRecordRepository borrowingRecordRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ConnectionPoolMetrics connectionPoolMetrics;
+
+    @Test
+    void borrowLoadOnPlatformAndVirtualThreads() throws Exception {
+        Result platform = run("platform", Executors.newFixedThreadPool(PLATFORM_THREADS));
+
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads need a Java 21 runtime");
+        ExecutorService virtual = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        Result virtualThreads = run("virtual", virtual);
+        assertTrue(virtualThreads.probeP99Millis() <= platform.probeP99Millis(),
+                () -> "requests that skip the database should not queue behind borrows on virtual threads:\n"
+                        + platform + "\n" + virtualThreads);
+    }
+
+    private Result run(String mode, ExecutorService executor) throws Exception {
+        // 每个借阅请求借一本不同的书：同一本书的库存扣减在数据库行锁上串行，测出的是锁等待而不是执行模式的差别
+        List<Book> books = new ArrayList<>();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < BORROWS; i++) {
+            books.add(new Book(null, "Load " + mode + " " + i, "Author", "vt-load-" + mode + "-" + i, "Publisher",
+                    new BigDecimal("10.00"), 1));
+            users.add(new User(null, "vt-load-" + mode + "-" + i, "password", "ROLE_USER", true));
+        }
+        books = bookRepository.saveAll(books);
+        users = userRepository.saveAll(users);
+        long timeoutsBefore = connectionPoolMetrics.getTimeouts();
+
+        LatencyHistogram borrowLatency = new LatencyHistogram();
+        LatencyHistogram probeLatency = new LatencyHistogram();
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<Long> recordIds = new ConcurrentLinkedQueue<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < BORROWS; i++) {
+            Long userId = users.get(i).getId();
+            Long bookId = books.get(i).getId();
+            long submitted = System.nanoTime();
+            executor.submit(() -> {
+                try {
+                    recordIds.add(borrowingService.borrowBook(userId, bookId).getId());
+                    borrowLatency.record(System.nanoTime() - submitted);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+        }
+        Long probedBookId = books.get(0).getId();
+        for (int i = 0; i < PROBES; i++) {
+            long submitted = System.nanoTime();
+            executor.submit(() -> {
+                bookService.getBookVersion(probedBookId);
+                probeLatency.record(System.nanoTime() - submitted);
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES), mode + " load did not finish in time");
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        assertTrue(failures.isEmpty(), () -> mode + " borrows failed: " + failures);
+        assertEquals(PROBES, probeLatency.getCount(), mode + " probes did not all complete");
+        // 每个用户恰好一条借阅中的记录：并发下借阅上限与库存检查都成立
+        List<BorrowingRecord> records = borrowingRecordRepository.findAllWithUserAndBookByIdIn(List.copyOf(recordIds));
+        assertEquals(BORROWS, records.size());
+        assertTrue(records.stream().allMatch(r -> r.getStatus() == BorrowStatus.BORROWED));
+        assertEquals(BORROWS, records.stream().map(r -> r.getUser().getId()).distinct().count());
+        assertTrue(bookRepository.findAllById(books.stream().map(Book::getId).toList()).stream().allMatch(b -> b.getQuantity() == 0));
+        assertEquals(timeoutsBefore, connectionPoolMetrics.getTimeouts(), mode + " timed out waiting for connections");
+        return new Result(mode, BORROWS / elapsedSeconds, borrowLatency.percentileMillis(0.99), probeLatency.percentileMillis(0.99));
+    }
+
+    private record Result(String mode, double borrowsPerSecond, double borrowP99Millis, double probeP99Millis) {
+
+        @Override
+        public String toString() {
+            return String.format("%-8s threads: %7.1f borrows/s, borrow p99 = %8.1f ms, non-database request p99 = %8.1f ms",
+                    mode, borrowsPerSecond, borrowP99Millis, probeP99Millis);
+        }
+    }
+
+    /**
+     * 包装 JDBC 对象：语句执行前等待 STATEMENT_LATENCY_MS，由 DataSource / Connection 创建的对象同样被包装。
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T withLatency(T target, Class<T> type) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (Statement.class.isAssignableFrom(method.getDeclaringClass()) && method.getName().startsWith("execute")) {
+                Thread.sleep(STATEMENT_LATENCY_MS);
+            }
+            Object result = invoke(target, method, args);
+            Class<?> returnType = method.getReturnType();
+            boolean wrap = returnType == java.sql.Connection.class || Statement.class.isAssignableFrom(returnType);
+            return wrap && result != null ? withLatency(result, (Class<Object>) returnType) : result;
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
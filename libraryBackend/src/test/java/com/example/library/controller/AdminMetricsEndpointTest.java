@@ -0,0 +1,105 @@
+package com.example.library.controller;
+
+import com.example.library.dto.BookDto;
+import com.example.library.entity.impl.User;
+import com.example.library.monitor.MetricsRegistry;
+import com.example.library.repository.UserRepository;
+import com.example.library.service.BookService;
+import com.example.library.service.BorrowingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Prometheus 指标：请求按 URI 模板计时并记录 SQL 语句数，借阅拒绝按原因计数，服务方法、JWT 校验与缓存都有对应的序列；
+ * 标签组合超过上限后归入 OTHER 序列。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class AdminMetricsEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MetricsRegistry metricsRegistry;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BorrowingService borrowingService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void exposesRequestServiceRejectionJwtAndCacheMetrics() throws Exception {
+        BookDto book = new BookDto();
+        book.setTitle("指标测试");
+        book.setAuthor("Author");
+        book.setIsbn("metrics-isbn-1");
+        book.setPublisher("Publisher");
+        book.setPrice(new BigDecimal("10.00"));
+        book.setQuantity(1);
+        Long bookId = bookService.createBook(book).getId();
+        User first = userRepository.save(new User(null, "metrics-user-1", "password", "ROLE_USER", true));
+        User second = userRepository.save(new User(null, "metrics-user-2", "password", "ROLE_USER", true));
+
+        long alreadyBorrowed = rejections("already_borrowed");
+        long noStock = rejections("no_stock");
+        borrowingService.borrowBook(first.getId(), bookId);
+        assertThrows(IllegalStateException.class, () -> borrowingService.borrowBook(first.getId(), bookId));
+        assertThrows(IllegalStateException.class, () -> borrowingService.borrowBook(second.getId(), bookId));
+        assertEquals(alreadyBorrowed + 1, rejections("already_borrowed"));
+        assertEquals(noStock + 1, rejections("no_stock"));
+
+        mockMvc.perform(get("/api/v1/books/" + bookId).with(user("metrics-reader"))).andExpect(status().isOk());
+        mockMvc.perform(get("/api/v1/books/" + bookId).header(HttpHeaders.AUTHORIZATION, "Bearer not-a-token"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/v1/admin/metrics").with(user("metrics-reader"))).andExpect(status().isForbidden());
+
+        String scrape = mockMvc.perform(get("/api/v1/admin/metrics").with(user("metrics-admin").roles("ADMIN")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(scrape.contains("# TYPE library_http_server_requests_seconds histogram"));
+        assertTrue(scrape.contains("library_http_server_requests_seconds_bucket{method=\"GET\",uri=\"/api/v1/books/{id}\",status=\"200\",le=\"+Inf\"}"));
+        assertTrue(scrape.contains("library_http_server_queries_count{method=\"GET\",uri=\"/api/v1/books/{id}\"}"));
+        assertTrue(scrape.contains("library_borrow_rejections_total{reason=\"limit_reached\"}"), "every reason is exported, even at zero");
+        assertTrue(scrape.contains("library_service_method_seconds_count{service=\"BorrowingServiceImpl\",method=\"borrowBook\",exception=\"IllegalStateException\"}"));
+        assertTrue(scrape.contains("library_service_method_seconds_count{service=\"BookServiceImpl\",method=\"createBook\",exception=\"none\"}"));
+        assertTrue(scrape.contains("library_jwt_validation_seconds_count{result=\"invalid\"}"));
+        assertTrue(scrape.contains("library_cache_hit_ratio{cache=\"books\"}"));
+    }
+
+    @Test
+    void seriesBeyondTheLimitAreFoldedIntoOther() {
+        MetricsRegistry registry = new MetricsRegistry(2);
+        for (int i = 0; i < 5; i++) {
+            registry.counter("requests_total", "Requests", "path", "/books/" + i).increment();
+        }
+
+        String scrape = registry.scrape();
+        assertTrue(scrape.contains("requests_total{path=\"/books/0\"} 1\n"));
+        assertTrue(scrape.contains("requests_total{path=\"/books/1\"} 1\n"));
+        assertTrue(scrape.contains("requests_total{path=\"OTHER\"} 3\n"));
+        assertTrue(scrape.contains("# TYPE library_metrics_dropped_series_total counter\n"));
+        assertTrue(scrape.contains("library_metrics_dropped_series_total 3\n"));
+    }
+
+    private long rejections(String reason) {
+        return metricsRegistry.counter("library_borrow_rejections_total", "", "reason", reason).sum();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.library.controller;
+
+import com.example.library.dto.BookDto;
+import com.example.library.service.BookService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 图书读接口的条件请求：ETag 未变化时返回 304 且不执行任何查询；图书修改或库存变化后 ETag 随之改变。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@WithMockUser(username = "conditional-get-user")
+class BookControllerConditionalGetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookService bookService;
+
+    @Test
+    void unchangedBooksAreAnsweredWith304WithoutQueries() throws Exception {
+        BookDto book = bookService.createBook(bookDto("conditional-get-isbn"));
+        String bookUrl = "/api/v1/books/" + book.getId();
+        String[] urls = {bookUrl, "/api/v1/books", "/api/v1/books/page?size=10", "/api/v1/books?q=conditional"};
+
+        for (String url : urls) {
+            String etag = etag(url);
+            QueryCountInspector.reset();
+            mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, etag)).andExpect(status().isNotModified());
+            // 启用压缩时 Tomcat 把 ETag 改为弱 ETag，客户端带回的弱 ETag 同样匹配
+            mockMvc.perform(get(url).header(HttpHeaders.IF_NONE_MATCH, "W/" + etag)).andExpect(status().isNotModified());
+            assertEquals(0, QueryCountInspector.count(), url);
+        }
+
+        String bookEtag = etag(bookUrl);
+        String catalogEtag = etag("/api/v1/books");
+        BookDto changed = bookDto("conditional-get-isbn");
+        changed.setQuantity(5);
+        bookService.updateBook(book.getId(), changed);
+
+        assertNotEquals(bookEtag, etag(bookUrl));
+        assertNotEquals(catalogEtag, etag("/api/v1/books"));
+        mockMvc.perform(get(bookUrl).header(HttpHeaders.IF_NONE_MATCH, bookEtag)).andExpect(status().isOk());
+    }
+
+    @Test
+    void newBooksChangeTheCatalogButNotOtherBooks() throws Exception {
+        BookDto existing = bookService.createBook(bookDto("conditional-get-existing"));
+        String existingEtag = etag("/api/v1/books/" + existing.getId());
+        String catalogEtag = etag("/api/v1/books");
+
+        bookService.createBook(bookDto("conditional-get-new"));
+
+        assertEquals(existingEtag, etag("/api/v1/books/" + existing.getId()));
+        assertNotEquals(catalogEtag, etag("/api/v1/books"));
+    }
+
+    private String etag(String url) throws Exception {
+        String etag = mockMvc.perform(get(url)).andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag, url);
+        return etag;
+    }
+
+    private static BookDto bookDto(String isbn) {
+        BookDto dto = new BookDto();
+        dto.setTitle("Conditional " + isbn);
+        dto.setAuthor("Author");
+        dto.setIsbn(isbn);
+        dto.setPublisher("Publisher");
+        dto.setPrice(new BigDecimal("10.00"));
+        dto.setQuantity(1);
+        return dto;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.library.controller;
+
+import com.example.library.dto.BookDto;
+import com.example.library.service.BookService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 图书的键集分页与 NDJSON 流式导出：逐页翻完与一次导出得到相同且不重复的图书，
+ * hasMore 由多取一条判断，单页大小超出上限时返回 400。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@WithMockUser(username = "book-paging-user")
+class BookControllerPagingTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void pagesCoverTheStreamedCatalogWithoutDuplicatesOrGaps() throws Exception {
+        for (int i = 0; i < 12; i++) {
+            bookService.createBook(bookDto("book-paging-isbn-" + i));
+        }
+
+        MvcResult streamed = mockMvc.perform(get("/api/v1/books/stream"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn();
+        List<Long> catalog = new ArrayList<>();
+        for (String line : streamed.getResponse().getContentAsString().split("\n")) {
+            catalog.add(objectMapper.readTree(line).get("id").asLong()); // 每行是一本完整的图书
+        }
+        assertTrue(catalog.size() >= 12);
+
+        // 页大小 5 不整除总数，最后一页不满；每页的游标正好是本页最后一条记录
+        List<Long> paged = new ArrayList<>();
+        String cursor = null;
+        JsonNode page;
+        do {
+            page = page(cursor, 5);
+            JsonNode items = page.get("items");
+            items.forEach(item -> paged.add(item.get("id").asLong()));
+            if (page.get("hasMore").asBoolean()) {
+                assertEquals(5, items.size());
+                assertEquals(items.get(items.size() - 1).get("id").asLong(), page.get("nextCursor").asLong());
+                cursor = page.get("nextCursor").asText();
+            }
+        } while (page.get("hasMore").asBoolean());
+        assertTrue(page.get("nextCursor").isNull());
+        assertEquals(catalog, paged, "keyset pages return every book once, in id order");
+
+        // 游标之后恰好剩 3 本：页大小 3 时多取的一条不存在，hasMore 为 false；页大小 2 时还有一页
+        String threeLeft = String.valueOf(catalog.get(catalog.size() - 4));
+        JsonNode exact = page(threeLeft, 3);
+        assertEquals(3, exact.get("items").size());
+        assertFalse(exact.get("hasMore").asBoolean());
+        assertTrue(exact.get("nextCursor").isNull());
+        JsonNode oneShort = page(threeLeft, 2);
+        assertTrue(oneShort.get("hasMore").asBoolean());
+        JsonNode last = page(oneShort.get("nextCursor").asText(), 2);
+        assertEquals(1, last.get("items").size());
+        assertEquals(catalog.get(catalog.size() - 1), last.get("items").get(0).get("id").asLong());
+        assertFalse(last.get("hasMore").asBoolean());
+    }
+
+    @Test
+    void rejectsPageSizesOutsideTheLimit() throws Exception {
+        mockMvc.perform(get("/api/v1/books/page").param("size", "200")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/v1/books/page").param("size", "201")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/books/page").param("size", "0")).andExpect(status().isBadRequest());
+    }
+
+    private JsonNode page(String after, int size) throws Exception {
+        var request = get("/api/v1/books/page").param("size", String.valueOf(size));
+        if (after != null) {
+            request.param("after", after);
+        }
+        String body = mockMvc.perform(request).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+
+    private static BookDto bookDto(String isbn) {
+        BookDto dto = new BookDto();
+        dto.setTitle("Paging " + isbn);
+        dto.setAuthor("Author");
+        dto.setIsbn(isbn);
+        dto.setPublisher("Publisher");
+        dto.setPrice(new BigDecimal("10.00"));
+        dto.setQuantity(1);
+        return dto;
+    }
+}
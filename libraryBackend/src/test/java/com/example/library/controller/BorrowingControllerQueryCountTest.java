@@ -0,0 +1,138 @@
+package com.example.library.controller;
+
+import com.example.library.entity.impl.Book;
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.entity.impl.BorrowingRecord;
+import com.example.library.entity.impl.User;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 借阅记录列表接口的 SQL 数量预算：无论返回多少条记录，每个接口都只发出一条查询。
+ * 批量借阅的查找查询整批只执行一次，每多借一本只增加库存扣减和插入两条语句。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class BorrowingControllerQueryCountTest {
+
+    private static final String USERNAME = "query-count-user";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BorrowingRecordRepository borrowingRecordRepository;
+
+    @Test
+    @WithMockUser(username = USERNAME, roles = "ADMIN")
+    void listEndpointsIssueOneQueryRegardlessOfResultSize() throws Exception {
+        User user = userRepository.save(new User(null, USERNAME, "password", "ROLE_ADMIN", true));
+        String[] endpoints = {
+                "/api/v1/borrowings/history/me",
+                "/api/v1/borrowings/history/user/" + user.getId(),
+                "/api/v1/borrowings/overdue",
+                "/api/v1/borrowings/overdue/page?size=100"
+        };
+
+        addOverdueBorrowings(user, 1);
+        int[] small = countQueries(endpoints);
+        addOverdueBorrowings(user, 25);
+        int[] large = countQueries(endpoints);
+
+        for (int i = 0; i < endpoints.length; i++) {
+            assertEquals(1, small[i], endpoints[i] + " with 1 record");
+            assertEquals(1, large[i], endpoints[i] + " with 26 records");
+        }
+    }
+
+    @Test
+    @WithMockUser(username = "query-count-librarian", roles = "LIBRARIAN")
+    void batchBorrowLooksUpOncePerBatchAndReportsEachItem() throws Exception {
+        Book soldOut = saveBook(0);
+        int two = batchBorrow(saveUser("batch-user-1"), saveBook(1).getId(), saveBook(1).getId(), soldOut.getId());
+        User user = saveUser("batch-user-2");
+        Long[] bookIds = {saveBook(1).getId(), saveBook(1).getId(), saveBook(1).getId(), saveBook(1).getId()};
+        int four = batchBorrow(user, bookIds[0], bookIds[1], bookIds[1], -1L, bookIds[2], bookIds[3]);
+        assertEquals(2 * 2, four - two, "only the stock update and the insert repeat per borrowed book");
+
+        List<BorrowingRecord> loans = borrowingRecordRepository.findByUserAndStatus(user, BorrowStatus.BORROWED);
+        String body = "{\"recordIds\": [" + loans.get(0).getId() + ", " + loans.get(1).getId() + ", " + loans.get(0).getId() + "]}";
+        mockMvc.perform(post("/api/v1/borrowings/batch/return").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded").value(2))
+                .andExpect(jsonPath("$.items[2].success").value(false));
+        assertEquals(1, bookRepository.findById(bookIds[0]).orElseThrow().getQuantity());
+    }
+
+    private int batchBorrow(User user, Long... bookIds) throws Exception {
+        String ids = Arrays.stream(bookIds).map(String::valueOf).collect(Collectors.joining(","));
+        String body = "{\"userId\": " + user.getId() + ", \"bookIds\": [" + ids + "]}";
+        QueryCountInspector.reset();
+        mockMvc.perform(post("/api/v1/borrowings/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(bookIds.length))
+                .andExpect(jsonPath("$.items[0].success").value(true))
+                .andExpect(jsonPath("$.items[2].success").value(false));
+        return QueryCountInspector.count();
+    }
+
+    private User saveUser(String username) {
+        return userRepository.save(new User(null, username, "password", "ROLE_USER", true));
+    }
+
+    private Book saveBook(int quantity) {
+        return bookRepository.save(new Book(null, "Batch book", "Author",
+                "batch-" + System.nanoTime(), "Publisher", new BigDecimal("10.00"), quantity));
+    }
+
+    private int[] countQueries(String[] endpoints) throws Exception {
+        int[] counts = new int[endpoints.length];
+        for (int i = 0; i < endpoints.length; i++) {
+            QueryCountInspector.reset();
+            mockMvc.perform(get(endpoints[i])).andExpect(status().isOk());
+            counts[i] = QueryCountInspector.count();
+        }
+        return counts;
+    }
+
+    private void addOverdueBorrowings(User user, int count) {
+        for (int i = 0; i < count; i++) {
+            Book book = bookRepository.save(new Book(null, "Query count book", "Author",
+                    "query-count-" + System.nanoTime(), "Publisher", new BigDecimal("10.00"), 1));
+            BorrowingRecord record = new BorrowingRecord();
+            record.setUser(user);
+            record.setBook(book);
+            record.setBorrowDate(LocalDateTime.now().minusDays(40));
+            record.setDueDate(LocalDate.now().minusDays(10));
+            record.setStatus(BorrowStatus.BORROWED);
+            borrowingRecordRepository.save(record);
+        }
+    }
+}
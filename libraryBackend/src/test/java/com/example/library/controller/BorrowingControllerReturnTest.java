@@ -0,0 +1,74 @@
+package com.example.library.controller;
+
+import com.example.library.entity.impl.Book;
+import com.example.library.entity.impl.BorrowingRecord;
+import com.example.library.entity.impl.User;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.UserRepository;
+import com.example.library.service.BorrowingService;
+import com.example.library.service.impl.ReservationQueue;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 归还接口只接受借阅中或逾期的记录：对预约记录 (排队、保留、已取消) 调用归还返回 400，库存和预约队列不变。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class BorrowingControllerReturnTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BorrowingService borrowingService;
+
+    @Autowired
+    private ReservationQueue reservationQueue;
+
+    @Autowired
+    private BorrowingRecordRepository borrowingRecordRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    @WithMockUser(username = "return-reserver-0", roles = "USER")
+    void returningAReservationIsRejectedWithoutTouchingStockOrQueue() throws Exception {
+        Book book = bookRepository.save(new Book(null, "预约不可归还", "Author", "return-isbn-1", "Publisher", new BigDecimal("10.00"), 1));
+        User holder = userRepository.save(new User(null, "return-reserver-0", "password", "ROLE_USER", true));
+        User waiter = userRepository.save(new User(null, "return-reserver-1", "password", "ROLE_USER", true));
+        User canceller = userRepository.save(new User(null, "return-reserver-2", "password", "ROLE_USER", true));
+        BorrowingRecord held = borrowingService.reserveBook(holder.getId(), book.getId());
+        BorrowingRecord waiting = borrowingService.reserveBook(waiter.getId(), book.getId());
+        BorrowingRecord canceled = borrowingService.reserveBook(canceller.getId(), book.getId());
+        borrowingService.cancelReservation(canceller.getId(), canceled.getId());
+        assertNotNull(held.getReservationExpiryDate(), "the only copy is held for the first reservation");
+
+        for (BorrowingRecord reservation : List.of(held, waiting, canceled)) {
+            mockMvc.perform(put("/api/v1/borrowings/" + reservation.getId() + "/return"))
+                    .andExpect(status().isBadRequest());
+        }
+
+        assertEquals(0, bookRepository.findById(book.getId()).orElseThrow().getQuantity());
+        assertEquals(List.of(waiting.getId()), reservationQueue.waitingReservations(book.getId()));
+        assertEquals(held.getStatus(), borrowingRecordRepository.findById(held.getId()).orElseThrow().getStatus());
+        assertNotNull(borrowingRecordRepository.findById(held.getId()).orElseThrow().getReservationExpiryDate());
+    }
+}
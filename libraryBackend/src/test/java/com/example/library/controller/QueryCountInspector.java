@@ -0,0 +1,32 @@
+package com.example.library.controller;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * 统计当前线程发出的 SQL 语句数量，并记住最后一条语句，在测试配置中注册为 Hibernate 的 StatementInspector。
+ */
+public class QueryCountInspector implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+    private static final ThreadLocal<String> LAST_STATEMENT = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        LAST_STATEMENT.set(sql);
+        return sql;
+    }
+
+    public static void reset() {
+        COUNT.get()[0] = 0;
+        LAST_STATEMENT.remove();
+    }
+
+    public static int count() {
+        return COUNT.get()[0];
+    }
+
+    public static String lastStatement() {
+        return LAST_STATEMENT.get();
+    }
+}
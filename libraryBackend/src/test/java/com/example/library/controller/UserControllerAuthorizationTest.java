@@ -0,0 +1,56 @@
+package com.example.library.controller;
+
+import com.example.library.entity.impl.User;
+import com.example.library.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 修改和删除用户 (包括停用账户、修改角色) 只允许管理员，普通读者调用时返回 403 且用户保持不变。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class UserControllerAuthorizationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void onlyAdminsCanDisableOrDeleteUsers() throws Exception {
+        User target = userRepository.save(new User(null, "authz-target", "password", "ROLE_ADMIN", true));
+        String disable = "{\"username\":\"authz-target\",\"password\":\"new-password\",\"role\":\"ROLE_USER\",\"enabled\":false}";
+
+        mockMvc.perform(put("/api/v1/users/" + target.getId()).with(user("authz-patron").roles("USER"))
+                        .contentType(MediaType.APPLICATION_JSON).content(disable))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(delete("/api/v1/users/" + target.getId()).with(user("authz-patron").roles("USER")))
+                .andExpect(status().isForbidden());
+        User unchanged = userRepository.findById(target.getId()).orElseThrow();
+        assertTrue(unchanged.isEnabled());
+        assertEquals("ROLE_ADMIN", unchanged.getRole());
+        assertEquals("password", unchanged.getPassword());
+
+        mockMvc.perform(put("/api/v1/users/" + target.getId()).with(user("authz-admin").roles("ADMIN"))
+                        .contentType(MediaType.APPLICATION_JSON).content(disable))
+                .andExpect(status().isOk());
+        assertFalse(userRepository.findById(target.getId()).orElseThrow().isEnabled());
+        mockMvc.perform(delete("/api/v1/users/" + target.getId()).with(user("authz-admin").roles("ADMIN")))
+                .andExpect(status().isNoContent());
+        assertTrue(userRepository.findById(target.getId()).isEmpty());
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.library.mapper;
+
+import com.example.library.dto.BookDto;
+import com.example.library.dto.UserDto;
+import com.example.library.entity.impl.Book;
+import com.example.library.entity.impl.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeanUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 显式映射与原先 BeanUtils.copyProperties 的结果逐属性一致 (实体或 DTO 增加字段而映射未更新时在这里失败)。
+ * 两者映射 10 万本图书的耗时比较见 JMH 模块的 MapperBenchmark。
+ */
+class MapperParityTest {
+
+    private static final int BOOKS = 1_000;
+
+    @Test
+    void bookMappingMatchesBeanUtils() {
+        Book book = new Book(7L, "Title", "Author", "isbn-7", "Publisher", new BigDecimal("12.50"), 3);
+        BookDto expected = new BookDto();
+        BeanUtils.copyProperties(book, expected);
+        assertEquals(expected, BookMapper.toDto(book));
+
+        Book expectedEntity = new Book();
+        BeanUtils.copyProperties(expected, expectedEntity);
+        assertEquals(expectedEntity, BookMapper.toEntity(expected));
+
+        BookDto update = BookMapper.toDto(new Book(99L, "New", null, "isbn-8", null, null, 1));
+        BookMapper.updateEntity(update, book);
+        assertEquals(new Book(7L, "New", null, "isbn-8", null, null, 1), book);
+    }
+
+    @Test
+    void userMappingMatchesBeanUtilsAndOmitsPassword() {
+        User user = new User(5L, "reader", "$2a$10$hash", "ROLE_USER", true);
+        UserDto expected = new UserDto();
+        BeanUtils.copyProperties(user, expected, "password");
+        UserDto dto = UserMapper.toDto(user);
+        assertEquals(expected, dto);
+        assertNull(dto.getPassword());
+
+        dto.setPassword("plain-secret");
+        User expectedEntity = new User();
+        BeanUtils.copyProperties(dto, expectedEntity);
+        assertEquals(expectedEntity, UserMapper.toEntity(dto));
+    }
+
+    @Test
+    void bookListMappingMatchesBeanUtils() {
+        List<Book> books = new ArrayList<>(BOOKS);
+        for (int i = 0; i < BOOKS; i++) {
+            books.add(new Book((long) i, "Title " + i, "Author", "isbn-" + i, "Publisher", new BigDecimal("10.00"), i % 5));
+        }
+        assertEquals(mapWithBeanUtils(books), mapWithMapper(books));
+    }
+
+    private static List<BookDto> mapWithBeanUtils(List<Book> books) {
+        List<BookDto> result = new ArrayList<>(books.size());
+        for (Book book : books) {
+            BookDto dto = new BookDto();
+            BeanUtils.copyProperties(book, dto);
+            result.add(dto);
+        }
+        return result;
+    }
+
+    private static List<BookDto> mapWithMapper(List<Book> books) {
+        List<BookDto> result = new ArrayList<>(books.size());
+        for (Book book : books) {
+            result.add(BookMapper.toDto(book));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.library.migration;
+
+import com.example.library.controller.QueryCountInspector;
+import com.example.library.entity.impl.Book;
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.entity.impl.User;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 迁移在启动时执行且只执行一次；borrow_records 的每个热点查询在执行计划中都走索引而不是全表扫描
+ * (findTopBorrowedBooks、countBorrowsByBook 本身就是全表聚合，不在检查范围内)。
+ */
+@SpringBootTest
+class SchemaMigratorTest {
+
+    // H2 执行计划中表后面的注释是所用的索引，没有 ":" 条件说明是整表扫描 (tableScan 或无条件遍历主键)
+    private static final Pattern FULL_SCAN = Pattern.compile("\"borrow_records\" \"\\w+\"\\s*/\\* [^*:]+ \\*/");
+
+    private static final List<BorrowStatus> ACTIVE = List.of(BorrowStatus.BORROWED, BorrowStatus.OVERDUE);
+
+    @Autowired
+    private SchemaMigrator schemaMigrator;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private BorrowingRecordRepository borrowingRecordRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void migrationsRunOnceAtStartup() {
+        List<Map<String, Object>> history = schemaMigrator.history();
+        assertEquals(1, ((Number) history.get(0).get("version")).intValue());
+        assertEquals(0, schemaMigrator.migrate(), "a second run has nothing to apply");
+        assertEquals(history.size(), schemaMigrator.history().size());
+    }
+
+    @Test
+    void scriptsAreSplitIntoStatements() {
+        List<String> statements = SchemaMigrator.statements("""
+                -- comment;
+                CREATE INDEX a
+                    ON t (x);
+
+                CREATE INDEX b ON t (y);
+                """);
+        assertEquals(List.of("CREATE INDEX a ON t (x)", "CREATE INDEX b ON t (y)"), statements);
+    }
+
+    @Test
+    void borrowRecordQueriesUseIndexes() {
+        User user = userRepository.save(new User(null, "explain-user", "password", "ROLE_USER", true));
+        Book book = bookRepository.save(new Book(null, "Explain", "Author", "explain-isbn", "Publisher", new BigDecimal("10.00"), 1));
+        LocalDate today = LocalDate.now();
+
+        Map<String, Runnable> queries = new LinkedHashMap<>();
+        queries.put("findByUserAndStatus", () -> borrowingRecordRepository.findByUserAndStatus(user, BorrowStatus.BORROWED));
+        queries.put("findByUserAndStatusIn", () -> borrowingRecordRepository.findByUserAndStatusIn(user, ACTIVE));
+        queries.put("findByBookAndStatus", () -> borrowingRecordRepository.findByBookAndStatus(book, BorrowStatus.RESERVED));
+        queries.put("findByBookAndStatusIn", () -> borrowingRecordRepository.findByBookAndStatusIn(book, ACTIVE));
+        queries.put("findByUserAndBookAndStatus", () -> borrowingRecordRepository.findByUserAndBookAndStatus(user, book, BorrowStatus.BORROWED));
+        queries.put("existsByUserAndBookAndStatusIn", () -> borrowingRecordRepository.existsByUserAndBookAndStatusIn(user, book, ACTIVE));
+        queries.put("findByUserOrderByBorrowDateDesc", () -> borrowingRecordRepository.findByUserOrderByBorrowDateDesc(user));
+        queries.put("findByStatusAndDueDateBefore", () -> borrowingRecordRepository.findByStatusAndDueDateBefore(BorrowStatus.BORROWED, today));
+        queries.put("countByUserAndStatusIn", () -> borrowingRecordRepository.countByUserAndStatusIn(user, ACTIVE));
+        queries.put("findByStatusAndDueDateLessThanEqual", () -> borrowingRecordRepository.findByStatusAndDueDateLessThanEqual(BorrowStatus.BORROWED, today));
+        queries.put("findByBookAndStatusOrderByReservationDateAsc", () -> borrowingRecordRepository.findByBookAndStatusOrderByReservationDateAsc(book, BorrowStatus.RESERVED));
+        queries.put("findAllOverdue", () -> borrowingRecordRepository.findAllOverdue(today, BorrowStatus.BORROWED, BorrowStatus.OVERDUE));
+        queries.put("findOverduePage", () -> borrowingRecordRepository.findOverduePage(0L, today, BorrowStatus.BORROWED, BorrowStatus.OVERDUE, PageRequest.of(0, 50)));
+        queries.put("findHistoryByUserId", () -> borrowingRecordRepository.findHistoryByUserId(user.getId()));
+        queries.put("findHistoryByUsername", () -> borrowingRecordRepository.findHistoryByUsername(user.getUsername()));
+        queries.put("findIdAndDueDateByStatus", () -> borrowingRecordRepository.findIdAndDueDateByStatus(BorrowStatus.BORROWED));
+        queries.put("markOverdue", () -> borrowingRecordRepository.markOverdue(List.of(1L), today, BorrowStatus.BORROWED, BorrowStatus.OVERDUE));
+        queries.put("findByIdForUpdate", () -> borrowingRecordRepository.findByIdForUpdate(1L));
+        queries.put("findReservationQueueEntries", () -> borrowingRecordRepository.findReservationQueueEntries(BorrowStatus.RESERVED));
+        queries.put("assignHold", () -> borrowingRecordRepository.assignHold(1L, today, BorrowStatus.RESERVED));
+        queries.put("findExpiredHolds", () -> borrowingRecordRepository.findExpiredHolds(today, BorrowStatus.RESERVED));
+        queries.put("expireHold", () -> borrowingRecordRepository.expireHold(1L, today, BorrowStatus.RESERVED, BorrowStatus.RESERVATION_EXPIRED));
+        queries.put("findIdBookIdAndStatusByUserId", () -> borrowingRecordRepository.findIdBookIdAndStatusByUserId(user.getId(), ACTIVE));
+        queries.put("findByUserAndStatusAndBookIdIn", () -> borrowingRecordRepository.findByUserAndStatusAndBookIdIn(user, BorrowStatus.RESERVED, List.of(book.getId())));
+        queries.put("findAllWithUserAndBookByIdIn", () -> borrowingRecordRepository.findAllWithUserAndBookByIdIn(List.of(1L, 2L)));
+        queries.put("findBorrowEventsSince", () -> borrowingRecordRepository.findBorrowEventsSince(LocalDateTime.now().minusDays(30)));
+        queries.put("findHistoryByUserIdAndStatusIn", () -> borrowingRecordRepository.findHistoryByUserIdAndStatusIn(user.getId(), ACTIVE));
+        queries.put("findHistoryPage", () -> borrowingRecordRepository.findHistoryPage(user.getId(), ACTIVE,
+                LocalDateTime.now(), Long.MAX_VALUE, PageRequest.of(0, 20)));
+        queries.put("findUnborrowedHistoryPage", () -> borrowingRecordRepository.findUnborrowedHistoryPage(user.getId(), ACTIVE,
+                Long.MAX_VALUE, PageRequest.of(0, 20)));
+
+        queries.forEach((name, query) -> {
+            String sql = capture(query);
+            assertNotNull(sql, name);
+            String plan = explain(sql);
+            assertFalse(FULL_SCAN.matcher(plan).find(), name + " scans borrow_records:\n" + plan);
+        });
+    }
+
+    private String capture(Runnable query) {
+        return transactionTemplate.execute(status -> {
+            QueryCountInspector.reset();
+            query.run();
+            status.setRollbackOnly();
+            return QueryCountInspector.lastStatement();
+        });
+    }
+
+    /**
+     * 参数不影响 H2 的索引选择，全部绑定为 null。
+     */
+    private String explain(String sql) {
+        return jdbcTemplate.execute("EXPLAIN " + sql, (PreparedStatement ps) -> {
+            for (int i = 1; i <= ps.getParameterMetaData().getParameterCount(); i++) {
+                ps.setObject(i, null);
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1));
+                }
+            }
+            return plan.toString();
+        });
+    }
+}
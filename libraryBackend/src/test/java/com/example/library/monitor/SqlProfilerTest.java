@@ -0,0 +1,109 @@
+package com.example.library.monitor;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * SQL 剖析：语句按请求计时并计数行数，同一请求内重复的 SELECT 报告为疑似 N+1，请求结束后按端点汇总。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class SqlProfilerTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordsStatementsPerRequestAndFlagsRepeatedSelects() throws Exception {
+        SqlProfiler profiler = new SqlProfiler(0, 3, 100); // 每条语句都算慢查询
+        try (Connection connection = profiler.wrap(dataSource.getConnection())) {
+            try (Statement statement = connection.createStatement()) { // 请求之外执行，记在 BACKGROUND 名下
+                statement.execute("CREATE LOCAL TEMPORARY TABLE profiler_test (id INT)");
+                assertEquals(5, statement.executeUpdate("INSERT INTO profiler_test VALUES (1), (2), (3), (4), (5)"));
+            }
+
+            profiler.beginRequest("GET", "/api/v1/borrowings/user/7");
+            for (int i = 0; i < 3; i++) {
+                try (PreparedStatement statement = connection.prepareStatement("SELECT id FROM profiler_test\n  WHERE id > ?")) {
+                    statement.setInt(1, i);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        while (rs.next()) {
+                            assertEquals(statement, rs.getStatement());
+                        }
+                    }
+                }
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.executeQuery("SELECT 'a''b', 1").close();
+                statement.executeQuery("SELECT 'c', 22").close();
+            }
+            assertEquals(5, profiler.endRequest("GET /api/v1/borrowings/user/{userId}"), "statements are reported to the HTTP metrics");
+            assertEquals(-1, profiler.endRequest("GET /api/v1/borrowings/user/{userId}"));
+        }
+
+        Map<String, Object> stats = profiler.stats();
+        assertEquals(1L, stats.get("nPlusOneDetections"));
+        Map<String, Object> endpoint = endpoint(stats, "GET /api/v1/borrowings/user/{userId}");
+        assertEquals(1L, endpoint.get("requests"));
+        assertEquals(5L, endpoint.get("statements"));
+        assertEquals(5L, endpoint.get("maxStatementsPerRequest"));
+        assertEquals(5L + 4 + 3, endpoint.get("rows"), "rows are counted as they are read");
+        assertEquals(5L, endpoint.get("slowStatements"));
+        assertEquals(1L, endpoint.get("nPlusOneRequests"));
+        List<Map<String, Object>> top = (List<Map<String, Object>>) endpoint.get("topStatements");
+        Map<String, Object> repeated = top.stream().filter(s -> s.get("sql").equals("SELECT id FROM profiler_test WHERE id > ?"))
+                .findFirst().orElseThrow();
+        assertEquals(3L, repeated.get("executions"));
+        assertEquals(1L, repeated.get("nPlusOneRequests"));
+        Map<String, Object> literals = top.stream().filter(s -> s.get("sql").equals("SELECT ?, ?")).findFirst().orElseThrow();
+        assertEquals(2L, literals.get("executions"), "statements differing only in literals share a shape");
+
+        Map<String, Object> background = endpoint(stats, SqlProfiler.BACKGROUND);
+        assertEquals(2L, background.get("statements"));
+        assertEquals(5L, background.get("rows"));
+        List<Map<String, Object>> slow = (List<Map<String, Object>>) stats.get("recentSlowStatements");
+        assertEquals(7, slow.size());
+        assertTrue(slow.get(0).get("request").toString().endsWith(" GET /api/v1/borrowings/user/7"), "most recent first");
+        assertEquals(SqlProfiler.BACKGROUND, slow.get(slow.size() - 1).get("request"));
+    }
+
+    @Test
+    void adminEndpointReportsStatementsPerEndpoint() throws Exception {
+        mockMvc.perform(get("/api/v1/users").with(user("sql-admin").roles("ADMIN"))).andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/v1/admin/sql").with(user("sql-admin").roles("ADMIN")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.endpoints[*].endpoint", hasItem("GET /api/v1/users")))
+                .andExpect(jsonPath("$.endpoints[?(@.endpoint == 'GET /api/v1/users')].statements", hasItem(greaterThan(0))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> endpoint(Map<String, Object> stats, String name) {
+        return ((List<Map<String, Object>>) stats.get("endpoints")).stream()
+                .filter(e -> e.get("endpoint").equals(name)).findFirst().orElseThrow();
+    }
+}
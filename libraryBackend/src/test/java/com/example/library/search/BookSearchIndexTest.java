@@ -0,0 +1,89 @@
+package com.example.library.search;
+
+import com.example.library.entity.impl.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookSearchIndexTest {
+
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new BookSearchIndex(null, null);
+        index.index(book(1L, "Java 核心技术", "Cay Horstmann", "机械工业出版社", "978-7-111-54742-6"));
+        index.index(book(2L, "深入理解Java虚拟机", "周志明", "机械工业出版社", "978-7-111-64124-7"));
+        index.index(book(3L, "三体", "刘慈欣", "重庆出版社", "978-7-536-69293-0"));
+        index.index(book(4L, "Effective Java", "Joshua Bloch", "Addison-Wesley", "978-0-134-68599-1"));
+    }
+
+    @Test
+    void matchesChineseSubstringsWithBigrams() {
+        assertEquals(List.of(2L), search("虚拟机", BookSearchIndex.ALL_FIELDS));
+        assertEquals(List.of(3L), search("三体", BookSearchIndex.ALL_FIELDS));
+        assertEquals(List.of(3L), search("慈", BookSearchIndex.FIELD_AUTHOR));
+    }
+
+    @Test
+    void matchesLatinPrefixesAndRanksTitleAboveOtherFields() {
+        List<Long> result = search("jav", BookSearchIndex.ALL_FIELDS);
+        assertEquals(3, result.size());
+        assertTrue(result.containsAll(List.of(1L, 2L, 4L)));
+        assertEquals(List.of(4L), search("bloch", BookSearchIndex.FIELD_AUTHOR));
+    }
+
+    @Test
+    void combinesClausesAcrossFields() {
+        List<Long> result = index.search(List.of(
+                new BookSearchIndex.Clause("java", BookSearchIndex.FIELD_TITLE),
+                new BookSearchIndex.Clause("周志明", BookSearchIndex.FIELD_AUTHOR)), 10);
+        assertEquals(List.of(2L), result);
+        assertTrue(search("java", BookSearchIndex.FIELD_AUTHOR).isEmpty());
+    }
+
+    @Test
+    void findsIsbnWithOrWithoutHyphens() {
+        assertEquals(List.of(3L), search("978-7-536-69293-0", BookSearchIndex.ALL_FIELDS));
+        assertEquals(List.of(3L), search("9787536", BookSearchIndex.FIELD_ISBN));
+    }
+
+    @Test
+    void appliesIncrementalUpdatesAndDeletes() {
+        index.index(book(3L, "球状闪电", "刘慈欣", "四川科学技术出版社", "978-7-536-69293-0"));
+        assertTrue(search("三体", BookSearchIndex.ALL_FIELDS).isEmpty());
+        assertEquals(List.of(3L), search("闪电", BookSearchIndex.ALL_FIELDS));
+
+        index.remove(3L);
+        assertTrue(search("刘慈欣", BookSearchIndex.ALL_FIELDS).isEmpty());
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void prefixMatchesTermsBeyondTheExpansionCap() {
+        // 100 个以 "zq" 开头的不同词项，按字典序排在最后的词项也必须命中
+        for (int i = 0; i < 100; i++) {
+            index.index(book(100L + i, "zq" + (char) ('a' + i / 26) + (char) ('a' + i % 26), "Author", "Publisher", null));
+        }
+        index.index(book(300L, "zqzz", "Knuth", "Publisher", null));
+
+        List<Long> all = index.search(List.of(new BookSearchIndex.Clause("zq", BookSearchIndex.FIELD_TITLE)), 200);
+        assertEquals(101, all.size());
+        assertEquals(List.of(300L), index.search(List.of(
+                new BookSearchIndex.Clause("zq", BookSearchIndex.FIELD_TITLE),
+                new BookSearchIndex.Clause("knuth", BookSearchIndex.FIELD_AUTHOR)), 10));
+    }
+
+    private List<Long> search(String text, int fields) {
+        return index.search(List.of(new BookSearchIndex.Clause(text, fields)), 10);
+    }
+
+    private static Book book(Long id, String title, String author, String publisher, String isbn) {
+        return new Book(id, title, author, isbn, publisher, BigDecimal.TEN, 1);
+    }
+}
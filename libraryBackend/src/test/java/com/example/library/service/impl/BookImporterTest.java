@@ -0,0 +1,92 @@
+package com.example.library.service.impl;
+
+import com.example.library.dto.BookImportResultDto;
+import com.example.library.entity.impl.Book;
+import com.example.library.repository.BookRepository;
+import com.example.library.service.BookService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 图书批量导入：CSV/JSON Lines 解析、查重、校验，以及跨多个批次的导入 (导入吞吐量见 JMH 模块的 ImportBenchmark)。
+ */
+@SpringBootTest
+class BookImporterTest {
+
+    private static final int LARGE_FILE_ROWS = 2_500; // 超过一个批次 (library.import.batch-size)，最后一批不满
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Test
+    void csvImportSkipsDuplicatesAndReportsInvalidRows() {
+        bookRepository.save(new Book(null, "Existing", "Author", "import-existing", "Publisher", new BigDecimal("10.00"), 1));
+        String csv = """
+                isbn,title,author,publisher,price,quantity
+                import-1,"Title, with comma",Author A,Publisher,12.50,3
+                import-2,"Multi
+                line ""quoted"" title",Author B,,8.00,1
+                import-1,Duplicate in file,Author C,Publisher,9.90,1
+                import-existing,Already in catalog,Author D,Publisher,9.90,1
+                import-3,Bad quantity,Author E,Publisher,9.90,-1
+                import-4,Bad price,Author F,Publisher,abc,1
+                """;
+
+        BookImportResultDto result = bookService.importBooks(stream(csv), BookService.ImportFormat.CSV);
+
+        assertEquals(6, result.getTotalRows());
+        assertEquals(2, result.getImported());
+        assertEquals(2, result.getDuplicates());
+        assertEquals(2, result.getRejected());
+        assertEquals(7, result.getRejections().get(0).getLine());
+        assertEquals("Title, with comma", bookRepository.findByIsbn("import-1").orElseThrow().getTitle());
+        assertEquals("Multi\nline \"quoted\" title", bookRepository.findByIsbn("import-2").orElseThrow().getTitle());
+    }
+
+    @Test
+    void jsonLinesImportReportsMalformedLines() {
+        String jsonl = """
+                {"title":"Json Book","author":"Author","isbn":"import-json-1","price":5.5,"quantity":2}
+                {"title":"Broken",
+                {"title":"No author","isbn":"import-json-2","price":5.5,"quantity":2}
+                """;
+
+        BookImportResultDto result = bookService.importBooks(stream(jsonl), BookService.ImportFormat.JSONL);
+
+        assertEquals(3, result.getTotalRows());
+        assertEquals(1, result.getImported());
+        assertEquals(2, result.getRejected());
+        assertTrue(bookRepository.findByIsbn("import-json-1").isPresent());
+    }
+
+    @Test
+    void largeFileIsImportedAcrossBatches() {
+        StringBuilder csv = new StringBuilder("title,author,isbn,publisher,price,quantity\n");
+        for (int i = 0; i < LARGE_FILE_ROWS; i++) {
+            csv.append("Large file title ").append(i).append(",Author ").append(i % 500)
+                    .append(",import-large-").append(i).append(",Publisher,19.90,3\n");
+        }
+
+        BookImportResultDto result = bookService.importBooks(stream(csv.toString()), BookService.ImportFormat.CSV);
+
+        assertEquals(LARGE_FILE_ROWS, result.getImported());
+        assertEquals(0, result.getRejected());
+        assertEquals("Large file title " + (LARGE_FILE_ROWS - 1),
+                bookRepository.findByIsbn("import-large-" + (LARGE_FILE_ROWS - 1)).orElseThrow().getTitle());
+    }
+
+    private static ByteArrayInputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.library.service.impl;
+
+import com.example.library.controller.QueryCountInspector;
+import com.example.library.entity.impl.Book;
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.entity.impl.BorrowingRecord;
+import com.example.library.entity.impl.User;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.UserRepository;
+import com.example.library.service.BorrowingService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 并发借阅压力测试：大量用户同时借阅同一本热门图书，库存不能出现负数或超卖；
+ * 同一用户并发借阅多本图书时不能超过借阅上限。
+ */
+@SpringBootTest
+class BorrowingServiceImplConcurrencyTest {
+
+    private static final int STOCK = 100;
+    private static final int BORROWERS = 1000;
+    private static final int THREADS = Math.max(8, Runtime.getRuntime().availableProcessors() * 4);
+
+    @Autowired
+    private BorrowingService borrowingService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BorrowingRecordRepository borrowingRecordRepository;
+
+    @Autowired
+    private EntityCache entityCache;
+
+    @Autowired
+    private UserLoanStateCache userLoanStateCache;
+
+    @Autowired
+    private HikariDataSource dataSource;
+
+    @Value("${library.borrow.max-books-per-user:5}")
+    private int maxBooksPerUser;
+
+    @Test
+    void concurrentBorrowsNeverOversellStock() throws Exception {
+        Book book = bookRepository.save(new Book(null, "热门图书", "Author", "concurrency-isbn-1", "Publisher", new BigDecimal("10.00"), STOCK));
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < BORROWERS; i++) {
+            users.add(new User(null, "concurrency-user-" + i, "password", "ROLE_USER", true));
+        }
+        users = userRepository.saveAll(users);
+
+        List<Long> recordIds = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger rejected = new AtomicInteger();
+        ConcurrentLinkedQueue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (User user : users) {
+            pool.submit(() -> {
+                try {
+                    start.await();
+                    BorrowingRecord record = borrowingService.borrowBook(user.getId(), book.getId());
+                    recordIds.add(record.getId());
+                } catch (IllegalStateException e) {
+                    rejected.incrementAndGet();
+                } catch (Throwable e) {
+                    unexpected.add(e);
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(2, TimeUnit.MINUTES), "borrow workers did not finish in time");
+
+        assertTrue(unexpected.isEmpty(), () -> "unexpected failures: " + unexpected);
+        assertEquals(STOCK, recordIds.size());
+        assertEquals(BORROWERS - STOCK, rejected.get());
+        assertEquals(0, bookRepository.findById(book.getId()).orElseThrow().getQuantity());
+
+        // 并发归还后库存应完全恢复
+        ExecutorService returnPool = Executors.newFixedThreadPool(THREADS);
+        for (Long recordId : recordIds) {
+            returnPool.submit(() -> borrowingService.returnBook(recordId));
+        }
+        returnPool.shutdown();
+        assertTrue(returnPool.awaitTermination(2, TimeUnit.MINUTES), "return workers did not finish in time");
+        assertEquals(STOCK, bookRepository.findById(book.getId()).orElseThrow().getQuantity());
+    }
+
+    @Test
+    void concurrentBorrowsBySameUserRespectLoanLimit() throws Exception {
+        User user = userRepository.save(new User(null, "concurrency-same-user", "password", "ROLE_USER", true));
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < maxBooksPerUser * 4; i++) {
+            books.add(new Book(null, "上限测试 " + i, "Author", "concurrency-limit-" + i, "Publisher", new BigDecimal("10.00"), 1));
+        }
+        books = bookRepository.saveAll(books);
+
+        List<Long> recordIds = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (Book book : books) {
+            pool.submit(() -> {
+                try {
+                    start.await();
+                    recordIds.add(borrowingService.borrowBook(user.getId(), book.getId()).getId());
+                } catch (IllegalStateException | InterruptedException ignored) {
+                    // 超过上限的借阅被拒绝
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES), "borrow workers did not finish in time");
+
+        assertEquals(maxBooksPerUser, recordIds.size());
+        assertEquals(maxBooksPerUser, borrowingRecordRepository.countByUserAndStatusIn(user,
+                List.of(BorrowStatus.BORROWED, BorrowStatus.OVERDUE)));
+
+        // 归还一本后，借阅资格检查直接使用缓存，用户和图书来自实体缓存：只剩扣减库存和插入记录
+        borrowingService.returnBook(recordIds.get(0));
+        Book next = books.stream().filter(b -> bookRepository.findById(b.getId()).orElseThrow().getQuantity() > 0)
+                .findFirst().orElseThrow();
+        entityCache.findBook(next.getId()); // 是否已被并发阶段读入缓存取决于调度，这里统一预热
+        QueryCountInspector.reset();
+        borrowingService.borrowBook(user.getId(), next.getId());
+        assertEquals(2, QueryCountInspector.count());
+    }
+
+    @Test
+    void requestsWaitingForTheUserLockHoldNoConnection() throws Exception {
+        int waiters = 4;
+        User user = userRepository.save(new User(null, "concurrency-lock-user", "password", "ROLE_USER", true));
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < waiters; i++) {
+            books.add(new Book(null, "锁等待 " + i, "Author", "concurrency-lock-" + i, "Publisher", new BigDecimal("10.00"), 1));
+        }
+        List<Book> saved = bookRepository.saveAll(books);
+
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> userLoanStateCache.callWithUserLock(user.getId(), () -> {
+            locked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }));
+        holder.start();
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> borrowers = new ArrayList<>();
+        for (Book book : saved) {
+            Thread borrower = new Thread(() -> {
+                try {
+                    borrowingService.borrowBook(user.getId(), book.getId());
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            borrower.start();
+            borrowers.add(borrower);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (borrowers.stream().anyMatch(t -> t.getState() != Thread.State.TIMED_WAITING) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        // 等待锁的请求还没有开启事务，不占用连接池中的连接 (允许后台任务偶尔借用一个)
+        assertTrue(dataSource.getHikariPoolMXBean().getActiveConnections() < waiters,
+                () -> "active connections while waiting: " + dataSource.getHikariPoolMXBean().getActiveConnections());
+
+        release.countDown();
+        holder.join();
+        for (Thread borrower : borrowers) {
+            borrower.join();
+        }
+        assertTrue(failures.isEmpty(), () -> "unexpected failures: " + failures);
+        assertEquals(waiters, borrowingRecordRepository.countByUserAndStatusIn(user, List.of(BorrowStatus.BORROWED)));
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.library.service.impl;
+
+import com.example.library.cache.CacheInvalidationBus;
+import com.example.library.controller.QueryCountInspector;
+import com.example.library.dto.BookDto;
+import com.example.library.entity.impl.Book;
+import com.example.library.entity.impl.User;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.UserRepository;
+import com.example.library.service.BookService;
+import com.example.library.service.BorrowingService;
+import com.example.library.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 图书/用户实体缓存：重复读取不访问数据库，写入和失效广播后读到新数据；借阅不依据缓存中的库存做判断。
+ */
+@SpringBootTest
+class EntityCacheTest {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private BorrowingService borrowingService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void repeatedReadsAreServedFromCacheUntilInvalidated() {
+        BookDto created = bookService.createBook(bookDto("缓存图书", "entity-cache-isbn-1", 3));
+        User user = userRepository.save(new User(null, "entity-cache-user", "password", "ROLE_USER", true));
+
+        bookService.getBookById(created.getId());
+        userService.getUserById(user.getId());
+        QueryCountInspector.reset();
+        assertEquals("缓存图书", bookService.getBookById(created.getId()).orElseThrow().getTitle());
+        assertEquals("缓存图书", bookService.getBookByIsbn("entity-cache-isbn-1").orElseThrow().getTitle());
+        assertEquals("entity-cache-user", userService.getUserByUsername("entity-cache-user").orElseThrow().getUsername());
+        assertEquals(0, QueryCountInspector.count());
+
+        // 修改标题和 ISBN 后，按新旧自然键和主键读取都与数据库一致
+        bookService.updateBook(created.getId(), bookDto("新标题", "entity-cache-isbn-2", 3));
+        assertEquals("新标题", bookService.getBookById(created.getId()).orElseThrow().getTitle());
+        assertTrue(bookService.getBookByIsbn("entity-cache-isbn-1").isEmpty());
+        assertEquals("新标题", bookService.getBookByIsbn("entity-cache-isbn-2").orElseThrow().getTitle());
+
+        // 其他节点的修改通过失效广播到达
+        transactionTemplate.executeWithoutResult(status ->
+                bookRepository.findById(created.getId()).orElseThrow().setTitle("其他节点修改"));
+        assertEquals("新标题", bookService.getBookById(created.getId()).orElseThrow().getTitle());
+        invalidationBus.publish(EntityCache.BOOKS, created.getId());
+        assertEquals("其他节点修改", bookService.getBookById(created.getId()).orElseThrow().getTitle());
+    }
+
+    @Test
+    void borrowDecisionsIgnoreCachedStock() {
+        BookDto book = bookService.createBook(bookDto("库存图书", "entity-cache-stock", 1));
+        User first = userRepository.save(new User(null, "entity-cache-first", "password", "ROLE_USER", true));
+        User second = userRepository.save(new User(null, "entity-cache-second", "password", "ROLE_USER", true));
+
+        assertNotNull(borrowingService.borrowBook(first.getId(), book.getId()));
+        assertEquals(0, bookService.getBookById(book.getId()).orElseThrow().getQuantity(), "borrowing evicts the cached stock");
+
+        // 绕过失效直接补充库存 (相当于失效消息尚未到达)：缓存仍显示 0，借阅仍以数据库为准
+        transactionTemplate.executeWithoutResult(status -> bookRepository.incrementStock(book.getId()));
+        assertEquals(0, bookService.getBookById(book.getId()).orElseThrow().getQuantity());
+        assertNotNull(borrowingService.borrowBook(second.getId(), book.getId()));
+        assertEquals(0, bookRepository.findById(book.getId()).orElseThrow().getQuantity());
+    }
+
+    private static BookDto bookDto(String title, String isbn, int quantity) {
+        BookDto dto = new BookDto();
+        dto.setTitle(title);
+        dto.setAuthor("Author");
+        dto.setIsbn(isbn);
+        dto.setPublisher("Publisher");
+        dto.setPrice(new BigDecimal("10.00"));
+        dto.setQuantity(quantity);
+        return dto;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.library.service.impl;
+
+import com.example.library.dto.FineDto;
+import com.example.library.entity.impl.Book;
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.entity.impl.BorrowingRecord;
+import com.example.library.entity.impl.Fine;
+import com.example.library.entity.impl.FineStatus;
+import com.example.library.entity.impl.User;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.FineRepository;
+import com.example.library.repository.UserRepository;
+import com.example.library.service.BorrowingService;
+import com.example.library.service.FineService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 罚款台账：每日计提增量累加且可补齐漏跑的天数，归还时结清为待缴纳，未缴余额达到上限时拒绝借阅。
+ */
+@SpringBootTest
+class FineLedgerTest {
+
+    @Autowired
+    private FineAccrualJob fineAccrualJob;
+
+    @Autowired
+    private FineService fineService;
+
+    @Autowired
+    private BorrowingService borrowingService;
+
+    @Autowired
+    private FineRepository fineRepository;
+
+    @Autowired
+    private BorrowingRecordRepository borrowingRecordRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void accruesDailySettlesOnReturnAndBlocksBorrowingAboveThreshold() {
+        Book book = bookRepository.save(new Book(null, "罚款测试", "Author", "fine-isbn-1", "Publisher", new BigDecimal("10.00"), 10));
+        Book another = bookRepository.save(new Book(null, "罚款测试 2", "Author", "fine-isbn-2", "Publisher", new BigDecimal("10.00"), 10));
+        User user = userRepository.save(new User(null, "fine-user", "password", "ROLE_USER", true));
+
+        BorrowingRecord fourDaysLate = saveBorrowing(user, book, LocalDate.now().minusDays(4));
+        BorrowingRecord dueToday = saveBorrowing(user, book, LocalDate.now());
+        // 计提任务漏跑了三天：已计提 7 天，下一次运行补齐剩余 3 天
+        BorrowingRecord tenDaysLate = saveBorrowing(user, book, LocalDate.now().minusDays(10));
+        Fine stale = new Fine();
+        stale.setBorrowingRecord(tenDaysLate);
+        stale.setUser(user);
+        stale.setAmount(new BigDecimal("3.50"));
+        stale.setOverdueDays(7);
+        stale.setAccruedThrough(LocalDate.now().minusDays(3));
+        stale.setStatus(FineStatus.ACCRUING);
+        fineRepository.save(stale);
+
+        fineAccrualJob.runOnce();
+        fineAccrualJob.runOnce(); // 同一天重复运行不会重复计提
+
+        Map<Long, FineDto> fines = finesByRecord(user);
+        assertEquals(2, fines.size(), "loans that are not past due have no fine");
+        assertEquals(0, new BigDecimal("2.00").compareTo(fines.get(fourDaysLate.getId()).getAmount()));
+        assertEquals(4, fines.get(fourDaysLate.getId()).getOverdueDays());
+        assertEquals(0, new BigDecimal("5.00").compareTo(fines.get(tenDaysLate.getId()).getAmount()));
+        assertEquals(10, fines.get(tenDaysLate.getId()).getOverdueDays());
+        assertEquals(0, new BigDecimal("7.00").compareTo(fineService.getOutstandingBalance(user.getId())));
+
+        // 归还时罚款结清为待缴纳；余额 7.00 + 4.00 超过上限 10.00 后不能再借
+        borrowingService.returnBook(fourDaysLate.getId());
+        BorrowingRecord eightDaysLate = saveBorrowing(user, another, LocalDate.now().minusDays(8));
+        borrowingService.returnBook(eightDaysLate.getId()); // 计提任务尚未处理过的逾期借阅，归还时直接建立罚款
+        Map<Long, FineDto> settled = finesByRecord(user);
+        assertEquals("UNPAID", settled.get(fourDaysLate.getId()).getStatus());
+        assertEquals(0, new BigDecimal("4.00").compareTo(settled.get(eightDaysLate.getId()).getAmount()));
+        assertEquals(0, new BigDecimal("11.00").compareTo(fineService.getOutstandingBalance(user.getId())));
+        assertThrows(IllegalStateException.class, () -> borrowingService.borrowBook(user.getId(), another.getId()));
+
+        assertThrows(IllegalStateException.class, () -> fineService.payFine(settled.get(tenDaysLate.getId()).getId()),
+                "a fine still accruing cannot be paid");
+        FineDto paid = fineService.payFine(settled.get(eightDaysLate.getId()).getId());
+        assertEquals("PAID", paid.getStatus());
+        assertEquals(0, new BigDecimal("7.00").compareTo(fineService.getOutstandingBalance(user.getId())));
+        assertEquals(BorrowStatus.BORROWED, borrowingService.borrowBook(user.getId(), another.getId()).getStatus());
+        assertEquals(BorrowStatus.BORROWED, borrowingRecordRepository.findById(dueToday.getId()).orElseThrow().getStatus());
+    }
+
+    private Map<Long, FineDto> finesByRecord(User user) {
+        return fineService.getUserFines(user.getId()).stream()
+                .collect(Collectors.toMap(FineDto::getBorrowingRecordId, Function.identity()));
+    }
+
+    private BorrowingRecord saveBorrowing(User user, Book book, LocalDate dueDate) {
+        BorrowingRecord record = new BorrowingRecord();
+        record.setUser(user);
+        record.setBook(book);
+        record.setBorrowDate(LocalDateTime.now().minusDays(30));
+        record.setDueDate(dueDate);
+        record.setStatus(BorrowStatus.BORROWED);
+        return borrowingRecordRepository.save(record);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.library.service.impl;
+
+import com.example.library.dto.BorrowingRecordDto;
+import com.example.library.entity.impl.Book;
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.entity.impl.BorrowingRecord;
+import com.example.library.entity.impl.User;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.UserRepository;
+import com.example.library.service.BorrowingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 逾期检测任务：只标记应还日期已过的 BORROWED 记录，已归还或已续借的记录保持不变。
+ */
+@SpringBootTest
+class OverdueSchedulerTest {
+
+    @Autowired
+    private OverdueScheduler overdueScheduler;
+
+    @Autowired
+    private BorrowingService borrowingService;
+
+    @Autowired
+    private BorrowingRecordRepository borrowingRecordRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void marksOnlyBorrowingsPastTheirDueDate() {
+        Book book = bookRepository.save(new Book(null, "逾期测试", "Author", "overdue-isbn-1", "Publisher", new BigDecimal("10.00"), 10));
+        User user = userRepository.save(new User(null, "overdue-user", "password", "ROLE_USER", true));
+
+        BorrowingRecord pastDue = saveBorrowing(user, book, LocalDate.now().minusDays(3));
+        BorrowingRecord dueToday = saveBorrowing(user, book, LocalDate.now());
+        BorrowingRecord returned = saveBorrowing(user, book, LocalDate.now().minusDays(5));
+        overdueScheduler.runOnce(); // 第一次运行从数据库加载索引
+        borrowingService.returnBook(returned.getId());
+
+        BorrowingRecord newlyPastDue = saveBorrowing(user, book, LocalDate.now().minusDays(1));
+        overdueScheduler.track(newlyPastDue.getId(), newlyPastDue.getDueDate());
+        overdueScheduler.runOnce();
+
+        assertEquals(BorrowStatus.OVERDUE, statusOf(pastDue));
+        assertEquals(BorrowStatus.OVERDUE, statusOf(newlyPastDue));
+        assertEquals(BorrowStatus.BORROWED, statusOf(dueToday));
+        assertEquals(BorrowStatus.RETURNED, statusOf(returned));
+        assertEquals(0, overdueScheduler.runOnce(), "a second run has nothing left to transition");
+
+        List<BorrowingRecordDto> feed = borrowingService.findOverdueBooksPage(null, 100);
+        assertTrue(feed.stream().anyMatch(r -> r.getId().equals(pastDue.getId())));
+        assertTrue(feed.stream().noneMatch(r -> r.getId().equals(dueToday.getId())));
+    }
+
+    private BorrowingRecord saveBorrowing(User user, Book book, LocalDate dueDate) {
+        BorrowingRecord record = new BorrowingRecord();
+        record.setUser(user);
+        record.setBook(book);
+        record.setBorrowDate(LocalDateTime.now().minusDays(30));
+        record.setDueDate(dueDate);
+        record.setStatus(BorrowStatus.BORROWED);
+        return borrowingRecordRepository.save(record);
+    }
+
+    private BorrowStatus statusOf(BorrowingRecord record) {
+        return borrowingRecordRepository.findById(record.getId()).orElseThrow().getStatus();
+    }
+}
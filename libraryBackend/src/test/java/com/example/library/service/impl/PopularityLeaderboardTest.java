@@ -0,0 +1,139 @@
+package com.example.library.service.impl;
+
+import com.example.library.entity.impl.Book;
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.entity.impl.BorrowingRecord;
+import com.example.library.entity.impl.User;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.UserRepository;
+import com.example.library.service.BookService.PopularityWindow;
+import com.example.library.service.BorrowingService;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 热门排行榜：增量更新与从数据库重建的结果一致，按天窗口只统计窗口内的借出；
+ * 前 10 名与原先的 GROUP BY 聚合查询一致 (两者的耗时比较见 JMH 模块的 PopularityBenchmark)。
+ */
+@SpringBootTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class) // 比较用的图书借出次数多，会把前一个测试的图书挤出 top-k
+class PopularityLeaderboardTest {
+
+    private static final int RANKED_BOOKS = 200;
+
+    @Autowired
+    private PopularityLeaderboard popularityLeaderboard;
+
+    @Autowired
+    private BorrowingService borrowingService;
+
+    @Autowired
+    private BorrowingRecordRepository borrowingRecordRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    @Order(1)
+    void incrementalUpdatesMatchRebuildAndRespectWindows() {
+        Book recent = bookRepository.save(new Book(null, "近期热门", "Author", "popular-isbn-1", "Publisher", new BigDecimal("10.00"), 10));
+        Book older = bookRepository.save(new Book(null, "上月热门", "Author", "popular-isbn-2", "Publisher", new BigDecimal("10.00"), 10));
+        User user = userRepository.save(new User(null, "popular-user", "password", "ROLE_USER", true));
+        saveBorrowings(older, user, 4, LocalDateTime.now().minusDays(20));
+        popularityLeaderboard.rebuild();
+
+        for (int i = 0; i < 3; i++) {
+            borrowingService.returnBook(borrowingService.borrowBook(user.getId(), recent.getId()).getId());
+        }
+
+        Map<PopularityWindow, Map<Long, Double>> incremental = scores(recent, older);
+        assertEquals(3.0, incremental.get(PopularityWindow.LAST_7_DAYS).get(recent.getId()));
+        assertEquals(null, incremental.get(PopularityWindow.LAST_7_DAYS).get(older.getId()));
+        assertEquals(4.0, incremental.get(PopularityWindow.LAST_30_DAYS).get(older.getId()));
+        assertEquals(4.0, incremental.get(PopularityWindow.ALL_TIME).get(older.getId()));
+        assertTrue(incremental.get(PopularityWindow.TRENDING).get(recent.getId())
+                > incremental.get(PopularityWindow.TRENDING).get(older.getId()), "recent borrows weigh more");
+
+        popularityLeaderboard.rebuild();
+        Map<PopularityWindow, Map<Long, Double>> rebuilt = scores(recent, older);
+        for (PopularityWindow window : PopularityWindow.values()) {
+            rebuilt.get(window).forEach((bookId, score) ->
+                    assertEquals(incremental.get(window).get(bookId), score, 1e-6, window + " score of book " + bookId));
+        }
+    }
+
+    @Test
+    @Order(2)
+    void leaderboardAgreesWithAggregateQuery() {
+        User user = userRepository.save(new User(null, "popular-bench-user", "password", "ROLE_USER", true));
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < RANKED_BOOKS; i++) {
+            books.add(new Book(null, "Popular " + i, "Author", "popular-bench-" + i, "Publisher", new BigDecimal("10.00"), 1));
+        }
+        books = bookRepository.saveAll(books);
+        List<BorrowingRecord> records = new ArrayList<>();
+        for (int i = 0; i < RANKED_BOOKS; i++) {
+            for (int n = 0; n <= i; n++) { // 第 i 本书借出 i + 1 次，排名唯一
+                records.add(borrowing(books.get(i), user, LocalDateTime.now().minusDays(n % 60)));
+            }
+        }
+        borrowingRecordRepository.saveAll(records);
+        popularityLeaderboard.rebuild();
+
+        List<Long> fromAggregate = borrowingRecordRepository.findTopBorrowedBooks(BorrowStatus.BORROWED, BorrowStatus.RETURNED)
+                .stream().limit(10).map(row -> ((Book) row[0]).getId()).toList();
+        List<Long> fromLeaderboard = popularityLeaderboard.top(PopularityWindow.ALL_TIME, 10).stream()
+                .map(PopularityLeaderboard.Ranked::bookId).toList();
+        assertEquals(fromAggregate, fromLeaderboard);
+    }
+
+    private Map<PopularityWindow, Map<Long, Double>> scores(Book... books) {
+        List<Long> ids = Arrays.stream(books).map(Book::getId).toList();
+        Map<PopularityWindow, Map<Long, Double>> result = new EnumMap<>(PopularityWindow.class);
+        for (PopularityWindow window : PopularityWindow.values()) {
+            result.put(window, popularityLeaderboard.top(window, popularityLeaderboard.capacity()).stream()
+                    .filter(r -> ids.contains(r.bookId()))
+                    .collect(Collectors.toMap(PopularityLeaderboard.Ranked::bookId, PopularityLeaderboard.Ranked::score)));
+        }
+        return result;
+    }
+
+    private void saveBorrowings(Book book, User user, int count, LocalDateTime borrowDate) {
+        List<BorrowingRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(borrowing(book, user, borrowDate));
+        }
+        borrowingRecordRepository.saveAll(records);
+    }
+
+    private static BorrowingRecord borrowing(Book book, User user, LocalDateTime borrowDate) {
+        BorrowingRecord record = new BorrowingRecord();
+        record.setUser(user);
+        record.setBook(book);
+        record.setBorrowDate(borrowDate);
+        record.setDueDate(borrowDate.toLocalDate().plusDays(30));
+        record.setReturnDate(borrowDate.plusDays(7));
+        record.setStatus(BorrowStatus.RETURNED);
+        return record;
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.library.service.impl;
+
+import com.example.library.entity.impl.Book;
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.entity.impl.BorrowingRecord;
+import com.example.library.entity.impl.User;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.UserRepository;
+import com.example.library.service.BorrowingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 预约队列并发测试：归还、预约、取消同时发生时，每本图书只会交给一个预约，
+ * 保留按排队先后分配，库存 + 借出 + 保留始终等于馆藏总数。
+ */
+@SpringBootTest
+class ReservationQueueConcurrencyTest {
+
+    private static final int COPIES = 5;
+    private static final int RESERVERS = 40;
+    private static final int CANCELLERS = 10;
+
+    @Autowired
+    private BorrowingService borrowingService;
+
+    @Autowired
+    private ReservationQueue reservationQueue;
+
+    @Autowired
+    private BorrowingRecordRepository borrowingRecordRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void concurrentReturnsReservationsAndCancellationsKeepFifoAndStock() throws Exception {
+        Book book = bookRepository.save(new Book(null, "预约队列", "Author", "reservation-isbn-1", "Publisher", new BigDecimal("10.00"), COPIES));
+        List<User> borrowers = createUsers("reservation-borrower-", COPIES);
+        List<User> reservers = createUsers("reservation-reserver-", RESERVERS);
+        List<Long> loans = new ArrayList<>();
+        for (User borrower : borrowers) {
+            loans.add(borrowingService.borrowBook(borrower.getId(), book.getId()).getId());
+        }
+
+        // 1. 所有副本归还的同时，大量用户并发预约
+        List<Runnable> tasks = new ArrayList<>();
+        loans.forEach(loanId -> tasks.add(() -> borrowingService.returnBook(loanId)));
+        reservers.forEach(user -> tasks.add(() -> borrowingService.reserveBook(user.getId(), book.getId())));
+        runConcurrently(tasks);
+
+        assertEquals(COPIES, heldReservations(book).size());
+        assertEquals(RESERVERS - COPIES, reservationQueue.waitingReservations(book.getId()).size());
+        assertStockConserved(book);
+
+        // 2. 保留者借走图书；随后在归还的同时，排队中的部分用户取消预约
+        List<Long> queue = reservationQueue.waitingReservations(book.getId());
+        loans.clear();
+        for (BorrowingRecord hold : heldReservations(book)) {
+            loans.add(borrowingService.borrowBook(hold.getUser().getId(), book.getId()).getId());
+        }
+        List<Long> cancelled = queue.subList(0, CANCELLERS * 2).stream()
+                .filter(id -> id % 2 == 0).limit(CANCELLERS).toList();
+        tasks.clear();
+        loans.forEach(loanId -> tasks.add(() -> borrowingService.returnBook(loanId)));
+        for (Long reservationId : cancelled) {
+            Long userId = borrowingRecordRepository.findById(reservationId).orElseThrow().getUser().getId();
+            tasks.add(() -> borrowingService.cancelReservation(userId, reservationId));
+        }
+        runConcurrently(tasks);
+
+        Set<Long> expectedHolders = queue.stream().filter(id -> !cancelled.contains(id))
+                .limit(COPIES).collect(Collectors.toSet());
+        Set<Long> actualHolders = heldReservations(book).stream().map(BorrowingRecord::getId).collect(Collectors.toSet());
+        assertEquals(expectedHolders, actualHolders, "copies go to the earliest reservations still waiting");
+        assertStockConserved(book);
+    }
+
+    @Test
+    void sweeperExpiresStaleHoldAndPromotesNextReservation() {
+        Book book = bookRepository.save(new Book(null, "保留过期", "Author", "reservation-isbn-2", "Publisher", new BigDecimal("10.00"), 1));
+        List<User> users = createUsers("reservation-sweep-", 2);
+        BorrowingRecord first = borrowingService.reserveBook(users.get(0).getId(), book.getId());
+        BorrowingRecord second = borrowingService.reserveBook(users.get(1).getId(), book.getId());
+        assertTrue(first.getReservationExpiryDate() != null, "the only copy is held for the first reservation");
+
+        BorrowingRecord stale = borrowingRecordRepository.findById(first.getId()).orElseThrow();
+        stale.setReservationExpiryDate(LocalDate.now().minusDays(1));
+        borrowingRecordRepository.save(stale);
+        assertEquals(1, reservationQueue.sweepExpiredHolds());
+
+        assertEquals(BorrowStatus.RESERVATION_EXPIRED, borrowingRecordRepository.findById(first.getId()).orElseThrow().getStatus());
+        assertTrue(borrowingRecordRepository.findById(second.getId()).orElseThrow().getReservationExpiryDate() != null);
+        assertEquals(0, bookRepository.findById(book.getId()).orElseThrow().getQuantity());
+        assertEquals(BorrowStatus.BORROWED, borrowingService.borrowBook(users.get(1).getId(), book.getId()).getStatus());
+    }
+
+    private List<User> createUsers(String prefix, int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(new User(null, prefix + i, "password", "ROLE_USER", true));
+        }
+        return userRepository.saveAll(users);
+    }
+
+    private List<BorrowingRecord> heldReservations(Book book) {
+        return borrowingRecordRepository.findByBookAndStatus(book, BorrowStatus.RESERVED).stream()
+                .filter(r -> r.getReservationExpiryDate() != null)
+                .toList();
+    }
+
+    private void assertStockConserved(Book book) {
+        int stock = bookRepository.findById(book.getId()).orElseThrow().getQuantity();
+        int borrowed = borrowingRecordRepository.findByBookAndStatus(book, BorrowStatus.BORROWED).size();
+        assertEquals(COPIES, stock + borrowed + heldReservations(book).size(), "stock + loans + holds");
+    }
+
+    private static void runConcurrently(List<Runnable> tasks) throws InterruptedException {
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        for (Runnable task : tasks) {
+            pool.submit(() -> {
+                try {
+                    start.await();
+                    task.run();
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES), "workers did not finish in time");
+        assertTrue(failures.isEmpty(), () -> "unexpected failures: " + failures);
+    }
+}
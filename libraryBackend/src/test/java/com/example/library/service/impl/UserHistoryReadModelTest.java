@@ -0,0 +1,120 @@
+package com.example.library.service.impl;
+
+import com.example.library.dto.BorrowingHistoryPageDto;
+import com.example.library.dto.BorrowingRecordDto;
+import com.example.library.entity.impl.Book;
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.entity.impl.BorrowingRecord;
+import com.example.library.entity.impl.User;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.UserRepository;
+import com.example.library.service.BorrowingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 借阅历史读模型：借阅中与预约中的记录在第一页从内存返回并在变更提交后失效，
+ * 已结束的记录按 (借阅日期, id) 降序键集分页，从未借出的记录排在最后。
+ */
+@SpringBootTest
+class UserHistoryReadModelTest {
+
+    @Autowired
+    private BorrowingService borrowingService;
+
+    @Autowired
+    private BorrowingRecordRepository borrowingRecordRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void pagesEndedRecordsByKeysetAndServesActiveRecordsFromMemory() {
+        Book book = bookRepository.save(new Book(null, "历史测试", "Author", "history-isbn-1", "Publisher", new BigDecimal("10.00"), 10));
+        User user = userRepository.save(new User(null, "history-user", "password", "ROLE_USER", true));
+        LocalDateTime day = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        BorrowingRecord oldest = save(user, book, day.minusDays(10), BorrowStatus.RETURNED);
+        BorrowingRecord sameDayFirst = save(user, book, day.minusDays(9), BorrowStatus.RETURNED);
+        BorrowingRecord sameDaySecond = save(user, book, day.minusDays(9), BorrowStatus.RETURNED);
+        BorrowingRecord newest = save(user, book, day.minusDays(8), BorrowStatus.RETURNED);
+        BorrowingRecord canceledFirst = save(user, book, null, BorrowStatus.RESERVATION_CANCELED);
+        BorrowingRecord canceledSecond = save(user, book, null, BorrowStatus.RESERVATION_CANCELED);
+        BorrowingRecord borrowed = borrowingService.borrowBook(user.getId(), book.getId());
+        BorrowingRecord pastDue = save(user, book, day.minusDays(30), BorrowStatus.BORROWED); // 逾期检测任务尚未标记
+
+        BorrowingHistoryPageDto first = borrowingService.getUserBorrowingHistoryPage(user.getId(), null, null, 2);
+        assertEquals(List.of(borrowed.getId(), pastDue.getId()), ids(first.getActive()));
+        assertEquals(List.of("BORROWED", "OVERDUE"), first.getActive().stream().map(BorrowingRecordDto::getStatus).toList());
+        assertEquals(List.of(newest.getId(), sameDaySecond.getId()), ids(first.getItems()));
+        assertTrue(first.isHasMore());
+
+        BorrowingHistoryPageDto second = borrowingService.getUserBorrowingHistoryPage(user.getId(), null, first.getNextCursor(), 2);
+        assertTrue(second.getActive().isEmpty(), "active records are only returned on the first page");
+        assertEquals(List.of(sameDayFirst.getId(), oldest.getId()), ids(second.getItems()));
+        assertTrue(second.isHasMore());
+
+        BorrowingHistoryPageDto third = borrowingService.getUserBorrowingHistoryPage(user.getId(), null, second.getNextCursor(), 2);
+        assertEquals(List.of(canceledSecond.getId(), canceledFirst.getId()), ids(third.getItems()));
+        assertFalse(third.isHasMore());
+        assertNull(third.getNextCursor());
+
+        // 按状态过滤：活跃状态只读热分区，其他状态只读数据库，包括从未借出记录之间的翻页
+        BorrowingHistoryPageDto overdue = borrowingService.getUserBorrowingHistoryPage(user.getId(), BorrowStatus.OVERDUE, null, 2);
+        assertEquals(List.of(pastDue.getId()), ids(overdue.getActive()));
+        assertTrue(overdue.getItems().isEmpty());
+        BorrowingHistoryPageDto canceled = borrowingService.getUserBorrowingHistoryPage(user.getId(), BorrowStatus.RESERVATION_CANCELED, null, 1);
+        assertTrue(canceled.getActive().isEmpty());
+        assertEquals(List.of(canceledSecond.getId()), ids(canceled.getItems()));
+        BorrowingHistoryPageDto canceledNext = borrowingService.getUserBorrowingHistoryPage(user.getId(), BorrowStatus.RESERVATION_CANCELED, canceled.getNextCursor(), 1);
+        assertEquals(List.of(canceledFirst.getId()), ids(canceledNext.getItems()));
+        assertFalse(canceledNext.isHasMore());
+
+        // 归还提交后热分区失效，刚归还的记录出现在历史的最前面
+        borrowingService.returnBook(borrowed.getId());
+        BorrowingHistoryPageDto afterReturn = borrowingService.getUserBorrowingHistoryPage(user.getId(), null, null, 2);
+        assertEquals(List.of(pastDue.getId()), ids(afterReturn.getActive()));
+        assertEquals(List.of(borrowed.getId(), newest.getId()), ids(afterReturn.getItems()));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> borrowingService.getUserBorrowingHistoryPage(user.getId(), null, "not-a-cursor", 2));
+        assertThrows(IllegalArgumentException.class,
+                () -> borrowingService.getUserBorrowingHistoryPage(Long.MAX_VALUE, null, null, 2));
+    }
+
+    private BorrowingRecord save(User user, Book book, LocalDateTime borrowDate, BorrowStatus status) {
+        BorrowingRecord record = new BorrowingRecord();
+        record.setUser(user);
+        record.setBook(book);
+        record.setBorrowDate(borrowDate);
+        if (borrowDate != null) {
+            record.setDueDate(borrowDate.toLocalDate().plusDays(14));
+        } else {
+            record.setReservationDate(LocalDateTime.now());
+            record.setReservationExpiryDate(LocalDate.now());
+        }
+        record.setStatus(status);
+        return borrowingRecordRepository.save(record);
+    }
+
+    private static List<Long> ids(List<BorrowingRecordDto> records) {
+        return records.stream().map(BorrowingRecordDto::getId).toList();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.library.seurity;
+
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "test-secret-key-for-library-backend-0123456789abcdef";
+
+    private final JwtUtil jwtUtil = new JwtUtil(SECRET, 100);
+    private final UserDetails alice = User.withUsername("alice").password("x").roles("ADMIN").build();
+
+    @Test
+    void verifiesOnceAndServesRepeatedValidationsFromCache() {
+        String token = jwtUtil.generateToken(alice);
+
+        VerifiedToken first = jwtUtil.verify(token);
+        assertEquals("alice", first.username());
+        assertEquals(List.of("ROLE_ADMIN"), first.roles());
+        assertTrue(jwtUtil.validateToken(first, alice));
+
+        assertSame(first, jwtUtil.verify(token));
+        assertTrue(jwtUtil.validateToken(token, alice));
+        assertEquals(2L, jwtUtil.tokenCacheStats().get("hits"));
+        assertEquals(1L, jwtUtil.tokenCacheStats().get("misses"));
+    }
+
+    @Test
+    void rejectsTamperedAndExpiredTokens() {
+        String token = jwtUtil.generateToken(alice);
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        assertThrows(JwtException.class, () -> jwtUtil.verify(tampered));
+
+        String expired = Jwts.builder()
+                .subject("alice")
+                .issuedAt(new Date(System.currentTimeMillis() - 7_200_000))
+                .expiration(new Date(System.currentTimeMillis() - 3_600_000))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)), Jwts.SIG.HS256)
+                .compact();
+        assertThrows(ExpiredJwtException.class, () -> jwtUtil.verify(expired));
+        assertThrows(IllegalArgumentException.class, () -> jwtUtil.verify(""));
+    }
+}
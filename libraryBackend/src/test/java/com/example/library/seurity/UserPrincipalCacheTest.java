@@ -0,0 +1,106 @@
+package com.example.library.seurity;
+
+import com.example.library.dto.UserDto;
+import com.example.library.entity.impl.User;
+import com.example.library.repository.UserRepository;
+import com.example.library.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 认证主体缓存：用户被修改并提交后，已签发的 Token 在下一次请求时即按新状态认证；
+ * 与失效重叠的加载结果不放入缓存；未开启 trust-token-roles 时忽略 Token 中的角色声明。
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class UserPrincipalCacheTest {
+
+    private static final String USER_ENDPOINT = "/api/v1/borrowings/history/me";
+    private static final String ADMIN_ENDPOINT = "/api/v1/admin/caches";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Test
+    void committedRoleChangesAndDisablingApplyToExistingTokens() throws Exception {
+        User user = userRepository.save(new User(null, "principal-cache-user", "password", "ROLE_USER", true));
+        String token = jwtUtil.generateToken(userDetailsService.loadUserByUsername(user.getUsername()));
+
+        mockMvc.perform(get(USER_ENDPOINT).header(HttpHeaders.AUTHORIZATION, "Bearer " + token)).andExpect(status().isOk());
+        mockMvc.perform(get(ADMIN_ENDPOINT).header(HttpHeaders.AUTHORIZATION, "Bearer " + token)).andExpect(status().isForbidden());
+
+        UserDto promote = new UserDto();
+        promote.setRole("ROLE_ADMIN");
+        userService.updateUser(user.getId(), promote);
+        mockMvc.perform(get(ADMIN_ENDPOINT).header(HttpHeaders.AUTHORIZATION, "Bearer " + token)).andExpect(status().isOk());
+
+        UserDto disable = new UserDto();
+        disable.setEnabled(false);
+        userService.updateUser(user.getId(), disable);
+        mockMvc.perform(get(USER_ENDPOINT).header(HttpHeaders.AUTHORIZATION, "Bearer " + token)).andExpect(status().isForbidden());
+
+        userService.deleteUser(user.getId());
+        mockMvc.perform(get(USER_ENDPOINT).header(HttpHeaders.AUTHORIZATION, "Bearer " + token)).andExpect(status().isForbidden());
+    }
+
+    @Test
+    void loadOverlappingAnInvalidationIsNotCached() {
+        UserPrincipalCache cache = new UserPrincipalCache(true, 10, 60);
+        AtomicInteger loads = new AtomicInteger();
+        UserDetails stale = org.springframework.security.core.userdetails.User
+                .withUsername("bob").password("x").roles("USER").build();
+
+        // 加载过程中用户被修改 (失效发生在读取数据库之后、放入缓存之前)
+        cache.get("bob", username -> {
+            loads.incrementAndGet();
+            cache.invalidate(username);
+            return stale;
+        });
+        cache.get("bob", username -> {
+            loads.incrementAndGet();
+            return stale;
+        });
+        assertEquals(2, loads.get(), "the overlapping load must not be served from the cache");
+
+        cache.get("bob", username -> {
+            loads.incrementAndGet();
+            return stale;
+        });
+        assertEquals(2, loads.get(), "a load without concurrent invalidation is cached");
+    }
+
+    @Test
+    void ignoresTokenRolesUnlessTrustTokenRolesIsEnabled() throws Exception {
+        userRepository.save(new User(null, "principal-cache-forger", "password", "ROLE_USER", true));
+        // 签名有效、但角色声明与数据库不一致的 Token
+        String token = jwtUtil.generateToken(org.springframework.security.core.userdetails.User
+                .withUsername("principal-cache-forger").password("").roles("ADMIN").build());
+
+        mockMvc.perform(get(ADMIN_ENDPOINT).header(HttpHeaders.AUTHORIZATION, "Bearer " + token)).andExpect(status().isForbidden());
+        mockMvc.perform(get(USER_ENDPOINT).header(HttpHeaders.AUTHORIZATION, "Bearer " + token)).andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.library.benchmark;
+
+import com.example.library.LibraryApplication;
+import com.example.library.entity.impl.Book;
+import com.example.library.entity.impl.User;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.UserRepository;
+import com.example.library.search.BookSearchIndex;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 在内嵌 H2 (MySQL 兼容模式) 上启动完整后端并生成测试数据，JMH 基准和负载测试共用。
+ * 定时任务全部关闭，避免它们的后台工作干扰测量；配置以命令行参数传入，优先级高于后端自带的 application.properties。
+ */
+public final class BenchmarkApplication {
+
+    public static final String PASSWORD = "benchmark-password";
+
+    /** 书名与作者使用的词汇，检索类负载从中取查询词 */
+    public static final String[] WORDS = {
+            "java", "spring", "history", "garden", "ocean", "river", "mountain", "design",
+            "science", "music", "travel", "kitchen", "algorithm", "network", "poetry", "empire"
+    };
+
+    private static final int SEED_BATCH_SIZE = 1000;
+
+    private static final String[] PROPERTIES = {
+            "--spring.datasource.url=jdbc:h2:mem:library_benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=10000",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.datasource.driver-class-name=org.h2.Driver",
+            "--spring.jpa.hibernate.ddl-auto=create-drop",
+            "--spring.jpa.show-sql=false",
+            "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+            "--spring.main.banner-mode=off",
+            "--logging.level.root=WARN",
+            "--logging.level.org.springframework.security=WARN",
+            "--library.overdue.enabled=false",
+            "--library.reservation.sweeper.enabled=false",
+            "--library.fine.accrual.enabled=false",
+            "--library.popularity.reconcile.enabled=false",
+            "--library.circulation-log.dir=target/circulation-log"
+    };
+
+    /**
+     * 生成的数据，数组下标即生成顺序。
+     */
+    public record SeededData(Long[] bookIds, Long[] userIds, String[] usernames) {
+    }
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * 启动后端。
+     * @param web 是否启动内嵌 Web 服务器 (负载测试需要，JMH 基准直接调用 Bean 不需要)
+     * @param sources 额外的配置类
+     * @param extraProperties 额外的 --key=value 配置，覆盖默认值
+     */
+    public static ConfigurableApplicationContext start(boolean web, Class<?>[] sources, String... extraProperties) {
+        String[] args = Stream.concat(Arrays.stream(PROPERTIES), Arrays.stream(extraProperties)).toArray(String[]::new);
+        return new SpringApplicationBuilder(LibraryApplication.class)
+                .sources(sources)
+                .web(web ? WebApplicationType.SERVLET : WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run(args);
+    }
+
+    /**
+     * 生成图书和用户 (角色 ROLE_USER，密码均为 {@link #PASSWORD})，然后重建检索索引。
+     * @param bookQuantity 每本书的库存
+     */
+    public static SeededData seed(ConfigurableApplicationContext context, int catalogSize, int userCount,
+                                  int bookQuantity) throws InterruptedException {
+        BookSearchIndex searchIndex = context.getBean(BookSearchIndex.class);
+        awaitReady(searchIndex); // 启动时的后台构建基于空目录，先等它结束再导入数据
+
+        BookRepository bookRepository = context.getBean(BookRepository.class);
+        Long[] bookIds = new Long[catalogSize];
+        List<Book> books = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < catalogSize; i++) {
+            books.add(new Book(null, title(i), author(i), "bench-" + i, "Benchmark Press",
+                    new BigDecimal("39.90"), bookQuantity));
+            if (books.size() == SEED_BATCH_SIZE || i == catalogSize - 1) {
+                int offset = i + 1 - books.size();
+                List<Book> saved = bookRepository.saveAll(books);
+                for (int j = 0; j < saved.size(); j++) {
+                    bookIds[offset + j] = saved.get(j).getId();
+                }
+                books.clear();
+            }
+        }
+
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        String encoded = context.getBean(PasswordEncoder.class).encode(PASSWORD); // BCrypt 很慢，所有用户共用一个哈希
+        Long[] userIds = new Long[userCount];
+        String[] usernames = new String[userCount];
+        List<User> users = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < userCount; i++) {
+            usernames[i] = "bench-user-" + i;
+            users.add(new User(null, usernames[i], encoded, "ROLE_USER", true));
+            if (users.size() == SEED_BATCH_SIZE || i == userCount - 1) {
+                int offset = i + 1 - users.size();
+                List<User> saved = userRepository.saveAll(users);
+                for (int j = 0; j < saved.size(); j++) {
+                    userIds[offset + j] = saved.get(j).getId();
+                }
+                users.clear();
+            }
+        }
+
+        searchIndex.rebuild();
+        return new SeededData(bookIds, userIds, usernames);
+    }
+
+    public static String title(int i) {
+        return WORDS[i % WORDS.length] + " " + WORDS[(i / WORDS.length) % WORDS.length] + " volume " + i;
+    }
+
+    public static String author(int i) {
+        return "author" + (i % 500) + " " + WORDS[(i * 7) % WORDS.length];
+    }
+
+    private static void awaitReady(BookSearchIndex searchIndex) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (!searchIndex.isReady()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Book search index was not built within 60 seconds");
+            }
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.library.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 运行基准测试并把结果写成 JMH JSON 格式，供 {@link BenchmarkComparison} 在两次提交之间对比。
+ * <p>
+ * 参数：[基准名正则 (默认全部)] [结果文件 (默认 target/jmh-result.json)] [目录规模] [用户数量]，
+ * 规模参数可用逗号给出多个取值，JMH 对每种组合分别测量。
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*";
+        String result = args.length > 1 ? args[1] : "target/jmh-result.json";
+        String catalogSizes = args.length > 2 ? args[2] : "10000";
+        String userCounts = args.length > 3 ? args[3] : "1000";
+        Options options = new OptionsBuilder()
+                .include(include)
+                .param("catalogSize", catalogSizes.split(","))
+                .param("userCount", userCounts.split(","))
+                .resultFormat(ResultFormatType.JSON)
+                .result(result)
+                .build();
+        new Runner(options).run();
+    }
+}
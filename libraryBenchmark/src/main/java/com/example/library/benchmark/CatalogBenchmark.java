@@ -0,0 +1,67 @@
+package com.example.library.benchmark;
+
+import com.example.library.dto.BookDto;
+import com.example.library.service.BookService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BookServiceImpl 的目录读取：按书名、作者检索 (内存索引) 以及列出整个目录。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CatalogBenchmark {
+
+    private BookService bookService;
+
+    @State(Scope.Thread)
+    public static class Queries {
+
+        int next;
+
+        String word() {
+            return BenchmarkApplication.WORDS[next++ % BenchmarkApplication.WORDS.length];
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void lookup(LibraryFixture fixture) {
+        bookService = fixture.bean(BookService.class);
+    }
+
+    @Benchmark
+    public List<BookDto> searchByTitle(Queries queries) {
+        return bookService.searchBooks(queries.word(), null);
+    }
+
+    @Benchmark
+    public List<BookDto> searchByTitleAndAuthor(Queries queries) {
+        return bookService.searchBooks(queries.word(), queries.word());
+    }
+
+    @Benchmark
+    public List<BookDto> searchByTitlePrefix(Queries queries) {
+        return bookService.searchBooks(queries.word().substring(0, 3), null);
+    }
+
+    @Benchmark
+    public List<BookDto> getAllBooks() {
+        return bookService.getAllBooks();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.library.benchmark;
+
+import com.example.library.entity.impl.BorrowingRecord;
+import com.example.library.service.BorrowingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BorrowingServiceImpl 的借阅与归还：每次调用借一本书再把它还回去，用户的在借数量保持为零，
+ * 因此可以无限重复而不触及借阅上限。每个线程使用自己的用户，图书在目录中按大步长轮转。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CirculationBenchmark {
+
+    private static final int BOOK_STRIDE = 7919; // 与目录规模互质的步长，相邻调用落在不同的图书上
+
+    private BorrowingService borrowingService;
+
+    @State(Scope.Thread)
+    public static class Borrower {
+
+        private static final AtomicInteger NEXT_USER = new AtomicInteger();
+
+        Long userId;
+        int cursor;
+
+        @Setup(Level.Trial)
+        public void pickUser(LibraryFixture fixture) {
+            int index = NEXT_USER.getAndIncrement();
+            userId = fixture.userId(index);
+            cursor = index;
+        }
+
+        Long nextBook(LibraryFixture fixture) {
+            cursor += BOOK_STRIDE;
+            return fixture.bookId(cursor);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void lookup(LibraryFixture fixture) {
+        borrowingService = fixture.bean(BorrowingService.class);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public BorrowingRecord borrowAndReturn(LibraryFixture fixture, Borrower borrower) {
+        BorrowingRecord record = borrowingService.borrowBook(borrower.userId, borrower.nextBook(fixture));
+        return borrowingService.returnBook(record.getId());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public BorrowingRecord borrowAndReturnContended(LibraryFixture fixture, Borrower borrower) {
+        BorrowingRecord record = borrowingService.borrowBook(borrower.userId, borrower.nextBook(fixture));
+        return borrowingService.returnBook(record.getId());
+    }
+}
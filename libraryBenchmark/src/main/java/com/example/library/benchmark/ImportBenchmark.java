@@ -0,0 +1,65 @@
+package com.example.library.benchmark;
+
+import com.example.library.dto.BookImportResultDto;
+import com.example.library.service.BookService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 图书批量导入 (BookImporter 经 BookService.importBooks)：每次调用导入一个 {@value #ROWS} 行的 CSV 文件，
+ * 结果按每行折算。每个文件使用新的 ISBN 前缀，所有行都被插入而不是作为重复跳过。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ImportBenchmark {
+
+    static final int ROWS = 10_000;
+
+    private BookService bookService;
+    private int file;
+    private byte[] csv;
+
+    @Setup(Level.Trial)
+    public void lookup(LibraryFixture fixture) {
+        bookService = fixture.bean(BookService.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void nextFile() {
+        file++;
+        StringBuilder text = new StringBuilder(ROWS * 64).append("title,author,isbn,publisher,price,quantity\n");
+        for (int i = 0; i < ROWS; i++) {
+            text.append(BenchmarkApplication.title(i)).append(',').append(BenchmarkApplication.author(i))
+                    .append(",import-").append(file).append('-').append(i).append(",Benchmark Press,39.90,3\n");
+        }
+        csv = text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public BookImportResultDto importCsv() {
+        BookImportResultDto result = bookService.importBooks(new ByteArrayInputStream(csv), BookService.ImportFormat.CSV);
+        if (result.getImported() != ROWS) {
+            throw new IllegalStateException("Imported " + result.getImported() + " of " + ROWS + " rows");
+        }
+        return result;
+    }
+}
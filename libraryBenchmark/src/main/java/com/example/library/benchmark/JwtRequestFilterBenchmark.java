@@ -0,0 +1,84 @@
+package com.example.library.benchmark;
+
+import com.example.library.seurity.JwtRequestFilter;
+import com.example.library.seurity.JwtUtil;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtRequestFilter 处理单个请求的开销：携带有效 Token 的请求 (校验 Token、加载用户主体、建立认证)
+ * 与不带 Token 的匿名请求。每次调用后清空 SecurityContext，下一次调用重新认证。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JwtRequestFilterBenchmark {
+
+    private static final int TOKEN_COUNT = 64; // 轮流使用多个用户的 Token，覆盖用户主体缓存的常见情况
+
+    private JwtRequestFilter filter;
+    private String[] authorizationHeaders;
+
+    @State(Scope.Thread)
+    public static class Requests {
+
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void issueTokens(LibraryFixture fixture) {
+        filter = fixture.bean(JwtRequestFilter.class);
+        JwtUtil jwtUtil = fixture.bean(JwtUtil.class);
+        authorizationHeaders = new String[TOKEN_COUNT];
+        for (int i = 0; i < TOKEN_COUNT; i++) {
+            String token = jwtUtil.generateToken(User.withUsername(fixture.username(i))
+                    .password(BenchmarkApplication.PASSWORD)
+                    .roles("USER")
+                    .build());
+            authorizationHeaders[i] = "Bearer " + token;
+        }
+    }
+
+    @Benchmark
+    public Authentication authenticatedRequest(Requests requests) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/books");
+        request.addHeader("Authorization", authorizationHeaders[requests.next++ % TOKEN_COUNT]);
+        return filter(request);
+    }
+
+    @Benchmark
+    public Authentication anonymousRequest() throws ServletException, IOException {
+        return filter(new MockHttpServletRequest("GET", "/api/v1/books"));
+    }
+
+    private Authentication filter(MockHttpServletRequest request) throws ServletException, IOException {
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
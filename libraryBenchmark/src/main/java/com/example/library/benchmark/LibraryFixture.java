@@ -0,0 +1,58 @@
+package com.example.library.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 基准测试共享的应用上下文：通过 {@link BenchmarkApplication} 启动后端 (不启动 Web 服务器)，
+ * 按 {@link #catalogSize} 和 {@link #userCount} 生成图书目录与用户。
+ * 每个 JMH fork 启动一次，同一 fork 内的所有基准方法共用。
+ */
+@State(Scope.Benchmark)
+public class LibraryFixture {
+
+    private static final int BOOK_QUANTITY = 1_000_000; // 足够多的库存，借阅基准不会因库存耗尽而失败
+
+    @Param("10000") // 图书目录规模
+    public int catalogSize;
+
+    @Param("1000") // 用户数量
+    public int userCount;
+
+    private ConfigurableApplicationContext context;
+    private BenchmarkApplication.SeededData data;
+
+    @Setup(Level.Trial)
+    public void start() throws InterruptedException {
+        context = BenchmarkApplication.start(false, new Class<?>[0]);
+        data = BenchmarkApplication.seed(context, catalogSize, userCount, BOOK_QUANTITY);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public Long bookId(int index) {
+        return data.bookIds()[Math.floorMod(index, data.bookIds().length)];
+    }
+
+    public Long userId(int index) {
+        return data.userIds()[Math.floorMod(index, data.userIds().length)];
+    }
+
+    public String username(int index) {
+        return data.usernames()[Math.floorMod(index, data.usernames().length)];
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.library.benchmark;
+
+import com.example.library.dto.BookDto;
+import com.example.library.dto.BorrowingRecordDto;
+import com.example.library.dto.UserDto;
+import com.example.library.entity.impl.Book;
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.entity.impl.BorrowingRecord;
+import com.example.library.entity.impl.User;
+import com.example.library.mapper.BookMapper;
+import com.example.library.mapper.BorrowingRecordMapper;
+import com.example.library.mapper.UserMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.BeanUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 实体与 DTO 之间的显式映射，不需要应用上下文和数据库。
+ * 除单个对象外，还比较把 {@value #CATALOG_SIZE} 本图书的列表映射为 DTO 时显式映射与原先 BeanUtils.copyProperties 的开销，
+ * 列表基准的结果按每本图书折算，可与 bookToDto 直接比较。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+
+    static final int CATALOG_SIZE = 100_000;
+
+    private Book book;
+    private BookDto bookDto;
+    private User user;
+    private BorrowingRecord record;
+    private List<Book> catalog;
+
+    @Setup
+    public void createEntities() {
+        book = new Book(42L, BenchmarkApplication.title(42), BenchmarkApplication.author(42), "bench-42", "Benchmark Press",
+                new BigDecimal("39.90"), 3);
+        bookDto = BookMapper.toDto(book);
+        user = new User(7L, "bench-user-7", "{bcrypt}hash", "ROLE_USER", true);
+        record = new BorrowingRecord();
+        record.setId(1001L);
+        record.setUser(user);
+        record.setBook(book);
+        record.setBorrowDate(LocalDateTime.now());
+        record.setDueDate(LocalDate.now().plusDays(30));
+        record.setStatus(BorrowStatus.BORROWED);
+
+        catalog = new ArrayList<>(CATALOG_SIZE);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            catalog.add(new Book((long) i, BenchmarkApplication.title(i), BenchmarkApplication.author(i), "bench-" + i,
+                    "Benchmark Press", new BigDecimal("39.90"), i % 5));
+        }
+    }
+
+    @Benchmark
+    public BookDto bookToDto() {
+        return BookMapper.toDto(book);
+    }
+
+    @Benchmark
+    public Book bookToEntity() {
+        return BookMapper.toEntity(bookDto);
+    }
+
+    @Benchmark
+    public UserDto userToDto() {
+        return UserMapper.toDto(user);
+    }
+
+    @Benchmark
+    public BorrowingRecordDto borrowingRecordToDto() {
+        return BorrowingRecordMapper.toDto(record);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CATALOG_SIZE)
+    public List<BookDto> bookListToDto() {
+        List<BookDto> result = new ArrayList<>(catalog.size());
+        for (Book book : catalog) {
+            result.add(BookMapper.toDto(book));
+        }
+        return result;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CATALOG_SIZE)
+    public List<BookDto> bookListToDtoWithBeanUtils() {
+        List<BookDto> result = new ArrayList<>(catalog.size());
+        for (Book book : catalog) {
+            BookDto dto = new BookDto();
+            BeanUtils.copyProperties(book, dto);
+            result.add(dto);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.library.benchmark;
+
+import com.example.library.dto.PopularBookDto;
+import com.example.library.entity.impl.Book;
+import com.example.library.entity.impl.BorrowStatus;
+import com.example.library.entity.impl.BorrowingRecord;
+import com.example.library.entity.impl.User;
+import com.example.library.repository.BookRepository;
+import com.example.library.repository.BorrowingRecordRepository;
+import com.example.library.repository.UserRepository;
+import com.example.library.service.BookService;
+import com.example.library.service.BookService.PopularityWindow;
+import com.example.library.service.impl.PopularityLeaderboard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 热门图书排行：原先对 borrow_records 的 GROUP BY 聚合查询 ({@link BorrowingRecordRepository#findTopBorrowedBooks})
+ * 与内存排行榜 ({@link PopularityLeaderboard#top}) 取前 10 名的耗时，以及经过 BookService 组装 DTO 的完整路径。
+ * 借阅记录按偏斜分布落在目录中 (少数图书借出次数很多)，借出时间分布在最近 60 天内。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PopularityBenchmark {
+
+    private static final int SEED_BATCH_SIZE = 1000;
+    private static final int TOP = 10;
+
+    @Param("100000") // 借阅记录数
+    public int borrowCount;
+
+    private BorrowingRecordRepository borrowingRecordRepository;
+    private PopularityLeaderboard popularityLeaderboard;
+    private BookService bookService;
+
+    @Setup(Level.Trial)
+    public void seedBorrowings(LibraryFixture fixture) {
+        borrowingRecordRepository = fixture.bean(BorrowingRecordRepository.class);
+        popularityLeaderboard = fixture.bean(PopularityLeaderboard.class);
+        bookService = fixture.bean(BookService.class);
+
+        List<Book> books = fixture.bean(BookRepository.class).findAll();
+        List<User> users = fixture.bean(UserRepository.class).findAll();
+        SplittableRandom random = new SplittableRandom(42); // 固定种子，各次运行的数据相同
+        LocalDateTime now = LocalDateTime.now();
+        List<BorrowingRecord> records = new ArrayList<>(SEED_BATCH_SIZE);
+        for (int i = 0; i < borrowCount; i++) {
+            // 随机数的三次方集中在 0 附近，目录前部的图书被借出的次数远多于后部
+            double skew = Math.pow(random.nextDouble(), 3);
+            LocalDateTime borrowedAt = now.minusMinutes(random.nextLong(TimeUnit.DAYS.toMinutes(60)));
+            BorrowingRecord record = new BorrowingRecord();
+            record.setBook(books.get((int) (skew * books.size())));
+            record.setUser(users.get(i % users.size()));
+            record.setBorrowDate(borrowedAt);
+            record.setDueDate(borrowedAt.toLocalDate().plusDays(30));
+            record.setReturnDate(borrowedAt.plusDays(7));
+            record.setStatus(BorrowStatus.RETURNED);
+            records.add(record);
+            if (records.size() == SEED_BATCH_SIZE || i == borrowCount - 1) {
+                borrowingRecordRepository.saveAll(records);
+                records.clear();
+            }
+        }
+        popularityLeaderboard.rebuild();
+    }
+
+    @Benchmark
+    public List<Long> aggregateQuery() {
+        return borrowingRecordRepository.findTopBorrowedBooks(BorrowStatus.BORROWED, BorrowStatus.RETURNED)
+                .stream().limit(TOP).map(row -> ((Book) row[0]).getId()).toList();
+    }
+
+    @Benchmark
+    public List<PopularityLeaderboard.Ranked> leaderboardAllTime() {
+        return popularityLeaderboard.top(PopularityWindow.ALL_TIME, TOP);
+    }
+
+    @Benchmark
+    public List<PopularityLeaderboard.Ranked> leaderboardTrending() {
+        return popularityLeaderboard.top(PopularityWindow.TRENDING, TOP);
+    }
+
+    @Benchmark
+    public List<PopularBookDto> popularBooks() {
+        return bookService.getPopularBooks(PopularityWindow.ALL_TIME, TOP);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.library.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * 单个工作线程上某个操作的测量结果：每个请求的耗时 (纳秒) 以及按结果分类的计数。
+ * 只由所属的工作线程写入，测量结束后合并。耗时全部保留，百分位是精确值而不是分桶估算。
+ */
+final class EndpointStats {
+
+    private long[] latencies = new long[1024];
+    private int count;
+    private long rejected; // 4xx：业务规则拒绝 (无库存、达到借阅上限等)
+    private long errors;   // 5xx 或连接失败
+
+    void record(long nanos, int status) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = nanos;
+        if (status >= 500 || status < 0) {
+            errors++;
+        } else if (status >= 400) {
+            rejected++;
+        }
+    }
+
+    void merge(EndpointStats other) {
+        if (count + other.count > latencies.length) {
+            latencies = Arrays.copyOf(latencies, count + other.count);
+        }
+        System.arraycopy(other.latencies, 0, latencies, count, other.count);
+        count += other.count;
+        rejected += other.rejected;
+        errors += other.errors;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long rejected() {
+        return rejected;
+    }
+
+    long errors() {
+        return errors;
+    }
+
+    /**
+     * 按最近秩法计算百分位 (毫秒)，调用前需先 {@link #sort()}。
+     */
+    double percentileMillis(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(quantile * count);
+        return latencies[Math.max(0, Math.min(rank, count) - 1)] / 1_000_000.0;
+    }
+
+    double maxMillis() {
+        return count == 0 ? 0 : latencies[count - 1] / 1_000_000.0;
+    }
+
+    void sort() {
+        Arrays.sort(latencies, 0, count);
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.library.loadtest;
+
+import com.example.library.benchmark.BenchmarkApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端负载测试：在内嵌 H2 上启动带 Web 服务器的完整后端并生成数据，
+ * 用 {@code concurrency} 个工作线程通过 HTTP 重放登录、浏览、检索、借阅、续借、归还、预约、取消和借阅历史的混合负载，
+ * 请求经过真实的 AuthController、JwtRequestFilter 和 BorrowingController。
+ * 预热结束后开始计时，报告每个操作的吞吐量、p50/p95/p99 延迟以及服务端每次操作的 SQL 语句数，
+ * 并以 JSON 写入 {@code report} 指定的文件。
+ * <p>
+ * 参数均为 --key=value 形式，见 {@link Settings#parse(String[])}。
+ */
+public final class LoadTestRunner {
+
+    /**
+     * 负载测试参数。
+     * @param concurrency 并发工作线程数 (闭环：每个线程收到响应后才发下一个请求)
+     * @param warmupSeconds 预热时长，期间的请求不计入结果
+     * @param durationSeconds 测量时长
+     * @param catalogSize 图书目录规模
+     * @param userCount 用户数量，不少于并发数
+     * @param bookQuantity 每本书的库存，热门图书会被借空，从而产生预约与被拒绝的借阅
+     * @param zipfExponent 图书热度 Zipf 分布的指数，越大越集中在少数热门图书上
+     * @param sessionLength 每个会话 (一次登录) 执行的操作数
+     * @param thinkTimeMillis 两次操作之间的平均思考时间，0 表示不等待
+     * @param maxLoans 用户同时在借的上限，与后端的 library.borrow.max-books-per-user 一致
+     * @param maxReservations 用户同时持有的预约上限
+     * @param seed 随机数种子，相同参数下负载序列可复现
+     * @param report JSON 报告路径
+     */
+    public record Settings(int concurrency, int warmupSeconds, int durationSeconds, int catalogSize, int userCount,
+                           int bookQuantity, double zipfExponent, int sessionLength, long thinkTimeMillis,
+                           int maxLoans, int maxReservations, long seed, String report) {
+
+        static Settings parse(String[] args) {
+            Map<String, String> values = new HashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("Expected --key=value but got: " + arg);
+                }
+                values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+            Settings settings = new Settings(
+                    Integer.parseInt(values.getOrDefault("concurrency", "16")),
+                    Integer.parseInt(values.getOrDefault("warmup-seconds", "15")),
+                    Integer.parseInt(values.getOrDefault("duration-seconds", "60")),
+                    Integer.parseInt(values.getOrDefault("catalog-size", "10000")),
+                    Integer.parseInt(values.getOrDefault("user-count", "500")),
+                    Integer.parseInt(values.getOrDefault("book-quantity", "5")),
+                    Double.parseDouble(values.getOrDefault("zipf-exponent", "1.0")),
+                    Integer.parseInt(values.getOrDefault("session-length", "30")),
+                    Long.parseLong(values.getOrDefault("think-time-ms", "0")),
+                    Integer.parseInt(values.getOrDefault("max-loans", "5")),
+                    Integer.parseInt(values.getOrDefault("max-reservations", "2")),
+                    Long.parseLong(values.getOrDefault("seed", "42")),
+                    values.getOrDefault("report", "target/load-test-report.json"));
+            if (settings.userCount() < settings.concurrency()) {
+                throw new IllegalArgumentException("user-count must be at least concurrency");
+            }
+            return settings;
+        }
+    }
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.parse(args);
+        ConfigurableApplicationContext context = BenchmarkApplication.start(true,
+                new Class<?>[]{QueryCounter.Registration.class},
+                "--server.port=0",
+                "--spring.jpa.properties.hibernate.session_factory.statement_inspector=" + QueryCounter.class.getName(),
+                "--library.borrow.max-books-per-user=" + settings.maxLoans());
+        try {
+            BenchmarkApplication.SeededData data = BenchmarkApplication.seed(context, settings.catalogSize(),
+                    settings.userCount(), settings.bookQuantity());
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            Map<String, Object> report = run(settings, data, "http://localhost:" + port);
+            ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+                    .enable(SerializationFeature.INDENT_OUTPUT);
+            Path path = Path.of(settings.report());
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            objectMapper.writeValue(path.toFile(), report);
+            System.out.println("Report written to " + path.toAbsolutePath());
+        } finally {
+            context.close();
+        }
+    }
+
+    private static Map<String, Object> run(Settings settings, BenchmarkApplication.SeededData data, String baseUrl)
+            throws InterruptedException, IOException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        ObjectMapper objectMapper = new ObjectMapper();
+        ZipfSampler popularity = new ZipfSampler(data.bookIds().length, settings.zipfExponent());
+        LoadWorker.Control control = new LoadWorker.Control();
+        List<LoadWorker> workers = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(settings.concurrency());
+        for (int i = 0; i < settings.concurrency(); i++) {
+            LoadWorker worker = new LoadWorker(i, settings, control, client, baseUrl, objectMapper, popularity, data);
+            workers.add(worker);
+            executor.submit(worker);
+        }
+
+        System.out.printf("Warming up for %d s with %d workers...%n", settings.warmupSeconds(), settings.concurrency());
+        Thread.sleep(settings.warmupSeconds() * 1000L);
+        QueryCounter.reset();
+        control.recording = true;
+        long start = System.nanoTime();
+        System.out.printf("Measuring for %d s...%n", settings.durationSeconds());
+        Thread.sleep(settings.durationSeconds() * 1000L);
+        control.recording = false;
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        control.stopped = true;
+        executor.shutdown();
+        if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+
+        Map<Operation, EndpointStats> merged = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            EndpointStats total = new EndpointStats();
+            for (LoadWorker worker : workers) {
+                total.merge(worker.stats().get(operation));
+            }
+            total.sort();
+            merged.put(operation, total);
+        }
+        return report(settings, merged, elapsedSeconds);
+    }
+
+    private static Map<String, Object> report(Settings settings, Map<Operation, EndpointStats> merged,
+                                              double elapsedSeconds) {
+        System.out.printf("%n%-10s %9s %9s %7s %7s %9s %9s %9s %9s %9s%n", "operation", "requests", "req/s",
+                "4xx", "errors", "p50 ms", "p95 ms", "p99 ms", "max ms", "sql/op");
+        Map<String, Object> operations = new LinkedHashMap<>();
+        long totalRequests = 0;
+        long totalErrors = 0;
+        for (Map.Entry<Operation, EndpointStats> entry : merged.entrySet()) {
+            EndpointStats stats = entry.getValue();
+            if (stats.count() == 0) {
+                continue;
+            }
+            String label = entry.getKey().label();
+            double throughput = stats.count() / elapsedSeconds;
+            double queries = QueryCounter.perRequest(label);
+            System.out.printf("%-10s %9d %9.1f %7d %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n", label, stats.count(),
+                    throughput, stats.rejected(), stats.errors(), stats.percentileMillis(0.50),
+                    stats.percentileMillis(0.95), stats.percentileMillis(0.99), stats.maxMillis(), queries);
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("requests", stats.count());
+            row.put("throughput", throughput);
+            row.put("rejected", stats.rejected());
+            row.put("errors", stats.errors());
+            row.put("p50Millis", stats.percentileMillis(0.50));
+            row.put("p95Millis", stats.percentileMillis(0.95));
+            row.put("p99Millis", stats.percentileMillis(0.99));
+            row.put("maxMillis", stats.maxMillis());
+            row.put("queriesPerRequest", Double.isNaN(queries) ? null : queries);
+            operations.put(label, row);
+            totalRequests += stats.count();
+            totalErrors += stats.errors();
+        }
+        System.out.printf("%ntotal: %d requests, %.1f req/s, %d errors%n", totalRequests,
+                totalRequests / elapsedSeconds, totalErrors);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", LocalDateTime.now().toString());
+        report.put("settings", settings);
+        report.put("elapsedSeconds", elapsedSeconds);
+        report.put("totalRequests", totalRequests);
+        report.put("throughput", totalRequests / elapsedSeconds);
+        report.put("errors", totalErrors);
+        report.put("operations", operations);
+        return report;
+    }
+}
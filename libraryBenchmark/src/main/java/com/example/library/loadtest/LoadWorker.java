@@ -0,0 +1,268 @@
+package com.example.library.loadtest;
+
+import com.example.library.benchmark.BenchmarkApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * 一个并发的负载工作线程，轮流扮演分配给它的一组用户 (用户不会被两个线程同时使用)。
+ * 每个会话先登录取得 JWT，然后按 {@link Operation} 的权重执行若干次操作，图书按 Zipf 分布选择。
+ * 用户在借的书和预约跨会话保留，归还、续借、取消只针对自己确实持有的记录。
+ */
+final class LoadWorker implements Runnable {
+
+    private static final String JSON = "application/json";
+
+    /**
+     * 所有工作线程共享的运行状态，由 {@link LoadTestRunner} 切换。
+     */
+    static final class Control {
+        volatile boolean recording; // 预热阶段不记录
+        volatile boolean stopped;
+    }
+
+    /**
+     * 一个用户在负载中的状态。
+     */
+    private static final class UserState {
+        final String username;
+        final Long userId;
+        String token;
+        final List<Long> loans = new ArrayList<>();
+        final Set<Long> renewed = new HashSet<>();
+        final List<Long> reservations = new ArrayList<>();
+
+        UserState(String username, Long userId) {
+            this.username = username;
+            this.userId = userId;
+        }
+    }
+
+    private final LoadTestRunner.Settings settings;
+    private final Control control;
+    private final HttpClient client;
+    private final String baseUrl;
+    private final ObjectMapper objectMapper;
+    private final ZipfSampler popularity;
+    private final Long[] bookIds;
+    private final List<UserState> users = new ArrayList<>();
+    private final SplittableRandom random;
+    private final Map<Operation, EndpointStats> stats = new EnumMap<>(Operation.class);
+
+    LoadWorker(int index, LoadTestRunner.Settings settings, Control control, HttpClient client, String baseUrl,
+               ObjectMapper objectMapper, ZipfSampler popularity, BenchmarkApplication.SeededData data) {
+        this.settings = settings;
+        this.control = control;
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.objectMapper = objectMapper;
+        this.popularity = popularity;
+        this.bookIds = data.bookIds();
+        for (int u = index; u < data.userIds().length; u += settings.concurrency()) {
+            users.add(new UserState(data.usernames()[u], data.userIds()[u]));
+        }
+        this.random = new SplittableRandom(settings.seed() * 31 + index);
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new EndpointStats());
+        }
+    }
+
+    Map<Operation, EndpointStats> stats() {
+        return stats;
+    }
+
+    @Override
+    public void run() {
+        int next = 0;
+        while (!control.stopped && !Thread.currentThread().isInterrupted()) {
+            UserState user = users.get(next++ % users.size());
+            if (!login(user)) {
+                continue;
+            }
+            for (int i = 0; i < settings.sessionLength() && !control.stopped; i++) {
+                perform(pick(user), user);
+                if (settings.thinkTimeMillis() > 0) {
+                    try {
+                        Thread.sleep(random.nextLong(settings.thinkTimeMillis() * 2 + 1)); // 平均值为设定的思考时间
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean login(UserState user) {
+        String body = "{\"username\":\"" + user.username + "\",\"password\":\"" + BenchmarkApplication.PASSWORD + "\"}";
+        HttpResponse<String> response = send(Operation.LOGIN, null, post("/api/v1/auth/login", body));
+        user.token = response != null && response.statusCode() == 200 ? field(response, "token") : null;
+        return user.token != null;
+    }
+
+    private Operation pick(UserState user) {
+        int total = 0;
+        for (Operation operation : Operation.values()) {
+            if (allowed(operation, user)) {
+                total += operation.weight;
+            }
+        }
+        int choice = random.nextInt(total);
+        for (Operation operation : Operation.values()) {
+            if (allowed(operation, user)) {
+                choice -= operation.weight;
+                if (choice < 0) {
+                    return operation;
+                }
+            }
+        }
+        return Operation.BROWSE;
+    }
+
+    private boolean allowed(Operation operation, UserState user) {
+        return switch (operation) {
+            case LOGIN -> false;
+            case BORROW -> user.loans.size() < settings.maxLoans();
+            case RENEW -> user.renewed.size() < user.loans.size();
+            case RETURN -> !user.loans.isEmpty();
+            case RESERVE -> user.reservations.size() < settings.maxReservations();
+            case CANCEL -> !user.reservations.isEmpty();
+            default -> true;
+        };
+    }
+
+    private void perform(Operation operation, UserState user) {
+        switch (operation) {
+            case BROWSE -> {
+                // 一半的浏览从第一页开始，其余从目录中随机位置翻页
+                String after = random.nextBoolean() ? "" : "&after=" + bookIds[random.nextInt(bookIds.length)];
+                send(operation, user, get("/api/v1/books/page?size=20" + after));
+            }
+            case SEARCH -> {
+                String word = BenchmarkApplication.WORDS[random.nextInt(BenchmarkApplication.WORDS.length)];
+                send(operation, user, get("/api/v1/books?title=" + word));
+            }
+            case VIEW_BOOK -> send(operation, user, get("/api/v1/books/" + popularBook()));
+            case BORROW -> {
+                HttpResponse<String> response = send(operation, user,
+                        post("/api/v1/borrowings", circulationBody(user, popularBook())));
+                Long recordId = createdId(response);
+                if (recordId != null) {
+                    user.loans.add(recordId);
+                }
+            }
+            case RENEW -> {
+                Long recordId = user.loans.stream().filter(id -> !user.renewed.contains(id)).findFirst().orElseThrow();
+                send(operation, user, put("/api/v1/borrowings/" + recordId + "/renew"));
+                user.renewed.add(recordId); // 续借被拒绝 (例如已被预约) 时同样不再尝试
+            }
+            case RETURN -> {
+                Long recordId = user.loans.remove(random.nextInt(user.loans.size()));
+                user.renewed.remove(recordId);
+                send(operation, user, put("/api/v1/borrowings/" + recordId + "/return"));
+            }
+            case RESERVE -> {
+                HttpResponse<String> response = send(operation, user,
+                        post("/api/v1/borrowings/reservations", circulationBody(user, popularBook())));
+                Long reservationId = createdId(response);
+                if (reservationId != null) {
+                    user.reservations.add(reservationId);
+                }
+            }
+            case CANCEL -> {
+                Long reservationId = user.reservations.remove(random.nextInt(user.reservations.size()));
+                send(operation, user, HttpRequest.newBuilder(uri("/api/v1/borrowings/reservations/" + reservationId))
+                        .DELETE());
+            }
+            case HISTORY -> send(operation, user, get("/api/v1/borrowings/history/me"));
+            case LOGIN -> login(user);
+        }
+    }
+
+    private Long popularBook() {
+        return bookIds[popularity.sample(random)];
+    }
+
+    private static String circulationBody(UserState user, Long bookId) {
+        return "{\"userId\":" + user.userId + ",\"bookId\":" + bookId + "}";
+    }
+
+    private Long createdId(HttpResponse<String> response) {
+        if (response == null || response.statusCode() != 201) {
+            return null;
+        }
+        String id = field(response, "id");
+        return id == null ? null : Long.valueOf(id);
+    }
+
+    private String field(HttpResponse<String> response, String name) {
+        try {
+            JsonNode node = objectMapper.readTree(response.body()).get(name);
+            return node == null || node.isNull() ? null : node.asText();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(uri(path)).GET();
+    }
+
+    private HttpRequest.Builder post(String path, String body) {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", JSON)
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+    }
+
+    private HttpRequest.Builder put(String path) {
+        return HttpRequest.newBuilder(uri(path)).PUT(HttpRequest.BodyPublishers.noBody());
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    /**
+     * 发送请求并记录耗时 (到响应体完整读取为止)。连接失败时返回 null，记为错误。
+     */
+    private HttpResponse<String> send(Operation operation, UserState user, HttpRequest.Builder request) {
+        request.header(QueryCounter.OPERATION_HEADER, operation.label())
+                .header("Accept", JSON)
+                .timeout(Duration.ofSeconds(30));
+        if (user != null && user.token != null) {
+            request.header("Authorization", "Bearer " + user.token);
+        }
+        HttpResponse<String> response = null;
+        int status;
+        long start = System.nanoTime();
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            status = response.statusCode();
+        } catch (IOException e) {
+            status = -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        long elapsed = System.nanoTime() - start;
+        if (control.recording) {
+            stats.get(operation).record(elapsed, status);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.library.loadtest;
+
+/**
+ * 负载中的操作及其在混合负载中的权重。登录不参与按权重抽取，在每个会话开始时执行一次。
+ * 条件不满足的操作 (例如没有在借的书时归还) 在抽取时被跳过。
+ */
+enum Operation {
+    LOGIN(0),
+    BROWSE(22),      // GET /books/page 目录分页浏览
+    SEARCH(18),      // GET /books?title=... 按书名检索
+    VIEW_BOOK(12),   // GET /books/{id} 图书详情
+    BORROW(14),      // POST /borrowings
+    RENEW(4),        // PUT /borrowings/{id}/renew
+    RETURN(12),      // PUT /borrowings/{id}/return
+    RESERVE(5),      // POST /borrowings/reservations
+    CANCEL(4),       // DELETE /borrowings/reservations/{id}
+    HISTORY(9);      // GET /borrowings/history/me
+
+    final int weight;
+
+    Operation(int weight) {
+        this.weight = weight;
+    }
+
+    /** 请求头中的名称，服务端据此把 SQL 语句计入对应操作 */
+    String label() {
+        return name().toLowerCase();
+    }
+}
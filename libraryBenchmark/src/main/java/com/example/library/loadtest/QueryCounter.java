@@ -0,0 +1,91 @@
+package com.example.library.loadtest;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按负载操作统计服务端发出的 SQL 语句数。
+ * 负载生成器在每个请求上带 {@value #OPERATION_HEADER} 头，{@link Filter} 在请求线程上记下操作名，
+ * Hibernate 通过 {@link StatementInspector} 回调时把语句计入该操作。
+ * 过滤器排在 Spring Security 之前，JWT 认证时加载用户主体的查询也计算在内。
+ */
+public class QueryCounter implements StatementInspector {
+
+    static final String OPERATION_HEADER = "X-Load-Operation";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+    private static final Map<String, LongAdder> STATEMENTS = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> REQUESTS = new ConcurrentHashMap<>();
+
+    @Override
+    public String inspect(String sql) {
+        String operation = CURRENT.get();
+        if (operation != null) {
+            STATEMENTS.computeIfAbsent(operation, key -> new LongAdder()).increment();
+        }
+        return sql;
+    }
+
+    static void reset() {
+        STATEMENTS.clear();
+        REQUESTS.clear();
+    }
+
+    /**
+     * 操作平均每个请求的 SQL 语句数，没有请求时返回 NaN。
+     */
+    static double perRequest(String operation) {
+        LongAdder requests = REQUESTS.get(operation);
+        if (requests == null || requests.sum() == 0) {
+            return Double.NaN;
+        }
+        LongAdder statements = STATEMENTS.get(operation);
+        return statements == null ? 0 : (double) statements.sum() / requests.sum();
+    }
+
+    static class Filter extends OncePerRequestFilter {
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                throws ServletException, IOException {
+            String operation = request.getHeader(OPERATION_HEADER);
+            if (operation == null) {
+                chain.doFilter(request, response);
+                return;
+            }
+            CURRENT.set(operation);
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                CURRENT.remove();
+                REQUESTS.computeIfAbsent(operation, key -> new LongAdder()).increment();
+            }
+        }
+    }
+
+    /**
+     * 负载测试启动后端时作为额外的配置源传入，注册 {@link Filter}。
+     * 不加 @Configuration，以免被后端的组件扫描 (同在 com.example.library 包下) 带进 JMH 基准。
+     */
+    public static class Registration {
+
+        @Bean
+        public FilterRegistrationBean<Filter> loadTestQueryCountingFilter() {
+            FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>(new Filter());
+            registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+            return registration;
+        }
+    }
+}
@@ -4,6 +4,19 @@ export default {
   getAllBooks(params) { // params 可以是 { title: '...', author: '...' }
     return apiClient.get('/books', { params });
   },
+  /**
+   * 按游标分页获取图书 (键集分页)
+   * @param {number|null} after - 上一页返回的 nextCursor，首次加载传 null
+   * @param {number} size - 每页数量
+   * @returns {Promise<Object>} { items, nextCursor, hasMore }
+   */
+  getBooksPage(after = null, size = 50) {
+    const params = { size };
+    if (after !== null && after !== undefined) {
+      params.after = after;
+    }
+    return apiClient.get('/books/page', { params });
+  },
   getBookById(id) {
     return apiClient.get(`/books/${id}`);
   },
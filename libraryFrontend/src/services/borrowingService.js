@@ -64,6 +64,25 @@ export default {
     return apiClient.get('/borrowings/history/me');
   },
 
+  /**
+   * 按游标分页获取当前认证用户的借阅历史 (键集分页)
+   * 第一页的 active 为借阅中、逾期与预约中的记录，items 为按借阅日期倒序的已结束记录
+   * @param {string|null} cursor - 上一页返回的 nextCursor，首次加载传 null
+   * @param {string|null} status - 只返回该状态的记录，传 null 返回全部
+   * @param {number} size - 每页历史记录数
+   * @returns {Promise<Object>} { active, items, nextCursor, hasMore }
+   */
+  getMyBorrowingHistoryPage(cursor = null, status = null, size = 20) {
+    const params = { size };
+    if (cursor !== null && cursor !== undefined) {
+      params.cursor = cursor;
+    }
+    if (status) {
+      params.status = status;
+    }
+    return apiClient.get('/borrowings/history/me/page', { params });
+  },
+
   /**
    * (管理员/图书管理员) 获取所有逾期图书记录
    * @returns {Promise<Array<Object>>} BorrowingRecordDto 列表